@@ -0,0 +1,141 @@
+package bg.dalexiev.bender.compiler;
+
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.element.TypeElement;
+
+/**
+ * The field types supported for entity columns, with the accessors used to read and write them.
+ *
+ * @author danail.alexiev
+ * @since 1.2.0
+ */
+enum ColumnType {
+
+    LONG("getLong", "bindLong", false),
+    INT("getInt", "bindLong", false),
+    SHORT("getShort", "bindLong", false),
+    DOUBLE("getDouble", "bindDouble", false),
+    FLOAT("getFloat", "bindDouble", false),
+    BOOLEAN("getBoolean", "bindLong", false),
+    BOXED_LONG("getLong", "bindLong", true),
+    BOXED_INT("getInt", "bindLong", true),
+    BOXED_SHORT("getShort", "bindLong", true),
+    BOXED_DOUBLE("getDouble", "bindDouble", true),
+    BOXED_FLOAT("getFloat", "bindDouble", true),
+    BOXED_BOOLEAN("getBoolean", "bindLong", true),
+    STRING("getString", "bindString", true),
+    BLOB("getBlob", "bindBlob", true);
+
+    private final String mRowGetter;
+    private final String mStatementBinder;
+    private final boolean mIsNullable;
+
+    ColumnType(String rowGetter, String statementBinder, boolean isNullable) {
+        mRowGetter = rowGetter;
+        mStatementBinder = statementBinder;
+        mIsNullable = isNullable;
+    }
+
+    /**
+     * @return the name of the {@code Row} method, reading a value of this type.
+     */
+    String getRowGetter() {
+        return mRowGetter;
+    }
+
+    /**
+     * @return the name of the {@code SQLiteStatement} method, binding a value of this type.
+     */
+    String getStatementBinder() {
+        return mStatementBinder;
+    }
+
+    /**
+     * @return {@code true} if a field of this type can hold {@code null}.
+     */
+    boolean isNullable() {
+        return mIsNullable;
+    }
+
+    /**
+     * @return {@code true} if a value of this type is stored as {@code 0} or {@code 1}.
+     */
+    boolean isBoolean() {
+        return (this == BOOLEAN) || (this == BOXED_BOOLEAN);
+    }
+
+    /**
+     * @return {@code true} if a value of this type has to be unboxed before it is bound.
+     */
+    boolean isBoxed() {
+        return isNullable() && (this != STRING) && (this != BLOB);
+    }
+
+    /**
+     * Find the column type of a field type.
+     *
+     * @param type the type of the field.
+     * @return the column type, or {@code null} if the field type is not supported.
+     */
+    static ColumnType of(TypeMirror type) {
+        switch (type.getKind()) {
+            case LONG:
+                return LONG;
+
+            case INT:
+                return INT;
+
+            case SHORT:
+                return SHORT;
+
+            case DOUBLE:
+                return DOUBLE;
+
+            case FLOAT:
+                return FLOAT;
+
+            case BOOLEAN:
+                return BOOLEAN;
+
+            case ARRAY:
+                return (((ArrayType) type).getComponentType().getKind() == TypeKind.BYTE) ? BLOB : null;
+
+            case DECLARED:
+                return ofDeclared(((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().toString());
+
+            default:
+                return null;
+        }
+    }
+
+    private static ColumnType ofDeclared(String qualifiedName) {
+        switch (qualifiedName) {
+            case "java.lang.Long":
+                return BOXED_LONG;
+
+            case "java.lang.Integer":
+                return BOXED_INT;
+
+            case "java.lang.Short":
+                return BOXED_SHORT;
+
+            case "java.lang.Double":
+                return BOXED_DOUBLE;
+
+            case "java.lang.Float":
+                return BOXED_FLOAT;
+
+            case "java.lang.Boolean":
+                return BOXED_BOOLEAN;
+
+            case "java.lang.String":
+                return STRING;
+
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package bg.dalexiev.bender.compiler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The mapping of an {@code @Entity} class, as read by {@link EntityProcessor}.
+ *
+ * @author danail.alexiev
+ * @since 1.2.0
+ */
+final class EntityDescriptor {
+
+    private final String mPackageName;
+    private final String mTypeName;
+    private final String mGeneratedNamePrefix;
+    private final String mTable;
+    private final List<ColumnField> mColumns;
+
+    /**
+     * @param packageName         the package of the entity. Empty for the default package.
+     * @param typeName            the name of the entity, relative to its package. Nested classes are separated by a
+     *                            dot.
+     * @param generatedNamePrefix the prefix of the generated class names.
+     * @param table               the table of the entity. Can be empty.
+     */
+    EntityDescriptor(String packageName, String typeName, String generatedNamePrefix, String table) {
+        mPackageName = packageName;
+        mTypeName = typeName;
+        mGeneratedNamePrefix = generatedNamePrefix;
+        mTable = table;
+        mColumns = new ArrayList<>();
+    }
+
+    void addColumn(ColumnField column) {
+        mColumns.add(column);
+    }
+
+    String getPackageName() {
+        return mPackageName;
+    }
+
+    String getTypeName() {
+        return mTypeName;
+    }
+
+    String getQualifiedName(String simpleName) {
+        return mPackageName.isEmpty() ? simpleName : (mPackageName + '.' + simpleName);
+    }
+
+    String getRowMapperName() {
+        return mGeneratedNamePrefix + "_RowMapper";
+    }
+
+    String getWriterName() {
+        return mGeneratedNamePrefix + "_Writer";
+    }
+
+    String getTable() {
+        return mTable;
+    }
+
+    List<ColumnField> getColumns() {
+        return Collections.unmodifiableList(mColumns);
+    }
+
+    List<ColumnField> getInsertableColumns() {
+        final List<ColumnField> insertableColumns = new ArrayList<>(mColumns.size());
+        for (ColumnField column : mColumns) {
+            if (column.isInsertable()) {
+                insertableColumns.add(column);
+            }
+        }
+        return insertableColumns;
+    }
+
+    /**
+     * A single {@code @Column} field of an entity.
+     */
+    static final class ColumnField {
+
+        private final String mFieldName;
+        private final String mColumnName;
+        private final ColumnType mType;
+        private final boolean mIsInsertable;
+
+        ColumnField(String fieldName, String columnName, ColumnType type, boolean isInsertable) {
+            mFieldName = fieldName;
+            mColumnName = columnName;
+            mType = type;
+            mIsInsertable = isInsertable;
+        }
+
+        String getFieldName() {
+            return mFieldName;
+        }
+
+        String getColumnName() {
+            return mColumnName;
+        }
+
+        ColumnType getType() {
+            return mType;
+        }
+
+        boolean isInsertable() {
+            return mIsInsertable;
+        }
+    }
+}
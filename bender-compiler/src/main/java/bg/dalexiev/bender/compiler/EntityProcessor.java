@@ -0,0 +1,246 @@
+package bg.dalexiev.bender.compiler;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+import bg.dalexiev.bender.compiler.EntityDescriptor.ColumnField;
+
+/**
+ * Generates a {@code TypedRowMapper} and an {@code EntityWriter} for each class annotated with {@code
+ * bg.dalexiev.bender.annotation.Entity}.
+ *
+ * <p>
+ * The annotations are read by name, so the processor doesn't depend on the bender library itself.
+ * </p>
+ *
+ * @author danail.alexiev
+ * @since 1.2.0
+ */
+public final class EntityProcessor extends AbstractProcessor {
+
+    static final String ENTITY_ANNOTATION = "bg.dalexiev.bender.annotation.Entity";
+    static final String COLUMN_ANNOTATION = "bg.dalexiev.bender.annotation.Column";
+
+    private Elements mElements;
+    private Filer mFiler;
+    private Messager mMessager;
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+
+        mElements = processingEnv.getElementUtils();
+        mFiler = processingEnv.getFiler();
+        mMessager = processingEnv.getMessager();
+    }
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(ENTITY_ANNOTATION);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        final TypeElement entityAnnotation = mElements.getTypeElement(ENTITY_ANNOTATION);
+        if (entityAnnotation == null) {
+            return false;
+        }
+
+        for (Element element : roundEnv.getElementsAnnotatedWith(entityAnnotation)) {
+            final EntityDescriptor entity = readEntity(element);
+            if (entity == null) {
+                continue;
+            }
+
+            writeSource(element, entity.getQualifiedName(entity.getRowMapperName()),
+                    SourceGenerator.generateRowMapper(entity));
+            if (entity.getInsertableColumns().isEmpty()) {
+                mMessager.printMessage(Diagnostic.Kind.WARNING,
+                        "Entity has no insertable columns, no writer is generated", element);
+            } else {
+                writeSource(element, entity.getQualifiedName(entity.getWriterName()),
+                        SourceGenerator.generateWriter(entity));
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Read the mapping of an entity class, reporting every problem found.
+     *
+     * @return the mapping of the entity, or {@code null} if the entity is not valid.
+     */
+    private EntityDescriptor readEntity(Element element) {
+        if (element.getKind() != ElementKind.CLASS) {
+            return error(element, "@Entity can only be applied to classes");
+        }
+
+        final TypeElement type = (TypeElement) element;
+        boolean isValid = validateType(type);
+
+        final String packageName = mElements.getPackageOf(type).getQualifiedName().toString();
+        final String qualifiedName = type.getQualifiedName().toString();
+        final String typeName = packageName.isEmpty()
+                ? qualifiedName : qualifiedName.substring(packageName.length() + 1);
+        final AnnotationMirror entityMirror = getAnnotation(type, ENTITY_ANNOTATION);
+        final String table = (entityMirror == null) ? "" : (String) getValue(entityMirror, "table");
+
+        final EntityDescriptor entity = new EntityDescriptor(packageName, typeName, typeName.replace('.', '_'), table);
+        final Set<String> columnNames = new HashSet<>();
+        for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            final AnnotationMirror columnMirror = getAnnotation(field, COLUMN_ANNOTATION);
+            if (columnMirror == null) {
+                continue;
+            }
+
+            final ColumnField column = readColumn(field, columnMirror);
+            if (column == null) {
+                isValid = false;
+            } else if (!columnNames.add(column.getColumnName())) {
+                error(field, "Column " + column.getColumnName() + " is mapped more than once");
+                isValid = false;
+            } else {
+                entity.addColumn(column);
+            }
+        }
+
+        if (isValid && entity.getColumns().isEmpty()) {
+            error(type, "Entity has no @Column fields");
+            isValid = false;
+        }
+
+        return isValid ? entity : null;
+    }
+
+    private boolean validateType(TypeElement type) {
+        boolean isValid = true;
+        if (type.getModifiers().contains(Modifier.ABSTRACT)) {
+            error(type, "Entity can't be abstract");
+            isValid = false;
+        }
+
+        if (type.getModifiers().contains(Modifier.PRIVATE)) {
+            error(type, "Entity can't be private");
+            isValid = false;
+        }
+
+        if ((type.getNestingKind() != NestingKind.TOP_LEVEL)
+                && ((type.getNestingKind() != NestingKind.MEMBER) || !type.getModifiers().contains(Modifier.STATIC))) {
+            error(type, "Entity must be a top level or a static nested class");
+            isValid = false;
+        }
+
+        if (!type.getTypeParameters().isEmpty()) {
+            error(type, "Entity can't be generic");
+            isValid = false;
+        }
+
+        if (!hasNoArgConstructor(type)) {
+            error(type, "Entity must have a non-private constructor with no arguments");
+            isValid = false;
+        }
+
+        return isValid;
+    }
+
+    private static boolean hasNoArgConstructor(TypeElement type) {
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private ColumnField readColumn(VariableElement field, AnnotationMirror columnMirror) {
+        final Set<Modifier> modifiers = field.getModifiers();
+        if (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.STATIC)
+                || modifiers.contains(Modifier.FINAL)) {
+            return error(field, "@Column fields can't be private, static or final");
+        }
+
+        final ColumnType type = ColumnType.of(field.asType());
+        if (type == null) {
+            return error(field, "Unsupported @Column type " + field.asType()
+                    + ". Use a primitive number or boolean, its boxed type, String or byte[]");
+        }
+
+        final String columnName = (String) getValue(columnMirror, "value");
+        if ((columnName == null) || columnName.trim().isEmpty()) {
+            return error(field, "Column name can't be empty");
+        }
+
+        final boolean isInsertable = (Boolean) getValue(columnMirror, "insertable");
+        return new ColumnField(field.getSimpleName().toString(), columnName, type, isInsertable);
+    }
+
+    private static AnnotationMirror getAnnotation(Element element, String annotationName) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            final TypeElement annotationType = (TypeElement) mirror.getAnnotationType().asElement();
+            if (annotationType.getQualifiedName().contentEquals(annotationName)) {
+                return mirror;
+            }
+        }
+        return null;
+    }
+
+    private Object getValue(AnnotationMirror mirror, String name) {
+        final Map<? extends ExecutableElement, ? extends AnnotationValue> values =
+                mElements.getElementValuesWithDefaults(mirror);
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : values.entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals(name)) {
+                return entry.getValue().getValue();
+            }
+        }
+        return null;
+    }
+
+    private void writeSource(Element origin, String qualifiedName, String source) {
+        try {
+            final JavaFileObject file = mFiler.createSourceFile(qualifiedName, origin);
+            final Writer writer = file.openWriter();
+            try {
+                writer.write(source);
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            error(origin, "Can't write " + qualifiedName + ": " + e.getMessage());
+        }
+    }
+
+    private <T> T error(Element element, String message) {
+        mMessager.printMessage(Diagnostic.Kind.ERROR, message, element);
+        return null;
+    }
+}
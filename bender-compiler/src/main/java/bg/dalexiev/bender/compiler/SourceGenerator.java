@@ -0,0 +1,226 @@
+package bg.dalexiev.bender.compiler;
+
+import java.util.List;
+
+import bg.dalexiev.bender.compiler.EntityDescriptor.ColumnField;
+
+/**
+ * Generates the source of the row mapper and the writer of an entity.
+ *
+ * <p>
+ * The generated code reads and writes each column with a single, straight-line statement. Column names and indices are
+ * resolved at compile time, so no reflection or name lookups happen while mapping.
+ * </p>
+ *
+ * @author danail.alexiev
+ * @since 1.2.0
+ */
+final class SourceGenerator {
+
+    private static final String INDENT = "    ";
+
+    private SourceGenerator() {
+    }
+
+    /**
+     * Generate a {@code TypedRowMapper}, reading all columns of {@code entity}.
+     *
+     * @param entity the entity to map.
+     * @return the source of the row mapper.
+     */
+    static String generateRowMapper(EntityDescriptor entity) {
+        final String typeName = entity.getTypeName();
+        final List<ColumnField> columns = entity.getColumns();
+
+        final StringBuilder source = new StringBuilder(1024);
+        appendHeader(source, entity, "A row mapper");
+        source.append("public final class ").append(entity.getRowMapperName())
+                .append(" extends bg.dalexiev.bender.mapper.TypedRowMapper<").append(typeName).append("> {\n\n");
+
+        appendLine(source, 1, "/**");
+        appendLine(source, 1, " * The columns read by this mapper. Use it as the projection of the mapped query.");
+        appendLine(source, 1, " */");
+        appendColumnArray(source, "PROJECTION", columns);
+
+        appendLine(source, 1, "public " + entity.getRowMapperName() + "() {");
+        appendLine(source, 2, "super(PROJECTION);");
+        appendLine(source, 1, "}");
+        source.append('\n');
+
+        appendLine(source, 1, "@android.support.annotation.NonNull");
+        appendLine(source, 1, "@Override");
+        appendLine(source, 1, "public " + typeName
+                + " toObject(@android.support.annotation.NonNull bg.dalexiev.bender.mapper.Row row, int rowNum) {");
+        appendLine(source, 2, "final " + typeName + " entity = new " + typeName + "();");
+        for (int i = 0; i < columns.size(); i++) {
+            final ColumnField column = columns.get(i);
+            final ColumnType type = column.getType();
+            final String read = "row." + type.getRowGetter() + "(" + i + ")";
+            if (type.isBoxed()) {
+                appendLine(source, 2, "entity." + column.getFieldName() + " = row.isNull(" + i + ") ? null : "
+                        + read + ";");
+            } else {
+                appendLine(source, 2, "entity." + column.getFieldName() + " = " + read + ";");
+            }
+        }
+        appendLine(source, 2, "return entity;");
+        appendLine(source, 1, "}");
+        source.append("}\n");
+
+        return source.toString();
+    }
+
+    /**
+     * Generate an {@code EntityWriter}, writing the insertable columns of {@code entity}.
+     *
+     * @param entity the entity to write.
+     * @return the source of the writer.
+     */
+    static String generateWriter(EntityDescriptor entity) {
+        final String typeName = entity.getTypeName();
+        final List<ColumnField> columns = entity.getInsertableColumns();
+
+        final StringBuilder source = new StringBuilder(1024);
+        appendHeader(source, entity, "A writer");
+        source.append("public final class ").append(entity.getWriterName())
+                .append(" implements bg.dalexiev.bender.mapper.EntityWriter<").append(typeName).append("> {\n\n");
+
+        appendLine(source, 1, "/**");
+        appendLine(source, 1, " * The columns written by this writer, in binding order.");
+        appendLine(source, 1, " */");
+        appendColumnArray(source, "COLUMNS", columns);
+
+        appendLine(source, 1, "@android.support.annotation.NonNull");
+        appendLine(source, 1, "@Override");
+        appendLine(source, 1, "public String[] getColumns() {");
+        appendLine(source, 2, "return COLUMNS;");
+        appendLine(source, 1, "}");
+        source.append('\n');
+
+        appendLine(source, 1, "@Override");
+        appendLine(source, 1, "public void bind(@android.support.annotation.NonNull "
+                + "android.database.sqlite.SQLiteStatement statement, int firstIndex,");
+        appendLine(source, 3, "@android.support.annotation.NonNull " + typeName + " entity) {");
+        for (int i = 0; i < columns.size(); i++) {
+            appendBind(source, columns.get(i), i);
+        }
+        appendLine(source, 1, "}");
+        source.append('\n');
+
+        appendLine(source, 1, "@android.support.annotation.NonNull");
+        appendLine(source, 1, "@Override");
+        appendLine(source, 1, "public android.content.ContentValues toContentValues("
+                + "@android.support.annotation.NonNull " + typeName + " entity) {");
+        appendLine(source, 2, "final android.content.ContentValues values = new android.content.ContentValues("
+                + columns.size() + ");");
+        for (ColumnField column : columns) {
+            appendLine(source, 2, "values.put(" + quote(column.getColumnName()) + ", entity."
+                    + column.getFieldName() + ");");
+        }
+        appendLine(source, 2, "return values;");
+        appendLine(source, 1, "}");
+        source.append("}\n");
+
+        return source.toString();
+    }
+
+    private static void appendBind(StringBuilder source, ColumnField column, int position) {
+        final ColumnType type = column.getType();
+        final String index = (position == 0) ? "firstIndex" : ("firstIndex + " + position);
+        final String field = "entity." + column.getFieldName();
+
+        if (!type.isNullable()) {
+            appendLine(source, 2, "statement." + type.getStatementBinder() + "(" + index + ", "
+                    + toBindValue(type, field) + ");");
+            return;
+        }
+
+        // read the field once, so the null check and the binding see the same value
+        final String value = "value" + position;
+        appendLine(source, 2, "final " + getFieldTypeName(type) + " " + value + " = " + field + ";");
+        appendLine(source, 2, "if (" + value + " == null) {");
+        appendLine(source, 3, "statement.bindNull(" + index + ");");
+        appendLine(source, 2, "} else {");
+        appendLine(source, 3, "statement." + type.getStatementBinder() + "(" + index + ", "
+                + toBindValue(type, value) + ");");
+        appendLine(source, 2, "}");
+    }
+
+    private static String toBindValue(ColumnType type, String value) {
+        return type.isBoolean() ? ("(" + value + " ? 1L : 0L)") : value;
+    }
+
+    private static String getFieldTypeName(ColumnType type) {
+        switch (type) {
+            case BOXED_LONG:
+                return "Long";
+
+            case BOXED_INT:
+                return "Integer";
+
+            case BOXED_SHORT:
+                return "Short";
+
+            case BOXED_DOUBLE:
+                return "Double";
+
+            case BOXED_FLOAT:
+                return "Float";
+
+            case BOXED_BOOLEAN:
+                return "Boolean";
+
+            case STRING:
+                return "String";
+
+            case BLOB:
+                return "byte[]";
+
+            default:
+                throw new IllegalArgumentException("Not a nullable column type: " + type);
+        }
+    }
+
+    private static void appendHeader(StringBuilder source, EntityDescriptor entity, String kind) {
+        if (!entity.getPackageName().isEmpty()) {
+            source.append("package ").append(entity.getPackageName()).append(";\n\n");
+        }
+
+        source.append("/**\n")
+                .append(" * ").append(kind).append(" for {@link ").append(entity.getTypeName()).append("}");
+        if (!entity.getTable().isEmpty()) {
+            source.append(", stored in the {@code ").append(entity.getTable()).append("} table");
+        }
+        source.append(".\n")
+                .append(" * <p>Generated by bender-compiler. Do not modify.</p>\n")
+                .append(" */\n");
+    }
+
+    private static void appendColumnArray(StringBuilder source, String name, List<ColumnField> columns) {
+        appendLine(source, 1, "public static final String[] " + name + " = {");
+        for (int i = 0; i < columns.size(); i++) {
+            appendLine(source, 3, quote(columns.get(i).getColumnName()) + ((i < (columns.size() - 1)) ? "," : ""));
+        }
+        appendLine(source, 1, "};");
+        source.append('\n');
+    }
+
+    private static void appendLine(StringBuilder source, int indent, String line) {
+        for (int i = 0; i < indent; i++) {
+            source.append(INDENT);
+        }
+        source.append(line).append('\n');
+    }
+
+    private static String quote(String value) {
+        final StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if ((c == '"') || (c == '\\')) {
+                quoted.append('\\');
+            }
+            quoted.append(c);
+        }
+        return quoted.append('"').toString();
+    }
+}
@@ -0,0 +1,297 @@
+package bg.dalexiev.bender.compiler;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class EntityProcessorTest {
+
+    /**
+     * The annotations and the minimal API the generated classes are compiled against.
+     */
+    private static final String[][] LIBRARY_SOURCES = {
+            {"bg.dalexiev.bender.annotation.Entity", "package bg.dalexiev.bender.annotation;\n"
+                    + "@java.lang.annotation.Target(java.lang.annotation.ElementType.TYPE)\n"
+                    + "public @interface Entity { String table() default \"\"; }\n"},
+            {"bg.dalexiev.bender.annotation.Column", "package bg.dalexiev.bender.annotation;\n"
+                    + "@java.lang.annotation.Target(java.lang.annotation.ElementType.FIELD)\n"
+                    + "public @interface Column { String value(); boolean insertable() default true; }\n"},
+            {"android.support.annotation.NonNull", "package android.support.annotation;\n"
+                    + "public @interface NonNull {}\n"},
+            {"android.content.ContentValues", "package android.content;\n"
+                    + "public class ContentValues {\n"
+                    + "  public ContentValues(int size) {}\n"
+                    + "  public void put(String k, String v) {}\n"
+                    + "  public void put(String k, Short v) {}\n"
+                    + "  public void put(String k, Integer v) {}\n"
+                    + "  public void put(String k, Long v) {}\n"
+                    + "  public void put(String k, Float v) {}\n"
+                    + "  public void put(String k, Double v) {}\n"
+                    + "  public void put(String k, Boolean v) {}\n"
+                    + "  public void put(String k, byte[] v) {}\n"
+                    + "}\n"},
+            {"android.database.sqlite.SQLiteStatement", "package android.database.sqlite;\n"
+                    + "public class SQLiteStatement {\n"
+                    + "  public void bindNull(int i) {}\n"
+                    + "  public void bindLong(int i, long v) {}\n"
+                    + "  public void bindDouble(int i, double v) {}\n"
+                    + "  public void bindString(int i, String v) {}\n"
+                    + "  public void bindBlob(int i, byte[] v) {}\n"
+                    + "}\n"},
+            {"bg.dalexiev.bender.mapper.Row", "package bg.dalexiev.bender.mapper;\n"
+                    + "public final class Row {\n"
+                    + "  public boolean isNull(int c) { return false; }\n"
+                    + "  public String getString(int c) { return null; }\n"
+                    + "  public long getLong(int c) { return 0; }\n"
+                    + "  public int getInt(int c) { return 0; }\n"
+                    + "  public short getShort(int c) { return 0; }\n"
+                    + "  public double getDouble(int c) { return 0; }\n"
+                    + "  public float getFloat(int c) { return 0; }\n"
+                    + "  public boolean getBoolean(int c) { return false; }\n"
+                    + "  public byte[] getBlob(int c) { return null; }\n"
+                    + "}\n"},
+            {"bg.dalexiev.bender.mapper.TypedRowMapper", "package bg.dalexiev.bender.mapper;\n"
+                    + "public abstract class TypedRowMapper<E> {\n"
+                    + "  protected TypedRowMapper(String... columns) {}\n"
+                    + "  public abstract E toObject(Row row, int rowNum);\n"
+                    + "}\n"},
+            {"bg.dalexiev.bender.mapper.EntityWriter", "package bg.dalexiev.bender.mapper;\n"
+                    + "public interface EntityWriter<E> {\n"
+                    + "  String[] getColumns();\n"
+                    + "  void bind(android.database.sqlite.SQLiteStatement statement, int firstIndex, E entity);\n"
+                    + "  android.content.ContentValues toContentValues(E entity);\n"
+                    + "}\n"}
+    };
+
+    private Map<String, String> mGeneratedSources;
+    private DiagnosticCollector<JavaFileObject> mDiagnostics;
+
+    @Before
+    public void setUp() {
+        mGeneratedSources = new HashMap<>();
+        mDiagnostics = new DiagnosticCollector<>();
+    }
+
+    @Test
+    public void shouldGenerateRowMapper() {
+        assertTrue(process("test.ToDo", "package test;\n"
+                + "import bg.dalexiev.bender.annotation.*;\n"
+                + "@Entity(table = \"todo\")\n"
+                + "public class ToDo {\n"
+                + "  @Column(value = \"_id\", insertable = false) long id;\n"
+                + "  @Column(\"title\") String title;\n"
+                + "  @Column(\"priority\") Integer priority;\n"
+                + "  @Column(\"done\") boolean done;\n"
+                + "  String notMapped;\n"
+                + "}\n"));
+
+        final String rowMapper = mGeneratedSources.get("test.ToDo_RowMapper");
+        assertNotNull(rowMapper);
+        assertTrue(rowMapper.contains("public final class ToDo_RowMapper extends "
+                + "bg.dalexiev.bender.mapper.TypedRowMapper<ToDo>"));
+        assertTrue(rowMapper.contains("PROJECTION = {\n            \"_id\",\n            \"title\",\n"
+                + "            \"priority\",\n            \"done\"\n    };"));
+        assertTrue(rowMapper.contains("entity.id = row.getLong(0);"));
+        assertTrue(rowMapper.contains("entity.title = row.getString(1);"));
+        assertTrue(rowMapper.contains("entity.priority = row.isNull(2) ? null : row.getInt(2);"));
+        assertTrue(rowMapper.contains("entity.done = row.getBoolean(3);"));
+        assertFalse(rowMapper.contains("notMapped"));
+    }
+
+    @Test
+    public void shouldGenerateWriterForInsertableColumns() {
+        assertTrue(process("test.ToDo", "package test;\n"
+                + "import bg.dalexiev.bender.annotation.*;\n"
+                + "@Entity\n"
+                + "public class ToDo {\n"
+                + "  @Column(value = \"_id\", insertable = false) long id;\n"
+                + "  @Column(\"title\") String title;\n"
+                + "  @Column(\"done\") boolean done;\n"
+                + "  @Column(\"data\") byte[] data;\n"
+                + "}\n"));
+
+        final String writer = mGeneratedSources.get("test.ToDo_Writer");
+        assertNotNull(writer);
+        assertFalse(writer.contains("\"_id\""));
+        assertTrue(writer.contains("final String value0 = entity.title;"));
+        assertTrue(writer.contains("statement.bindNull(firstIndex);"));
+        assertTrue(writer.contains("statement.bindString(firstIndex, value0);"));
+        assertTrue(writer.contains("statement.bindLong(firstIndex + 1, (entity.done ? 1L : 0L));"));
+        assertTrue(writer.contains("statement.bindBlob(firstIndex + 2, value2);"));
+        assertTrue(writer.contains("new android.content.ContentValues(3);"));
+        assertTrue(writer.contains("values.put(\"data\", entity.data);"));
+    }
+
+    @Test
+    public void shouldCompileAllSupportedTypes() {
+        assertTrue(process("test.AllTypes", "package test;\n"
+                + "import bg.dalexiev.bender.annotation.*;\n"
+                + "@Entity public class AllTypes {\n"
+                + "  @Column(\"a\") long a; @Column(\"b\") int b; @Column(\"c\") short c;\n"
+                + "  @Column(\"d\") double d; @Column(\"e\") float e; @Column(\"f\") boolean f;\n"
+                + "  @Column(\"g\") Long g; @Column(\"h\") Integer h; @Column(\"i\") Short i;\n"
+                + "  @Column(\"j\") Double j; @Column(\"k\") Float k; @Column(\"l\") Boolean l;\n"
+                + "  @Column(\"m\") String m; @Column(\"n\") byte[] n;\n"
+                + "}\n"));
+
+        assertTrue(mGeneratedSources.get("test.AllTypes_Writer").contains("statement.bindLong(firstIndex + 11, "
+                + "(value11 ? 1L : 0L));"));
+    }
+
+    @Test
+    public void shouldNameNestedEntities() {
+        assertTrue(process("test.Schema", "package test;\n"
+                + "import bg.dalexiev.bender.annotation.*;\n"
+                + "public class Schema {\n"
+                + "  @Entity public static class Item { @Column(\"name\") String name; }\n"
+                + "}\n"));
+
+        final String rowMapper = mGeneratedSources.get("test.Schema_Item_RowMapper");
+        assertNotNull(rowMapper);
+        assertTrue(rowMapper.contains("TypedRowMapper<Schema.Item>"));
+        assertNotNull(mGeneratedSources.get("test.Schema_Item_Writer"));
+    }
+
+    @Test
+    public void shouldNotGenerateWriterWithoutInsertableColumns() {
+        assertTrue(process("test.Id", "package test;\n"
+                + "import bg.dalexiev.bender.annotation.*;\n"
+                + "@Entity public class Id { @Column(value = \"_id\", insertable = false) long id; }\n"));
+
+        assertNotNull(mGeneratedSources.get("test.Id_RowMapper"));
+        assertNull(mGeneratedSources.get("test.Id_Writer"));
+    }
+
+    @Test
+    public void shouldFailForPrivateField() {
+        assertFalse(process("test.ToDo", "package test;\n"
+                + "import bg.dalexiev.bender.annotation.*;\n"
+                + "@Entity public class ToDo { @Column(\"title\") private String title; }\n"));
+
+        assertError("@Column fields can't be private, static or final");
+        assertTrue(mGeneratedSources.isEmpty());
+    }
+
+    @Test
+    public void shouldFailForUnsupportedType() {
+        assertFalse(process("test.ToDo", "package test;\n"
+                + "import bg.dalexiev.bender.annotation.*;\n"
+                + "@Entity public class ToDo { @Column(\"created\") java.util.Date created; }\n"));
+
+        assertError("Unsupported @Column type java.util.Date");
+    }
+
+    @Test
+    public void shouldFailForDuplicateColumn() {
+        assertFalse(process("test.ToDo", "package test;\n"
+                + "import bg.dalexiev.bender.annotation.*;\n"
+                + "@Entity public class ToDo { @Column(\"a\") String first; @Column(\"a\") String second; }\n"));
+
+        assertError("Column a is mapped more than once");
+    }
+
+    @Test
+    public void shouldFailWithoutNoArgConstructor() {
+        assertFalse(process("test.ToDo", "package test;\n"
+                + "import bg.dalexiev.bender.annotation.*;\n"
+                + "@Entity public class ToDo { @Column(\"a\") String a; ToDo(String a) { this.a = a; } }\n"));
+
+        assertError("Entity must have a non-private constructor with no arguments");
+    }
+
+    private boolean process(String className, String source) {
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        final StandardJavaFileManager standardFileManager = compiler.getStandardFileManager(mDiagnostics, null, null);
+        final JavaFileManager fileManager = new ForwardingJavaFileManager<JavaFileManager>(standardFileManager) {
+            @Override
+            public JavaFileObject getJavaFileForOutput(Location location, final String className,
+                                                       final JavaFileObject.Kind kind, FileObject sibling) {
+                return new SimpleJavaFileObject(URI.create("mem:///" + className.replace('.', '/') + kind.extension),
+                        kind) {
+                    @Override
+                    public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                        return mGeneratedSources.get(className);
+                    }
+
+                    @Override
+                    public OutputStream openOutputStream() {
+                        return new ByteArrayOutputStream() {
+                            @Override
+                            public void close() throws IOException {
+                                super.close();
+                                if (kind == JavaFileObject.Kind.SOURCE) {
+                                    mGeneratedSources.put(className, toString("UTF-8"));
+                                }
+                            }
+                        };
+                    }
+                };
+            }
+        };
+
+        final List<JavaFileObject> sources = new ArrayList<>();
+        for (String[] librarySource : LIBRARY_SOURCES) {
+            sources.add(new SourceFile(librarySource[0], librarySource[1]));
+        }
+        sources.add(new SourceFile(className, source));
+
+        final JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, mDiagnostics,
+                null, null, sources);
+        task.setProcessors(Arrays.asList(new EntityProcessor()));
+        return task.call();
+    }
+
+    private void assertError(String message) {
+        final List<String> errors = new ArrayList<>();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : mDiagnostics.getDiagnostics()) {
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                errors.add(diagnostic.getMessage(Locale.ENGLISH));
+            }
+        }
+
+        assertEquals(1, errors.size());
+        assertTrue(errors.get(0), errors.get(0).startsWith(message));
+    }
+
+    private static final class SourceFile extends SimpleJavaFileObject {
+
+        private final String mSource;
+
+        private SourceFile(String className, String source) {
+            super(URI.create("mem:///" + className.replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+            mSource = source;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return mSource;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package bg.dalexiev.bender.content;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.provider.BaseColumns;
+import android.support.annotation.NonNull;
+import android.util.Log;
+import android.util.SparseArray;
+
+import junit.framework.TestCase;
+
+import bg.dalexiev.bender.mapper.RowMapper;
+
+/**
+ * Compares the sparse and the dense entity storage of {@code DefaultCursorMapper}. The timings are written to the log
+ * with the {@value #TAG} tag.
+ */
+public class DefaultCursorMapperBenchmarkTest extends TestCase {
+
+    private static final String TAG = "CursorMapperBenchmark";
+
+    private static final int ITERATIONS = 5;
+
+    private DefaultCursorMapper<Long> mCursorMapper;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        mCursorMapper = new DefaultCursorMapper<>(new RowMapper<Long>() {
+            @Override
+            public Long toObject(@NonNull Cursor cursor, int rowNum) {
+                return cursor.getLong(0);
+            }
+        });
+    }
+
+    public void test10kRows() {
+        benchmark(10000);
+    }
+
+    public void test100kRows() {
+        benchmark(100000);
+    }
+
+    private void benchmark(int rowCount) {
+        final MatrixCursor cursor = createCursor(rowCount);
+
+        // warm up
+        mapSparse(cursor);
+        mapDense(cursor);
+
+        long sparseNanos = 0;
+        long denseNanos = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            sparseNanos += mapSparse(cursor);
+            denseNanos += mapDense(cursor);
+        }
+
+        Log.i(TAG, rowCount + " rows: SparseArray " + (sparseNanos / ITERATIONS / 1000) + " us, dense array "
+                + (denseNanos / ITERATIONS / 1000) + " us (map + read all positions)");
+    }
+
+    private long mapSparse(MatrixCursor cursor) {
+        cursor.moveToPosition(-1);
+        final long start = System.nanoTime();
+
+        final SparseArray<Long> entities = mCursorMapper.mapCursor(cursor);
+        long checksum = 0;
+        for (int i = 0; i < entities.size(); i++) {
+            checksum += entities.get(i);
+        }
+
+        final long elapsed = System.nanoTime() - start;
+        assertChecksum(cursor.getCount(), checksum);
+        return elapsed;
+    }
+
+    private long mapDense(MatrixCursor cursor) {
+        cursor.moveToPosition(-1);
+        final long start = System.nanoTime();
+
+        final Object[] entities = mCursorMapper.mapRows(cursor, null);
+        long checksum = 0;
+        for (Object entity : entities) {
+            checksum += (Long) entity;
+        }
+
+        final long elapsed = System.nanoTime() - start;
+        assertChecksum(cursor.getCount(), checksum);
+        return elapsed;
+    }
+
+    private static void assertChecksum(int rowCount, long checksum) {
+        assertEquals(((long) rowCount * (rowCount - 1)) / 2, checksum);
+    }
+
+    private static MatrixCursor createCursor(int rowCount) {
+        final MatrixCursor cursor = new MatrixCursor(new String[]{BaseColumns._ID}, rowCount);
+        for (long id = 0; id < rowCount; id++) {
+            cursor.addRow(new Object[]{id});
+        }
+        return cursor;
+    }
+}
@@ -1,18 +1,29 @@
 package bg.dalexiev.bender.content;
 
+import android.content.ContentProviderOperation;
 import android.content.ContentResolver;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.OperationApplicationException;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.database.sqlite.SQLiteStatement;
 import android.net.Uri;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.CancellationSignal;
+import android.os.OperationCanceledException;
 import android.provider.BaseColumns;
 import android.support.annotation.NonNull;
 import android.test.ProviderTestCase2;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import bg.dalexiev.bender.db.QueryResultCache;
+
 public class SQLiteContentProviderTest extends ProviderTestCase2<SQLiteContentProviderTest.MockSQLiteContentProvider> {
 
     private ContentResolver mContentResolver;
@@ -61,6 +72,174 @@ public class SQLiteContentProviderTest extends ProviderTestCase2<SQLiteContentPr
         assertEquals(expectedName, actualName);
     }
 
+    public void testQueryWithLimitAndOffset() {
+        final Uri uri = MockSQLiteContentProvider.USER_TABLE_URI.buildUpon()
+                .appendQueryParameter(DatabaseContentProvider.PARAM_LIMIT, "2")
+                .appendQueryParameter(DatabaseContentProvider.PARAM_OFFSET, "1")
+                .build();
+        final Cursor cursor = mContentResolver
+                .query(uri, new String[]{BaseColumns._ID}, null, null, BaseColumns._ID + " asc");
+
+        assertEquals(2, cursor.getCount());
+        cursor.moveToFirst();
+        assertEquals(2, cursor.getLong(0));
+    }
+
+    public void testQueryWithInvalidLimit() {
+        final Uri uri = MockSQLiteContentProvider.USER_TABLE_URI.buildUpon()
+                .appendQueryParameter(DatabaseContentProvider.PARAM_LIMIT, "1; drop table users")
+                .build();
+        try {
+            mContentResolver.query(uri, new String[]{BaseColumns._ID}, null, null, null);
+            throw new AssertionError("Should fail with " + IllegalArgumentException.class.getSimpleName());
+        } catch (IllegalArgumentException e) {
+            // test passed
+        }
+    }
+
+    public void testCount() {
+        final Bundle extras = new Bundle();
+        extras.putString(DatabaseContentProvider.EXTRA_SELECTION, "name like ?");
+        extras.putStringArray(DatabaseContentProvider.EXTRA_SELECTION_ARGS, new String[]{"P%"});
+
+        final Bundle result = mContentResolver.call(MockSQLiteContentProvider.USER_TABLE_URI,
+                DatabaseContentProvider.METHOD_COUNT, MockSQLiteContentProvider.USER_TABLE_URI.toString(), extras);
+
+        assertEquals(2, result.getLong(DatabaseContentProvider.EXTRA_RESULT));
+    }
+
+    public void testExistsById() {
+        final Uri uri = ContentUris.withAppendedId(MockSQLiteContentProvider.USER_TABLE_URI, 42);
+
+        final Bundle result = mContentResolver.call(uri, DatabaseContentProvider.METHOD_EXISTS, uri.toString(), null);
+
+        assertFalse(result.getBoolean(DatabaseContentProvider.EXTRA_RESULT));
+    }
+
+    public void testMax() {
+        final Bundle extras = new Bundle();
+        extras.putString(DatabaseContentProvider.EXTRA_COLUMN, BaseColumns._ID);
+
+        final Bundle result = mContentResolver.call(MockSQLiteContentProvider.USER_TABLE_URI,
+                DatabaseContentProvider.METHOD_MAX, MockSQLiteContentProvider.USER_TABLE_URI.toString(), extras);
+
+        assertEquals(5L, result.get(DatabaseContentProvider.EXTRA_RESULT));
+    }
+
+    public void testMaxOfText() {
+        final Bundle extras = new Bundle();
+        extras.putString(DatabaseContentProvider.EXTRA_COLUMN, "name");
+
+        try {
+            mContentResolver.call(MockSQLiteContentProvider.USER_TABLE_URI, DatabaseContentProvider.METHOD_MAX,
+                    MockSQLiteContentProvider.USER_TABLE_URI.toString(), extras);
+            throw new AssertionError("Should fail with " + IllegalArgumentException.class.getSimpleName());
+        } catch (IllegalArgumentException e) {
+            // test passed
+        }
+    }
+
+    public void testSumOfIntegers() {
+        final Bundle extras = new Bundle();
+        extras.putString(DatabaseContentProvider.EXTRA_COLUMN, BaseColumns._ID);
+
+        final Bundle result = mContentResolver.call(MockSQLiteContentProvider.USER_TABLE_URI,
+                DatabaseContentProvider.METHOD_SUM, MockSQLiteContentProvider.USER_TABLE_URI.toString(), extras);
+
+        assertEquals(15L, result.get(DatabaseContentProvider.EXTRA_RESULT));
+    }
+
+    public void testAggregateWithExpressionColumn() {
+        final Bundle extras = new Bundle();
+        extras.putString(DatabaseContentProvider.EXTRA_COLUMN, "(select count(*) from sqlite_master)");
+
+        try {
+            mContentResolver.call(MockSQLiteContentProvider.USER_TABLE_URI, DatabaseContentProvider.METHOD_MAX,
+                    MockSQLiteContentProvider.USER_TABLE_URI.toString(), extras);
+            throw new AssertionError("Should fail with " + IllegalArgumentException.class.getSimpleName());
+        } catch (IllegalArgumentException e) {
+            // test passed
+        }
+    }
+
+    public void testSumWithNoRows() {
+        final Bundle extras = new Bundle();
+        extras.putString(DatabaseContentProvider.EXTRA_COLUMN, BaseColumns._ID);
+        extras.putString(DatabaseContentProvider.EXTRA_SELECTION, "name is null");
+
+        final Bundle result = mContentResolver.call(MockSQLiteContentProvider.USER_TABLE_URI,
+                DatabaseContentProvider.METHOD_SUM, MockSQLiteContentProvider.USER_TABLE_URI.toString(), extras);
+
+        assertFalse(result.containsKey(DatabaseContentProvider.EXTRA_RESULT));
+    }
+
+    public void testQueryFromCache() {
+        final String[] projection = {BaseColumns._ID, "name"};
+        mContentResolver.query(MockSQLiteContentProvider.USER_TABLE_URI, projection, null, null, null).close();
+
+        final Cursor cursor = mContentResolver
+                .query(MockSQLiteContentProvider.USER_TABLE_URI, projection, null, null, null);
+
+        assertEquals(5, cursor.getCount());
+        assertEquals(1, getProvider().getQueryResultCache().getHitCount());
+    }
+
+    public void testQueryFromCacheAfterUpdate() {
+        final Uri uri = ContentUris.withAppendedId(MockSQLiteContentProvider.USER_TABLE_URI, 2);
+        final String[] projection = {"name"};
+        mContentResolver.query(uri, projection, null, null, null).close();
+        final ContentValues contentValues = new ContentValues(1);
+        contentValues.put("name", "Cached");
+
+        mContentResolver.update(uri, contentValues, null, null);
+        final Cursor cursor = mContentResolver.query(uri, projection, null, null, null);
+
+        assertTrue(cursor.moveToFirst());
+        assertEquals("Cached", cursor.getString(0));
+    }
+
+    public void testQueryWithSubQueryInProjectionNotCached() {
+        final String[] projection = {BaseColumns._ID, "(select count(*) from sqlite_master) as n"};
+
+        mContentResolver.query(MockSQLiteContentProvider.USER_TABLE_URI, projection, null, null, null).close();
+
+        final QueryResultCache queryResultCache = getProvider().getQueryResultCache();
+        assertEquals(0, queryResultCache.getMissCount());
+        assertEquals(0, queryResultCache.size());
+    }
+
+    public void testQueryInBatchNotCached() throws Exception {
+        final Uri uri = ContentUris.withAppendedId(MockSQLiteContentProvider.USER_TABLE_URI, 2);
+        final ContentValues contentValues = new ContentValues(1);
+        contentValues.put("name", "Batched");
+        final ArrayList<ContentProviderOperation> operations = new ArrayList<>(2);
+        operations.add(ContentProviderOperation.newUpdate(uri).withValues(contentValues).build());
+        operations.add(ContentProviderOperation.newAssertQuery(uri).withValues(contentValues).build());
+        final QueryResultCache queryResultCache = getProvider().getQueryResultCache();
+
+        mContentResolver.applyBatch(MockSQLiteContentProvider.AUTHORITY, operations);
+
+        // the query of the assertion sees the uncommitted update, so it bypasses the cache
+        assertEquals(0, queryResultCache.getMissCount());
+        assertEquals(0, queryResultCache.size());
+    }
+
+    public void testQueryCancelled() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+            return;
+        }
+
+        final CancellationSignal cancellationSignal = new CancellationSignal();
+        cancellationSignal.cancel();
+        try {
+            getProvider().query(MockSQLiteContentProvider.USER_TABLE_URI, new String[]{"name"}, null, null, null,
+                    cancellationSignal);
+            throw new AssertionError("Should fail with " + OperationCanceledException.class.getSimpleName());
+        } catch (OperationCanceledException e) {
+            // test passed
+        }
+    }
+
     public void testQueryWithInvalidUri() {
         try {
             mContentResolver.query(INVALID_URI, new String[]{BaseColumns._ID}, null, null, null);
@@ -133,6 +312,142 @@ public class SQLiteContentProviderTest extends ProviderTestCase2<SQLiteContentPr
         assertEquals(contentValues.length, insertedRows);
     }
 
+    public void testInsertBulkCountsOnlyInsertedRows() {
+        final Uri uri = MockSQLiteContentProvider.USER_TABLE_URI.buildUpon()
+                .appendQueryParameter(DatabaseContentProvider.PARAM_CONFLICT_ALGORITHM,
+                        Integer.toString(SQLiteDatabase.CONFLICT_IGNORE))
+                .build();
+        final ContentValues[] contentValues = new ContentValues[2];
+        contentValues[0] = new ContentValues();
+        contentValues[0].put(BaseColumns._ID, 1);
+        contentValues[0].put("name", "Ignored");
+        contentValues[1] = new ContentValues();
+        contentValues[1].put("name", "Bulk insert");
+
+        int insertedRows = mContentResolver.bulkInsert(uri, contentValues);
+
+        // the row with an existing id is ignored, so it is not counted
+        assertEquals(1, insertedRows);
+    }
+
+    public void testInsertBulkInChunks() {
+        final int rowCount = MockSQLiteContentProvider.BULK_INSERT_CHUNK_SIZE * 2 + 1;
+        final ContentValues[] contentValues = new ContentValues[rowCount];
+        for (int i = 0; i < rowCount; i++) {
+            contentValues[i] = new ContentValues();
+            contentValues[i].put("name", "Chunked insert " + i);
+        }
+
+        int insertedRows = mContentResolver.bulkInsert(MockSQLiteContentProvider.USER_TABLE_URI, contentValues);
+
+        final Cursor cursor = mContentResolver
+                .query(MockSQLiteContentProvider.USER_TABLE_URI, new String[]{BaseColumns._ID}, "name like ?",
+                        new String[]{"Chunked insert %"}, null);
+        assertEquals(rowCount, insertedRows);
+        assertEquals(rowCount, cursor.getCount());
+    }
+
+    public void testBatchYieldInterval() {
+        final ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        final BatchCommand batch = new BatchCommand(null, mContentResolver, operations).withYieldInterval(2);
+
+        for (int i = 0; i < 5; i++) {
+            batch.addInsert(newUserInsert("Yield interval " + i));
+        }
+
+        assertYieldAllowed(operations, false, false, true, false, true);
+    }
+
+    public void testBatchYieldPoint() {
+        final ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+
+        new BatchCommand(null, mContentResolver, operations)
+                .addInsert(newUserInsert("Yield point 0"))
+                .addYieldPoint()
+                .addInsert(newUserInsert("Yield point 1"))
+                .addInsert(newUserInsert("Yield point 2"));
+
+        assertYieldAllowed(operations, false, true, false);
+    }
+
+    public void testApplyBatchDispatchesChangesAtYieldPoint() throws Exception {
+        final MockSQLiteContentProvider provider = getProvider();
+        provider.mIsYieldForced = true;
+        final long initialVersion = provider.getQueryResultCache().getTableVersion("users");
+        final ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        new BatchCommand(null, mContentResolver, operations)
+                .addInsert(newUserInsert("Before yield"))
+                .addYieldPoint()
+                .addInsert(newUserInsert("After yield"));
+
+        mContentResolver.applyBatch(MockSQLiteContentProvider.AUTHORITY, operations);
+
+        // the changes committed by the yield are dispatched while the rest of the batch is still running
+        assertEquals(2, provider.mDispatchedChanges.size());
+        assertEquals(MockSQLiteContentProvider.USER_TABLE_URI, provider.mDispatchedChanges.get(0));
+        assertTrue(provider.mDispatchedInTransaction.get(0));
+        // advanced once by the insert and once more when the yield committed it
+        assertEquals(initialVersion + 2, (long) provider.mDispatchedVersions.get(0));
+        assertEquals(MockSQLiteContentProvider.USER_TABLE_URI, provider.mDispatchedChanges.get(1));
+        assertFalse(provider.mDispatchedInTransaction.get(1));
+    }
+
+    public void testApplyBatchDispatchesTableChangeOnceAfterCommit() throws Exception {
+        final MockSQLiteContentProvider provider = getProvider();
+        final ContentValues contentValues = new ContentValues(1);
+        contentValues.put("name", "Batched");
+        final ArrayList<ContentProviderOperation> operations = new ArrayList<>(3);
+        operations.add(ContentProviderOperation.newInsert(MockSQLiteContentProvider.USER_TABLE_URI)
+                .withValues(contentValues).build());
+        operations.add(ContentProviderOperation
+                .newUpdate(ContentUris.withAppendedId(MockSQLiteContentProvider.USER_TABLE_URI, 2))
+                .withValues(contentValues).build());
+        operations.add(ContentProviderOperation
+                .newDelete(ContentUris.withAppendedId(MockSQLiteContentProvider.USER_TABLE_URI, 3)).build());
+
+        mContentResolver.applyBatch(MockSQLiteContentProvider.AUTHORITY, operations);
+
+        // the row changes are reported as a single change of the table, once the batch has been committed
+        assertEquals(1, provider.mDispatchedChanges.size());
+        assertEquals(MockSQLiteContentProvider.USER_TABLE_URI, provider.mDispatchedChanges.get(0));
+        assertFalse(provider.mDispatchedInTransaction.get(0));
+    }
+
+    public void testFailedBatchDispatchesNoChanges() throws Exception {
+        final MockSQLiteContentProvider provider = getProvider();
+        final ContentValues contentValues = new ContentValues(1);
+        contentValues.put("name", "Rolled back");
+        final ArrayList<ContentProviderOperation> operations = new ArrayList<>(2);
+        operations.add(ContentProviderOperation
+                .newUpdate(ContentUris.withAppendedId(MockSQLiteContentProvider.USER_TABLE_URI, 2))
+                .withValues(contentValues).build());
+        operations.add(ContentProviderOperation.newAssertQuery(MockSQLiteContentProvider.USER_TABLE_URI)
+                .withExpectedCount(0).build());
+
+        try {
+            mContentResolver.applyBatch(MockSQLiteContentProvider.AUTHORITY, operations);
+            throw new AssertionError("Should fail with " + OperationApplicationException.class.getSimpleName());
+        } catch (OperationApplicationException e) {
+            // test passed
+        }
+
+        assertTrue(provider.mDispatchedChanges.isEmpty());
+    }
+
+    @NonNull
+    private InsertCommand newUserInsert(@NonNull String name) {
+        return new InsertCommand(mContentResolver, null).onUri(MockSQLiteContentProvider.USER_TABLE_URI)
+                .set("name", name);
+    }
+
+    private static void assertYieldAllowed(@NonNull List<ContentProviderOperation> operations,
+                                           boolean... expectedYieldAllowed) {
+        assertEquals(expectedYieldAllowed.length, operations.size());
+        for (int i = 0; i < expectedYieldAllowed.length; i++) {
+            assertEquals("Operation " + i, expectedYieldAllowed[i], operations.get(i).isYieldAllowed());
+        }
+    }
+
     public void testDeleteById() {
         final int deletedId = 5;
         final Uri uri = ContentUris.withAppendedId(MockSQLiteContentProvider.USER_TABLE_URI, deletedId);
@@ -263,15 +578,53 @@ public class SQLiteContentProviderTest extends ProviderTestCase2<SQLiteContentPr
 
         private static final String AUTHORITY = "bg.dalexiev.bender.test.mock.provider";
 
+        private static final int BULK_INSERT_CHUNK_SIZE = 2;
+
         private static final Uri USER_TABLE_URI = new Uri.Builder().scheme("content").authority(AUTHORITY)
                 .appendPath("users").build();
 
+        boolean mIsYieldForced;
+        final List<Uri> mDispatchedChanges = new ArrayList<>();
+        final List<Long> mDispatchedVersions = new ArrayList<>();
+        final List<Boolean> mDispatchedInTransaction = new ArrayList<>();
+
+        @Override
+        boolean yieldIfContended(@NonNull SQLiteDatabase db) {
+            if (!mIsYieldForced) {
+                return super.yieldIfContended(db);
+            }
+
+            // commit and reopen the transaction, the way a contended yield does
+            db.setTransactionSuccessful();
+            db.endTransaction();
+            db.beginTransaction();
+            return true;
+        }
+
+        @Override
+        void dispatchChange(@NonNull Uri uri) {
+            mDispatchedChanges.add(uri);
+            mDispatchedVersions.add(getQueryResultCache().getTableVersion("users"));
+            mDispatchedInTransaction.add(getWritableDatabase().inTransaction());
+            super.dispatchChange(uri);
+        }
+
         @NonNull
         @Override
         protected String createAuthority() {
             return AUTHORITY;
         }
 
+        @Override
+        protected QueryResultCache createQueryResultCache() {
+            return new QueryResultCache(DEFAULT_QUERY_RESULT_CACHE_SIZE);
+        }
+
+        @Override
+        protected int getBulkInsertChunkSize() {
+            return BULK_INSERT_CHUNK_SIZE;
+        }
+
         @NonNull
         @Override
         protected SQLiteOpenHelper createHelper(@NonNull Context context) {
@@ -0,0 +1,37 @@
+package bg.dalexiev.bender.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Maps a field of an {@link Entity} to a table column.
+ *
+ * <p>
+ * Supported field types are {@code long}, {@code int}, {@code short}, {@code double}, {@code float}, {@code boolean},
+ * their boxed counterparts, {@code String} and {@code byte[]}. Boxed, {@code String} and {@code byte[]} fields are
+ * nullable. A {@code boolean} is stored as {@code 0} or {@code 1}.
+ * </p>
+ *
+ * @author danail.alexiev
+ * @since 1.2.0
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.FIELD)
+public @interface Column {
+
+    /**
+     * @return the name of the column.
+     */
+    String value();
+
+    /**
+     * @return {@code false} if the column is read, but never written by the generated writer. Use this for columns
+     * generated by the database, like {@link android.provider.BaseColumns#_ID}.
+     */
+    boolean insertable() default true;
+
+}
@@ -0,0 +1,42 @@
+package bg.dalexiev.bender.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a class, whose {@link Column}-annotated fields are mapped to a database table.
+ *
+ * <p>
+ * The {@code bender-compiler} annotation processor generates two classes for each entity, in the package of the
+ * entity:
+ * </p>
+ * <ul>
+ * <li>{@code <Entity>_RowMapper} - a {@link bg.dalexiev.bender.mapper.TypedRowMapper}, reading the columns of the
+ * entity by their precomputed indices. Its {@code PROJECTION} constant holds the matching projection for {@code
+ * QueryCommand.select()}.</li>
+ * <li>{@code <Entity>_Writer} - an {@link bg.dalexiev.bender.mapper.EntityWriter}, binding the insertable columns of
+ * the entity to an insert statement or to {@code ContentValues}.</li>
+ * </ul>
+ *
+ * <p>
+ * The entity must have an accessible no-argument constructor and its columns must be non-private fields.
+ * </p>
+ *
+ * @author danail.alexiev
+ * @since 1.2.0
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface Entity {
+
+    /**
+     * @return the name of the table the entity is stored in. Optional, used for documentation of the generated
+     * classes only.
+     */
+    String table() default "";
+
+}
@@ -0,0 +1,86 @@
+package bg.dalexiev.bender.content;
+
+import android.content.ContentResolver;
+import android.os.Bundle;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+
+import bg.dalexiev.bender.db.SqlSelectionBuilder;
+import bg.dalexiev.bender.util.Preconditions;
+
+/**
+ * Computes the minimum, the maximum or the sum of a numeric column of a content URI, over the rows matching a
+ * selection. The value is computed by the {@link DatabaseContentProvider} and no cursor is created.
+ *
+ * @author danail.alexiev
+ * @see DatabaseContentProvider#METHOD_MIN
+ * @see DatabaseContentProvider#METHOD_MAX
+ * @see DatabaseContentProvider#METHOD_SUM
+ * @since 1.2.0
+ */
+public class AggregateCommand extends BaseAggregateCommand<Number, AggregateCommand.Callback, AggregateCommand> {
+
+    private final String mMethod;
+    private final String mColumn;
+
+    AggregateCommand(@NonNull ContentResolver contentResolver, @Nullable CommandExecutor executor,
+                     @NonNull String method, @NonNull String column) {
+        super(contentResolver, executor);
+        Preconditions.argumentNotNull(column, "Column can't be null");
+
+        mMethod = method;
+        mColumn = column;
+    }
+
+    @VisibleForTesting
+    AggregateCommand(WorkerHandler workerHandler, ContentResolver contentResolver, SqlSelectionBuilder selectionBuilder,
+                     String method, String column) {
+        super(workerHandler, contentResolver, selectionBuilder);
+        mMethod = method;
+        mColumn = column;
+    }
+
+    @NonNull
+    @Override
+    String getMethod() {
+        return mMethod;
+    }
+
+    @Override
+    void putExtras(@NonNull Bundle extras) {
+        extras.putString(DatabaseContentProvider.EXTRA_COLUMN, mColumn);
+    }
+
+    @Nullable
+    @Override
+    Number getResult(@NonNull Bundle result) {
+        // a long for an integer sum, a double otherwise
+        return (Number) result.get(DatabaseContentProvider.EXTRA_RESULT);
+    }
+
+    @Override
+    protected void notifyCallback(@NonNull Callback callback, int token, @Nullable Number result) {
+        callback.onAggregateComplete(token, result);
+    }
+
+    /**
+     * Defines the behaviour of the aggregate command callback.
+     *
+     * @author danail.alexiev
+     * @since 1.2.0
+     */
+    public interface Callback extends BaseResolverCommand.Callback {
+
+        /**
+         * Called when an aggregate has been computed.
+         *
+         * @param token the identifier of the completed command.
+         * @param value the aggregate value, or {@code null} if there are no matching rows with a non - null value. A
+         *              {@code Long} if the aggregate is an integer, a {@code Double} if it is a real.
+         * @since 1.2.0
+         */
+        void onAggregateComplete(int token, @Nullable Number value);
+
+    }
+}
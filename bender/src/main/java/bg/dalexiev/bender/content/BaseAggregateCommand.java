@@ -0,0 +1,169 @@
+package bg.dalexiev.bender.content;
+
+import android.content.ContentResolver;
+import android.net.Uri;
+import android.os.Bundle;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+
+import bg.dalexiev.bender.db.Predicate;
+import bg.dalexiev.bender.db.SqlSelectionBuilder;
+import bg.dalexiev.bender.util.Preconditions;
+
+/**
+ * A skeleton implementation of an aggregate request, computed by a {@link DatabaseContentProvider} through {@link
+ * ContentResolver#call(Uri, String, String, Bundle)}. Only the result of the aggregate is sent back - no cursor is
+ * created.
+ *
+ * @param <T>  the type of the result, returned by the command
+ * @param <C>  the type of the callback that can be registered on the command
+ * @param <RC> the concrete type of the command
+ * @author danail.alexiev
+ * @since 1.2.0
+ */
+abstract class BaseAggregateCommand<T, C extends BaseResolverCommand.Callback, RC extends BaseAggregateCommand<T, C, RC>>
+        extends BaseResolverCommand<T, C, RC> {
+
+    private final SqlSelectionBuilder mSelectionBuilder;
+
+    BaseAggregateCommand(@NonNull ContentResolver contentResolver, @Nullable CommandExecutor executor) {
+        super(contentResolver, executor);
+        mSelectionBuilder = new SqlSelectionBuilder();
+    }
+
+    @VisibleForTesting
+    BaseAggregateCommand(WorkerHandler workerHandler, ContentResolver contentResolver,
+                         SqlSelectionBuilder selectionBuilder) {
+        super(workerHandler, contentResolver);
+        mSelectionBuilder = selectionBuilder;
+    }
+
+    /**
+     * Appends an expression to the selection of this command. If a selection already exists, the new expression will
+     * be added using the {@code AND} logical operator.
+     *
+     * @param selection     required. The expression to be added to the selection.
+     * @param selectionArgs optional. The values to be bound to the selection.
+     * @return the current instance
+     * @throws IllegalArgumentException if {@code selection} is {@code null}.
+     * @since 1.2.0
+     */
+    @NonNull
+    public RC where(@NonNull String selection, @Nullable String... selectionArgs) {
+        Preconditions.argumentNotNull(selection, "Selection can't be null");
+
+        mSelectionBuilder.where(selection, selectionArgs);
+
+        //noinspection unchecked
+        return (RC) this;
+    }
+
+    /**
+     * Appends an expression to the selection of this command. If a selection already exists, the new expression will
+     * be added using the {@code AND} logical operator.
+     *
+     * @param predicate required. The predicate to be added to the selection.
+     * @return the current instance.
+     * @throws IllegalArgumentException if {@code predicate} is {@code null}
+     * @since 1.2.0
+     */
+    @NonNull
+    public RC where(@NonNull Predicate predicate) {
+        mSelectionBuilder.where(predicate);
+
+        //noinspection unchecked
+        return (RC) this;
+    }
+
+    /**
+     * Appends an expression to the selection of this command. If a selection already exists, the new expression will
+     * be added using the {@code OR} logical operator.
+     *
+     * @param selection     required. The expression to be added to the selection.
+     * @param selectionArgs optional. The values to be bound to the selection.
+     * @return the current instance.
+     * @throws IllegalArgumentException if {@code selection} is {@code null}.
+     * @since 1.2.0
+     */
+    @NonNull
+    public RC orWhere(@NonNull String selection, @Nullable String... selectionArgs) {
+        Preconditions.argumentNotNull(selection, "Selection can't be null");
+
+        mSelectionBuilder.orWhere(selection, selectionArgs);
+
+        //noinspection unchecked
+        return (RC) this;
+    }
+
+    /**
+     * Appends an expression to the selection of this command. If a selection already exists, the new expression will
+     * be added using the {@code OR} logical operator.
+     *
+     * @param predicate required. The predicate to be added to the selection.
+     * @return the current instance.
+     * @throws IllegalArgumentException if {@code predicate} is {@code null}
+     * @since 1.2.0
+     */
+    @NonNull
+    public RC orWhere(@NonNull Predicate predicate) {
+        mSelectionBuilder.orWhere(predicate);
+
+        //noinspection unchecked
+        return (RC) this;
+    }
+
+    @Override
+    protected boolean isReadOnly() {
+        return true;
+    }
+
+    @Override
+    protected T executeResolverCommand(@NonNull ContentResolver contentResolver) {
+        final Uri uri = getUri();
+
+        final Bundle extras = new Bundle(3);
+        extras.putString(DatabaseContentProvider.EXTRA_SELECTION, getSelection());
+        extras.putStringArray(DatabaseContentProvider.EXTRA_SELECTION_ARGS, getSelectionArgs());
+        putExtras(extras);
+
+        //noinspection ConstantConditions
+        final Bundle result = contentResolver.call(uri, getMethod(), uri.toString(), extras);
+        if (result == null) {
+            throw new UnsupportedOperationException("The content provider of " + uri + " doesn't support "
+                    + getMethod());
+        }
+        return getResult(result);
+    }
+
+    String getSelection() {
+        return mSelectionBuilder.getSelection();
+    }
+
+    String[] getSelectionArgs() {
+        return mSelectionBuilder.getSelectionArgs();
+    }
+
+    /**
+     * @return the {@link DatabaseContentProvider} method, computing the aggregate.
+     */
+    @NonNull
+    abstract String getMethod();
+
+    /**
+     * Add the command specific extras to the provider call.
+     *
+     * @param extras required. The extras of the call.
+     */
+    void putExtras(@NonNull Bundle extras) {
+    }
+
+    /**
+     * Read the result of the aggregate from the {@code Bundle} returned by the provider.
+     *
+     * @param result required. The result of the provider call.
+     * @return the aggregate value.
+     */
+    @Nullable
+    abstract T getResult(@NonNull Bundle result);
+}
@@ -10,8 +10,16 @@ import android.support.annotation.CallSuper;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.annotation.VisibleForTesting;
+import android.support.v4.os.CancellationSignal;
 
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import bg.dalexiev.bender.util.Preconditions;
 
@@ -33,31 +41,64 @@ abstract class BaseResolverCommand<T, C extends BaseResolverCommand.Callback, RC
     private WeakReference<C> mCallbackRef;
 
     private final WorkerHandler mWorkerHandler;
+    private final Handler mTaskHandler;
+    private final CommandExecutor mExecutor;
+    private volatile CommandTask mPendingTask;
+    // the futures, whose executions have not been started yet. Tracked apart from the token of the command
+    private final Set<CommandFuture<?>> mPendingFutures =
+            Collections.synchronizedSet(new HashSet<CommandFuture<?>>());
+    // the futures, whose executions are running, with the signals that cancel them
+    private final Map<CommandFuture<?>, CancellationSignal> mRunningFutures =
+            Collections.synchronizedMap(new HashMap<CommandFuture<?>, CancellationSignal>());
+    // cancels the running execution with a callback
+    private volatile CancellationSignal mCancellationSignal;
 
     private Uri mUri;
     private int mToken;
     private boolean mCancelObserverNotification;
 
     protected BaseResolverCommand(@NonNull ContentResolver contentResolver) {
+        this(contentResolver, null);
+    }
+
+    /**
+     * @param contentResolver required. The {@code ContentResolver} to execute the command against.
+     * @param executor        optional. The executor to run the asynchronous executions on. If {@code null}, they are
+     *                        run one after another on a single worker thread, shared by all commands, in the order
+     *                        they have been submitted. Priorities are then ignored.
+     * @since 1.2.0
+     */
+    protected BaseResolverCommand(@NonNull ContentResolver contentResolver, @Nullable CommandExecutor executor) {
         Preconditions.argumentNotNull(contentResolver, "ContentResolver can't be null");
 
-        synchronized (BaseResolverCommand.class) {
-            if (sLooper == null) {
-                HandlerThread workerThread = new HandlerThread("ResolverCommandWorker");
-                workerThread.start();
+        if (executor == null) {
+            synchronized (BaseResolverCommand.class) {
+                if (sLooper == null) {
+                    HandlerThread workerThread = new HandlerThread("ResolverCommandWorker");
+                    workerThread.start();
 
-                sLooper = workerThread.getLooper();
+                    sLooper = workerThread.getLooper();
+                }
             }
+
+            //noinspection unchecked
+            mWorkerHandler = new WorkerHandler(sLooper, this);
+            // runs the tasks, which are not identified by the token of the command, on the same thread
+            mTaskHandler = new Handler(sLooper);
+        } else {
+            mWorkerHandler = null;
+            mTaskHandler = null;
         }
 
-        //noinspection unchecked
-        mWorkerHandler = new WorkerHandler(sLooper, this);
+        mExecutor = executor;
         mResolverRef = new WeakReference<>(contentResolver);
     }
 
     @VisibleForTesting
     BaseResolverCommand(WorkerHandler workerHandler, ContentResolver resolver) {
         mWorkerHandler = workerHandler;
+        mTaskHandler = workerHandler;
+        mExecutor = null;
         mResolverRef = new WeakReference<>(resolver);
     }
 
@@ -123,6 +164,30 @@ abstract class BaseResolverCommand<T, C extends BaseResolverCommand.Callback, RC
      * @since 1.0
      */
     public void executeAsync(int token, @Nullable C callback) {
+        executeAsync(token, callback, Priority.DEFAULT);
+    }
+
+    /**
+     * Execute the {@code ContentResolver} command on a worker thread, ahead of the queued commands with a lower
+     * priority.
+     * <p>
+     * If a {@link #isReadOnly() read only} command is executed again with the same token, while its previous execution
+     * is still queued, the previous execution is dropped, so only the latest one runs and notifies the callback.
+     * </p>
+     * <p>
+     * Priorities are honored by the {@link CommandExecutor} of the command. A command without one runs its executions
+     * on the shared worker thread in the order they have been submitted, regardless of their priority.
+     * </p>
+     *
+     * @param token    a uniquer identifier for the command.
+     * @param callback optional. A callback that will be notified on the current thread when the operation completes.
+     * @param priority required. The priority to schedule the execution with.
+     * @throws IllegalArgumentException if {@code priority} is {@code null}.
+     * @throws IllegalStateException    if no URI has been set by calling {@link #onUri(Uri)}
+     * @since 1.2.0
+     */
+    public void executeAsync(final int token, @Nullable C callback, @NonNull Priority priority) {
+        Preconditions.argumentNotNull(priority, "Priority can't be null");
         validateStatePreExecute();
 
         mToken = token;
@@ -131,17 +196,285 @@ abstract class BaseResolverCommand<T, C extends BaseResolverCommand.Callback, RC
             mCallbackRef = new WeakReference<>(callback);
         }
 
-        final Message message = mWorkerHandler.obtainMessage(token, new Handler(this));
-        message.sendToTarget();
+        final Handler callbackHandler = new Handler(this);
+        if (mExecutor == null) {
+            // the worker handler belongs to this command, so only its own stale execution is removed
+            if (isReadOnly() && mWorkerHandler.hasMessages(token)) {
+                mWorkerHandler.removeMessages(token);
+            }
+
+            // the shared worker thread runs the executions in submission order, so the priority is not used
+            mWorkerHandler.obtainMessage(token, callbackHandler).sendToTarget();
+            return;
+        }
+
+        submit(token, priority, isReadOnly(), new Runnable() {
+
+            @Override
+            public void run() {
+                final ContentResolver contentResolver = mResolverRef.get();
+                if (contentResolver == null) {
+                    return;
+                }
+
+                executeResolverCommandAsync(contentResolver, newCancellationSignal(),
+                        new CallbackCompletion<T>(callbackHandler, token));
+            }
+        });
+    }
+
+    /**
+     * Execute the {@code ContentResolver} command on a worker thread and get a future of its result.
+     *
+     * @return the future of the result.
+     * @throws IllegalStateException if no URI has been set by calling {@link #onUri(Uri)}
+     * @see #executeAsync(Priority)
+     * @since 1.2.0
+     */
+    @NonNull
+    public CommandFuture<T> executeAsync() {
+        return executeAsync(Priority.DEFAULT);
+    }
+
+    /**
+     * Execute the {@code ContentResolver} command on a worker thread, ahead of the queued commands with a lower
+     * priority, and get a future of its result.
+     * <p>
+     * The future is completed on the worker thread, so the listeners, transformations and continuations of the future
+     * run there as well. Combine the futures of several commands with {@link CommandFuture#allOf(CommandFuture[])} or
+     * {@link CommandFuture#anyOf(CommandFuture[])} to run them in parallel. Unlike {@link #executeAsync(int, Callback,
+     * Priority)}, executions are never dropped in favour of newer ones. An execution, skipped because the command has
+     * been {@link #cancel() cancelled} before it has been started, completes its future as cancelled. Like with {@link
+     * #executeAsync(int, Callback, Priority)}, the priority is only honored by the {@link CommandExecutor} of the
+     * command.
+     * </p>
+     *
+     * @param priority required. The priority to schedule the execution with.
+     * @return the future of the result. If the command fails, the future fails with its exception.
+     * @throws IllegalArgumentException if {@code priority} is {@code null}.
+     * @throws IllegalStateException    if no URI has been set by calling {@link #onUri(Uri)}
+     * @since 1.2.0
+     */
+    @NonNull
+    public CommandFuture<T> executeAsync(@NonNull Priority priority) {
+        Preconditions.argumentNotNull(priority, "Priority can't be null");
+        validateStatePreExecute();
+
+        final CommandFuture<T> future = CommandFuture.forCommand(this);
+        mPendingFutures.add(future);
+        final Runnable task = new Runnable() {
+
+            @Override
+            public void run() {
+                // cancelled before it has been started - the future has been completed by the cancellation
+                if (!mPendingFutures.remove(future) || future.isDone()) {
+                    return;
+                }
+
+                final ContentResolver contentResolver = mResolverRef.get();
+                if (contentResolver == null) {
+                    future.set(null);
+                    return;
+                }
+
+                final CancellationSignal cancellationSignal = new CancellationSignal();
+                mRunningFutures.put(future, cancellationSignal);
+                // cancelled while it was being started
+                if (future.isDone()) {
+                    cancellationSignal.cancel();
+                }
+
+                try {
+                    executeResolverCommandAsync(contentResolver, cancellationSignal, new Completion<T>() {
+
+                        @Override
+                        public void onComplete(@Nullable T result) {
+                            mRunningFutures.remove(future);
+                            if (!future.set(result)) {
+                                releaseResult(result);
+                            }
+                        }
+
+                        @Override
+                        public void onError(@NonNull RuntimeException error) {
+                            mRunningFutures.remove(future);
+                            future.setError(error);
+                        }
+                    });
+                } catch (RuntimeException e) {
+                    mRunningFutures.remove(future);
+                    future.setError(e);
+                }
+            }
+        };
+
+        // not tied to the token of the command, so a later execution with the same token doesn't drop it
+        if (mExecutor == null) {
+            mTaskHandler.post(task);
+            return future;
+        }
+
+        mExecutor.execute(getAuthority(), isReadOnly(), priority, task);
+        return future;
     }
 
     /**
      * Try ot cancel the current operation before it has been completed. Cancellation is not guaranteed.
+     * <p>
+     * The pending {@link #executeAsync(Priority) executions with a future} are skipped and the running ones are
+     * interrupted. Their futures are cancelled.
+     * </p>
      *
      * @since 1.0
      */
     public void cancel() {
-        mWorkerHandler.removeMessages(mToken);
+        final List<CommandFuture<?>> futures;
+        synchronized (mPendingFutures) {
+            futures = new ArrayList<>(mPendingFutures);
+            mPendingFutures.clear();
+        }
+        synchronized (mRunningFutures) {
+            futures.addAll(mRunningFutures.keySet());
+        }
+        for (CommandFuture<?> future : futures) {
+            future.cancel(true);
+        }
+
+        final CancellationSignal cancellationSignal = mCancellationSignal;
+        if (cancellationSignal != null) {
+            cancellationSignal.cancel();
+        }
+
+        if (mExecutor == null) {
+            mWorkerHandler.removeMessages(mToken);
+            return;
+        }
+
+        final CommandTask pendingTask = mPendingTask;
+        if (pendingTask != null) {
+            pendingTask.cancel();
+        }
+    }
+
+    /**
+     * Stop the execution of a cancelled future. An execution, which has not been started yet, is skipped. A running
+     * one is cancelled through its own {@link CancellationSignal}, if {@code mayInterruptIfRunning} is {@code true}.
+     * The other executions of the command are not affected.
+     */
+    void cancelExecution(@NonNull CommandFuture<?> future, boolean mayInterruptIfRunning) {
+        if (mPendingFutures.remove(future) || !mayInterruptIfRunning) {
+            return;
+        }
+
+        final CancellationSignal cancellationSignal = mRunningFutures.remove(future);
+        if (cancellationSignal != null) {
+            cancellationSignal.cancel();
+        }
+    }
+
+    @NonNull
+    private CancellationSignal newCancellationSignal() {
+        final CancellationSignal cancellationSignal = new CancellationSignal();
+        mCancellationSignal = cancellationSignal;
+        return cancellationSignal;
+    }
+
+    /**
+     * Run a task on the worker thread that executes the asynchronous commands. Like any asynchronous command, the task
+     * can be cancelled with {@link #cancel()} until it has been started.
+     *
+     * @param token a unique identifier for the task.
+     * @param task  required. The task to run.
+     * @since 1.2.0
+     */
+    protected final void executeOnWorkerThread(int token, @NonNull Runnable task) {
+        mToken = token;
+
+        if (mExecutor == null) {
+            final Message message = Message.obtain(mWorkerHandler, task);
+            message.what = token;
+            message.sendToTarget();
+            return;
+        }
+
+        submit(token, Priority.DEFAULT, false, task);
+    }
+
+    /**
+     * Run a continuation of an asynchronous execution on the worker thread that executes the asynchronous commands.
+     * Unlike {@link #executeOnWorkerThread(int, Runnable)}, the task is not tied to the token of the command, so it
+     * can't be cancelled or replaced by a later execution.
+     *
+     * @param task required. The task to run.
+     * @since 1.2.0
+     */
+    protected final void continueOnWorkerThread(@NonNull Runnable task) {
+        Preconditions.argumentNotNull(task, "Task can't be null");
+
+        if (mExecutor == null) {
+            mTaskHandler.post(task);
+            return;
+        }
+
+        mExecutor.execute(getAuthority(), isReadOnly(), Priority.DEFAULT, task);
+    }
+
+    private void submit(int token, @NonNull Priority priority, boolean replacesPending, @NonNull Runnable task) {
+        final CommandTask pendingTask = mPendingTask;
+        if (replacesPending && (pendingTask != null) && (pendingTask.mToken == token)) {
+            // a stale execution, which has already been started, is left to complete
+            pendingTask.cancel();
+        }
+
+        final CommandTask commandTask = new CommandTask(token, task);
+        mPendingTask = commandTask;
+        mExecutor.execute(getAuthority(), isReadOnly(), priority, commandTask);
+    }
+
+    /**
+     * Get the authority of the content provider the command is executed against. Used by the {@link CommandExecutor}
+     * to decide which asynchronous executions may run in parallel.
+     *
+     * @return the authority or {@code null}, if the target has none.
+     * @since 1.2.0
+     */
+    @Nullable
+    protected String getAuthority() {
+        return (mUri != null) ? mUri.getAuthority() : null;
+    }
+
+    /**
+     * Check if the command only reads data. A {@link CommandExecutor} may run read only commands in parallel with each
+     * other, while the other commands against an authority are run one at a time, in submission order.
+     *
+     * @return {@code true} if the command doesn't modify any data. {@code false} by default.
+     * @since 1.2.0
+     */
+    @SuppressWarnings("MethodMayBeStatic") // This is not static, because subclasses may need to override it
+    protected boolean isReadOnly() {
+        return false;
+    }
+
+    /**
+     * Release the result of an execution, which has completed after its {@link CommandFuture} has been cancelled, so
+     * it will never be delivered.
+     *
+     * @param result optional. The result to release.
+     * @since 1.2.0
+     */
+    @SuppressWarnings("MethodMayBeStatic") // This is not static, because subclasses may need to override it
+    protected void releaseResult(@Nullable T result) {
+    }
+
+    /**
+     * Get the {@code ContentResolver} to execute the command against.
+     *
+     * @return the content resolver or {@code null}, if it is no longer available.
+     * @since 1.2.0
+     */
+    @Nullable
+    protected ContentResolver getContentResolver() {
+        return mResolverRef.get();
     }
 
     /**
@@ -183,6 +516,36 @@ abstract class BaseResolverCommand<T, C extends BaseResolverCommand.Callback, RC
     @Nullable
     protected abstract T executeResolverCommand(@NonNull ContentResolver contentResolver);
 
+    /**
+     * Execute the required command on the provided {@code ContentResolver} as part of an asynchronous execution.
+     * <p>
+     * The default implementation calls {@link #executeResolverCommand(ContentResolver)} and completes right away.
+     * Override this to complete later, for example with a result computed on another thread, without holding the
+     * worker thread meanwhile, or to stop when the execution is cancelled. Any further work should be run with {@link
+     * #continueOnWorkerThread(Runnable)}.
+     * </p>
+     *
+     * @param contentResolver    required. The current {@code ContentResolver}.
+     * @param cancellationSignal required. Cancelled when this execution is cancelled - by {@link #cancel()} or by
+     *                           cancelling its {@link CommandFuture}. Belongs to this execution only.
+     * @param completion         required. Must be notified exactly once, with the result or the error of the
+     *                           command.
+     * @since 1.2.0
+     */
+    protected void executeResolverCommandAsync(@NonNull ContentResolver contentResolver,
+                                               @NonNull CancellationSignal cancellationSignal,
+                                               @NonNull Completion<T> completion) {
+        final T result;
+        try {
+            result = executeResolverCommand(contentResolver);
+        } catch (RuntimeException e) {
+            completion.onError(e);
+            return;
+        }
+
+        completion.onComplete(result);
+    }
+
     @Override
     public boolean handleMessage(Message msg) {
         if (mCallbackRef == null) {
@@ -238,13 +601,95 @@ abstract class BaseResolverCommand<T, C extends BaseResolverCommand.Callback, RC
             }
 
 
-            final T result = command.executeResolverCommand(contentResolver);
+            command.executeResolverCommandAsync(contentResolver, command.newCancellationSignal(),
+                    new CallbackCompletion<T>((Handler) msg.obj, msg.what));
+        }
+    }
+
+    /**
+     * Delivers the result of an asynchronous execution to the callback of the command. Errors are thrown on the worker
+     * thread, since there is no callback to deliver them to.
+     *
+     * @param <T> the type of the command result
+     * @author danail.alexiev
+     * @since 1.2.0
+     */
+    private static final class CallbackCompletion<T> implements Completion<T> {
+
+        private final Handler mCallbackHandler;
+        private final int mToken;
+
+        CallbackCompletion(@NonNull Handler callbackHandler, int token) {
+            mCallbackHandler = callbackHandler;
+            mToken = token;
+        }
+
+        @Override
+        public void onComplete(@Nullable T result) {
+            mCallbackHandler.obtainMessage(mToken, result).sendToTarget();
+        }
+
+        @Override
+        public void onError(@NonNull RuntimeException error) {
+            throw error;
+        }
+    }
+
+    /**
+     * An asynchronous execution, submitted to a {@link CommandExecutor}, which is skipped if it gets cancelled before
+     * it has been started.
+     *
+     * @author danail.alexiev
+     * @since 1.2.0
+     */
+    private static final class CommandTask implements Runnable {
+
+        private final int mToken;
+        private final Runnable mTask;
+        private volatile boolean mIsCancelled;
+
+        CommandTask(int token, @NonNull Runnable task) {
+            mToken = token;
+            mTask = task;
+        }
 
-            final int what = msg.what;
-            final Handler callback = (Handler) msg.obj;
-            final Message callbackMessage = callback.obtainMessage(what, result);
-            callbackMessage.sendToTarget();
+        void cancel() {
+            mIsCancelled = true;
         }
+
+        @Override
+        public void run() {
+            if (!mIsCancelled) {
+                mTask.run();
+            }
+        }
+    }
+
+    /**
+     * Receives the outcome of an {@link #executeResolverCommandAsync(ContentResolver, CancellationSignal, Completion)
+     * asynchronous execution}.
+     *
+     * @param <T> the type of the command result
+     * @author danail.alexiev
+     * @since 1.2.0
+     */
+    protected interface Completion<T> {
+
+        /**
+         * Called when the command has been executed.
+         *
+         * @param result the result of the command. May be {@code null}.
+         * @since 1.2.0
+         */
+        void onComplete(@Nullable T result);
+
+        /**
+         * Called when the command has failed.
+         *
+         * @param error the error the command has failed with.
+         * @since 1.2.0
+         */
+        void onError(@NonNull RuntimeException error);
     }
 
     /**
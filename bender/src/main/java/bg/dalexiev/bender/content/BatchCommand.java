@@ -16,7 +16,8 @@ import java.util.ArrayList;
 import bg.dalexiev.bender.util.Preconditions;
 
 /**
- * A batch of {@link android.content.ContentProvider} requests, executed in a single database transaction.
+ * A batch of {@link android.content.ContentProvider} requests, executed in a single database transaction. The
+ * transaction may be split at yield points, set with {@link #withYieldInterval(int)} or {@link #addYieldPoint()}.
  *
  * @author danail.alexiev
  * @since 1.1.4
@@ -26,8 +27,19 @@ public class BatchCommand extends BaseResolverCommand<ContentProviderResult[], B
     private String mAuthority;
     private final ArrayList<ContentProviderOperation> mOperations;
 
+    private int mYieldInterval;
+    private int mOperationsSinceYieldPoint;
+    private boolean mIsYieldPointRequested;
+
     protected BatchCommand(@NonNull ContentResolver contentResolver) {
-        super(contentResolver);
+        this(contentResolver, null);
+    }
+
+    /**
+     * @since 1.2.0
+     */
+    protected BatchCommand(@NonNull ContentResolver contentResolver, @Nullable CommandExecutor executor) {
+        super(contentResolver, executor);
         mOperations = new ArrayList<>();
     }
 
@@ -56,6 +68,45 @@ public class BatchCommand extends BaseResolverCommand<ContentProviderResult[], B
         return this;
     }
 
+    /**
+     * Allow the content provider to yield the batch transaction to other database users after every {@code
+     * operationCount} operations. Applies to the operations added after this call.
+     * <p>
+     * When the transaction yields, the operations applied so far are committed and won't be rolled back if a later
+     * operation fails. Use this for long batches that don't need to be atomic, so they don't block other database
+     * access until they are finished.
+     * </p>
+     *
+     * @param operationCount the number of operations between two yield points. {@code 0} disables the automatic yield
+     *                       points.
+     * @return the current instance.
+     * @throws IllegalArgumentException if {@code operationCount} is negative.
+     * @see ContentProviderOperation#isYieldAllowed()
+     * @since 1.2.0
+     */
+    public BatchCommand withYieldInterval(int operationCount) {
+        Preconditions.argumentCondition(operationCount < 0, "Operation count can't be negative");
+
+        mYieldInterval = operationCount;
+        mOperationsSinceYieldPoint = 0;
+
+        return this;
+    }
+
+    /**
+     * Allow the content provider to yield the batch transaction to other database users before the next added
+     * operation.
+     *
+     * @return the current instance.
+     * @see #withYieldInterval(int)
+     * @since 1.2.0
+     */
+    public BatchCommand addYieldPoint() {
+        mIsYieldPointRequested = true;
+
+        return this;
+    }
+
     /**
      * Add an insert request to the batch.
      *
@@ -68,6 +119,7 @@ public class BatchCommand extends BaseResolverCommand<ContentProviderResult[], B
         final ContentProviderOperation insertOperation = ContentProviderOperation.newInsert(insert.getUri())
                 .withValueBackReferences(insert.getReference())
                 .withValues(insert.getContentValues())
+                .withYieldAllowed(isNextOperationYieldAllowed())
                 .build();
         mOperations.add(insertOperation);
 
@@ -87,6 +139,7 @@ public class BatchCommand extends BaseResolverCommand<ContentProviderResult[], B
                 .withValueBackReferences(update.getReference())
                 .withValues(update.getContentValues())
                 .withSelection(update.getSelection(), update.getSelectionArgs())
+                .withYieldAllowed(isNextOperationYieldAllowed())
                 .build();
         mOperations.add(updateOperation);
 
@@ -104,6 +157,7 @@ public class BatchCommand extends BaseResolverCommand<ContentProviderResult[], B
 
         final ContentProviderOperation deleteOperation = ContentProviderOperation.newDelete(delete.getUri())
                 .withSelection(delete.getSelection(), delete.getSelectionArgs())
+                .withYieldAllowed(isNextOperationYieldAllowed())
                 .build();
         mOperations.add(deleteOperation);
 
@@ -123,6 +177,7 @@ public class BatchCommand extends BaseResolverCommand<ContentProviderResult[], B
         for (ContentValues contentValues : values) {
             final ContentProviderOperation insertOperation = ContentProviderOperation.newInsert(bulkInsert.getUri())
                     .withValues(contentValues)
+                    .withYieldAllowed(isNextOperationYieldAllowed())
                     .build();
             mOperations.add(insertOperation);
         }
@@ -131,12 +186,30 @@ public class BatchCommand extends BaseResolverCommand<ContentProviderResult[], B
         return this;
     }
 
+    private boolean isNextOperationYieldAllowed() {
+        final boolean isYieldAllowed = mIsYieldPointRequested
+                || ((mYieldInterval > 0) && (mOperationsSinceYieldPoint >= mYieldInterval));
+        if (isYieldAllowed) {
+            mIsYieldPointRequested = false;
+            mOperationsSinceYieldPoint = 0;
+        }
+
+        mOperationsSinceYieldPoint++;
+        return isYieldAllowed;
+    }
+
     @SuppressLint("MissingSuperCall")
     @Override
     protected void validateStatePreExecute() {
         Preconditions.stateNotNull(mAuthority, "Authority not set. Did you call withAuthority()?");
     }
 
+    @Nullable
+    @Override
+    protected String getAuthority() {
+        return mAuthority;
+    }
+
     @Nullable
     @Override
     protected ContentProviderResult[] executeResolverCommand(@NonNull ContentResolver contentResolver) {
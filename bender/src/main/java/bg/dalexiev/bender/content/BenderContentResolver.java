@@ -10,6 +10,11 @@ import bg.dalexiev.bender.util.Preconditions;
 
 /**
  * A wrapper around the default {@link ContentResolver} that adds the Bender syntax sugar.
+ * <p>
+ * The asynchronous executions of the created commands are run by a {@link CommandExecutor}. Unless another one is
+ * provided, the shared {@link DefaultCommandExecutor} runs reads in parallel and writes one at a time for each
+ * authority, so an asynchronous read may complete before a write, submitted ahead of it.
+ * </p>
  *
  * @author danail.alexiev
  * @since 1.1.3
@@ -17,37 +22,106 @@ import bg.dalexiev.bender.util.Preconditions;
 public class BenderContentResolver {
 
     private final ContentResolver mContentResolver;
+    private final CommandExecutor mExecutor;
 
 
     public BenderContentResolver(@NonNull ContentResolver contentResolver) {
+        this(contentResolver, DefaultCommandExecutor.getInstance());
+    }
+
+    /**
+     * @param contentResolver required. The {@code ContentResolver} to wrap.
+     * @param executor        required. The executor to run the asynchronous executions of the created commands on.
+     * @throws IllegalArgumentException if {@code contentResolver} or {@code executor} is {@code null}.
+     * @since 1.2.0
+     */
+    public BenderContentResolver(@NonNull ContentResolver contentResolver, @NonNull CommandExecutor executor) {
         Preconditions.argumentNotNull(contentResolver, "ContentResolver can't be null.");
+        Preconditions.argumentNotNull(executor, "Executor can't be null.");
 
         mContentResolver = contentResolver;
+        mExecutor = executor;
     }
 
     @NonNull
     public InsertCommand insert() {
-        return new InsertCommand(mContentResolver);
+        return new InsertCommand(mContentResolver, mExecutor);
     }
 
     @NonNull
     public BulkInsertCommand bulkInsert() {
-        return new BulkInsertCommand(mContentResolver);
+        return new BulkInsertCommand(mContentResolver, mExecutor);
     }
 
     @NonNull
     public UpdateCommand update() {
-        return new UpdateCommand(mContentResolver);
+        return new UpdateCommand(mContentResolver, mExecutor);
     }
 
     @NonNull
     public DeleteCommand delete() {
-        return new DeleteCommand(mContentResolver);
+        return new DeleteCommand(mContentResolver, mExecutor);
     }
 
     @NonNull
     public <R> QueryCommand<R> query(Class<R> clazz) {
-        return new QueryCommand<>(mContentResolver);
+        return new QueryCommand<>(mContentResolver, mExecutor);
+    }
+
+    /**
+     * Count the rows of a content URI without loading them.
+     *
+     * @since 1.2.0
+     */
+    @NonNull
+    public CountCommand count() {
+        return new CountCommand(mContentResolver, mExecutor);
+    }
+
+    /**
+     * Check if a content URI has any rows without loading them.
+     *
+     * @since 1.2.0
+     */
+    @NonNull
+    public ExistsCommand exists() {
+        return new ExistsCommand(mContentResolver, mExecutor);
+    }
+
+    /**
+     * Find the minimum value of a numeric column without loading the rows.
+     *
+     * @param column required. The column to aggregate.
+     * @throws IllegalArgumentException if {@code column} is {@code null}.
+     * @since 1.2.0
+     */
+    @NonNull
+    public AggregateCommand min(@NonNull String column) {
+        return new AggregateCommand(mContentResolver, mExecutor, DatabaseContentProvider.METHOD_MIN, column);
+    }
+
+    /**
+     * Find the maximum value of a numeric column without loading the rows.
+     *
+     * @param column required. The column to aggregate.
+     * @throws IllegalArgumentException if {@code column} is {@code null}.
+     * @since 1.2.0
+     */
+    @NonNull
+    public AggregateCommand max(@NonNull String column) {
+        return new AggregateCommand(mContentResolver, mExecutor, DatabaseContentProvider.METHOD_MAX, column);
+    }
+
+    /**
+     * Sum the values of a numeric column without loading the rows.
+     *
+     * @param column required. The column to aggregate.
+     * @throws IllegalArgumentException if {@code column} is {@code null}.
+     * @since 1.2.0
+     */
+    @NonNull
+    public AggregateCommand sum(@NonNull String column) {
+        return new AggregateCommand(mContentResolver, mExecutor, DatabaseContentProvider.METHOD_SUM, column);
     }
 
     /**
@@ -55,7 +129,7 @@ public class BenderContentResolver {
      */
     @NonNull
     public BatchCommand applyBatch() {
-        return new BatchCommand(mContentResolver);
+        return new BatchCommand(mContentResolver, mExecutor);
     }
 
     /**
@@ -0,0 +1,50 @@
+package bg.dalexiev.bender.content;
+
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import bg.dalexiev.bender.mapper.Row;
+import bg.dalexiev.bender.mapper.RowMapper;
+import bg.dalexiev.bender.mapper.TypedRowMapper;
+
+/**
+ * A row mapper, bound to a single cursor. If the row mapper is a {@link TypedRowMapper}, its column indices are
+ * resolved once, when the mapper is bound, instead of once per row.
+ */
+final class BoundRowMapper<E> {
+
+    private final RowMapper<E> mRowMapper;
+    private final Cursor mCursor;
+
+    private final TypedRowMapper<E> mTypedRowMapper;
+    private final Row mRow;
+
+    BoundRowMapper(@NonNull RowMapper<E> rowMapper, @NonNull Cursor cursor) {
+        mRowMapper = rowMapper;
+        mCursor = cursor;
+
+        if (rowMapper instanceof TypedRowMapper) {
+            mTypedRowMapper = (TypedRowMapper<E>) rowMapper;
+            mRow = mTypedRowMapper.bind(cursor);
+        } else {
+            mTypedRowMapper = null;
+            mRow = null;
+        }
+    }
+
+    /**
+     * Map the row the cursor is currently positioned at.
+     *
+     * @param position the position of the row.
+     * @return the mapped entity. Can be {@code null}.
+     */
+    @Nullable
+    E map(int position) {
+        if (mTypedRowMapper != null) {
+            return mTypedRowMapper.toObject(mRow, position);
+        }
+
+        return mRowMapper.toObject(mCursor, position);
+    }
+}
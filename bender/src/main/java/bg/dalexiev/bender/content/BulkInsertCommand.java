@@ -8,6 +8,9 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.annotation.VisibleForTesting;
 
+import bg.dalexiev.bender.mapper.EntityWriter;
+import bg.dalexiev.bender.util.Preconditions;
+
 /**
  * A {@code ContentResolver} bulk insert request.
  *
@@ -19,8 +22,8 @@ public class BulkInsertCommand extends BaseResolverCommand<Integer, BulkInsertCo
     private final ContentValuesBuilder mContentValuesBuilder;
     private final OnConflictBuilder mOnConflictBuilder;
 
-    BulkInsertCommand(ContentResolver contentResolver) {
-        super(contentResolver);
+    BulkInsertCommand(ContentResolver contentResolver, @Nullable CommandExecutor executor) {
+        super(contentResolver, executor);
         mContentValuesBuilder = new ContentValuesBuilder();
         mOnConflictBuilder = new OnConflictBuilder();
     }
@@ -220,6 +223,35 @@ public class BulkInsertCommand extends BaseResolverCommand<Integer, BulkInsertCo
         return this;
     }
 
+    /**
+     * Add a row for each of the {@code entities}, written by {@code writer}. The first entity fills the current row
+     * if it is still empty. Call {@link #newRow()} before setting the values of a following row with the various
+     * {@code set()} methods.
+     * <p>
+     * The rows have to be sent to the content provider as {@code ContentValues}, but the writer creates each of them
+     * with a single pass over the fields of the entity.
+     * </p>
+     *
+     * @param writer   required. The writer of the entities, usually generated for an {@link
+     *                 bg.dalexiev.bender.annotation.Entity}.
+     * @param entities required. The entities to insert.
+     * @param <E>      the type of the inserted entities.
+     * @return the current instance.
+     * @throws IllegalArgumentException if {@code writer} or {@code entities} is {@code null}.
+     * @since 1.2.0
+     */
+    @NonNull
+    public <E> BulkInsertCommand addEntities(@NonNull EntityWriter<E> writer, @NonNull Iterable<? extends E> entities) {
+        Preconditions.argumentNotNull(writer, "Writer can't be null");
+        Preconditions.argumentNotNull(entities, "Entities can't be null");
+
+        for (E entity : entities) {
+            mContentValuesBuilder.addValue(writer.toContentValues(entity));
+        }
+
+        return this;
+    }
+
     @Override
     protected Integer executeResolverCommand(@NonNull ContentResolver contentResolver) {
         @SuppressWarnings("ConstantConditions") final Uri uri = mOnConflictBuilder.appendOnConflictParameter(getUri());
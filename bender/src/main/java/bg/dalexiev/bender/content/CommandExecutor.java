@@ -0,0 +1,30 @@
+package bg.dalexiev.bender.content;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * Runs the asynchronous executions of resolver commands on worker threads.
+ * <p>
+ * Pass an implementation to {@link BenderContentResolver#BenderContentResolver(android.content.ContentResolver,
+ * CommandExecutor)} to control how the commands it creates are scheduled. Results are delivered to the command
+ * callbacks on the calling thread, whichever thread the execution has been run on.
+ * </p>
+ *
+ * @author danail.alexiev
+ * @see DefaultCommandExecutor
+ * @since 1.2.0
+ */
+public interface CommandExecutor {
+
+    /**
+     * Run {@code task} on a worker thread.
+     *
+     * @param authority  optional. The authority of the content provider the task is executed against.
+     * @param isReadOnly {@code true} if the task only reads data and may run in parallel with other tasks.
+     * @param priority   required. The priority of the task. Queued tasks with a higher priority should be started
+     *                   first.
+     * @param task       required. The task to run.
+     */
+    void execute(@Nullable String authority, boolean isReadOnly, @NonNull Priority priority, @NonNull Runnable task);
+}
@@ -0,0 +1,625 @@
+package bg.dalexiev.bender.content;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import bg.dalexiev.bender.util.Preconditions;
+
+/**
+ * The pending result of an asynchronous command execution, started with {@link BaseResolverCommand#executeAsync()}.
+ * <p>
+ * Listeners, transformations and continuations are run on the thread that completes the future - usually the worker
+ * thread that has executed the command - so a pipeline of commands and transformations runs without handing its
+ * intermediate results over to another thread. Listeners, added after the future has been completed, are run
+ * immediately on the calling thread. Use {@link #addListener(Listener, Executor)} to be notified on a specific
+ * thread, for example the main one.
+ * </p>
+ *
+ * @param <T> the type of the result
+ * @author danail.alexiev
+ * @since 1.2.0
+ */
+public final class CommandFuture<T> implements Future<T> {
+
+    private static final int STATE_PENDING = 0;
+    private static final int STATE_SUCCEEDED = 1;
+    private static final int STATE_FAILED = 2;
+    private static final int STATE_CANCELLED = 3;
+
+    private final BaseResolverCommand<?, ?, ?> mCommand;
+    private final List<Future<?>> mSources;
+
+    private int mState;
+    private T mResult;
+    private Throwable mError;
+    private List<Runnable> mListeners;
+
+    /**
+     * @param command optional. The command, whose execution is stopped when the future is cancelled.
+     * @param sources required. The futures this future is computed from, cancelled with it.
+     */
+    private CommandFuture(@Nullable BaseResolverCommand<?, ?, ?> command,
+                          @NonNull List<? extends Future<?>> sources) {
+        mCommand = command;
+        mSources = Collections.synchronizedList(new ArrayList<Future<?>>(sources));
+        mState = STATE_PENDING;
+        mListeners = new ArrayList<>();
+    }
+
+    /**
+     * Create the future of an asynchronous execution of {@code command}.
+     */
+    static <T> CommandFuture<T> forCommand(@NonNull BaseResolverCommand<?, ?, ?> command) {
+        return new CommandFuture<>(command, Collections.<Future<?>>emptyList());
+    }
+
+    /**
+     * Create a future, completed when all of {@code futures} have succeeded, with their results in the same order.
+     * It fails as soon as any of them fails or is cancelled. The others are cancelled then and their results, which
+     * will never be delivered, are released by their commands.
+     *
+     * @param futures required. The futures to combine.
+     * @return the combined future.
+     * @throws IllegalArgumentException if {@code futures} is {@code null}.
+     * @since 1.2.0
+     */
+    @NonNull
+    @SafeVarargs
+    public static <E> CommandFuture<List<E>> allOf(@NonNull CommandFuture<? extends E>... futures) {
+        Preconditions.argumentNotNull(futures, "Futures can't be null");
+
+        return allOf(Arrays.asList(futures));
+    }
+
+    /**
+     * Create a future, completed when all of {@code futures} have succeeded, with their results in the same order.
+     * It fails as soon as any of them fails or is cancelled. The others are cancelled then and their results, which
+     * will never be delivered, are released by their commands.
+     *
+     * @param futures required. The futures to combine.
+     * @return the combined future.
+     * @throws IllegalArgumentException if {@code futures} is {@code null}.
+     * @since 1.2.0
+     */
+    @NonNull
+    public static <E> CommandFuture<List<E>> allOf(@NonNull Collection<? extends CommandFuture<? extends E>> futures) {
+        Preconditions.argumentNotNull(futures, "Futures can't be null");
+
+        final List<CommandFuture<? extends E>> sources = new ArrayList<>(futures);
+        final CommandFuture<List<E>> combined = new CommandFuture<>(null, sources);
+        if (sources.isEmpty()) {
+            combined.set(Collections.<E>emptyList());
+            return combined;
+        }
+
+        final List<E> results = new ArrayList<>(Collections.<E>nCopies(sources.size(), null));
+        final boolean[] isSucceeded = new boolean[sources.size()];
+        final AtomicInteger remaining = new AtomicInteger(sources.size());
+        for (int i = 0; i < sources.size(); i++) {
+            final int index = i;
+            final CommandFuture<? extends E> source = sources.get(i);
+            source.addListener(new Listener<E>() {
+
+                @Override
+                public void onSuccess(@Nullable E result) {
+                    final boolean isCombinedDone;
+                    synchronized (results) {
+                        isCombinedDone = combined.isDone();
+                        if (!isCombinedDone) {
+                            results.set(index, result);
+                            isSucceeded[index] = true;
+                        }
+                    }
+                    if (isCombinedDone) {
+                        release(source, result);
+                        return;
+                    }
+
+                    if (remaining.decrementAndGet() == 0) {
+                        final List<E> combinedResults;
+                        synchronized (results) {
+                            combinedResults = Collections.unmodifiableList(new ArrayList<E>(results));
+                        }
+                        combined.set(combinedResults);
+                    }
+                }
+
+                @Override
+                public void onFailure(@NonNull Throwable error) {
+                    combined.setError(error);
+                }
+            });
+        }
+
+        combined.addListener(new Listener<List<E>>() {
+
+            @Override
+            public void onSuccess(@Nullable List<E> result) {
+            }
+
+            @Override
+            public void onFailure(@NonNull Throwable error) {
+                // the results, which have already been received, will never be delivered
+                for (int i = 0; i < sources.size(); i++) {
+                    final E result;
+                    synchronized (results) {
+                        if (!isSucceeded[i]) {
+                            continue;
+                        }
+                        result = results.get(i);
+                        isSucceeded[i] = false;
+                    }
+                    release(sources.get(i), result);
+                }
+
+                cancelAll(sources);
+            }
+        });
+
+        return combined;
+    }
+
+    /**
+     * Create a future, completed with the result of the first of {@code futures} to succeed. It fails only if all of
+     * them fail, with the error of the last one. Once it has been completed, the others are cancelled and their
+     * results, which will never be delivered, are released by their commands.
+     *
+     * @param futures required. The futures to wait for. Must not be empty.
+     * @return the combined future.
+     * @throws IllegalArgumentException if {@code futures} is {@code null} or empty.
+     * @since 1.2.0
+     */
+    @NonNull
+    @SafeVarargs
+    public static <E> CommandFuture<E> anyOf(@NonNull CommandFuture<? extends E>... futures) {
+        Preconditions.argumentNotNull(futures, "Futures can't be null");
+
+        return anyOf(Arrays.asList(futures));
+    }
+
+    /**
+     * Create a future, completed with the result of the first of {@code futures} to succeed. It fails only if all of
+     * them fail, with the error of the last one. Once it has been completed, the others are cancelled and their
+     * results, which will never be delivered, are released by their commands.
+     *
+     * @param futures required. The futures to wait for. Must not be empty.
+     * @return the combined future.
+     * @throws IllegalArgumentException if {@code futures} is {@code null} or empty.
+     * @since 1.2.0
+     */
+    @NonNull
+    public static <E> CommandFuture<E> anyOf(@NonNull Collection<? extends CommandFuture<? extends E>> futures) {
+        Preconditions.argumentNotNull(futures, "Futures can't be null");
+        Preconditions.argumentCondition(futures.isEmpty(), "Futures can't be empty");
+
+        final List<CommandFuture<? extends E>> sources = new ArrayList<>(futures);
+        final CommandFuture<E> combined = new CommandFuture<>(null, sources);
+        final AtomicInteger remaining = new AtomicInteger(sources.size());
+        for (final CommandFuture<? extends E> source : sources) {
+            source.addListener(new Listener<E>() {
+
+                @Override
+                public void onSuccess(@Nullable E result) {
+                    if (!combined.set(result)) {
+                        release(source, result);
+                    }
+                }
+
+                @Override
+                public void onFailure(@NonNull Throwable error) {
+                    if (remaining.decrementAndGet() == 0) {
+                        combined.setError(error);
+                    }
+                }
+            });
+        }
+
+        combined.addListener(new Listener<E>() {
+
+            @Override
+            public void onSuccess(@Nullable E result) {
+                cancelAll(sources);
+            }
+
+            @Override
+            public void onFailure(@NonNull Throwable error) {
+                cancelAll(sources);
+            }
+        });
+
+        return combined;
+    }
+
+    private static void cancelAll(@NonNull List<? extends CommandFuture<?>> futures) {
+        for (CommandFuture<?> future : futures) {
+            future.cancel(true);
+        }
+    }
+
+    /**
+     * Release a result of {@code future}, which will never be delivered, with the command it has been produced by.
+     */
+    @SuppressWarnings("unchecked")
+    private static void release(@NonNull CommandFuture<?> future, @Nullable Object result) {
+        if (future.mCommand != null) {
+            ((BaseResolverCommand<Object, ?, ?>) future.mCommand).releaseResult(result);
+        }
+    }
+
+    /**
+     * Create a future, completed with the result of this one, transformed by {@code transformation}. The
+     * transformation is run on the thread that completes this future. If it throws, the created future fails.
+     *
+     * @param transformation required. The transformation to apply to the result.
+     * @return the transformed future. Cancelling it cancels this future as well.
+     * @throws IllegalArgumentException if {@code transformation} is {@code null}.
+     * @since 1.2.0
+     */
+    @NonNull
+    public <U> CommandFuture<U> transform(@NonNull final Transformation<? super T, ? extends U> transformation) {
+        Preconditions.argumentNotNull(transformation, "Transformation can't be null");
+
+        final CommandFuture<U> transformed = new CommandFuture<>(null, Collections.singletonList(this));
+        addListener(new Listener<T>() {
+
+            @Override
+            public void onSuccess(@Nullable T result) {
+                final U transformedResult;
+                try {
+                    transformedResult = transformation.apply(result);
+                } catch (RuntimeException e) {
+                    transformed.setError(e);
+                    return;
+                }
+
+                transformed.set(transformedResult);
+            }
+
+            @Override
+            public void onFailure(@NonNull Throwable error) {
+                transformed.setError(error);
+            }
+        });
+
+        return transformed;
+    }
+
+    /**
+     * Create a future, completed with the result of the future, started by {@code continuation} with the result of
+     * this one. Use this to execute a command, which depends on the result of another one. The continuation is run on
+     * the thread that completes this future. If it throws or returns {@code null}, the created future fails.
+     *
+     * @param continuation required. Starts the next step with the result of this future.
+     * @return the chained future. Cancelling it cancels this future and the one started by the continuation.
+     * @throws IllegalArgumentException if {@code continuation} is {@code null}.
+     * @since 1.2.0
+     */
+    @NonNull
+    public <U> CommandFuture<U> chain(@NonNull final Continuation<? super T, U> continuation) {
+        Preconditions.argumentNotNull(continuation, "Continuation can't be null");
+
+        final CommandFuture<U> chained = new CommandFuture<>(null, Collections.singletonList(this));
+        addListener(new Listener<T>() {
+
+            @Override
+            public void onSuccess(@Nullable T result) {
+                final CommandFuture<U> next;
+                try {
+                    next = continuation.continueWith(result);
+                    Preconditions.stateNotNull(next, "Continuation returned null");
+                } catch (RuntimeException e) {
+                    chained.setError(e);
+                    return;
+                }
+
+                chained.mSources.add(next);
+                if (chained.isCancelled()) {
+                    next.cancel(true);
+                    return;
+                }
+
+                next.addListener(new Listener<U>() {
+
+                    @Override
+                    public void onSuccess(@Nullable U nextResult) {
+                        chained.set(nextResult);
+                    }
+
+                    @Override
+                    public void onFailure(@NonNull Throwable error) {
+                        chained.setError(error);
+                    }
+                });
+            }
+
+            @Override
+            public void onFailure(@NonNull Throwable error) {
+                chained.setError(error);
+            }
+        });
+
+        return chained;
+    }
+
+    /**
+     * Add a listener, notified on the thread that completes the future, or immediately on the current thread, if the
+     * future has already been completed.
+     *
+     * @param listener required. The listener to notify.
+     * @return the current instance.
+     * @throws IllegalArgumentException if {@code listener} is {@code null}.
+     * @since 1.2.0
+     */
+    @NonNull
+    public CommandFuture<T> addListener(@NonNull final Listener<? super T> listener) {
+        Preconditions.argumentNotNull(listener, "Listener can't be null");
+
+        final Runnable notification = new Runnable() {
+
+            @Override
+            public void run() {
+                notifyListener(listener);
+            }
+        };
+
+        synchronized (this) {
+            if (mState == STATE_PENDING) {
+                mListeners.add(notification);
+                return this;
+            }
+        }
+
+        notification.run();
+        return this;
+    }
+
+    /**
+     * Add a listener, notified through {@code executor} when the future is completed. Wrap a {@code Handler} in an
+     * executor to notify the listener on its thread.
+     *
+     * @param listener required. The listener to notify.
+     * @param executor required. The executor to notify the listener with.
+     * @return the current instance.
+     * @throws IllegalArgumentException if {@code listener} or {@code executor} is {@code null}.
+     * @since 1.2.0
+     */
+    @NonNull
+    public CommandFuture<T> addListener(@NonNull final Listener<? super T> listener, @NonNull final Executor executor) {
+        Preconditions.argumentNotNull(listener, "Listener can't be null");
+        Preconditions.argumentNotNull(executor, "Executor can't be null");
+
+        return addListener(new Listener<T>() {
+
+            @Override
+            public void onSuccess(@Nullable final T result) {
+                executor.execute(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        listener.onSuccess(result);
+                    }
+                });
+            }
+
+            @Override
+            public void onFailure(@NonNull final Throwable error) {
+                executor.execute(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        listener.onFailure(error);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Cancelling the future of a command execution, which has not been started yet, skips it, without affecting the
+     * other executions of the command. If {@code mayInterruptIfRunning} is {@code true}, a running execution is
+     * cancelled with {@link BaseResolverCommand#cancel()}. The futures this one has been created from are cancelled
+     * as well.
+     * </p>
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        if (!complete(STATE_CANCELLED, null, new CancellationException("Command future cancelled"))) {
+            return false;
+        }
+
+        if (mCommand != null) {
+            mCommand.cancelExecution(this, mayInterruptIfRunning);
+        }
+
+        final List<Future<?>> sources;
+        synchronized (mSources) {
+            sources = new ArrayList<>(mSources);
+        }
+        for (Future<?> source : sources) {
+            source.cancel(mayInterruptIfRunning);
+        }
+
+        return true;
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return mState == STATE_CANCELLED;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return mState != STATE_PENDING;
+    }
+
+    @Override
+    @Nullable
+    public synchronized T get() throws InterruptedException, ExecutionException {
+        while (mState == STATE_PENDING) {
+            wait();
+        }
+
+        return getResult();
+    }
+
+    @Override
+    @Nullable
+    public synchronized T get(long timeout, @NonNull TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (mState == STATE_PENDING) {
+            final long remainingNanos = deadline - System.nanoTime();
+            if (remainingNanos <= 0) {
+                throw new TimeoutException("Command future not completed in " + timeout + " " + unit);
+            }
+
+            TimeUnit.NANOSECONDS.timedWait(this, remainingNanos);
+        }
+
+        return getResult();
+    }
+
+    private T getResult() throws ExecutionException {
+        switch (mState) {
+            case STATE_SUCCEEDED:
+                return mResult;
+            case STATE_CANCELLED:
+                throw (CancellationException) mError;
+            default:
+                throw new ExecutionException(mError);
+        }
+    }
+
+    /**
+     * Complete the future with {@code result}.
+     *
+     * @return {@code true} if the future has been completed, {@code false} if it already has been.
+     */
+    boolean set(@Nullable T result) {
+        return complete(STATE_SUCCEEDED, result, null);
+    }
+
+    /**
+     * Complete the future with {@code error}.
+     *
+     * @return {@code true} if the future has been completed, {@code false} if it already has been.
+     */
+    boolean setError(@NonNull Throwable error) {
+        return complete((error instanceof CancellationException) ? STATE_CANCELLED : STATE_FAILED, null, error);
+    }
+
+    private boolean complete(int state, @Nullable T result, @Nullable Throwable error) {
+        final List<Runnable> listeners;
+        synchronized (this) {
+            if (mState != STATE_PENDING) {
+                return false;
+            }
+
+            mState = state;
+            mResult = result;
+            mError = error;
+            listeners = mListeners;
+            mListeners = null;
+            notifyAll();
+        }
+
+        for (Runnable listener : listeners) {
+            listener.run();
+        }
+        return true;
+    }
+
+    private void notifyListener(@NonNull Listener<? super T> listener) {
+        final int state;
+        final T result;
+        final Throwable error;
+        synchronized (this) {
+            state = mState;
+            result = mResult;
+            error = mError;
+        }
+
+        if (state == STATE_SUCCEEDED) {
+            listener.onSuccess(result);
+        } else {
+            listener.onFailure(error);
+        }
+    }
+
+    /**
+     * Defines the behaviour of a listener, notified when a future is completed.
+     *
+     * @author danail.alexiev
+     * @since 1.2.0
+     */
+    public interface Listener<T> {
+
+        /**
+         * Called when the future has succeeded.
+         *
+         * @param result the result. May be {@code null}.
+         * @since 1.2.0
+         */
+        void onSuccess(@Nullable T result);
+
+        /**
+         * Called when the future has failed or has been cancelled.
+         *
+         * @param error the failure. A {@link CancellationException} if the future has been cancelled.
+         * @since 1.2.0
+         */
+        void onFailure(@NonNull Throwable error);
+
+    }
+
+    /**
+     * Transforms the result of a future.
+     *
+     * @author danail.alexiev
+     * @since 1.2.0
+     */
+    public interface Transformation<T, U> {
+
+        /**
+         * @param result the result to transform. May be {@code null}.
+         * @return the transformed result. May be {@code null}.
+         * @since 1.2.0
+         */
+        @Nullable
+        U apply(@Nullable T result);
+
+    }
+
+    /**
+     * Starts the next asynchronous step of a pipeline with the result of a future.
+     *
+     * @author danail.alexiev
+     * @since 1.2.0
+     */
+    public interface Continuation<T, U> {
+
+        /**
+         * @param result the result of the previous step. May be {@code null}.
+         * @return the future of the next step. Must not be {@code null}.
+         * @since 1.2.0
+         */
+        @NonNull
+        CommandFuture<U> continueWith(@Nullable T result);
+
+    }
+}
@@ -33,6 +33,17 @@ class ContentValuesBuilder {
         mContentValues.add(new ContentValues());
     }
 
+    void addValue(@NonNull ContentValues values) {
+        Preconditions.argumentNotNull(values, "Values are required");
+
+        if (getCurrent().size() == 0) {
+            mContentValues.set(mPosition, values);
+        } else {
+            mPosition++;
+            mContentValues.add(values);
+        }
+    }
+
     void setNull(@NonNull String column) {
         Preconditions.argumentNotNull(column, "Column is required");
 
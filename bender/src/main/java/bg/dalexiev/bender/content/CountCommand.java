@@ -0,0 +1,65 @@
+package bg.dalexiev.bender.content;
+
+import android.content.ContentResolver;
+import android.os.Bundle;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+
+import bg.dalexiev.bender.db.SqlSelectionBuilder;
+
+/**
+ * Counts the rows of a content URI, matching a selection. The count is computed by the {@link DatabaseContentProvider}
+ * and no cursor is created.
+ *
+ * @author danail.alexiev
+ * @see DatabaseContentProvider#METHOD_COUNT
+ * @since 1.2.0
+ */
+public class CountCommand extends BaseAggregateCommand<Long, CountCommand.Callback, CountCommand> {
+
+    CountCommand(@NonNull ContentResolver contentResolver, @Nullable CommandExecutor executor) {
+        super(contentResolver, executor);
+    }
+
+    @VisibleForTesting
+    CountCommand(WorkerHandler workerHandler, ContentResolver contentResolver, SqlSelectionBuilder selectionBuilder) {
+        super(workerHandler, contentResolver, selectionBuilder);
+    }
+
+    @NonNull
+    @Override
+    String getMethod() {
+        return DatabaseContentProvider.METHOD_COUNT;
+    }
+
+    @NonNull
+    @Override
+    Long getResult(@NonNull Bundle result) {
+        return result.getLong(DatabaseContentProvider.EXTRA_RESULT);
+    }
+
+    @Override
+    protected void notifyCallback(@NonNull Callback callback, int token, @Nullable Long result) {
+        callback.onCountComplete(token, (result == null) ? 0 : result);
+    }
+
+    /**
+     * Defines the behaviour of the count command callback.
+     *
+     * @author danail.alexiev
+     * @since 1.2.0
+     */
+    public interface Callback extends BaseResolverCommand.Callback {
+
+        /**
+         * Called when a count has been completed.
+         *
+         * @param token the identifier of the completed command.
+         * @param count the number of matching rows.
+         * @since 1.2.0
+         */
+        void onCountComplete(int token, long count);
+
+    }
+}
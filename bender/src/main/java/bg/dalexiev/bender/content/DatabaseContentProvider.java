@@ -1,5 +1,6 @@
 package bg.dalexiev.bender.content;
 
+import android.annotation.TargetApi;
 import android.content.ContentProvider;
 import android.content.ContentProviderOperation;
 import android.content.ContentProviderResult;
@@ -7,22 +8,37 @@ import android.content.ContentResolver;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.Intent;
 import android.content.OperationApplicationException;
+import android.content.pm.PackageManager;
+import android.content.pm.PathPermission;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.net.Uri;
+import android.os.Binder;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.CancellationSignal;
+import android.os.Process;
 import android.provider.BaseColumns;
 import android.support.annotation.CallSuper;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
 
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
 
 import bg.dalexiev.bender.db.Predicate;
+import bg.dalexiev.bender.db.QueryResultCache;
 import bg.dalexiev.bender.db.SqlInsertionBuilder;
 import bg.dalexiev.bender.db.SqlSelectionBuilder;
+import bg.dalexiev.bender.db.SqlStatementCache;
 import bg.dalexiev.bender.util.Preconditions;
 
 /**
@@ -70,9 +86,127 @@ public abstract class DatabaseContentProvider extends ContentProvider {
      */
     public static final String PARAM_SHOULD_NOTIFY = "shouldNotify";
 
+    /**
+     * Used to specify the maximum number of rows a query should return. Only taken into consideration when querying.
+     * <p>
+     * Must be a non - negative integer. Defaults to no limit.
+     *
+     * @since 1.2.0
+     */
+    public static final String PARAM_LIMIT = "limit";
+
+    /**
+     * Used to specify the number of rows a query should skip. Only taken into consideration when querying.
+     * <p>
+     * Must be a non - negative integer. Defaults to {@code 0}.
+     *
+     * @since 1.2.0
+     */
+    public static final String PARAM_OFFSET = "offset";
+
+    /**
+     * The {@link #call(String, String, Bundle)} method counting the rows of a content URI. The result is stored as a
+     * {@code long} under {@link #EXTRA_RESULT}.
+     *
+     * @since 1.2.0
+     */
+    public static final String METHOD_COUNT = "bender.count";
+
+    /**
+     * The {@link #call(String, String, Bundle)} method checking if a content URI has any rows. The result is stored as
+     * a {@code boolean} under {@link #EXTRA_RESULT}.
+     *
+     * @since 1.2.0
+     */
+    public static final String METHOD_EXISTS = "bender.exists";
+
+    /**
+     * The {@link #call(String, String, Bundle)} method finding the minimum value of {@link #EXTRA_COLUMN}. The result
+     * is stored under {@link #EXTRA_RESULT} as a {@code long} if it is an integer, or as a {@code double} if it is a
+     * real. It is missing if there are no values. Fails with an {@code IllegalArgumentException} if the result is
+     * not a number.
+     *
+     * @since 1.2.0
+     */
+    public static final String METHOD_MIN = "bender.min";
+
+    /**
+     * The {@link #call(String, String, Bundle)} method finding the maximum value of {@link #EXTRA_COLUMN}. The result
+     * is stored under {@link #EXTRA_RESULT} as a {@code long} if it is an integer, or as a {@code double} if it is a
+     * real. It is missing if there are no values. Fails with an {@code IllegalArgumentException} if the result is
+     * not a number.
+     *
+     * @since 1.2.0
+     */
+    public static final String METHOD_MAX = "bender.max";
+
+    /**
+     * The {@link #call(String, String, Bundle)} method summing the values of {@link #EXTRA_COLUMN}. The result is
+     * stored under {@link #EXTRA_RESULT} as a {@code long} if all values are integers, or as a {@code double}
+     * otherwise. It is missing if there are no values.
+     *
+     * @since 1.2.0
+     */
+    public static final String METHOD_SUM = "bender.sum";
+
+    /**
+     * The {@code String} extra, holding the selection of an aggregate {@link #call(String, String, Bundle)}.
+     *
+     * @since 1.2.0
+     */
+    public static final String EXTRA_SELECTION = "selection";
+
+    /**
+     * The {@code String[]} extra, holding the selection arguments of an aggregate {@link #call(String, String,
+     * Bundle)}.
+     *
+     * @since 1.2.0
+     */
+    public static final String EXTRA_SELECTION_ARGS = "selectionArgs";
+
+    /**
+     * The {@code String} extra, holding the aggregated column of a {@link #METHOD_MIN}, {@link #METHOD_MAX} or {@link
+     * #METHOD_SUM} call. Must be a plain column name, optionally qualified with a table name.
+     *
+     * @since 1.2.0
+     */
+    public static final String EXTRA_COLUMN = "column";
+
+    /**
+     * The key of the result in the {@code Bundle} returned by an aggregate {@link #call(String, String, Bundle)}.
+     *
+     * @since 1.2.0
+     */
+    public static final String EXTRA_RESULT = "result";
+
+    /**
+     * The default number of compiled insert statements kept by the provider.
+     *
+     * @since 1.2.0
+     */
+    protected static final int DEFAULT_STATEMENT_CACHE_SIZE = 16;
+
+    /**
+     * A suggested size, in bytes, of a {@link QueryResultCache} returned by {@link #createQueryResultCache()}.
+     *
+     * @since 1.2.0
+     */
+    protected static final int DEFAULT_QUERY_RESULT_CACHE_SIZE = 512 * 1024;
+
+    private static final Pattern COLUMN_NAME_PATTERN =
+            Pattern.compile("([A-Za-z_][A-Za-z0-9_]*\\.)?[A-Za-z_][A-Za-z0-9_]*");
+
     private String mAuthority;
     private SQLiteOpenHelper mHelper;
     private DatabaseUriMatcher mUriMatcher;
+    private SqlStatementCache mStatementCache;
+    private QueryResultCache mQueryResultCache;
+
+    private final ThreadLocal<Set<Uri>> mPendingNotifications = new ThreadLocal<>();
+    private final ThreadLocal<Set<String>> mPendingTableChanges = new ThreadLocal<>();
+
+    private boolean mIsWriteAheadLoggingEnabled;
+    private SQLiteDatabase mWriteAheadLoggingDatabase;
 
     @Override
     @CallSuper
@@ -83,13 +217,29 @@ public abstract class DatabaseContentProvider extends ContentProvider {
         mHelper = createHelper(getContext());
         Preconditions.stateNotNull(mHelper, "Database helper can't be null, Check your createHelper() implementation");
 
+        mIsWriteAheadLoggingEnabled = isWriteAheadLoggingEnabled();
+        if (mIsWriteAheadLoggingEnabled && (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN)) {
+            mHelper.setWriteAheadLoggingEnabled(true);
+        }
+
         mUriMatcher = createUriMatcher(mAuthority);
         Preconditions
                 .stateNotNull(mUriMatcher, "Uri matcher can't be null. Check your createUriMatcher() implementation");
 
+        mStatementCache = createStatementCache();
+        mQueryResultCache = createQueryResultCache();
+
         return true;
     }
 
+    @Override
+    @CallSuper
+    public void shutdown() {
+        invalidateStatementCache();
+        invalidateQueryResultCache();
+        super.shutdown();
+    }
+
     /**
      * Create an authority, used as an identifier of this content provider.
      *
@@ -107,6 +257,67 @@ public abstract class DatabaseContentProvider extends ContentProvider {
     @NonNull
     protected abstract SQLiteOpenHelper createHelper(@Nullable Context context);
 
+    /**
+     * Specify if the database of this provider should use write - ahead logging.
+     * <p>
+     * With write - ahead logging enabled, the platform keeps a pool of database connections and queries, which are
+     * always executed against the readable database, run on their own connections in parallel with each other and with
+     * an open write transaction. The size of the pool is determined by the platform. Write - ahead logging slightly
+     * increases the cost of writes and uses additional files next to the database file.
+     * </p>
+     * <p>
+     * Override this to enable write - ahead logging. Defaults to {@code false}.
+     * </p>
+     *
+     * @return {@code true} to enable write - ahead logging.
+     * @see SQLiteOpenHelper#setWriteAheadLoggingEnabled(boolean)
+     * @see SQLiteDatabase#enableWriteAheadLogging()
+     * @since 1.2.0
+     */
+    @SuppressWarnings("MethodMayBeStatic")
+    // This is not static, because subclasses may need to override it
+    protected boolean isWriteAheadLoggingEnabled() {
+        return false;
+    }
+
+    /**
+     * Get a database instance to perform queries against.
+     *
+     * @return the readable database.
+     * @since 1.2.0
+     */
+    @NonNull
+    protected final SQLiteDatabase getReadableDatabase() {
+        return configureDatabase(mHelper.getReadableDatabase());
+    }
+
+    /**
+     * Get a database instance to perform modifications against.
+     *
+     * @return the writable database.
+     * @since 1.2.0
+     */
+    @NonNull
+    protected final SQLiteDatabase getWritableDatabase() {
+        return configureDatabase(mHelper.getWritableDatabase());
+    }
+
+    @NonNull
+    private SQLiteDatabase configureDatabase(@NonNull SQLiteDatabase db) {
+        if (!mIsWriteAheadLoggingEnabled || (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN)) {
+            // the helper takes care of write - ahead logging on newer platforms
+            return db;
+        }
+
+        synchronized (this) {
+            if (mWriteAheadLoggingDatabase != db) {
+                db.enableWriteAheadLogging();
+                mWriteAheadLoggingDatabase = db;
+            }
+        }
+        return db;
+    }
+
 
     /**
      * Create a {@code DatabaseUriMatcher} to be used in this content provider.
@@ -121,25 +332,200 @@ public abstract class DatabaseContentProvider extends ContentProvider {
         return new DatabaseUriMatcher(authority);
     }
 
+    /**
+     * Create a {@code SqlStatementCache} used to reuse compiled insert statements across calls to {@link #insert(Uri,
+     * ContentValues)} and {@link #bulkInsert(Uri, ContentValues[])}.
+     * <p>
+     * Override this to change the size of the cache or return {@code null} to compile a new statement for every
+     * insert.
+     * </p>
+     *
+     * @return the statement cache or {@code null}.
+     * @since 1.2.0
+     */
+    @SuppressWarnings("MethodMayBeStatic")
+    // This is not static, because subclasses may need to override it
+    @Nullable
+    protected SqlStatementCache createStatementCache() {
+        return new SqlStatementCache(DEFAULT_STATEMENT_CACHE_SIZE);
+    }
+
+    /**
+     * Get the statement cache of this provider. Use it to inspect the hit and miss counts.
+     *
+     * @return the statement cache or {@code null}, if caching has been disabled.
+     * @since 1.2.0
+     */
+    @Nullable
+    protected final SqlStatementCache getStatementCache() {
+        return mStatementCache;
+    }
+
+    /**
+     * Close and discard all cached compiled statements. Call this after changing the database schema outside of the
+     * {@code SQLiteOpenHelper} upgrade flow.
+     *
+     * @since 1.2.0
+     */
+    protected final void invalidateStatementCache() {
+        if (mStatementCache != null) {
+            mStatementCache.invalidate();
+        }
+    }
+
+    /**
+     * Create a {@code QueryResultCache} used to answer repeated queries without reading the database.
+     * <p>
+     * Query results are cached per table. Every {@link #insert(Uri, ContentValues)}, {@link #bulkInsert(Uri,
+     * ContentValues[])}, {@link #update(Uri, ContentValues, String, String[])}, {@link #delete(Uri, String, String[])}
+     * and {@link #applyBatch(ArrayList)} advances the version of the changed table once the change has been committed,
+     * so cached results of the table are never returned after it has been changed through this provider. If the
+     * database is changed in any other way, for example by triggers or raw SQL, call {@link #notifyTableChanged(String)}
+     * or {@link #invalidateQueryResultCache()}.
+     * </p>
+     * <p>
+     * Override this to enable the cache. Defaults to {@code null}, which disables caching.
+     * </p>
+     *
+     * @return the query result cache or {@code null}.
+     * @see #DEFAULT_QUERY_RESULT_CACHE_SIZE
+     * @see #isQueryCacheable(Uri, DatabaseUriMatcher.Result, SqlSelectionBuilder, String[])
+     * @since 1.2.0
+     */
+    @SuppressWarnings("MethodMayBeStatic")
+    // This is not static, because subclasses may need to override it
+    @Nullable
+    protected QueryResultCache createQueryResultCache() {
+        return null;
+    }
+
+    /**
+     * Get the query result cache of this provider. Use it to inspect the hit and miss counts.
+     *
+     * @return the query result cache or {@code null}, if caching is disabled.
+     * @since 1.2.0
+     */
+    @Nullable
+    protected final QueryResultCache getQueryResultCache() {
+        return mQueryResultCache;
+    }
+
+    /**
+     * Discard all cached query results. Call this after changing the database in a way, that can't be attributed to
+     * specific tables.
+     *
+     * @since 1.2.0
+     */
+    protected final void invalidateQueryResultCache() {
+        if (mQueryResultCache != null) {
+            mQueryResultCache.invalidate();
+        }
+    }
+
+    /**
+     * Make the cached query results of a table stale. The provider calls this for all changes made through it. Call
+     * this after a table has been changed outside of the provider methods, once the change has been committed.
+     * <p>
+     * If called while a batch is being applied, the table is marked as changed again once the batch transaction has
+     * been committed or rolled back.
+     * </p>
+     *
+     * @param table required. The name of the changed table.
+     * @since 1.2.0
+     */
+    protected final void notifyTableChanged(@NonNull String table) {
+        Preconditions.argumentNotNull(table, "Table can't be null");
+
+        if (mQueryResultCache == null) {
+            return;
+        }
+
+        mQueryResultCache.onTableChanged(table);
+        final Set<String> pendingTableChanges = mPendingTableChanges.get();
+        if (pendingTableChanges != null) {
+            pendingTableChanges.add(table);
+        }
+    }
+
+    /**
+     * Specify if the result of a query can be stored in the {@link #createQueryResultCache() query result cache}.
+     * <p>
+     * A result can be cached only if all its rows come from the table of the content URI, since only changes of that
+     * table invalidate it. The current implementation caches the queries of the table of the content URI, which don't
+     * use a sub - query in their projection, selection, grouping or ordering. Override this to exclude more queries,
+     * for example if the table of the URI is a view.
+     * </p>
+     *
+     * @param uri        required. The requested content URI.
+     * @param match      required. The result of matching the requested URI with the {@code DatabaseUriMatcher} of
+     *                   the provider.
+     * @param builder    required. The selection built for the query.
+     * @param projection optional. The requested projection.
+     * @return {@code true} if the result of the query can be cached.
+     * @since 1.2.0
+     */
+    @SuppressWarnings("MethodMayBeStatic")
+    // This is not static, because subclasses may need to override it
+    protected boolean isQueryCacheable(@NonNull Uri uri, @NonNull DatabaseUriMatcher.Result match,
+                                       @NonNull SqlSelectionBuilder builder, @Nullable String[] projection) {
+        if ((match.table == null) || !match.table.equals(builder.getTable())) {
+            return false;
+        }
+
+        if (projection != null) {
+            for (String column : projection) {
+                if (containsSubQuery(column)) {
+                    return false;
+                }
+            }
+        }
+
+        return !containsSubQuery(builder.getSelection()) && !containsSubQuery(builder.getGroupBy())
+                && !containsSubQuery(builder.getHaving()) && !containsSubQuery(builder.getOrderBy());
+    }
+
+    private static boolean containsSubQuery(@Nullable String sql) {
+        return (sql != null) && sql.toLowerCase(Locale.US).contains("select");
+    }
+
     /**
      * <p>
      * This implementation will call {@link #buildQuerySelection(Uri, DatabaseUriMatcher.Result, String, String[], String)}
      * to create a {@code SqlSelectionBuilder} using the passed parameter values and later use the selection to perform
-     * the query against the database.
+     * the query against the database. If a {@link #createQueryResultCache() query result cache} is enabled, cacheable
+     * results are returned from it while their table hasn't been changed.
      * </p>
      * {@inheritDoc}
      */
     @Override
     public Cursor query(@NonNull Uri uri, String[] projection, String selection, String[] selectionArgs,
                         String sortOrder) {
+        return query(uri, projection, selection, selectionArgs, sortOrder, null);
+    }
+
+    /**
+     * <p>
+     * Works like {@link #query(Uri, String[], String, String[], String)}. The {@code cancellationSignal} is forwarded
+     * to the database, so a cancelled query stops running and filling its cursor window.
+     * </p>
+     * {@inheritDoc}
+     *
+     * @since 1.2.0
+     */
+    @Override
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    public Cursor query(@NonNull Uri uri, String[] projection, String selection, String[] selectionArgs,
+                        String sortOrder, CancellationSignal cancellationSignal) {
         Preconditions.argumentNotNull(uri, "Uri can't be null");
 
         final DatabaseUriMatcher.Result match = matchUri(uri);
 
-        final SQLiteDatabase db = mHelper.getWritableDatabase();
+        final SQLiteDatabase db = getReadableDatabase();
         final SqlSelectionBuilder builder = buildQuerySelection(uri, match, selection, selectionArgs,
                 sortOrder);
-        final Cursor cursor = builder.query(db, projection);
+        final Cursor cursor = (mQueryResultCache != null) && isQueryCacheable(uri, match, builder, projection)
+                ? queryWithCache(db, builder, projection, cancellationSignal)
+                : query(db, builder, projection, cancellationSignal);
         final Context context = getContext();
         if ((cursor != null) && (context != null)) {
             cursor.setNotificationUri(context.getContentResolver(), uri);
@@ -147,6 +533,39 @@ public abstract class DatabaseContentProvider extends ContentProvider {
         return cursor;
     }
 
+    @Nullable
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static Cursor query(@NonNull SQLiteDatabase db, @NonNull SqlSelectionBuilder builder,
+                                @Nullable String[] projection, @Nullable CancellationSignal cancellationSignal) {
+        // the signal is only passed by the platform on API 16+
+        return (cancellationSignal != null)
+                ? builder.query(db, projection, cancellationSignal) : builder.query(db, projection);
+    }
+
+    @Nullable
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private Cursor queryWithCache(@NonNull SQLiteDatabase db, @NonNull SqlSelectionBuilder builder,
+                                  @Nullable String[] projection, @Nullable CancellationSignal cancellationSignal) {
+        if (db.inTransaction()) {
+            // the transaction may see its own uncommitted changes, which must not be cached or hidden by the cache
+            return query(db, builder, projection, cancellationSignal);
+        }
+
+        final String table = builder.getTable();
+        final String sql = builder.buildQuerySql(projection);
+        final String[] selectionArgs = builder.getSelectionArgs();
+
+        final Cursor cached = mQueryResultCache.get(table, sql, selectionArgs);
+        if (cached != null) {
+            return cached;
+        }
+
+        // the version is read before the query, so a change committed while querying makes the result stale
+        final long tableVersion = mQueryResultCache.getTableVersion(table);
+        final Cursor cursor = query(db, builder, projection, cancellationSignal);
+        return (cursor == null) ? null : mQueryResultCache.put(table, tableVersion, sql, selectionArgs, cursor);
+    }
+
     @NonNull
     private DatabaseUriMatcher.Result matchUri(@NonNull Uri uri) {
         final DatabaseUriMatcher.Result match = mUriMatcher.match(uri);
@@ -163,7 +582,8 @@ public abstract class DatabaseContentProvider extends ContentProvider {
      * <p>
      * Override this to customise the query building behaviour. The current implementation will add all parameter
      * values to their appropriate clauses and, if a specific table row is requests,
-     * will add {@link BaseColumns#_ID}{@code =?} condition to the {@code where} clause.
+     * will add {@link BaseColumns#_ID}{@code =?} condition to the {@code where} clause. The {@link #PARAM_LIMIT} and
+     * {@link #PARAM_OFFSET} URI parameters are applied as a {@code limit} clause.
      * </p>
      *
      * @param uri           required. The requested content URI.
@@ -189,12 +609,171 @@ public abstract class DatabaseContentProvider extends ContentProvider {
                 builder.where(Predicate.eq(BaseColumns._ID, match.id));
                 // fallthrough
             case DatabaseUriMatcher.TYPE_TABLE:
-                return builder.setTable(match.table).where(selection, selectionArgs).orderBy(sortOrder);
+                builder.setTable(match.table).where(selection, selectionArgs).orderBy(sortOrder);
+
+                final String limit = getLimit(uri);
+                if (limit != null) {
+                    builder.limit(limit);
+                }
+                return builder;
         }
 
         return builder;
     }
 
+    @Nullable
+    private static String getLimit(@NonNull Uri uri) {
+        final String limit = uri.getQueryParameter(PARAM_LIMIT);
+        final String offset = uri.getQueryParameter(PARAM_OFFSET);
+        if ((limit == null) && (offset == null)) {
+            return null;
+        }
+
+        // the values are parsed, so no arbitrary SQL can be passed with the URI
+        final int rowCount = (limit == null) ? -1 : parseNonNegative(PARAM_LIMIT, limit);
+        if (offset == null) {
+            return Integer.toString(rowCount);
+        }
+
+        return parseNonNegative(PARAM_OFFSET, offset) + "," + rowCount;
+    }
+
+    private static int parseNonNegative(@NonNull String name, @NonNull String value) {
+        try {
+            final int number = Integer.parseInt(value);
+            Preconditions.argumentCondition(number < 0, "Parameter " + name + " can't be negative: " + value);
+            return number;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Parameter " + name + " must be an integer: " + value, e);
+        }
+    }
+
+    /**
+     * <p>
+     * This implementation answers the aggregate methods {@link #METHOD_COUNT}, {@link #METHOD_EXISTS}, {@link
+     * #METHOD_MIN}, {@link #METHOD_MAX} and {@link #METHOD_SUM}. The content URI to aggregate is passed as {@code arg}
+     * and the selection as the {@link #EXTRA_SELECTION} and {@link #EXTRA_SELECTION_ARGS} extras. The selection is
+     * built with {@link #buildQuerySelection(Uri, DatabaseUriMatcher.Result, String, String[], String)}, so the
+     * aggregates see the same rows as a query. The result is computed with a single value statement, so no cursor is
+     * created and only the result is sent back to the caller.
+     * </p>
+     * <p>
+     * Unlike queries, calls are not checked by the framework, so the caller must hold the read permission of the
+     * provider, or a matching path read permission, or have been granted read access to the content URI.
+     * </p>
+     * <p>
+     * All other methods are passed to the default implementation.
+     * </p>
+     * {@inheritDoc}
+     */
+    @Override
+    @Nullable
+    public Bundle call(@NonNull String method, @Nullable String arg, @Nullable Bundle extras) {
+        final String function = getAggregateFunction(method);
+        if (function == null) {
+            return super.call(method, arg, extras);
+        }
+
+        Preconditions.argumentNotNull(arg, "The content uri must be passed as arg");
+
+        final Uri uri = Uri.parse(arg);
+        enforceReadPermission(uri);
+
+        final DatabaseUriMatcher.Result match = matchUri(uri);
+        final String selection = (extras == null) ? null : extras.getString(EXTRA_SELECTION);
+        final String[] selectionArgs = (extras == null) ? null : extras.getStringArray(EXTRA_SELECTION_ARGS);
+
+        final SQLiteDatabase db = getReadableDatabase();
+        final SqlSelectionBuilder builder = buildQuerySelection(uri, match, selection, selectionArgs, null);
+        final Bundle result = new Bundle(1);
+        switch (method) {
+            case METHOD_COUNT:
+                result.putLong(EXTRA_RESULT, builder.count(db));
+                break;
+
+            case METHOD_EXISTS:
+                result.putBoolean(EXTRA_RESULT, builder.exists(db));
+                break;
+
+            default:
+                final String column = (extras == null) ? null : extras.getString(EXTRA_COLUMN);
+                Preconditions.argumentNotNull(column, "Column is required for " + method);
+                // the column is appended to the statement, so only names are accepted
+                Preconditions.argumentCondition(!COLUMN_NAME_PATTERN.matcher(column).matches(),
+                        "Column must be a column name: " + column);
+
+                final Number value = builder.aggregate(db, function, column);
+                if (value instanceof Long) {
+                    result.putLong(EXTRA_RESULT, value.longValue());
+                } else if (value != null) {
+                    result.putDouble(EXTRA_RESULT, value.doubleValue());
+                }
+                break;
+        }
+        return result;
+    }
+
+    private void enforceReadPermission(@NonNull Uri uri) {
+        final int callingUid = Binder.getCallingUid();
+        if (callingUid == Process.myUid()) {
+            return;
+        }
+
+        final Context context = getContext();
+        final String readPermission = getReadPermission();
+        if ((readPermission != null) && isGranted(context, readPermission)) {
+            return;
+        }
+
+        boolean isAllowedByDefault = (readPermission == null);
+        final PathPermission[] pathPermissions = getPathPermissions();
+        if (pathPermissions != null) {
+            final String path = uri.getPath();
+            for (PathPermission pathPermission : pathPermissions) {
+                final String pathReadPermission = pathPermission.getReadPermission();
+                if ((pathReadPermission != null) && pathPermission.match(path)) {
+                    if (isGranted(context, pathReadPermission)) {
+                        return;
+                    }
+                    isAllowedByDefault = false;
+                }
+            }
+        }
+
+        if (isAllowedByDefault || (context.checkCallingUriPermission(uri, Intent.FLAG_GRANT_READ_URI_PERMISSION)
+                == PackageManager.PERMISSION_GRANTED)) {
+            return;
+        }
+
+        throw new SecurityException("Permission denial: reading " + uri + " from uid " + callingUid
+                + " requires " + readPermission);
+    }
+
+    private static boolean isGranted(@NonNull Context context, @NonNull String permission) {
+        return context.checkCallingPermission(permission) == PackageManager.PERMISSION_GRANTED;
+    }
+
+    @Nullable
+    private static String getAggregateFunction(@NonNull String method) {
+        switch (method) {
+            case METHOD_COUNT:
+            case METHOD_EXISTS:
+                return method;
+
+            case METHOD_MIN:
+                return SqlSelectionBuilder.AGGREGATE_MIN;
+
+            case METHOD_MAX:
+                return SqlSelectionBuilder.AGGREGATE_MAX;
+
+            case METHOD_SUM:
+                return SqlSelectionBuilder.AGGREGATE_SUM;
+
+            default:
+                return null;
+        }
+    }
+
     @Override
     public String getType(@NonNull Uri uri) {
         Preconditions.argumentNotNull(uri, "Uri can't be null");
@@ -229,21 +808,29 @@ public abstract class DatabaseContentProvider extends ContentProvider {
 
         final DatabaseUriMatcher.Result match = matchInsertUri(uri);
 
-        final SQLiteDatabase db = mHelper.getWritableDatabase();
-        final SqlInsertionBuilder builder = buildInsertion(uri, match, values);
+        final SQLiteDatabase db = getWritableDatabase();
+        final SqlInsertionBuilder builder = buildInsertion(uri, match, values).setStatementCache(mStatementCache);
         final int conflictAlgorithm = getConflictAlgorithm(uri);
-        final List<Long> generatedIds = builder.insert(db, conflictAlgorithm);
-        if ((generatedIds != null) && !generatedIds.isEmpty()) {
+        final long[] generatedIds = builder.insertForIds(db, conflictAlgorithm);
+        if (generatedIds.length > 0) {
+            notifyTableChanged(match.table);
             notifyChange(uri);
         }
-        return ContentUris.withAppendedId(uri, generatedIds.get(0));
+        return ContentUris.withAppendedId(uri, generatedIds[0]);
     }
 
     /**
      * <p>
      * This implementation calls {@link #buildInsertion(Uri, DatabaseUriMatcher.Result, ContentValues...)}
      * to create a {@code SqlInsertionBuilder} that will be used to perform the actual insert against the database.
-     * It will wrap all insertions in a single transaction for optimal performance.
+     * It will wrap all insertions in a single transaction for optimal performance. The generated row ids are not
+     * collected, only the number of inserted rows is returned. Since 1.2.0 this is the number of rows SQLite has
+     * actually inserted, so rows skipped because of {@link SQLiteDatabase#CONFLICT_IGNORE} are not counted.
+     * </p>
+     * <p>
+     * If {@link #getBulkInsertChunkSize()} is positive, the rows are inserted in chunks of that size and the
+     * transaction yields to other database users between chunks. Observers are notified once, after all chunks have
+     * been committed.
      * </p>
      * <p>
      * {@inheritDoc}
@@ -254,20 +841,83 @@ public abstract class DatabaseContentProvider extends ContentProvider {
 
         final DatabaseUriMatcher.Result match = matchInsertUri(uri);
 
-        final SQLiteDatabase db = mHelper.getWritableDatabase();
+        final SQLiteDatabase db = getWritableDatabase();
+        final int insertedRows;
+        db.beginTransaction();
         try {
-            db.beginTransaction();
-            final SqlInsertionBuilder builder = buildInsertion(uri, match, values);
+            final SqlInsertionBuilder builder = buildInsertion(uri, match, values).setStatementCache(mStatementCache);
             final int conflictAlgorithm = getConflictAlgorithm(uri);
-            final List<Long> generatedIds = builder.insert(db, conflictAlgorithm);
-            if ((generatedIds != null) && !generatedIds.isEmpty()) {
-                notifyChange(uri);
-            }
+            final boolean isMultiRowInsert = isMultiRowInsertEnabled()
+                    && (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN);
+            builder.setMultiRowInsert(isMultiRowInsert);
+
+            insertedRows = insertInChunks(db, builder, conflictAlgorithm, match.table);
             db.setTransactionSuccessful();
-            return generatedIds.size();
         } finally {
             db.endTransaction();
+            notifyTableChanged(match.table);
+        }
+
+        if (0 < insertedRows) {
+            notifyChange(uri);
+        }
+        return insertedRows;
+    }
+
+    private int insertInChunks(@NonNull SQLiteDatabase db, @NonNull SqlInsertionBuilder builder,
+                               int conflictAlgorithm, @NonNull String table) {
+        final int rowCount = builder.getRowCount();
+        final int chunkSize = getBulkInsertChunkSize();
+        if ((chunkSize <= 0) || (chunkSize >= rowCount)) {
+            return builder.insertForCount(db, conflictAlgorithm);
+        }
+
+        int insertedRows = 0;
+        for (int start = 0; start < rowCount; start += chunkSize) {
+            if ((start > 0) && db.yieldIfContendedSafely()) {
+                // the chunks inserted so far have been committed
+                notifyTableChanged(table);
+            }
+
+            final int end = Math.min(start + chunkSize, rowCount);
+            insertedRows += builder.insertForCount(db, conflictAlgorithm, start, end);
         }
+        return insertedRows;
+    }
+
+    /**
+     * Specify the number of rows {@link #bulkInsert(Uri, ContentValues[])} inserts before yielding the transaction to
+     * other threads waiting for the database.
+     * <p>
+     * Override this to keep readers responsive while large bulk inserts are running. Each yield commits the rows
+     * inserted so far, so a failure in a later chunk does not roll back the previous ones. Defaults to {@code 0},
+     * which inserts all rows in a single, non - yielding transaction.
+     * </p>
+     *
+     * @return the chunk size, or a non - positive value to disable chunking.
+     * @since 1.2.0
+     */
+    @SuppressWarnings("MethodMayBeStatic")
+    // This is not static, because subclasses may need to override it
+    protected int getBulkInsertChunkSize() {
+        return 0;
+    }
+
+    /**
+     * Specify if {@link #bulkInsert(Uri, ContentValues[])} should pack multiple rows into a single {@code insert}
+     * statement. Multi-row inserts are only used on Android 4.1 (API 16) and above, regardless of this setting.
+     * <p>
+     * Override this to enable multi-row inserts. Defaults to {@code false}.
+     * </p>
+     *
+     * @return {@code true} to enable multi-row inserts.
+     * @see SqlInsertionBuilder#setMultiRowInsert(boolean)
+     * @since 1.2.0
+     */
+    @SuppressWarnings("MethodMayBeStatic")
+    // This is not static, because subclasses may need to override it
+    protected boolean isMultiRowInsertEnabled() {
+        return false;
     }
 
     @NonNull
@@ -320,10 +970,11 @@ public abstract class DatabaseContentProvider extends ContentProvider {
 
         final DatabaseUriMatcher.Result match = matchUri(uri);
 
-        final SQLiteDatabase db = mHelper.getWritableDatabase();
+        final SQLiteDatabase db = getWritableDatabase();
         final SqlSelectionBuilder builder = buildUpdateDeleteSelection(uri, match, selection, selectionArgs);
         final int deletedRows = builder.delete(db);
         if (0 < deletedRows) {
+            notifyTableChanged(match.table);
             notifyChange(uri);
         }
         return deletedRows;
@@ -345,11 +996,12 @@ public abstract class DatabaseContentProvider extends ContentProvider {
 
         final DatabaseUriMatcher.Result match = matchUri(uri);
 
-        final SQLiteDatabase db = mHelper.getWritableDatabase();
+        final SQLiteDatabase db = getWritableDatabase();
         final SqlSelectionBuilder builder = buildUpdateDeleteSelection(uri, match, selection, selectionArgs);
         final int conflictAlgorithm = getConflictAlgorithm(uri);
         final int updatedRows = builder.update(db, values, conflictAlgorithm);
         if (0 < updatedRows) {
+            notifyTableChanged(match.table);
             notifyChange(uri);
         }
         return updatedRows;
@@ -395,6 +1047,17 @@ public abstract class DatabaseContentProvider extends ContentProvider {
      * The current implementation wraps the execution of all batch operations in a transaction.
      * </p>
      * <p>
+     * Before an operation, for which {@link ContentProviderOperation#isYieldAllowed()} is {@code true}, the transaction
+     * yields to other database users if there is contention. The operations applied before the yield point are
+     * committed and are not rolled back if a later operation fails.
+     * </p>
+     * <p>
+     * Change notifications, produced by the operations, are collected while the transaction is open. Duplicate URIs
+     * are collapsed and row URIs are replaced by the URI of their table. A single notification per affected URI is sent
+     * after the transaction has been committed. If the transaction is rolled back, no notifications are sent for the
+     * operations applied after the last yield point.
+     * </p>
+     * <p>
      * {@inheritDoc}
      */
     @Override
@@ -403,14 +1066,50 @@ public abstract class DatabaseContentProvider extends ContentProvider {
             throws OperationApplicationException {
         Preconditions.argumentNotNull(operations, "Operations required");
 
-        final SQLiteDatabase db = mHelper.getWritableDatabase();
+        final boolean isOutermostBatch = (mPendingNotifications.get() == null);
+        if (isOutermostBatch) {
+            mPendingNotifications.set(new LinkedHashSet<Uri>());
+            mPendingTableChanges.set(new LinkedHashSet<String>());
+        }
+
+        final ContentProviderResult[] operationResults;
+        final Set<Uri> changedUris;
+        try {
+            operationResults = applyInTransaction(operations, isOutermostBatch);
+        } finally {
+            changedUris = mPendingNotifications.get();
+            if (isOutermostBatch) {
+                mPendingNotifications.remove();
+                // the transaction has ended, so the changed tables are advanced past any result read during the batch
+                dispatchTableChanges(mPendingTableChanges.get());
+                mPendingTableChanges.remove();
+            }
+        }
+
+        if (isOutermostBatch) {
+            dispatchChanges(changedUris);
+        }
+        return operationResults;
+    }
+
+    @NonNull
+    private ContentProviderResult[] applyInTransaction(@NonNull ArrayList<ContentProviderOperation> operations,
+                                                       boolean isYieldAllowed) throws OperationApplicationException {
+        final SQLiteDatabase db = getWritableDatabase();
         db.beginTransaction();
         try {
             final int operationCount = operations.size();
             final ContentProviderResult[] operationResults
                     = new ContentProviderResult[operationCount];
             for (int i = 0; i < operations.size(); i++) {
-                operationResults[i] = operations.get(i).apply(this, operationResults, i);
+                final ContentProviderOperation operation = operations.get(i);
+                // nested transactions can't yield, so only the outermost batch honors the yield points
+                if (isYieldAllowed && (i > 0) && operation.isYieldAllowed() && yieldIfContended(db)) {
+                    // everything applied so far has been committed
+                    dispatchTableChanges(mPendingTableChanges.get());
+                    dispatchChanges(mPendingNotifications.get());
+                }
+                operationResults[i] = operation.apply(this, operationResults, i);
             }
             db.setTransactionSuccessful();
             return operationResults;
@@ -419,15 +1118,66 @@ public abstract class DatabaseContentProvider extends ContentProvider {
         }
     }
 
+    @VisibleForTesting
+    boolean yieldIfContended(@NonNull SQLiteDatabase db) {
+        return db.yieldIfContendedSafely();
+    }
+
     /**
      * Notifies the {@code ContentResolver} that a change has been made on a given URI.
+     * <p>
+     * If called while a batch is being applied, the notification is deferred until the batch transaction has been
+     * committed.
+     * </p>
      *
      * @param uri required. The URI that has been changed.
      */
     protected void notifyChange(@NonNull Uri uri) {
-        final Context context = getContext();
         final boolean shouldNotify = uri.getBooleanQueryParameter(PARAM_SHOULD_NOTIFY, true);
-        if (context != null && shouldNotify) {
+        if (!shouldNotify) {
+            return;
+        }
+
+        final Set<Uri> pendingNotifications = mPendingNotifications.get();
+        if (pendingNotifications != null) {
+            pendingNotifications.add(getNotificationUri(uri));
+        } else {
+            dispatchChange(uri);
+        }
+    }
+
+    @NonNull
+    private Uri getNotificationUri(@NonNull Uri uri) {
+        final DatabaseUriMatcher.Result match = mUriMatcher.match(uri);
+        if ((match != null) && match.isRow) {
+            // observers registered for a row URI are notified for changes of the table URI as well
+            return new Uri.Builder().scheme(uri.getScheme()).authority(uri.getAuthority()).appendPath(match.table)
+                    .build();
+        }
+        return uri.buildUpon().clearQuery().build();
+    }
+
+    private void dispatchChanges(@NonNull Set<Uri> uris) {
+        for (Uri uri : uris) {
+            dispatchChange(uri);
+        }
+        uris.clear();
+    }
+
+    private void dispatchTableChanges(@NonNull Set<String> tables) {
+        if (mQueryResultCache == null) {
+            return;
+        }
+
+        for (String table : tables) {
+            mQueryResultCache.onTableChanged(table);
+        }
+    }
+
+    @VisibleForTesting
+    void dispatchChange(@NonNull Uri uri) {
+        final Context context = getContext();
+        if (context != null) {
             context.getContentResolver().notifyChange(uri, null);
         }
     }
@@ -5,10 +5,21 @@ import android.net.Uri;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import bg.dalexiev.bender.util.Preconditions;
 
 /**
  * Wraps a {@code UriMatcher} to simplify the extraction of information from the content URIs. The results of this class are consumed by a {@code DatbaseContentProvider}.
+ * <p>
+ * By default, any {@code content://<authority>/{tableName}} and {@code content://<authority>/{tableName}/{id}} URI is
+ * matched and the table name is taken from the URI as - is. Once a route has been declared with {@link
+ * #addTable(String)} or {@link #addPath(String, int, String)}, only the declared routes are matched. The routes are
+ * resolved with a hash lookup and the results for table and custom path routes are created once, when the route is
+ * declared.
+ * </p>
  *
  * @author danail.alexiev
  * @since 1.0
@@ -21,17 +32,74 @@ public class DatabaseUriMatcher {
     public static final int TYPE_TABLE = 0;
     public static final int TYPE_ROW = 1;
 
+    private final String mAuthority;
     private final UriMatcher mUriMatcher;
+    private final Map<String, Result> mTableRoutes;
+    private final Map<String, Result> mPathRoutes;
 
     public DatabaseUriMatcher(@NonNull String authority) {
         Preconditions.argumentNotNull(authority, "Authority can't be null;");
 
+        mAuthority = authority;
+        mTableRoutes = new HashMap<>();
+        mPathRoutes = new HashMap<>();
+
         mUriMatcher = new UriMatcher(UriMatcher.NO_MATCH);
 
         mUriMatcher.addURI(authority, "*", TYPE_TABLE);
         mUriMatcher.addURI(authority, "*/#", TYPE_ROW);
     }
 
+    /**
+     * Declare a database table, accessible with {@code content://<authority>/{table}} and {@code
+     * content://<authority>/{table}/{id}}.
+     * <p>
+     * Routes must be declared before the matcher is used, typically in {@code
+     * DatabaseContentProvider#createUriMatcher(String)}.
+     * </p>
+     *
+     * @param table required. The name of the table.
+     * @return the current instance.
+     * @throws IllegalArgumentException if {@code table} is {@code null} or empty.
+     * @since 1.2.0
+     */
+    @NonNull
+    public DatabaseUriMatcher addTable(@NonNull String table) {
+        Preconditions.argumentNotNull(table, "Table can't be null");
+        Preconditions.argumentCondition(table.isEmpty(), "Table can't be empty");
+
+        mTableRoutes.put(table, new Result(TYPE_TABLE, table, false, null));
+
+        return this;
+    }
+
+    /**
+     * Declare a custom path, accessible with {@code content://<authority>/{path}}.
+     * <p>
+     * Routes must be declared before the matcher is used, typically in {@code
+     * DatabaseContentProvider#createUriMatcher(String)}. Requests for custom paths need to be handled by overriding
+     * the appropriate {@code DatabaseContentProvider} methods.
+     * </p>
+     *
+     * @param path  required. The exact path, without a leading slash.
+     * @param code  the code to return with the match. Must be different from {@link #TYPE_TABLE} and {@link
+     *              #TYPE_ROW}.
+     * @param table optional. The name of the table the path operates on.
+     * @return the current instance.
+     * @throws IllegalArgumentException if {@code path} is {@code null} or empty or {@code code} is reserved.
+     * @since 1.2.0
+     */
+    @NonNull
+    public DatabaseUriMatcher addPath(@NonNull String path, int code, @Nullable String table) {
+        Preconditions.argumentNotNull(path, "Path can't be null");
+        Preconditions.argumentCondition(path.isEmpty(), "Path can't be empty");
+        Preconditions.argumentCondition((code == TYPE_TABLE) || (code == TYPE_ROW), "Code " + code + " is reserved");
+
+        mPathRoutes.put('/' + path, new Result(code, table, false, null));
+
+        return this;
+    }
+
     /**
      * Tries to match a provided content URIs to the ones registered on this matcher.
      *
@@ -40,18 +108,76 @@ public class DatabaseUriMatcher {
      */
     @Nullable
     public Result match(@NonNull Uri uri) {
+        if (mTableRoutes.isEmpty() && mPathRoutes.isEmpty()) {
+            return matchAny(uri);
+        }
+
+        if (!mAuthority.equals(uri.getAuthority())) {
+            return null;
+        }
+
+        final Result pathRoute = mPathRoutes.get(uri.getPath());
+        if (pathRoute != null) {
+            return pathRoute;
+        }
+
+        final List<String> pathSegments = uri.getPathSegments();
+        final int segmentCount = pathSegments.size();
+        if ((segmentCount == 0) || (segmentCount > 2)) {
+            return null;
+        }
+
+        final Result tableRoute = mTableRoutes.get(pathSegments.get(0));
+        if ((tableRoute == null) || (segmentCount == 1)) {
+            return tableRoute;
+        }
+
+        final String id = pathSegments.get(1);
+        final long rowId = parseRowId(id);
+        if (rowId < 0) {
+            return null;
+        }
+        return new Result(TYPE_ROW, tableRoute.table, true, id, rowId);
+    }
+
+    @Nullable
+    private Result matchAny(@NonNull Uri uri) {
         switch (mUriMatcher.match(uri)) {
             case TYPE_TABLE:
                 return new Result(TYPE_TABLE, uri.getLastPathSegment(), false, null);
 
             case TYPE_ROW:
-                return new Result(TYPE_ROW, uri.getPathSegments().get(0), true, uri.getLastPathSegment());
+                final String id = uri.getLastPathSegment();
+                return new Result(TYPE_ROW, uri.getPathSegments().get(0), true, id, parseRowId(id));
 
             default:
                 return null;
         }
     }
 
+    private static long parseRowId(@NonNull String id) {
+        final int length = id.length();
+        if (length == 0) {
+            return -1;
+        }
+
+        long rowId = 0;
+        for (int i = 0; i < length; i++) {
+            final char digit = id.charAt(i);
+            if ((digit < '0') || (digit > '9')) {
+                return -1;
+            }
+
+            final int digitValue = digit - '0';
+            // ids, which don't fit in a long, are invalid
+            if (rowId > ((Long.MAX_VALUE - digitValue) / 10)) {
+                return -1;
+            }
+            rowId = rowId * 10 + digitValue;
+        }
+        return rowId;
+    }
+
     /**
      * Encapsulates the important information passed using a content URI.
      *
@@ -66,7 +192,7 @@ public class DatabaseUriMatcher {
         public final int code;
 
         /**
-         * The name of the requested database table
+         * The name of the requested database table or {@code null} for custom paths without a table
          */
         public final String table;
 
@@ -80,11 +206,26 @@ public class DatabaseUriMatcher {
          */
         public final String id;
 
-        public Result(int code, @NonNull String table, boolean isRow, @Nullable String id) {
+        /**
+         * The id of the requested row or {@code -1}
+         *
+         * @since 1.2.0
+         */
+        public final long rowId;
+
+        public Result(int code, @Nullable String table, boolean isRow, @Nullable String id) {
+            this(code, table, isRow, id, -1);
+        }
+
+        /**
+         * @since 1.2.0
+         */
+        public Result(int code, @Nullable String table, boolean isRow, @Nullable String id, long rowId) {
             this.code = code;
             this.table = table;
             this.isRow = isRow;
             this.id = id;
+            this.rowId = rowId;
         }
     }
 }
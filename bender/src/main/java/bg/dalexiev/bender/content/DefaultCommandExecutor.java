@@ -0,0 +1,200 @@
+package bg.dalexiev.bender.content;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import bg.dalexiev.bender.util.Preconditions;
+
+/**
+ * The default {@link CommandExecutor}. Read only commands run in parallel on a bounded pool of threads. All other
+ * commands are run one at a time for each authority, in submission order, while the commands of different authorities
+ * run in parallel.
+ * <p>
+ * A slow command therefore only delays the writes to its own authority - reads don't wait for each other, as long as
+ * there are free read threads. When all read threads are busy, the queued reads are started by {@link Priority}, and
+ * in submission order within the same priority. Writes ignore their priority, since reordering the writes to an
+ * authority would change their result.
+ * </p>
+ *
+ * @author danail.alexiev
+ * @since 1.2.0
+ */
+public final class DefaultCommandExecutor implements CommandExecutor {
+
+    /**
+     * The default number of read only commands that can run in parallel.
+     */
+    public static final int DEFAULT_READ_PARALLELISM =
+            Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    private static final long KEEP_ALIVE_SECONDS = 30L;
+
+    private static DefaultCommandExecutor sInstance;
+
+    private final ThreadPoolExecutor mReadExecutor;
+    private final Executor mWriteExecutor;
+
+    private final Map<String, WriteQueue> mWriteQueues;
+    private final AtomicLong mSequence;
+
+    /**
+     * Get the executor shared by all {@link BenderContentResolver}s, created without a {@code CommandExecutor}.
+     *
+     * @return the shared instance.
+     */
+    @NonNull
+    public static synchronized DefaultCommandExecutor getInstance() {
+        if (sInstance == null) {
+            sInstance = new DefaultCommandExecutor(DEFAULT_READ_PARALLELISM);
+        }
+
+        return sInstance;
+    }
+
+    /**
+     * @param readParallelism the maximum number of read only commands that can run in parallel.
+     * @throws IllegalArgumentException if {@code readParallelism} is not positive.
+     */
+    public DefaultCommandExecutor(int readParallelism) {
+        Preconditions.argumentCondition(readParallelism <= 0, "Read parallelism must be positive");
+
+        mReadExecutor = new ThreadPoolExecutor(readParallelism, readParallelism, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<Runnable>(), new WorkerThreadFactory("ResolverCommandReader"));
+        mReadExecutor.allowCoreThreadTimeOut(true);
+
+        // every authority has at most one write running, so a thread is needed for each busy authority
+        mWriteExecutor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>(), new WorkerThreadFactory("ResolverCommandWriter"));
+        mWriteQueues = new HashMap<>();
+        mSequence = new AtomicLong();
+    }
+
+    @Override
+    public void execute(@Nullable String authority, boolean isReadOnly, @NonNull Priority priority,
+                        @NonNull Runnable task) {
+        Preconditions.argumentNotNull(priority, "Priority can't be null");
+        Preconditions.argumentNotNull(task, "Task can't be null");
+
+        if (isReadOnly) {
+            mReadExecutor.execute(new PrioritizedTask(priority, mSequence.getAndIncrement(), task));
+            return;
+        }
+
+        final String key = (authority != null) ? authority : "";
+        synchronized (mWriteQueues) {
+            final WriteQueue writeQueue = mWriteQueues.get(key);
+            if (writeQueue != null) {
+                writeQueue.mTasks.add(task);
+                return;
+            }
+
+            final WriteQueue newWriteQueue = new WriteQueue(key);
+            newWriteQueue.mTasks.add(task);
+            mWriteQueues.put(key, newWriteQueue);
+            mWriteExecutor.execute(newWriteQueue);
+        }
+    }
+
+    /**
+     * The pending writes to a single authority. Runs them one after another and removes itself from the pending write
+     * queues, once it has been drained.
+     */
+    private final class WriteQueue implements Runnable {
+
+        private final String mAuthority;
+        private final ArrayDeque<Runnable> mTasks;
+
+        WriteQueue(@NonNull String authority) {
+            mAuthority = authority;
+            mTasks = new ArrayDeque<>();
+        }
+
+        @Override
+        public void run() {
+            Runnable task;
+            while ((task = poll()) != null) {
+                boolean isCompleted = false;
+                try {
+                    task.run();
+                    isCompleted = true;
+                } finally {
+                    if (!isCompleted) {
+                        // the failure is propagated, but the writes queued behind the failed one must still run
+                        mWriteExecutor.execute(this);
+                    }
+                }
+            }
+        }
+
+        @Nullable
+        private Runnable poll() {
+            synchronized (mWriteQueues) {
+                final Runnable task = mTasks.poll();
+                if (task == null) {
+                    mWriteQueues.remove(mAuthority);
+                }
+
+                return task;
+            }
+        }
+    }
+
+    /**
+     * A queued read, ordered by priority and then by submission order.
+     */
+    private static final class PrioritizedTask implements Runnable, Comparable<PrioritizedTask> {
+
+        private final Priority mPriority;
+        private final long mSequence;
+        private final Runnable mTask;
+
+        PrioritizedTask(@NonNull Priority priority, long sequence, @NonNull Runnable task) {
+            mPriority = priority;
+            mSequence = sequence;
+            mTask = task;
+        }
+
+        @Override
+        public void run() {
+            mTask.run();
+        }
+
+        @Override
+        public int compareTo(@NonNull PrioritizedTask other) {
+            final int priorityOrder = mPriority.compareTo(other.mPriority);
+            if (priorityOrder != 0) {
+                return priorityOrder;
+            }
+
+            return (mSequence < other.mSequence) ? -1 : ((mSequence == other.mSequence) ? 0 : 1);
+        }
+    }
+
+    private static final class WorkerThreadFactory implements ThreadFactory {
+
+        private final String mName;
+        private final AtomicInteger mCount;
+
+        WorkerThreadFactory(@NonNull String name) {
+            mName = name;
+            mCount = new AtomicInteger();
+        }
+
+        @Override
+        public Thread newThread(@NonNull Runnable runnable) {
+            return new Thread(runnable, mName + " #" + mCount.incrementAndGet());
+        }
+    }
+}
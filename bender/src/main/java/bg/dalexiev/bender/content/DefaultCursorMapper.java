@@ -3,6 +3,8 @@ package bg.dalexiev.bender.content;
 import android.database.Cursor;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.support.v4.os.CancellationSignal;
+import android.support.v4.os.OperationCanceledException;
 import android.util.SparseArray;
 
 import bg.dalexiev.bender.mapper.CursorMapper;
@@ -22,12 +24,77 @@ class DefaultCursorMapper<E> implements CursorMapper<E> {
     @Override
     public SparseArray<E> mapCursor(@NonNull Cursor cursor) {
         final SparseArray<E> cache = new SparseArray<>(cursor.getCount());
+        final BoundRowMapper<E> rowMapper = bind(cursor);
         while (cursor.moveToNext()) {
             final int position = cursor.getPosition();
-            final E entity = mRowMapper.toObject(cursor, position);
+            final E entity = rowMapper.map(position);
             cache.put(position, entity);
         }
 
         return cache;
     }
+
+    /**
+     * Maps the provided {@code cursor} to a dense array, indexed by cursor position.
+     * <p>
+     * Rows are mapped to positions {@code 0..n-1}, so an array, pre - sized to the row count, gives constant time
+     * positional access without the binary search and the growth of a {@code SparseArray}.
+     * </p>
+     *
+     * @param cursor             required. The raw cursor, holding the SQL result set.
+     * @param cancellationSignal optional. A signal, checked before each row is mapped.
+     * @return an array of the mapped entities.
+     * @throws OperationCanceledException if {@code cancellationSignal} has been cancelled.
+     */
+    @NonNull
+    Object[] mapRows(@NonNull Cursor cursor, @Nullable CancellationSignal cancellationSignal) {
+        final Object[] entities = new Object[cursor.getCount()];
+        final BoundRowMapper<E> rowMapper = bind(cursor);
+        while (cursor.moveToNext()) {
+            throwIfCanceled(cancellationSignal);
+            final int position = cursor.getPosition();
+            entities[position] = rowMapper.map(position);
+        }
+
+        return entities;
+    }
+
+    /**
+     * Maps the provided {@code cursor} to a dense array, reusing the entities of the rows that haven't changed since
+     * the last result mapped with {@code identityMap}.
+     *
+     * @param cursor             required. The raw cursor, holding the SQL result set.
+     * @param identityMap        required. The entities of the last result.
+     * @param cancellationSignal optional. A signal, checked before each row is mapped.
+     * @return an array of the mapped entities.
+     * @throws OperationCanceledException if {@code cancellationSignal} has been cancelled.
+     */
+    @NonNull
+    Object[] mapRows(@NonNull Cursor cursor, @NonNull EntityIdentityMap<E> identityMap,
+                     @Nullable CancellationSignal cancellationSignal) {
+        return identityMap.mapRows(cursor, bind(cursor), cancellationSignal);
+    }
+
+    /**
+     * Stop the mapping of a cancelled result, so it doesn't keep the worker thread busy.
+     *
+     * @param cancellationSignal optional. The signal to check.
+     * @throws OperationCanceledException if {@code cancellationSignal} has been cancelled.
+     */
+    static void throwIfCanceled(@Nullable CancellationSignal cancellationSignal) {
+        if (cancellationSignal != null) {
+            cancellationSignal.throwIfCanceled();
+        }
+    }
+
+    /**
+     * Bind the row mapper to {@code cursor}, so column indices are resolved once per cursor.
+     *
+     * @param cursor required. The cursor to map.
+     * @return the bound row mapper.
+     */
+    @NonNull
+    BoundRowMapper<E> bind(@NonNull Cursor cursor) {
+        return new BoundRowMapper<>(mRowMapper, cursor);
+    }
 }
@@ -20,8 +20,8 @@ public class DeleteCommand extends BaseResolverCommand<Integer, DeleteCommand.Ca
 
     private final SqlSelectionBuilder mSelectionBuilder;
 
-    DeleteCommand(ContentResolver contentResolver) {
-        super(contentResolver);
+    DeleteCommand(ContentResolver contentResolver, @Nullable CommandExecutor executor) {
+        super(contentResolver, executor);
         mSelectionBuilder = new SqlSelectionBuilder();
     }
 
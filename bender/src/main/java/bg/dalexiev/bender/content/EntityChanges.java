@@ -0,0 +1,351 @@
+package bg.dalexiev.bender.content;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import bg.dalexiev.bender.util.Preconditions;
+
+/**
+ * The changes between two consecutive results of a query, matched by the {@link android.provider.BaseColumns#_ID} of
+ * their rows.
+ * <p>
+ * A row is inserted if its id is not part of the old result and removed if its id is not part of the new result. Of the
+ * rows in both results, the smallest possible number is reported as moved, so that the relative order of all other rows
+ * is kept. A row in both results is changed if its new entity is not {@link Object#equals(Object) equal} to its old
+ * entity.
+ * </p>
+ * <p>
+ * Use {@link #dispatchTo(Callback)} to apply the changes to a list, for example to call the {@code notifyItem*()}
+ * methods of a {@code RecyclerView.Adapter}, so only the affected items are rebound.
+ * </p>
+ *
+ * @author danail.alexiev
+ * @see QueryCommand#trackChanges()
+ * @since 1.2.0
+ */
+public final class EntityChanges {
+
+    private static final int[] NO_POSITIONS = new int[0];
+
+    private final long[] mOldIds;
+    private final long[] mNewIds;
+
+    private final int[] mInserted;
+    private final int[] mRemoved;
+    private final int[] mMovedFrom;
+    private final int[] mMovedTo;
+    private final int[] mChanged;
+
+    private EntityChanges(long[] oldIds, long[] newIds, int[] inserted, int[] removed, int[] movedFrom, int[] movedTo,
+                          int[] changed) {
+        mOldIds = oldIds;
+        mNewIds = newIds;
+        mInserted = inserted;
+        mRemoved = removed;
+        mMovedFrom = movedFrom;
+        mMovedTo = movedTo;
+        mChanged = changed;
+    }
+
+    /**
+     * Compute the changes between two results.
+     *
+     * @param oldIds      required. The ids of the old result, by position.
+     * @param oldEntities required. The entities of the old result, by position.
+     * @param newIds      required. The ids of the new result, by position.
+     * @param newEntities required. The entities of the new result, by position.
+     * @return the changes, or {@code null} if an id is not unique in one of the results.
+     */
+    @Nullable
+    static EntityChanges compute(@NonNull long[] oldIds, @NonNull Object[] oldEntities, @NonNull long[] newIds,
+                                 @NonNull Object[] newEntities) {
+        final Map<Long, Integer> oldPositions = indexPositions(oldIds);
+        final Map<Long, Integer> newPositions = indexPositions(newIds);
+        if ((oldPositions == null) || (newPositions == null)) {
+            return null;
+        }
+
+        final List<Integer> removed = new ArrayList<>();
+        for (int i = 0; i < oldIds.length; i++) {
+            if (!newPositions.containsKey(oldIds[i])) {
+                removed.add(i);
+            }
+        }
+
+        // the old positions of the kept rows, in new order
+        final List<Integer> inserted = new ArrayList<>();
+        final List<Integer> changed = new ArrayList<>();
+        final int[] keptOldPositions = new int[newIds.length];
+        final int[] keptNewPositions = new int[newIds.length];
+        int keptCount = 0;
+        for (int i = 0; i < newIds.length; i++) {
+            final Integer oldPosition = oldPositions.get(newIds[i]);
+            if (oldPosition == null) {
+                inserted.add(i);
+                continue;
+            }
+
+            keptOldPositions[keptCount] = oldPosition;
+            keptNewPositions[keptCount] = i;
+            keptCount++;
+            if (!equal(oldEntities[oldPosition], newEntities[i])) {
+                changed.add(i);
+            }
+        }
+
+        // the longest run of rows, which keep their relative order, stays in place and the rest is moved
+        final boolean[] isInPlace = findLongestIncreasing(keptOldPositions, keptCount);
+        final List<Integer> movedFrom = new ArrayList<>();
+        final List<Integer> movedTo = new ArrayList<>();
+        for (int i = 0; i < keptCount; i++) {
+            if (!isInPlace[i]) {
+                movedFrom.add(keptOldPositions[i]);
+                movedTo.add(keptNewPositions[i]);
+            }
+        }
+
+        return new EntityChanges(oldIds, newIds, toArray(inserted), toArray(removed), toArray(movedFrom),
+                toArray(movedTo), toArray(changed));
+    }
+
+    @Nullable
+    private static Map<Long, Integer> indexPositions(@NonNull long[] ids) {
+        final Map<Long, Integer> positions = new HashMap<>(ids.length * 2);
+        for (int i = 0; i < ids.length; i++) {
+            if (positions.put(ids[i], i) != null) {
+                return null;
+            }
+        }
+        return positions;
+    }
+
+    private static boolean equal(@Nullable Object oldEntity, @Nullable Object newEntity) {
+        return (oldEntity == null) ? (newEntity == null) : oldEntity.equals(newEntity);
+    }
+
+    /**
+     * Find a longest strictly increasing subsequence in O(n log n).
+     *
+     * @return a flag for each value, set if the value is part of the subsequence.
+     */
+    @NonNull
+    private static boolean[] findLongestIncreasing(@NonNull int[] values, int count) {
+        // tails[k] is the index of the smallest value ending an increasing subsequence of length k + 1
+        final int[] tails = new int[count];
+        final int[] predecessors = new int[count];
+        int length = 0;
+        for (int i = 0; i < count; i++) {
+            int low = 0;
+            int high = length;
+            while (low < high) {
+                final int middle = (low + high) >>> 1;
+                if (values[tails[middle]] < values[i]) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+
+            predecessors[i] = (low > 0) ? tails[low - 1] : -1;
+            tails[low] = i;
+            if (low == length) {
+                length++;
+            }
+        }
+
+        final boolean[] isInSequence = new boolean[count];
+        for (int i = (length > 0) ? tails[length - 1] : -1; i >= 0; i = predecessors[i]) {
+            isInSequence[i] = true;
+        }
+        return isInSequence;
+    }
+
+    @NonNull
+    private static int[] toArray(@NonNull List<Integer> values) {
+        if (values.isEmpty()) {
+            return NO_POSITIONS;
+        }
+
+        final int[] array = new int[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
+        }
+        return array;
+    }
+
+    /**
+     * @return {@code true} if the results hold the same rows, in the same order, with equal entities.
+     */
+    public boolean isEmpty() {
+        return (mInserted.length == 0) && (mRemoved.length == 0) && (mMovedFrom.length == 0)
+                && (mChanged.length == 0);
+    }
+
+    /**
+     * @return the positions of the inserted rows in the new result, in ascending order.
+     */
+    @NonNull
+    public int[] getInserted() {
+        return mInserted.clone();
+    }
+
+    /**
+     * @return the positions of the removed rows in the old result, in ascending order.
+     */
+    @NonNull
+    public int[] getRemoved() {
+        return mRemoved.clone();
+    }
+
+    /**
+     * @return the positions of the moved rows in the old result. The new position of each row is at the same index of
+     * {@link #getMovedTo()}.
+     */
+    @NonNull
+    public int[] getMovedFrom() {
+        return mMovedFrom.clone();
+    }
+
+    /**
+     * @return the positions of the moved rows in the new result, in ascending order. The old position of each row is
+     * at the same index of {@link #getMovedFrom()}.
+     */
+    @NonNull
+    public int[] getMovedTo() {
+        return mMovedTo.clone();
+    }
+
+    /**
+     * @return the positions of the changed rows in the new result, in ascending order. Moved rows can be changed as
+     * well.
+     */
+    @NonNull
+    public int[] getChanged() {
+        return mChanged.clone();
+    }
+
+    /**
+     * Apply the changes to {@code callback} as a sequence of single item updates, which turns a list holding the old
+     * result into a list holding the new result. Each position is relative to the list after the previous updates
+     * have been applied, as expected by the {@code notifyItem*()} methods of a {@code RecyclerView.Adapter}.
+     * <p>
+     * Removals are dispatched first, then insertions and moves in ascending order of their new positions and finally
+     * the changes, at their new positions. A moved row, which is in the way of a row that stays in place, is moved
+     * ahead of time, so a few more moves than {@link #getMovedTo()} holds may be dispatched.
+     * </p>
+     *
+     * @param callback required. The callback to dispatch the updates to.
+     * @throws IllegalArgumentException if {@code callback} is {@code null}.
+     */
+    public void dispatchTo(@NonNull Callback callback) {
+        Preconditions.argumentNotNull(callback, "Callback can't be null");
+
+        for (int i = mRemoved.length - 1; i >= 0; i--) {
+            callback.onRemoved(mRemoved[i]);
+        }
+
+        // the ids of the list, while the updates are being applied
+        final List<Long> ids = new ArrayList<>(Math.max(mOldIds.length, mNewIds.length));
+        for (int i = 0; i < mOldIds.length; i++) {
+            if (Arrays.binarySearch(mRemoved, i) < 0) {
+                ids.add(mOldIds[i]);
+            }
+        }
+
+        final int[] nextInPlacePositions = findNextInPlacePositions();
+        final Map<Long, Integer> movedNewPositions = new HashMap<>(mMovedTo.length * 2);
+        for (int position : mMovedTo) {
+            movedNewPositions.put(mNewIds[position], position);
+        }
+
+        // all rows before position are in their final places, so the rows after them are still to be placed
+        int position = 0;
+        while (position < mNewIds.length) {
+            final long id = mNewIds[position];
+            if ((position < ids.size()) && (ids.get(position) == id)) {
+                position++;
+                continue;
+            }
+
+            if (Arrays.binarySearch(mInserted, position) >= 0) {
+                ids.add(position, id);
+                callback.onInserted(position);
+                position++;
+                continue;
+            }
+
+            final Integer blockingNewPosition = movedNewPositions.get(ids.get(position));
+            if ((blockingNewPosition != null) && (Arrays.binarySearch(mMovedTo, position) < 0)) {
+                // a moved row is in the way of a row that stays in place, so it is moved right before the row it
+                // precedes in the new result
+                final int nextInPlacePosition = nextInPlacePositions[blockingNewPosition];
+                final Long blockingId = ids.remove(position);
+                final int toPosition = (nextInPlacePosition < 0)
+                        ? ids.size() : ids.indexOf(mNewIds[nextInPlacePosition]);
+                ids.add(toPosition, blockingId);
+                callback.onMoved(position, toPosition);
+                continue;
+            }
+
+            final int fromPosition = ids.subList(position, ids.size()).indexOf(id) + position;
+            ids.add(position, ids.remove(fromPosition));
+            callback.onMoved(fromPosition, position);
+            position++;
+        }
+
+        for (int changedPosition : mChanged) {
+            callback.onChanged(changedPosition);
+        }
+    }
+
+    /**
+     * @return for each new position, the first following position of a row, which stays in place, or {@code -1}.
+     */
+    @NonNull
+    private int[] findNextInPlacePositions() {
+        final int[] nextInPlacePositions = new int[mNewIds.length];
+        int nextInPlacePosition = -1;
+        for (int i = mNewIds.length - 1; i >= 0; i--) {
+            nextInPlacePositions[i] = nextInPlacePosition;
+            if ((Arrays.binarySearch(mInserted, i) < 0) && (Arrays.binarySearch(mMovedTo, i) < 0)) {
+                nextInPlacePosition = i;
+            }
+        }
+        return nextInPlacePositions;
+    }
+
+    /**
+     * Receives the single item updates of {@link #dispatchTo(Callback)}.
+     *
+     * @author danail.alexiev
+     * @since 1.2.0
+     */
+    public interface Callback {
+
+        /**
+         * Called when a row has been inserted at {@code position}.
+         */
+        void onInserted(int position);
+
+        /**
+         * Called when the row at {@code position} has been removed.
+         */
+        void onRemoved(int position);
+
+        /**
+         * Called when the row at {@code fromPosition} has been moved to {@code toPosition}.
+         */
+        void onMoved(int fromPosition, int toPosition);
+
+        /**
+         * Called when the row at {@code position} has been changed.
+         */
+        void onChanged(int position);
+    }
+}
@@ -3,20 +3,55 @@ package bg.dalexiev.bender.content;
 import android.database.Cursor;
 import android.database.CursorIndexOutOfBoundsException;
 import android.database.CursorWrapper;
+import android.database.MergeCursor;
+import android.provider.BaseColumns;
+import android.support.annotation.Nullable;
+import android.support.v4.os.CancellationSignal;
+import android.support.v4.os.OperationCanceledException;
+import android.support.v4.util.LruCache;
 import android.util.SparseArray;
 
+import java.util.Map;
+
 import bg.dalexiev.bender.mapper.CursorMapper;
 import bg.dalexiev.bender.mapper.RowMapper;
 
 /**
+ * A cursor wrapper, giving access to the entities, mapped from the rows of the wrapped cursor.
+ * <p>
+ * By default, all entities are mapped up front, when the query is executed. In lazy mode, a row is mapped when its
+ * entity is first requested with {@link #getEntity()}. The mapped entities are kept in a bounded, least recently used
+ * cache and a number of rows ahead of the scroll direction are prefetched with each mapped row.
+ * </p>
  */
 public class EntityCursor<E> extends CursorWrapper {
 
+    // LruCache doesn't accept null values, but row mappers may return null
+    private static final Object NULL_ENTITY = new Object();
+
     private final CursorMapper<E> mCursorMapper;
+    private final EntityIdentityMap<E> mIdentityMap;
+
+    private final RowMapper<E> mRowMapper;
+    private final LruCache<Integer, Object> mEntityCache;
+    private final int mPrefetchWindow;
+
+    private BoundRowMapper<E> mBoundRowMapper;
 
     private SparseArray<E> mCache;
+    private Object[] mEntities;
+    private int mCount;
+
+    private long[] mIds;
+    private EntityChanges mChanges;
 
     private int mPosition;
+    private int mLastRequestedPosition;
+
+    // the cursors of the pages merged by append(), or null if a single cursor is wrapped
+    private Cursor[] mPageCursors;
+    // set once the wrapped cursor has been handed over to an appended cursor, which closes it
+    private boolean mIsHandedOver;
 
     /**
      * Creates a cursor wrapper.
@@ -24,8 +59,24 @@ public class EntityCursor<E> extends CursorWrapper {
      * @param cursor The underlying cursor to wrap.
      */
     EntityCursor(Cursor cursor, CursorMapper<E> cursorMapper) {
+        this(cursor, cursorMapper, null);
+    }
+
+    /**
+     * Creates a cursor wrapper, which reuses the entities of the rows that haven't changed since the last result
+     * mapped with {@code identityMap}.
+     *
+     * @param cursor       The underlying cursor to wrap.
+     * @param cursorMapper The mapper used to transform the cursor into entities.
+     * @param identityMap  The entities of the last result. Only used with a row mapper. Can be {@code null}.
+     */
+    EntityCursor(Cursor cursor, CursorMapper<E> cursorMapper, EntityIdentityMap<E> identityMap) {
         super(cursor);
         mCursorMapper = cursorMapper;
+        mIdentityMap = identityMap;
+        mRowMapper = null;
+        mEntityCache = null;
+        mPrefetchWindow = 0;
 
         mPosition = -1;
     }
@@ -34,14 +85,201 @@ public class EntityCursor<E> extends CursorWrapper {
         this(cursor, new DefaultCursorMapper<E>(rowMapper));
     }
 
-    final void mapCursor() {
+    /**
+     * Creates a cursor wrapper, which maps rows lazily.
+     *
+     * @param cursor            The underlying cursor to wrap.
+     * @param rowMapper         The mapper used to transform rows into entities.
+     * @param maxCachedEntities The maximum number of mapped entities to keep.
+     * @param prefetchWindow    The number of rows to map ahead of the scroll direction when an entity is not cached.
+     */
+    EntityCursor(Cursor cursor, RowMapper<E> rowMapper, int maxCachedEntities, int prefetchWindow) {
+        super(cursor);
+        mCursorMapper = null;
+        mIdentityMap = null;
+        mRowMapper = rowMapper;
+        mEntityCache = new LruCache<>(maxCachedEntities);
+        // never prefetch so many rows that the requested entity gets evicted
+        mPrefetchWindow = Math.min(prefetchWindow, maxCachedEntities - 1);
+
+        mPosition = -1;
+    }
+
+    /**
+     * Map the rows of the wrapped cursor, unless the cursor is mapped lazily.
+     *
+     * @param cancellationSignal optional. A signal, checked between the mapped rows. Only row mappers are stopped
+     *                           early - a {@link CursorMapper} always maps the whole result.
+     * @throws OperationCanceledException if {@code cancellationSignal} has been cancelled.
+     */
+    final void mapCursor(@Nullable CancellationSignal cancellationSignal) {
         final Cursor cursor = getWrappedCursor();
         if ((cursor == null) || (cursor.getCount() == 0)) {
             return;
         }
 
-        mCache = mCursorMapper.mapCursor(cursor);
+        if (isLazy()) {
+            mCount = cursor.getCount();
+            mBoundRowMapper = new BoundRowMapper<>(mRowMapper, cursor);
+            return;
+        }
+
+        if (mCursorMapper instanceof DefaultCursorMapper) {
+            // row mapped results are dense, so they don't need a sparse array
+            final DefaultCursorMapper<E> rowCursorMapper = (DefaultCursorMapper<E>) mCursorMapper;
+            mEntities = (mIdentityMap != null)
+                    ? rowCursorMapper.mapRows(cursor, mIdentityMap, cancellationSignal)
+                    : rowCursorMapper.mapRows(cursor, cancellationSignal);
+        } else {
+            mCache = mCursorMapper.mapCursor(cursor);
+        }
+        cursor.moveToFirst();
+    }
+
+    /**
+     * Create a cursor over the same entities as this one, which wraps {@code cursor} instead. Used when the result of a
+     * single query execution is shared by several callers.
+     *
+     * @param cursor A cursor over the same rows as the wrapped cursor.
+     * @return a new cursor, positioned at its first row.
+     */
+    final EntityCursor<E> share(Cursor cursor) {
+        final EntityCursor<E> share = new EntityCursor<>(cursor, mCursorMapper, null);
+        share.mCache = mCache;
+        share.mEntities = mEntities;
         cursor.moveToFirst();
+        return share;
+    }
+
+    /**
+     * Create a cursor over the rows of this cursor, followed by the rows of {@code next}. The mapped entities of both
+     * cursors are kept, so no row is mapped again. The wrapped cursors are handed over to the new cursor - closing this
+     * cursor or {@code next} no longer closes them, closing the new cursor does. Used to append a page to a paged
+     * result.
+     *
+     * @param next A cursor, mapped the same way as this one.
+     * @return the new cursor, positioned before its first row.
+     */
+    EntityCursor<E> append(EntityCursor<E> next) {
+        final Cursor[] thisPages = getPageCursors();
+        final Cursor[] nextPages = next.getPageCursors();
+        final Cursor[] pages = new Cursor[thisPages.length + nextPages.length];
+        System.arraycopy(thisPages, 0, pages, 0, thisPages.length);
+        System.arraycopy(nextPages, 0, pages, thisPages.length, nextPages.length);
+        final Cursor cursor = new MergeCursor(pages);
+        final int count = getCount();
+
+        final EntityCursor<E> merged;
+        if (isLazy()) {
+            merged = new EntityCursor<>(cursor, mRowMapper, mEntityCache.maxSize(), mPrefetchWindow);
+            merged.mapCursor(null);
+            for (Map.Entry<Integer, Object> entry : mEntityCache.snapshot().entrySet()) {
+                merged.mEntityCache.put(entry.getKey(), entry.getValue());
+            }
+        } else {
+            merged = new EntityCursor<>(cursor, mCursorMapper, null);
+            if ((mCache != null) || (next.mCache != null)) {
+                merged.mCache = new SparseArray<>(count + next.getCount());
+                appendEntities(merged.mCache, mCache, 0);
+                appendEntities(merged.mCache, next.mCache, count);
+            } else {
+                merged.mEntities = new Object[count + next.getCount()];
+                appendEntities(merged.mEntities, mEntities, 0);
+                appendEntities(merged.mEntities, next.mEntities, count);
+            }
+        }
+
+        if ((mIds != null) && (next.mIds != null)) {
+            merged.mIds = new long[mIds.length + next.mIds.length];
+            System.arraycopy(mIds, 0, merged.mIds, 0, mIds.length);
+            System.arraycopy(next.mIds, 0, merged.mIds, mIds.length, next.mIds.length);
+        }
+
+        merged.mPageCursors = pages;
+        mIsHandedOver = true;
+        next.mIsHandedOver = true;
+        return merged;
+    }
+
+    private Cursor[] getPageCursors() {
+        return (mPageCursors != null) ? mPageCursors : new Cursor[]{getWrappedCursor()};
+    }
+
+    private static <E> void appendEntities(SparseArray<E> target, SparseArray<E> source, int offset) {
+        if (source == null) {
+            return;
+        }
+
+        for (int i = 0; i < source.size(); i++) {
+            target.put(source.keyAt(i) + offset, source.valueAt(i));
+        }
+    }
+
+    private static void appendEntities(Object[] target, Object[] source, int offset) {
+        if (source != null) {
+            System.arraycopy(source, 0, target, offset, source.length);
+        }
+    }
+
+    /**
+     * Read the {@link BaseColumns#_ID} of every row, so the changes to the next result can be computed.
+     *
+     * @throws IllegalArgumentException if the wrapped cursor doesn't contain the id column.
+     */
+    final void readIds() {
+        final Cursor cursor = getWrappedCursor();
+        if (cursor == null) {
+            mIds = new long[0];
+            return;
+        }
+
+        final long[] ids = new long[cursor.getCount()];
+        final int idIndex = cursor.getColumnIndexOrThrow(BaseColumns._ID);
+        cursor.moveToPosition(-1);
+        while (cursor.moveToNext()) {
+            ids[cursor.getPosition()] = cursor.getLong(idIndex);
+        }
+        cursor.moveToFirst();
+        mIds = ids;
+    }
+
+    /**
+     * @return the ids read by {@link #readIds()}, or {@code null}.
+     */
+    final long[] getIds() {
+        return mIds;
+    }
+
+    /**
+     * @return the mapped entities by position, or {@code null} if the entities are not mapped up front by a row
+     * mapper.
+     */
+    final Object[] getEntities() {
+        return mEntities;
+    }
+
+    final void setChanges(EntityChanges changes) {
+        mChanges = changes;
+    }
+
+    /**
+     * Get the changes from the previous result of the query to this result. The changes are computed on the worker
+     * thread, when the query is executed by a loader with {@link QueryCommand#trackChanges()}.
+     *
+     * @return the changes, or {@code null} if there is no previous result, or the changes have not been tracked.
+     * @since 1.2.0
+     */
+    @Nullable
+    public EntityChanges getChanges() {
+        return mChanges;
+    }
+
+    /**
+     * @return {@code true} if the rows of this cursor are mapped when their entities are requested.
+     * @since 1.2.0
+     */
+    public boolean isLazy() {
+        return mEntityCache != null;
     }
 
     public E getEntity() {
@@ -49,11 +287,67 @@ public class EntityCursor<E> extends CursorWrapper {
             throw new CursorIndexOutOfBoundsException("Invalid cursor position: " + mPosition);
         }
 
-        return mCache.get(mPosition);
+        if (mEntities != null) {
+            return unwrapEntity(mEntities[mPosition]);
+        }
+
+        if (!isLazy()) {
+            return mCache.get(mPosition);
+        }
+
+        final int direction = (mPosition < mLastRequestedPosition) ? -1 : 1;
+        mLastRequestedPosition = mPosition;
+
+        Object entity = mEntityCache.get(mPosition);
+        if (entity == null) {
+            entity = mapRows(mPosition, direction);
+        }
+        return unwrapEntity(entity);
+    }
+
+    @SuppressWarnings("unchecked")
+    private E unwrapEntity(Object entity) {
+        return (entity == NULL_ENTITY) ? null : (E) entity;
+    }
+
+    private Object mapRows(int position, int direction) {
+        final Cursor cursor = getWrappedCursor();
+        final Object entity = mapRow(cursor, position);
+
+        for (int i = 1; i <= mPrefetchWindow; i++) {
+            final int prefetchPosition = position + (i * direction);
+            if ((prefetchPosition < 0) || (prefetchPosition >= mCount)) {
+                break;
+            }
+
+            if (mEntityCache.get(prefetchPosition) == null) {
+                mapRow(cursor, prefetchPosition);
+            }
+        }
+
+        // keep the column getters in sync with the requested entity
+        cursor.moveToPosition(position);
+        return entity;
+    }
+
+    private Object mapRow(Cursor cursor, int position) {
+        cursor.moveToPosition(position);
+        final E entity = mBoundRowMapper.map(position);
+        final Object cachedEntity = (entity == null) ? NULL_ENTITY : entity;
+        mEntityCache.put(position, cachedEntity);
+        return cachedEntity;
     }
 
     @Override
     public int getCount() {
+        if (isLazy()) {
+            return mCount;
+        }
+
+        if (mEntities != null) {
+            return mEntities.length;
+        }
+
         if (mCache == null) {
             return 0;
         }
@@ -140,9 +434,14 @@ public class EntityCursor<E> extends CursorWrapper {
 
     @Override
     public void close() {
-        super.close();
-        if (mCache != null) {
-            mCache.clear();
+        if (!mIsHandedOver) {
+            super.close();
+        }
+        // the mapped entities may be shared with other cursors, so they are only dereferenced
+        mCache = null;
+        mEntities = null;
+        if (mEntityCache != null) {
+            mEntityCache.evictAll();
         }
     }
 }
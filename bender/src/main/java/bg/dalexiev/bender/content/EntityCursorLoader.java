@@ -10,6 +10,12 @@ import android.support.annotation.NonNull;
 import bg.dalexiev.bender.util.Preconditions;
 
 /**
+ * A loader, executing a {@link QueryCommand} and reloading it when the content of the result changes.
+ * <p>
+ * Configure the query with {@link QueryCommand#preserveIdentity(String)} to reuse the entities of unchanged rows
+ * across reloads. The kept entities are released when the loader is reset. Configure it with {@link
+ * QueryCommand#trackChanges()} to get the changes to the previous result with {@link EntityCursor#getChanges()}.
+ * </p>
  */
 public class EntityCursorLoader<E> extends Loader<EntityCursor<E>> implements QueryCommand.Callback<E> {
 
@@ -48,7 +54,9 @@ public class EntityCursorLoader<E> extends Loader<EntityCursor<E>> implements Qu
     @Override
     protected void onForceLoad() {
         mIsCancelled = false;
-        mQueryCommand.executeAsync(mToken, this);
+        mQueryCommand.setChangeBase(mCursor);
+        // loaded data is shown to the user, so it is not queued behind background work
+        mQueryCommand.executeAsync(mToken, this, Priority.USER_VISIBLE);
     }
 
     @Override
@@ -67,6 +75,8 @@ public class EntityCursorLoader<E> extends Loader<EntityCursor<E>> implements Qu
             mCursor.close();
             mCursor = null;
         }
+        mQueryCommand.clearIdentityMap();
+        mQueryCommand.setChangeBase(null);
     }
 
     @Override
@@ -109,7 +119,8 @@ public class EntityCursorLoader<E> extends Loader<EntityCursor<E>> implements Qu
     }
 
     private void dispatchResult(EntityCursor<E> cursor) {
-        if (isAbandoned()) {
+        // a cancelled query completes without a cursor
+        if (isAbandoned() || (cursor == null)) {
             closeCursor(cursor);
             return;
         }
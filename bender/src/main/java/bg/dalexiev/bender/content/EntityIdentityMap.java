@@ -0,0 +1,117 @@
+package bg.dalexiev.bender.content;
+
+import android.database.Cursor;
+import android.provider.BaseColumns;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.os.CancellationSignal;
+import android.support.v4.os.OperationCanceledException;
+import android.support.v4.util.LongSparseArray;
+
+/**
+ * Keeps the entities mapped by the last execution of a query, keyed by their {@link BaseColumns#_ID} and version, so
+ * the next execution of the same query can reuse the entities of unchanged rows.
+ * <p>
+ * Only the entities of the last mapped result are kept. A row is remapped if its id has not been seen in the last
+ * result, or if the value of its version column has changed.
+ * </p>
+ *
+ * @author danail.alexiev
+ * @since 1.2.0
+ */
+final class EntityIdentityMap<E> {
+
+    private final String mVersionColumn;
+
+    private LongSparseArray<Entry<E>> mEntries;
+    private int mReusedCount;
+
+    /**
+     * @param versionColumn required. The name of an integer column, which value changes every time a row is modified.
+     *                      For example a version counter or a last - modified timestamp.
+     */
+    EntityIdentityMap(@NonNull String versionColumn) {
+        mVersionColumn = versionColumn;
+        mEntries = new LongSparseArray<>();
+    }
+
+    @NonNull
+    String getVersionColumn() {
+        return mVersionColumn;
+    }
+
+    /**
+     * Map all rows of {@code cursor} to a dense array, indexed by cursor position, reusing the entities of the rows
+     * that haven't changed since the last call. Rows without an id are always mapped.
+     *
+     * @param cursor             required. The cursor to map, positioned before its first row.
+     * @param rowMapper          required. The row mapper, bound to {@code cursor}.
+     * @param cancellationSignal optional. A signal, checked before each row is mapped. A cancelled call keeps the
+     *                           entities of the last completed one.
+     * @return an array of the mapped entities.
+     * @throws IllegalArgumentException   if {@code cursor} doesn't contain the id or the version column.
+     * @throws OperationCanceledException if {@code cancellationSignal} has been cancelled.
+     */
+    @NonNull
+    synchronized Object[] mapRows(@NonNull Cursor cursor, @NonNull BoundRowMapper<E> rowMapper,
+                                  @Nullable CancellationSignal cancellationSignal) {
+        final int idIndex = cursor.getColumnIndexOrThrow(BaseColumns._ID);
+        final int versionIndex = cursor.getColumnIndexOrThrow(mVersionColumn);
+
+        final Object[] entities = new Object[cursor.getCount()];
+        final LongSparseArray<Entry<E>> entries = new LongSparseArray<>(entities.length);
+        int reusedCount = 0;
+        while (cursor.moveToNext()) {
+            DefaultCursorMapper.throwIfCanceled(cancellationSignal);
+            final int position = cursor.getPosition();
+            if (cursor.isNull(idIndex)) {
+                entities[position] = rowMapper.map(position);
+                continue;
+            }
+
+            final long id = cursor.getLong(idIndex);
+            final long version = cursor.getLong(versionIndex);
+            Entry<E> entry = mEntries.get(id);
+            if ((entry != null) && (entry.mVersion == version)) {
+                reusedCount++;
+            } else {
+                entry = new Entry<>(version, rowMapper.map(position));
+            }
+
+            entries.put(id, entry);
+            entities[position] = entry.mEntity;
+        }
+
+        // the entities of rows, which are no longer part of the result, are released
+        mEntries = entries;
+        mReusedCount = reusedCount;
+        return entities;
+    }
+
+    /**
+     * @return the number of entities reused by the last call to {@link #mapRows(Cursor, BoundRowMapper,
+     * CancellationSignal)}.
+     */
+    synchronized int getReusedCount() {
+        return mReusedCount;
+    }
+
+    /**
+     * Release all kept entities. The next result is mapped from scratch.
+     */
+    synchronized void clear() {
+        mEntries = new LongSparseArray<>();
+        mReusedCount = 0;
+    }
+
+    private static final class Entry<E> {
+
+        final long mVersion;
+        final E mEntity;
+
+        Entry(long version, E entity) {
+            mVersion = version;
+            mEntity = entity;
+        }
+    }
+}
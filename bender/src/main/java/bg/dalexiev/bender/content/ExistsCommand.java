@@ -0,0 +1,65 @@
+package bg.dalexiev.bender.content;
+
+import android.content.ContentResolver;
+import android.os.Bundle;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+
+import bg.dalexiev.bender.db.SqlSelectionBuilder;
+
+/**
+ * Checks if a content URI has any rows, matching a selection. The check is performed by the {@link
+ * DatabaseContentProvider}, stops at the first matching row and no cursor is created.
+ *
+ * @author danail.alexiev
+ * @see DatabaseContentProvider#METHOD_EXISTS
+ * @since 1.2.0
+ */
+public class ExistsCommand extends BaseAggregateCommand<Boolean, ExistsCommand.Callback, ExistsCommand> {
+
+    ExistsCommand(@NonNull ContentResolver contentResolver, @Nullable CommandExecutor executor) {
+        super(contentResolver, executor);
+    }
+
+    @VisibleForTesting
+    ExistsCommand(WorkerHandler workerHandler, ContentResolver contentResolver, SqlSelectionBuilder selectionBuilder) {
+        super(workerHandler, contentResolver, selectionBuilder);
+    }
+
+    @NonNull
+    @Override
+    String getMethod() {
+        return DatabaseContentProvider.METHOD_EXISTS;
+    }
+
+    @NonNull
+    @Override
+    Boolean getResult(@NonNull Bundle result) {
+        return result.getBoolean(DatabaseContentProvider.EXTRA_RESULT);
+    }
+
+    @Override
+    protected void notifyCallback(@NonNull Callback callback, int token, @Nullable Boolean result) {
+        callback.onExistsComplete(token, (result != null) && result);
+    }
+
+    /**
+     * Defines the behaviour of the exists command callback.
+     *
+     * @author danail.alexiev
+     * @since 1.2.0
+     */
+    public interface Callback extends BaseResolverCommand.Callback {
+
+        /**
+         * Called when an exists check has been completed.
+         *
+         * @param token  the identifier of the completed command.
+         * @param exists {@code true} if at least one row matches.
+         * @since 1.2.0
+         */
+        void onExistsComplete(int token, boolean exists);
+
+    }
+}
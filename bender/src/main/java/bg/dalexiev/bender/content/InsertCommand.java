@@ -22,8 +22,8 @@ public class InsertCommand extends BaseResolverCommand<Uri, InsertCommand.Callba
     private final OnConflictBuilder mOnConflictBuilder;
     private final ContentValues mReference;
 
-    InsertCommand(ContentResolver contentResolver) {
-        super(contentResolver);
+    InsertCommand(ContentResolver contentResolver, @Nullable CommandExecutor executor) {
+        super(contentResolver, executor);
         mContentValuesBuilder = new ContentValuesBuilder();
         mOnConflictBuilder = new OnConflictBuilder();
         mReference = new ContentValues();
@@ -0,0 +1,27 @@
+package bg.dalexiev.bender.content;
+
+/**
+ * The priority of an asynchronous command execution. Queued executions with a higher priority are started first by a
+ * {@link CommandExecutor}. Commands without an executor run their executions in submission order.
+ *
+ * @author danail.alexiev
+ * @see BaseResolverCommand#executeAsync(int, BaseResolverCommand.Callback, Priority)
+ * @since 1.2.0
+ */
+public enum Priority {
+
+    /**
+     * Work the user is waiting for, like the query that draws the current screen.
+     */
+    USER_VISIBLE,
+
+    /**
+     * The priority of executions that don't specify one.
+     */
+    DEFAULT,
+
+    /**
+     * Work nobody is waiting for, like a sync or an export.
+     */
+    BACKGROUND
+}
@@ -0,0 +1,322 @@
+package bg.dalexiev.bender.content;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.os.CancellationSignal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lets identical queries, which are executed at the same time, share a single execution.
+ * <p>
+ * The first execution of a query runs it. Identical executions, started before it completes, don't run the query and
+ * don't hold their thread either - they register a {@link Continuation}, which is called with the result once the
+ * running execution completes. Each of them gets its own {@link EntityCursor} over the shared result and the
+ * underlying cursor is closed after all of them have been closed. If the running execution fails or gets cancelled,
+ * the waiting executions are asked to run the query on their own.
+ * </p>
+ *
+ * @author danail.alexiev
+ * @since 1.2.0
+ */
+final class QueryCoalescer {
+
+    private final Map<Key, Execution> mExecutions;
+
+    QueryCoalescer() {
+        mExecutions = new HashMap<>();
+    }
+
+    /**
+     * Run {@code query} on the current thread, unless an identical query is already running, in which case the current
+     * thread waits for its result to be shared.
+     *
+     * @param key                required. Identifies the query.
+     * @param cancellationSignal required. The signal the execution is cancelled with.
+     * @param query              required. Runs the query.
+     * @return the result of the query, or {@code null} if the query has no result or this execution has been
+     * cancelled.
+     */
+    @Nullable
+    <E> EntityCursor<E> execute(@NonNull Key key, @NonNull CancellationSignal cancellationSignal,
+                                @NonNull Query<E> query) {
+        final BlockingContinuation<E> continuation = new BlockingContinuation<>();
+        execute(key, cancellationSignal, query, continuation);
+        return continuation.await() ? continuation.mResult : query.execute();
+    }
+
+    /**
+     * Run {@code query} on the current thread, unless an identical query is already running, in which case {@code
+     * continuation} is registered on it and this method returns immediately.
+     *
+     * @param key                required. Identifies the query.
+     * @param cancellationSignal required. The signal the execution is cancelled with. A cancelled waiting execution
+     *                           is completed with a {@code null} result right away.
+     * @param query              required. Runs the query. If it throws, the exception is thrown by this method and
+     *                           {@code continuation} is not called.
+     * @param continuation       required. Called with the result on the current thread, if the query is run here, or
+     *                           later on the thread of the running execution.
+     */
+    <E> void execute(@NonNull Key key, @NonNull CancellationSignal cancellationSignal, @NonNull Query<E> query,
+                     @NonNull Continuation<E> continuation) {
+        final Execution execution;
+        final Waiter waiter;
+        synchronized (mExecutions) {
+            final Execution runningExecution = mExecutions.get(key);
+            if (runningExecution == null) {
+                execution = new Execution(Thread.currentThread());
+                mExecutions.put(key, execution);
+                waiter = null;
+            } else if (runningExecution.mThread == Thread.currentThread()) {
+                // a query executed while mapping the result of the same query can't wait for itself
+                execution = null;
+                waiter = null;
+            } else {
+                execution = runningExecution;
+                waiter = new Waiter(cancellationSignal, continuation);
+                execution.mWaiters.add(waiter);
+            }
+        }
+
+        if (waiter != null) {
+            // registered outside of the lock, since it is called right away if the signal has already been cancelled
+            cancellationSignal.setOnCancelListener(new CancellationSignal.OnCancelListener() {
+                @Override
+                public void onCancel() {
+                    final boolean isRemoved;
+                    synchronized (mExecutions) {
+                        isRemoved = execution.mWaiters.remove(waiter);
+                    }
+
+                    if (isRemoved) {
+                        waiter.mContinuation.onResult(null);
+                    }
+                }
+            });
+            return;
+        }
+
+        if (execution == null) {
+            continuation.onResult(query.execute());
+            return;
+        }
+
+        EntityCursor<E> result = null;
+        boolean isCompleted = false;
+        try {
+            result = query.execute();
+            isCompleted = !cancellationSignal.isCanceled();
+        } finally {
+            final List<Waiter> waiters;
+            synchronized (mExecutions) {
+                mExecutions.remove(key);
+                waiters = new ArrayList<>(execution.mWaiters);
+                execution.mWaiters.clear();
+            }
+
+            if (!isCompleted) {
+                for (Waiter failedWaiter : waiters) {
+                    failedWaiter.mContinuation.onRetry();
+                }
+            } else if ((result != null) && !waiters.isEmpty()) {
+                final SharedCursor sharedCursor = new SharedCursor(result.getWrappedCursor(), waiters.size() + 1);
+                for (Waiter completedWaiter : waiters) {
+                    completedWaiter.complete(result, sharedCursor.newShare());
+                }
+                result = result.share(sharedCursor.newShare());
+            } else {
+                for (Waiter completedWaiter : waiters) {
+                    completedWaiter.mContinuation.onResult(null);
+                }
+            }
+        }
+
+        continuation.onResult(result);
+    }
+
+    /**
+     * Continues an execution of a query once its result is known.
+     */
+    interface Continuation<E> {
+
+        /**
+         * Called with the result of the execution.
+         *
+         * @param result the result or {@code null}, if the query has no result or the execution has been cancelled.
+         */
+        void onResult(@Nullable EntityCursor<E> result);
+
+        /**
+         * Called if the identical execution this one was waiting for has failed or has been cancelled, so the query
+         * has to be run again.
+         */
+        void onRetry();
+    }
+
+    /**
+     * Runs a query.
+     */
+    interface Query<E> {
+
+        @Nullable
+        EntityCursor<E> execute();
+    }
+
+    /**
+     * Identifies a query by everything that affects its result.
+     */
+    static final class Key {
+
+        private final ContentResolver mContentResolver;
+        private final Uri mUri;
+        private final String[] mProjection;
+        private final String mSelection;
+        private final String[] mSelectionArgs;
+        private final String mOrderBy;
+        private final Object mMapper;
+
+        /**
+         * @param mapper required. The mapper used to transform the rows. Mappers are compared with {@link
+         *               Object#equals(Object)}, so different instances are only shared if the mapper opts in by
+         *               overriding it.
+         */
+        Key(@NonNull ContentResolver contentResolver, @Nullable Uri uri, @Nullable String[] projection,
+            @Nullable String selection, @Nullable String[] selectionArgs, @Nullable String orderBy,
+            @NonNull Object mapper) {
+            mContentResolver = contentResolver;
+            mUri = uri;
+            mProjection = projection;
+            mSelection = selection;
+            mSelectionArgs = selectionArgs;
+            mOrderBy = orderBy;
+            mMapper = mapper;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if ((o == null) || (getClass() != o.getClass())) {
+                return false;
+            }
+
+            final Key key = (Key) o;
+            return (mContentResolver == key.mContentResolver)
+                    && equal(mUri, key.mUri)
+                    && Arrays.equals(mProjection, key.mProjection)
+                    && equal(mSelection, key.mSelection)
+                    && Arrays.equals(mSelectionArgs, key.mSelectionArgs)
+                    && equal(mOrderBy, key.mOrderBy)
+                    && mMapper.equals(key.mMapper);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = System.identityHashCode(mContentResolver);
+            result = 31 * result + ((mUri != null) ? mUri.hashCode() : 0);
+            result = 31 * result + Arrays.hashCode(mProjection);
+            result = 31 * result + ((mSelection != null) ? mSelection.hashCode() : 0);
+            result = 31 * result + Arrays.hashCode(mSelectionArgs);
+            result = 31 * result + ((mOrderBy != null) ? mOrderBy.hashCode() : 0);
+            result = 31 * result + mMapper.hashCode();
+            return result;
+        }
+
+        private static boolean equal(@Nullable Object first, @Nullable Object second) {
+            return (first == null) ? (second == null) : first.equals(second);
+        }
+    }
+
+    private static final class Execution {
+
+        final Thread mThread;
+        final List<Waiter> mWaiters;
+
+        Execution(@NonNull Thread thread) {
+            mThread = thread;
+            mWaiters = new ArrayList<>();
+        }
+    }
+
+    private static final class Waiter {
+
+        final CancellationSignal mCancellationSignal;
+        @SuppressWarnings("rawtypes") // the waiters of an execution expect the same type of entities
+        final Continuation mContinuation;
+
+        Waiter(@NonNull CancellationSignal cancellationSignal, @NonNull Continuation<?> continuation) {
+            mCancellationSignal = cancellationSignal;
+            mContinuation = continuation;
+        }
+
+        @SuppressWarnings("unchecked")
+        void complete(@NonNull EntityCursor<?> result, @NonNull Cursor share) {
+            // the share is reserved for this waiter, so it is taken even if the waiter has been cancelled meanwhile
+            if (mCancellationSignal.isCanceled()) {
+                share.close();
+                mContinuation.onResult(null);
+                return;
+            }
+
+            mContinuation.onResult(result.share(share));
+        }
+    }
+
+    /**
+     * Blocks the thread of a synchronous execution until its continuation is called.
+     */
+    private static final class BlockingContinuation<E> implements Continuation<E> {
+
+        private boolean mIsDone;
+        private boolean mIsRetry;
+        private boolean mIsAbandoned;
+        private EntityCursor<E> mResult;
+
+        @Override
+        public synchronized void onResult(@Nullable EntityCursor<E> result) {
+            if (mIsAbandoned) {
+                if (result != null) {
+                    result.close();
+                }
+                return;
+            }
+
+            mResult = result;
+            mIsDone = true;
+            notifyAll();
+        }
+
+        @Override
+        public synchronized void onRetry() {
+            mIsRetry = true;
+            mIsDone = true;
+            notifyAll();
+        }
+
+        /**
+         * @return {@code true} if the result has been set, {@code false} if the query has to be run again.
+         */
+        synchronized boolean await() {
+            while (!mIsDone) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    // a result delivered later is closed, since nobody will take it
+                    mIsAbandoned = true;
+                    return true;
+                }
+            }
+
+            return !mIsRetry;
+        }
+    }
+}
@@ -3,14 +3,26 @@ package bg.dalexiev.bender.content;
 import android.annotation.SuppressLint;
 import android.content.ContentResolver;
 import android.database.Cursor;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.provider.BaseColumns;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.annotation.VisibleForTesting;
+import android.support.v4.os.CancellationSignal;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 import bg.dalexiev.bender.db.OrderBy;
 import bg.dalexiev.bender.db.Predicate;
 import bg.dalexiev.bender.db.SqlSelectionBuilder;
 import bg.dalexiev.bender.mapper.CursorMapper;
+import bg.dalexiev.bender.mapper.EntityConsumer;
 import bg.dalexiev.bender.mapper.RowMapper;
 import bg.dalexiev.bender.util.Preconditions;
 
@@ -23,20 +35,44 @@ import bg.dalexiev.bender.util.Preconditions;
 public class QueryCommand<R>
         extends BaseResolverCommand<EntityCursor<R>, QueryCommand.Callback<R>, QueryCommand<R>> {
 
+    private static final QueryCoalescer sCoalescer = new QueryCoalescer();
+
     private String[] mProjection;
     private final SqlSelectionBuilder mSelectionBuilder;
 
     private CursorMapper<R> mCursorMapper;
+    private RowMapper<R> mRowMapper;
+
+    private int mLimit;
+    private int mOffset;
+
+    private int mMaxCachedEntities;
+    private int mPrefetchWindow;
+
+    private EntityIdentityMap<R> mIdentityMap;
+
+    private boolean mIsTrackingChanges;
+    private volatile EntityCursor<R> mChangeBase;
+
+    private volatile boolean mIsStreamCancelled;
+    private volatile ChunkDispatcher<R> mStreamDispatcher;
+    private volatile CancellationSignal mStreamCancellationSignal;
+    // cancels the running synchronous execution. The asynchronous ones get their own signals
+    private volatile CancellationSignal mCancellationSignal;
+
+    private boolean mIsCoalescing;
 
-    QueryCommand(ContentResolver contentResolver) {
-        super(contentResolver);
+    QueryCommand(ContentResolver contentResolver, @Nullable CommandExecutor executor) {
+        super(contentResolver, executor);
         mSelectionBuilder = new SqlSelectionBuilder();
+        mLimit = -1;
     }
 
     @VisibleForTesting
     QueryCommand(WorkerHandler workerHandler, ContentResolver contentResolver, SqlSelectionBuilder selectionBuilder) {
         super(workerHandler, contentResolver);
         mSelectionBuilder = selectionBuilder;
+        mLimit = -1;
     }
 
     /**
@@ -166,6 +202,76 @@ public class QueryCommand<R>
         return this;
     }
 
+    /**
+     * Limit the number of rows in the result of this command.
+     *
+     * <p>
+     * The limit is sent to the content provider using the {@link DatabaseContentProvider#PARAM_LIMIT} URI parameter.
+     * </p>
+     *
+     * @param limit the maximum number of rows to return. Must not be negative.
+     * @return the current instance
+     * @throws IllegalArgumentException if {@code limit} is negative
+     * @since 1.2.0
+     */
+    @NonNull
+    public QueryCommand<R> limit(int limit) {
+        Preconditions.argumentCondition(limit < 0, "Limit can't be negative");
+
+        mLimit = limit;
+
+        return this;
+    }
+
+    /**
+     * Skip a number of rows from the beginning of the result of this command.
+     *
+     * <p>
+     * The offset is sent to the content provider using the {@link DatabaseContentProvider#PARAM_OFFSET} URI
+     * parameter. Large offsets still make the database step over all skipped rows, consider using {@link
+     * #after(OrderBy, String)} for deep pagination.
+     * </p>
+     *
+     * @param offset the number of rows to skip. Must not be negative.
+     * @return the current instance
+     * @throws IllegalArgumentException if {@code offset} is negative
+     * @since 1.2.0
+     */
+    @NonNull
+    public QueryCommand<R> offset(int offset) {
+        Preconditions.argumentCondition(offset < 0, "Offset can't be negative");
+
+        mOffset = offset;
+
+        return this;
+    }
+
+    /**
+     * Use keyset pagination - order the result by {@code orderBy} and return only the rows after {@code lastValue}.
+     *
+     * <p>
+     * Pass the value of the ordering column in the last row of the previous page as {@code lastValue} and combine
+     * this with {@link #limit(int)} to fetch the next page. Unlike {@link #offset(int)}, the database seeks directly to
+     * the first row of the page when the ordering column is indexed. The ordering column should be unique, otherwise
+     * rows sharing the last value are skipped.
+     * </p>
+     *
+     * @param orderBy   required. The ordering of the result.
+     * @param lastValue required. The value of the ordering column in the last row of the previous page.
+     * @return the current instance
+     * @throws IllegalArgumentException if {@code orderBy} or {@code lastValue} is {@code null}
+     * @since 1.2.0
+     */
+    @NonNull
+    public QueryCommand<R> after(@NonNull OrderBy orderBy, @NonNull String lastValue) {
+        Preconditions.argumentNotNull(orderBy, "Order by is required");
+
+        mSelectionBuilder.where(orderBy.after(lastValue));
+        mSelectionBuilder.orderBy(orderBy);
+
+        return this;
+    }
+
     /**
      * Specify the row mapper used to handle the query result.
      *
@@ -187,6 +293,7 @@ public class QueryCommand<R>
         Preconditions.stateCondition(mCursorMapper != null, "A mapper has already been set");
         Preconditions.argumentNotNull(rowMapper, "Row mapper is required");
 
+        mRowMapper = rowMapper;
         mCursorMapper = new DefaultCursorMapper<>(rowMapper);
 
         return this;
@@ -218,6 +325,130 @@ public class QueryCommand<R>
         return this;
     }
 
+    /**
+     * Map the rows of the result lazily, when their entities are requested with {@link EntityCursor#getEntity()},
+     * instead of mapping the whole result when the query is executed.
+     *
+     * <p>
+     * Use this for large results, of which only a small part is displayed at a time. Lazy mapping requires a row
+     * mapper, set with {@link #useRowMapper(RowMapper)}.
+     * </p>
+     *
+     * @param maxCachedEntities the maximum number of mapped entities the result cursor keeps. Must be positive.
+     * @param prefetchWindow    the number of rows to map ahead of the scroll direction, when a requested entity is
+     *                          not cached. Must not be negative.
+     * @return the current instance
+     * @throws IllegalArgumentException if {@code maxCachedEntities} is not positive or {@code prefetchWindow} is
+     *                                  negative.
+     * @since 1.2.0
+     */
+    @NonNull
+    public QueryCommand<R> mapLazily(int maxCachedEntities, int prefetchWindow) {
+        Preconditions.argumentCondition(maxCachedEntities <= 0, "Max cached entities must be positive");
+        Preconditions.argumentCondition(prefetchWindow < 0, "Prefetch window can't be negative");
+
+        mMaxCachedEntities = maxCachedEntities;
+        mPrefetchWindow = prefetchWindow;
+
+        return this;
+    }
+
+    /**
+     * Reuse the entities of unchanged rows when the query is executed again, instead of mapping every row from
+     * scratch.
+     *
+     * <p>
+     * The command keeps the entities of its last result, keyed by {@link BaseColumns#_ID}. On the next
+     * execution, a row with a known id and an unchanged value of {@code versionColumn} gets the entity of the last
+     * result, so only the inserted and modified rows are mapped. This makes reloads, triggered by content changes, as
+     * cheap as the change itself. Both columns must be a part of the projection and the reused entities must not be
+     * modified. Requires a row mapper, set with {@link #useRowMapper(RowMapper)}, and can't be combined with {@link
+     * #mapLazily(int, int)}.
+     * </p>
+     *
+     * @param versionColumn required. The name of an integer column, which value changes every time a row is
+     *                      modified. For example a version counter or a last - modified timestamp.
+     * @return the current instance
+     * @throws IllegalArgumentException if {@code versionColumn} is {@code null}.
+     * @see EntityCursorLoader
+     * @see SupportEntityCursorLoader
+     * @since 1.2.0
+     */
+    @NonNull
+    public QueryCommand<R> preserveIdentity(@NonNull String versionColumn) {
+        Preconditions.argumentNotNull(versionColumn, "Version column is required");
+
+        mIdentityMap = new EntityIdentityMap<>(versionColumn);
+
+        return this;
+    }
+
+    /**
+     * Compute the changes between consecutive results of the query, when it is executed by an {@link
+     * EntityCursorLoader} or a {@link SupportEntityCursorLoader}.
+     *
+     * <p>
+     * The changes to the previously delivered result are computed on the worker thread, matching rows by {@link
+     * BaseColumns#_ID}, and are available through {@link EntityCursor#getChanges()} of the delivered cursor. Use them
+     * to update only the affected items of a list, instead of rebinding all of them. A row is reported as changed if its
+     * new entity is not equal to the old one, so implement {@code equals()} in your entities or combine this with
+     * {@link #preserveIdentity(String)}. The id column must be a part of the projection. Requires a row mapper, set with
+     * {@link #useRowMapper(RowMapper)}, and can't be combined with {@link #mapLazily(int, int)}.
+     * </p>
+     *
+     * @return the current instance
+     * @see EntityChanges
+     * @since 1.2.0
+     */
+    @NonNull
+    public QueryCommand<R> trackChanges() {
+        mIsTrackingChanges = true;
+
+        return this;
+    }
+
+    /**
+     * Share the execution of identical queries, which run at the same time.
+     *
+     * <p>
+     * If an identical query is already running when this command is executed, the command waits for its result
+     * instead of running the query again. An asynchronous execution doesn't hold a worker thread while it waits - it
+     * is completed by the running query. Queries are identical if they are executed against the same {@code
+     * ContentResolver} with the same URI, projection, selection, selection arguments and ordering, and use the same
+     * mapper instance, or mappers that are equal. Each caller gets its own {@link EntityCursor}, but the mapped
+     * entities are shared, so they must not be modified. The underlying cursor is closed once all callers have closed
+     * their results. Can't be combined with {@link #mapLazily(int, int)}, {@link #preserveIdentity(String)} or {@link
+     * #trackChanges()}.
+     * </p>
+     *
+     * @return the current instance
+     * @since 1.2.0
+     */
+    @NonNull
+    public QueryCommand<R> coalesce() {
+        mIsCoalescing = true;
+
+        return this;
+    }
+
+    /**
+     * Set the result, the next result is compared to, if changes are tracked.
+     *
+     * @param changeBase the previously delivered result. Can be {@code null}.
+     */
+    void setChangeBase(@Nullable EntityCursor<R> changeBase) {
+        mChangeBase = changeBase;
+    }
+
+    /**
+     * Release the entities kept for {@link #preserveIdentity(String)}, so the next result is mapped from scratch.
+     */
+    void clearIdentityMap() {
+        if (mIdentityMap != null) {
+            mIdentityMap.clear();
+        }
+    }
+
     @Override
     protected void validateStatePreExecute() {
         super.validateStatePreExecute();
@@ -225,21 +456,369 @@ public class QueryCommand<R>
         Preconditions.stateNotNull(mProjection, "No projection has been set. Did you call setProjection()?");
         Preconditions.stateNotNull(mCursorMapper,
                 "No mapper has been set. Did you call setRowMapper() or setCursorMapper()?");
+        Preconditions.stateCondition(isLazy() && (mRowMapper == null),
+                "Lazy mapping requires a row mapper. Did you call useRowMapper()?");
+        if (mIdentityMap != null) {
+            Preconditions.stateCondition(mRowMapper == null,
+                    "Preserving identity requires a row mapper. Did you call useRowMapper()?");
+            Preconditions.stateCondition(isLazy(), "Preserving identity can't be combined with lazy mapping");
+            Preconditions.stateCondition(!contains(mProjection, BaseColumns._ID),
+                    "Preserving identity requires " + BaseColumns._ID + " in the projection");
+            Preconditions.stateCondition(!contains(mProjection, mIdentityMap.getVersionColumn()),
+                    "Preserving identity requires " + mIdentityMap.getVersionColumn() + " in the projection");
+        }
+        if (mIsTrackingChanges) {
+            Preconditions.stateCondition(mRowMapper == null,
+                    "Tracking changes requires a row mapper. Did you call useRowMapper()?");
+            Preconditions.stateCondition(isLazy(), "Tracking changes can't be combined with lazy mapping");
+            Preconditions.stateCondition(!contains(mProjection, BaseColumns._ID),
+                    "Tracking changes requires " + BaseColumns._ID + " in the projection");
+        }
+        if (mIsCoalescing) {
+            Preconditions.stateCondition(isLazy(), "Coalescing can't be combined with lazy mapping");
+            Preconditions.stateCondition(mIdentityMap != null, "Coalescing can't be combined with preserving identity");
+            Preconditions.stateCondition(mIsTrackingChanges, "Coalescing can't be combined with tracking changes");
+        }
+    }
+
+    private static boolean contains(@NonNull String[] projection, @NonNull String column) {
+        for (String projectedColumn : projection) {
+            if (column.equalsIgnoreCase(projectedColumn)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isLazy() {
+        return mMaxCachedEntities > 0;
+    }
+
+    /**
+     * Execute the query on the current thread and stream its result to {@code consumer}.
+     *
+     * <p>
+     * Each row is mapped and handed to the consumer as soon as the cursor moves to it. The entities are not kept, so
+     * the memory used is bounded by a single cursor window, instead of the whole result set. Any mapper set on this
+     * command is ignored.
+     * </p>
+     *
+     * @param rowMapper required. The row mapper used to transform rows into objects.
+     * @param consumer  required. The consumer to hand the mapped entities to.
+     * @return the number of streamed rows.
+     * @throws IllegalArgumentException if {@code rowMapper} or {@code consumer} is {@code null}.
+     * @throws IllegalStateException    if no URI or projection has been set.
+     * @since 1.2.0
+     */
+    public int stream(@NonNull RowMapper<R> rowMapper, @NonNull EntityConsumer<R> consumer) {
+        Preconditions.argumentNotNull(rowMapper, "Row mapper is required");
+        Preconditions.argumentNotNull(consumer, "Consumer is required");
+        validateStatePreStream();
+
+        mIsStreamCancelled = false;
+        return streamRows(rowMapper, consumer);
+    }
+
+    private int streamRows(@NonNull RowMapper<R> rowMapper, @NonNull EntityConsumer<R> consumer) {
+        final CancellationSignal cancellationSignal = new CancellationSignal();
+        mStreamCancellationSignal = cancellationSignal;
+        // cancelled before the signal has been set
+        if (mIsStreamCancelled) {
+            return 0;
+        }
+
+        Cursor cursor = null;
+        int rowCount = 0;
+        try {
+            cursor = query(getContentResolver(), cancellationSignal);
+            if (cursor == null) {
+                return 0;
+            }
+
+            final BoundRowMapper<R> boundRowMapper = new BoundRowMapper<>(rowMapper, cursor);
+            while (!mIsStreamCancelled && cursor.moveToNext()) {
+                consumer.accept(boundRowMapper.map(cursor.getPosition()));
+                rowCount++;
+            }
+            return rowCount;
+        } catch (RuntimeException e) {
+            // the query and filling the cursor window throw when cancelled
+            if (!cancellationSignal.isCanceled()) {
+                throw e;
+            }
+            return rowCount;
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+    }
+
+    /**
+     * Execute the query on a worker thread and stream its result to {@code callback} in chunks.
+     *
+     * <p>
+     * The rows are mapped on the worker thread. Every {@code chunkSize} entities are delivered to the callback on the
+     * current thread and are not kept after that. At most one chunk waits for the callback - the worker thread does
+     * not hand over the next chunk until the previous one has been delivered, so a slow callback slows down the
+     * streaming, instead of buffering the whole result. Streaming stops early if the command is cancelled with {@link
+     * #cancel()} - no chunks are delivered after that and {@link StreamCallback#onStreamComplete(int, int)} is not
+     * called.
+     * </p>
+     *
+     * @param token     a unique identifier for the command.
+     * @param rowMapper required. The row mapper used to transform rows into objects.
+     * @param chunkSize the maximum number of entities in a delivered chunk. Must be positive.
+     * @param callback  required. The callback to deliver the chunks to. Only weakly referenced.
+     * @throws IllegalArgumentException if {@code rowMapper} or {@code callback} is {@code null} or {@code chunkSize}
+     *                                  is not positive.
+     * @throws IllegalStateException    if no URI or projection has been set.
+     * @since 1.2.0
+     */
+    public void streamAsync(int token, @NonNull final RowMapper<R> rowMapper, final int chunkSize,
+                            @NonNull StreamCallback<R> callback) {
+        Preconditions.argumentNotNull(rowMapper, "Row mapper is required");
+        Preconditions.argumentCondition(chunkSize <= 0, "Chunk size must be positive");
+        Preconditions.argumentNotNull(callback, "Callback is required");
+        validateStatePreStream();
+
+        mIsStreamCancelled = false;
+        final Handler callerHandler = new Handler();
+        final ChunkDispatcher<R> dispatcher = new ChunkDispatcher<>(callerHandler, token, chunkSize, callback);
+        mStreamDispatcher = dispatcher;
+        executeOnWorkerThread(token, new Runnable() {
+            @Override
+            public void run() {
+                final int rowCount = streamRows(rowMapper, dispatcher);
+                dispatcher.complete(rowCount);
+            }
+        });
+    }
+
+    private void validateStatePreStream() {
+        Preconditions.stateNotNull(getUri(), "Uri not set. Did you call onUri()?");
+        Preconditions.stateNotNull(mProjection, "No projection has been set. Did you call setProjection()?");
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Stops a running stream before its next row. A running query or stream is cancelled in the content provider on
+     * API 16+. The rows of a cancelled query stop being mapped - the execution completes with a {@code null} result.
+     * </p>
+     */
+    @Override
+    public void cancel() {
+        super.cancel();
+        mIsStreamCancelled = true;
+
+        final ChunkDispatcher<R> streamDispatcher = mStreamDispatcher;
+        if (streamDispatcher != null) {
+            streamDispatcher.cancel();
+        }
+
+        final CancellationSignal streamCancellationSignal = mStreamCancellationSignal;
+        if (streamCancellationSignal != null) {
+            streamCancellationSignal.cancel();
+        }
+
+        final CancellationSignal cancellationSignal = mCancellationSignal;
+        if (cancellationSignal != null) {
+            cancellationSignal.cancel();
+        }
+    }
+
+    @Override
+    protected boolean isReadOnly() {
+        return true;
+    }
+
+    @Override
+    protected void releaseResult(@Nullable EntityCursor<R> result) {
+        if (result != null) {
+            result.close();
+        }
     }
 
     @Override
     @Nullable
-    protected EntityCursor<R> executeResolverCommand(@NonNull ContentResolver contentResolver) {
-        @SuppressLint("Recycle") final Cursor cursor = contentResolver
-                .query(getUri(), mProjection, mSelectionBuilder.getSelection(), mSelectionBuilder.getSelectionArgs(),
-                        mSelectionBuilder.getOrderBy());
-        if (cursor == null) {
+    protected EntityCursor<R> executeResolverCommand(@NonNull final ContentResolver contentResolver) {
+        final CancellationSignal cancellationSignal = new CancellationSignal();
+        mCancellationSignal = cancellationSignal;
+
+        if (!mIsCoalescing) {
+            return executeQuery(contentResolver, cancellationSignal);
+        }
+
+        return sCoalescer.execute(newCoalescingKey(contentResolver), cancellationSignal, new QueryCoalescer.Query<R>() {
+            @Override
+            public EntityCursor<R> execute() {
+                return executeQuery(contentResolver, cancellationSignal);
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The query is cancelled with the signal of the execution. A {@link #coalesce() coalescing} execution, which joins
+     * an identical running query, completes when that query completes, without holding the worker thread until then.
+     * </p>
+     */
+    @Override
+    protected void executeResolverCommandAsync(@NonNull final ContentResolver contentResolver,
+                                               @NonNull final CancellationSignal cancellationSignal,
+                                               @NonNull final Completion<EntityCursor<R>> completion) {
+        if (!mIsCoalescing) {
+            final EntityCursor<R> result;
+            try {
+                result = executeQuery(contentResolver, cancellationSignal);
+            } catch (RuntimeException e) {
+                completion.onError(e);
+                return;
+            }
+
+            completion.onComplete(result);
+            return;
+        }
+
+        final QueryCoalescer.Query<R> query = new QueryCoalescer.Query<R>() {
+            @Override
+            public EntityCursor<R> execute() {
+                return executeQuery(contentResolver, cancellationSignal);
+            }
+        };
+        try {
+            sCoalescer.execute(newCoalescingKey(contentResolver), cancellationSignal, query,
+                    new QueryCoalescer.Continuation<R>() {
+                        @Override
+                        public void onResult(@Nullable EntityCursor<R> result) {
+                            completion.onComplete(result);
+                        }
+
+                        @Override
+                        public void onRetry() {
+                            // called on the thread of the failed query, so the query is run again on a worker thread
+                            continueOnWorkerThread(new Runnable() {
+                                @Override
+                                public void run() {
+                                    final EntityCursor<R> result;
+                                    try {
+                                        result = query.execute();
+                                    } catch (RuntimeException e) {
+                                        completion.onError(e);
+                                        return;
+                                    }
+
+                                    completion.onComplete(result);
+                                }
+                            });
+                        }
+                    });
+        } catch (RuntimeException e) {
+            completion.onError(e);
+        }
+    }
+
+    @NonNull
+    private QueryCoalescer.Key newCoalescingKey(@NonNull ContentResolver contentResolver) {
+        return new QueryCoalescer.Key(contentResolver, getQueryUri(), mProjection, mSelectionBuilder.getSelection(),
+                mSelectionBuilder.getSelectionArgs(), mSelectionBuilder.getOrderBy(),
+                (mRowMapper != null) ? mRowMapper : mCursorMapper);
+    }
+
+    @Nullable
+    @SuppressLint("Recycle")
+    private EntityCursor<R> executeQuery(@NonNull ContentResolver contentResolver,
+                                         @NonNull CancellationSignal cancellationSignal) {
+        Cursor cursor = null;
+        try {
+            cursor = query(contentResolver, cancellationSignal);
+            if (cursor == null) {
+                return null;
+            }
+
+            final EntityCursor<R> entityCursor = isLazy()
+                    ? new EntityCursor<>(cursor, mRowMapper, mMaxCachedEntities, mPrefetchWindow)
+                    : new EntityCursor<>(cursor, mCursorMapper, mIdentityMap);
+            entityCursor.mapCursor(cancellationSignal);
+            if (mIsTrackingChanges) {
+                computeChanges(entityCursor);
+            }
+            return entityCursor;
+        } catch (RuntimeException e) {
+            // both the platform and the support OperationCanceledException end up here
+            if (!cancellationSignal.isCanceled()) {
+                throw e;
+            }
+
+            if (cursor != null) {
+                cursor.close();
+            }
             return null;
         }
+    }
+
+    private void computeChanges(@NonNull EntityCursor<R> entityCursor) {
+        entityCursor.readIds();
+
+        final EntityCursor<R> changeBase = mChangeBase;
+        if (changeBase == null) {
+            return;
+        }
+
+        // the base may be closed on the main thread at any time, but the arrays it hands out are never modified
+        final long[] oldIds = changeBase.getIds();
+        final Object[] oldEntities = getEntities(changeBase);
+        if ((oldIds == null) || (oldEntities == null)) {
+            return;
+        }
+
+        entityCursor.setChanges(EntityChanges.compute(oldIds, oldEntities, entityCursor.getIds(),
+                getEntities(entityCursor)));
+    }
 
-        final EntityCursor<R> entityCursor = new EntityCursor<>(cursor, mCursorMapper);
-        entityCursor.mapCursor();
-        return entityCursor;
+    @Nullable
+    private static Object[] getEntities(@NonNull EntityCursor<?> entityCursor) {
+        final Object[] entities = entityCursor.getEntities();
+        final long[] ids = entityCursor.getIds();
+        // empty results are not mapped
+        return ((entities == null) && (ids != null) && (ids.length == 0)) ? new Object[0] : entities;
+    }
+
+    @Nullable
+    @SuppressLint("NewApi")
+    private Cursor query(@Nullable ContentResolver contentResolver, @Nullable CancellationSignal cancellationSignal) {
+        if (contentResolver == null) {
+            return null;
+        }
+
+        if ((cancellationSignal != null) && (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN)) {
+            return contentResolver.query(getQueryUri(), mProjection, mSelectionBuilder.getSelection(),
+                    mSelectionBuilder.getSelectionArgs(), mSelectionBuilder.getOrderBy(),
+                    (android.os.CancellationSignal) cancellationSignal.getCancellationSignalObject());
+        }
+
+        return contentResolver
+                .query(getQueryUri(), mProjection, mSelectionBuilder.getSelection(), mSelectionBuilder.getSelectionArgs(),
+                        mSelectionBuilder.getOrderBy());
+    }
+
+    @Nullable
+    private Uri getQueryUri() {
+        final Uri uri = getUri();
+        if ((uri == null) || ((mLimit < 0) && (mOffset == 0))) {
+            return uri;
+        }
+
+        final Uri.Builder builder = uri.buildUpon();
+        if (mLimit >= 0) {
+            builder.appendQueryParameter(DatabaseContentProvider.PARAM_LIMIT, Integer.toString(mLimit));
+        }
+        if (mOffset > 0) {
+            builder.appendQueryParameter(DatabaseContentProvider.PARAM_OFFSET, Integer.toString(mOffset));
+        }
+        return builder.build();
     }
 
     @Override
@@ -266,4 +845,134 @@ public class QueryCommand<R>
 
     }
 
+    /**
+     * Defines the behaviour of the callback of a streamed query.
+     *
+     * @author danail.alexiev
+     * @since 1.2.0
+     */
+    public interface StreamCallback<E> {
+
+        /**
+         * Called with each chunk of streamed entities.
+         *
+         * @param token    the identifier of the streaming command.
+         * @param entities the entities of the chunk, in result order.
+         * @since 1.2.0
+         */
+        void onStreamChunk(int token, @NonNull List<E> entities);
+
+        /**
+         * Called after the last chunk has been delivered. Not called if the command has been cancelled.
+         *
+         * @param token    the identifier of the streaming command.
+         * @param rowCount the total number of streamed rows.
+         * @since 1.2.0
+         */
+        void onStreamComplete(int token, int rowCount);
+
+    }
+
+    /**
+     * Collects streamed entities on the worker thread and posts them to the caller thread in chunks. The worker thread
+     * waits for the previous chunk to be delivered before posting the next one.
+     */
+    @VisibleForTesting
+    static final class ChunkDispatcher<E> implements EntityConsumer<E> {
+
+        private static final long CANCELLATION_CHECK_MILLIS = 10L;
+
+        private final Handler mCallerHandler;
+        private final int mToken;
+        private final int mChunkSize;
+        private final WeakReference<StreamCallback<E>> mCallbackRef;
+        private final Semaphore mHandOff;
+
+        private List<E> mChunk;
+        private volatile boolean mIsCancelled;
+
+        ChunkDispatcher(Handler callerHandler, int token, int chunkSize, StreamCallback<E> callback) {
+            mCallerHandler = callerHandler;
+            mToken = token;
+            mChunkSize = chunkSize;
+            mCallbackRef = new WeakReference<>(callback);
+            mHandOff = new Semaphore(1);
+        }
+
+        @Override
+        public void accept(@Nullable E entity) {
+            if (mChunk == null) {
+                mChunk = new ArrayList<>(mChunkSize);
+            }
+
+            mChunk.add(entity);
+            if (mChunk.size() == mChunkSize) {
+                flush();
+            }
+        }
+
+        void complete(final int rowCount) {
+            flush();
+            if (mIsCancelled) {
+                return;
+            }
+
+            // posted after the last chunk, so it is delivered after it without waiting
+            mCallerHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    final StreamCallback<E> callback = mCallbackRef.get();
+                    if (!mIsCancelled && callback != null) {
+                        callback.onStreamComplete(mToken, rowCount);
+                    }
+                }
+            });
+        }
+
+        void cancel() {
+            mIsCancelled = true;
+        }
+
+        private void flush() {
+            if (mChunk == null) {
+                return;
+            }
+
+            final List<E> chunk = mChunk;
+            mChunk = null;
+            if (!awaitHandOff()) {
+                return;
+            }
+
+            mCallerHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        final StreamCallback<E> callback = mCallbackRef.get();
+                        if (!mIsCancelled && callback != null) {
+                            callback.onStreamChunk(mToken, chunk);
+                        }
+                    } finally {
+                        mHandOff.release();
+                    }
+                }
+            });
+        }
+
+        private boolean awaitHandOff() {
+            try {
+                while (!mIsCancelled) {
+                    if (mHandOff.tryAcquire(CANCELLATION_CHECK_MILLIS, TimeUnit.MILLISECONDS)) {
+                        return true;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                mIsCancelled = true;
+            }
+
+            return false;
+        }
+    }
+
 }
@@ -13,27 +13,27 @@ public final class ResolverCommandBuilder {
 
     @NonNull
     public InsertCommand insert(ContentResolver contentResolver) {
-        return new InsertCommand(contentResolver);
+        return new InsertCommand(contentResolver, null);
     }
 
     @NonNull
     public BulkInsertCommand bulkInsert(ContentResolver contentResolver) {
-        return new BulkInsertCommand(contentResolver);
+        return new BulkInsertCommand(contentResolver, null);
     }
 
     @NonNull
     public UpdateCommand update(ContentResolver contentResolver) {
-        return new UpdateCommand(contentResolver);
+        return new UpdateCommand(contentResolver, null);
     }
 
     @NonNull
     public DeleteCommand delete(ContentResolver contentResolver) {
-        return new DeleteCommand(contentResolver);
+        return new DeleteCommand(contentResolver, null);
     }
 
     @NonNull
     public <R> QueryCommand<R> query(ContentResolver contentResolver, Class<R> clazz) {
-        return new QueryCommand<R>(contentResolver);
+        return new QueryCommand<R>(contentResolver, null);
     }
 
 }
@@ -0,0 +1,220 @@
+package bg.dalexiev.bender.content;
+
+import android.database.AbstractCursor;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.database.DataSetObserver;
+import android.os.Bundle;
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A cursor shared by a fixed number of owners. Each owner reads it through its own {@link #newShare() share}, which
+ * keeps its own position, and the cursor is closed once every share has been closed.
+ *
+ * @author danail.alexiev
+ * @since 1.2.0
+ */
+final class SharedCursor {
+
+    private final Cursor mCursor;
+    private int mRefCount;
+
+    /**
+     * @param cursor   required. The cursor to share. Not closed by anyone else.
+     * @param refCount the number of shares that will be created.
+     */
+    SharedCursor(@NonNull Cursor cursor, int refCount) {
+        mCursor = cursor;
+        mRefCount = refCount;
+    }
+
+    /**
+     * Create a share, which takes one of the references this instance has been created with.
+     *
+     * @return a cursor reading the shared cursor, positioned before its first row.
+     */
+    @NonNull
+    Cursor newShare() {
+        return new Share();
+    }
+
+    private void release() {
+        final boolean isLastShare;
+        synchronized (mCursor) {
+            mRefCount--;
+            isLastShare = (mRefCount == 0);
+        }
+
+        if (isLastShare) {
+            mCursor.close();
+        }
+    }
+
+    /**
+     * Reads the shared cursor at its own position. Each read moves the shared cursor, so reads of different shares
+     * are serialized.
+     */
+    private final class Share extends AbstractCursor {
+
+        private final List<ContentObserver> mContentObservers = new ArrayList<>();
+        private final List<DataSetObserver> mDataSetObservers = new ArrayList<>();
+
+        @Override
+        public int getCount() {
+            synchronized (mCursor) {
+                return mCursor.getCount();
+            }
+        }
+
+        @Override
+        public String[] getColumnNames() {
+            synchronized (mCursor) {
+                return mCursor.getColumnNames();
+            }
+        }
+
+        @Override
+        public String getString(int column) {
+            synchronized (mCursor) {
+                moveSharedCursor();
+                return mCursor.getString(column);
+            }
+        }
+
+        @Override
+        public short getShort(int column) {
+            synchronized (mCursor) {
+                moveSharedCursor();
+                return mCursor.getShort(column);
+            }
+        }
+
+        @Override
+        public int getInt(int column) {
+            synchronized (mCursor) {
+                moveSharedCursor();
+                return mCursor.getInt(column);
+            }
+        }
+
+        @Override
+        public long getLong(int column) {
+            synchronized (mCursor) {
+                moveSharedCursor();
+                return mCursor.getLong(column);
+            }
+        }
+
+        @Override
+        public float getFloat(int column) {
+            synchronized (mCursor) {
+                moveSharedCursor();
+                return mCursor.getFloat(column);
+            }
+        }
+
+        @Override
+        public double getDouble(int column) {
+            synchronized (mCursor) {
+                moveSharedCursor();
+                return mCursor.getDouble(column);
+            }
+        }
+
+        @Override
+        public byte[] getBlob(int column) {
+            synchronized (mCursor) {
+                moveSharedCursor();
+                return mCursor.getBlob(column);
+            }
+        }
+
+        @Override
+        public int getType(int column) {
+            synchronized (mCursor) {
+                moveSharedCursor();
+                return mCursor.getType(column);
+            }
+        }
+
+        @Override
+        public boolean isNull(int column) {
+            synchronized (mCursor) {
+                moveSharedCursor();
+                return mCursor.isNull(column);
+            }
+        }
+
+        private void moveSharedCursor() {
+            checkPosition();
+            mCursor.moveToPosition(getPosition());
+        }
+
+        @Override
+        public Bundle getExtras() {
+            return mCursor.getExtras();
+        }
+
+        // the shared cursor is the one watching the content, so the observers of each share are registered on it and
+        // unregistered when the share is closed
+
+        @Override
+        public void registerContentObserver(ContentObserver observer) {
+            synchronized (mCursor) {
+                mCursor.registerContentObserver(observer);
+                mContentObservers.add(observer);
+            }
+        }
+
+        @Override
+        public void unregisterContentObserver(ContentObserver observer) {
+            synchronized (mCursor) {
+                if (mContentObservers.remove(observer)) {
+                    mCursor.unregisterContentObserver(observer);
+                }
+            }
+        }
+
+        @Override
+        public void registerDataSetObserver(DataSetObserver observer) {
+            synchronized (mCursor) {
+                mCursor.registerDataSetObserver(observer);
+                mDataSetObservers.add(observer);
+            }
+        }
+
+        @Override
+        public void unregisterDataSetObserver(DataSetObserver observer) {
+            synchronized (mCursor) {
+                if (mDataSetObservers.remove(observer)) {
+                    mCursor.unregisterDataSetObserver(observer);
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            synchronized (mCursor) {
+                if (isClosed()) {
+                    return;
+                }
+
+                for (ContentObserver observer : mContentObservers) {
+                    mCursor.unregisterContentObserver(observer);
+                }
+                mContentObservers.clear();
+                for (DataSetObserver observer : mDataSetObservers) {
+                    mCursor.unregisterDataSetObserver(observer);
+                }
+                mDataSetObservers.clear();
+
+                super.close();
+            }
+
+            release();
+        }
+    }
+}
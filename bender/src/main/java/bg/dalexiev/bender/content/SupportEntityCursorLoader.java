@@ -10,6 +10,12 @@ import android.support.v4.content.Loader;
 import bg.dalexiev.bender.util.Preconditions;
 
 /**
+ * A loader, executing a {@link QueryCommand} and reloading it when the content of the result changes.
+ * <p>
+ * Configure the query with {@link QueryCommand#preserveIdentity(String)} to reuse the entities of unchanged rows
+ * across reloads. The kept entities are released when the loader is reset. Configure it with {@link
+ * QueryCommand#trackChanges()} to get the changes to the previous result with {@link EntityCursor#getChanges()}.
+ * </p>
  */
 public class SupportEntityCursorLoader<E> extends Loader<EntityCursor<E>> implements QueryCommand.Callback<E> {
 
@@ -42,7 +48,9 @@ public class SupportEntityCursorLoader<E> extends Loader<EntityCursor<E>> implem
 
     @Override
     protected void onForceLoad() {
-        mQueryCommand.executeAsync(mToken, this);
+        mQueryCommand.setChangeBase(mCursor);
+        // loaded data is shown to the user, so it is not queued behind background work
+        mQueryCommand.executeAsync(mToken, this, Priority.USER_VISIBLE);
     }
 
     @Override
@@ -58,6 +66,8 @@ public class SupportEntityCursorLoader<E> extends Loader<EntityCursor<E>> implem
             mCursor.close();
             mCursor = null;
         }
+        mQueryCommand.clearIdentityMap();
+        mQueryCommand.setChangeBase(null);
     }
 
     @Override
@@ -86,7 +96,8 @@ public class SupportEntityCursorLoader<E> extends Loader<EntityCursor<E>> implem
     }
 
     private void dispatchResult(EntityCursor<E> cursor) {
-        if (isAbandoned()) {
+        // a cancelled query completes without a cursor
+        if (isAbandoned() || (cursor == null)) {
             closeCursor(cursor);
             return;
         }
@@ -95,7 +106,18 @@ public class SupportEntityCursorLoader<E> extends Loader<EntityCursor<E>> implem
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
             commitContentChanged();
         }
-        deliverResult(cursor);
+        deliverResult(combineResult(cursor));
+    }
+
+    /**
+     * Combine a loaded result with the delivered one, before it is delivered. The loaded result is already observed
+     * for content changes.
+     *
+     * @param loaded the loaded result.
+     * @return the result to deliver. The loaded result by default.
+     */
+    EntityCursor<E> combineResult(@NonNull EntityCursor<E> loaded) {
+        return loaded;
     }
 
     private void closeCursor(EntityCursor<E> cursor) {
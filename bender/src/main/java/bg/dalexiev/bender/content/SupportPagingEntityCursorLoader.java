@@ -0,0 +1,188 @@
+package bg.dalexiev.bender.content;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+
+import bg.dalexiev.bender.util.Preconditions;
+
+/**
+ * A {@link SupportEntityCursorLoader}, which loads the result of its query one page at a time.
+ * <p>
+ * The first load fetches a single page. Each call to {@link #loadNextPage()} fetches only the next page, with an
+ * offset past the loaded rows, and appends it to the delivered result without mapping the loaded pages again, so the
+ * delivered cursor always holds all the pages loaded so far. When the content changes, all loaded pages are reloaded
+ * with a single query. Call {@link #onScrolledTo(int)} from your list scroll listener or adapter to load the next page
+ * before the user reaches the end of the loaded rows.
+ * </p>
+ * <p>
+ * Combine this with {@link QueryCommand#mapLazily(int, int)} to map only the rows that are actually displayed.
+ * </p>
+ *
+ * @author danail.alexiev
+ * @since 1.2.0
+ */
+public class SupportPagingEntityCursorLoader<E> extends SupportEntityCursorLoader<E> {
+
+    private final QueryCommand<E> mQueryCommand;
+    private final int mToken;
+    private final int mPageSize;
+
+    // the pages of the delivered result, the pages the next load requests and the pages requested by the running load
+    private int mPageCount;
+    private int mRequestedPageCount;
+    private int mLoadingPageCount;
+    private boolean mHasMorePages;
+    private boolean mIsLoadingPage;
+    // the next load fetches only the next page / the running load fetches only the next page
+    private boolean mIsNextPageRequested;
+    private boolean mIsAppendingPage;
+
+    private EntityCursor<E> mDeliveredCursor;
+
+    /**
+     * Create a new paging loader.
+     *
+     * @param context      the context of the loader.
+     * @param queryCommand required. The query to load. Any limit set on the query is replaced.
+     * @param token        the token to execute the query with.
+     * @param pageSize     the number of rows in a page. Must be positive.
+     * @throws IllegalArgumentException if {@code queryCommand} is {@code null} or {@code pageSize} is not positive.
+     */
+    public SupportPagingEntityCursorLoader(Context context, @NonNull QueryCommand<E> queryCommand, int token,
+                                           int pageSize) {
+        super(context, queryCommand, token);
+        Preconditions.argumentCondition(pageSize <= 0, "Page size must be positive");
+
+        mQueryCommand = queryCommand;
+        mToken = token;
+        mPageSize = pageSize;
+        resetPages();
+    }
+
+    /**
+     * @return the number of rows in a page.
+     */
+    public int getPageSize() {
+        return mPageSize;
+    }
+
+    /**
+     * @return {@code true} if the last delivered result has filled all requested pages, so there may be more rows to
+     * load.
+     */
+    public boolean hasMorePages() {
+        return mHasMorePages;
+    }
+
+    /**
+     * Load the next page, if the loader is started, there are more rows to load and no page is currently being loaded.
+     *
+     * @return {@code true} if the next page has been requested.
+     */
+    public boolean loadNextPage() {
+        if (!isStarted() || !mHasMorePages || mIsLoadingPage) {
+            return false;
+        }
+
+        mRequestedPageCount = mPageCount + 1;
+        mIsLoadingPage = true;
+        // without a delivered result there is nothing to append to, so all requested pages are loaded
+        mIsNextPageRequested = (mDeliveredCursor != null);
+        forceLoad();
+        return true;
+    }
+
+    /**
+     * Notify the loader that the row at {@code position} has been displayed. Loads the next page when the position is
+     * within half a page of the end of the loaded rows.
+     *
+     * @param position the position of the displayed row.
+     * @return {@code true} if the next page has been requested.
+     */
+    public boolean onScrolledTo(int position) {
+        final int loadedRowCount = mPageCount * mPageSize;
+        if (position < (loadedRowCount - (mPageSize / 2))) {
+            return false;
+        }
+
+        return loadNextPage();
+    }
+
+    @Override
+    protected void onForceLoad() {
+        final boolean isNextPageRequested = mIsNextPageRequested;
+        mIsNextPageRequested = false;
+        if (mIsAppendingPage) {
+            // the content has changed while the next page was loading, so the page is loaded with all the others
+            mQueryCommand.cancel();
+            mIsAppendingPage = false;
+        }
+
+        if (isNextPageRequested) {
+            mIsAppendingPage = true;
+            mLoadingPageCount = mPageCount + 1;
+            mQueryCommand.offset(mPageCount * mPageSize).limit(mPageSize);
+            // the changes of a single page to the whole result are meaningless
+            mQueryCommand.setChangeBase(null);
+            mQueryCommand.executeAsync(mToken, this, Priority.USER_VISIBLE);
+            return;
+        }
+
+        mLoadingPageCount = mRequestedPageCount;
+        mQueryCommand.offset(0).limit(mLoadingPageCount * mPageSize);
+        super.onForceLoad();
+    }
+
+    @Override
+    protected void onStopLoading() {
+        super.onStopLoading();
+
+        // the running load has been cancelled, so the page it was loading has to be requested again
+        mRequestedPageCount = mPageCount;
+        mIsLoadingPage = false;
+        mIsNextPageRequested = false;
+        mIsAppendingPage = false;
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+
+        resetPages();
+    }
+
+    @Override
+    EntityCursor<E> combineResult(@NonNull EntityCursor<E> loaded) {
+        if (!mIsAppendingPage) {
+            return loaded;
+        }
+
+        mIsAppendingPage = false;
+        return (mDeliveredCursor != null) ? mDeliveredCursor.append(loaded) : loaded;
+    }
+
+    @Override
+    public void deliverResult(EntityCursor<E> data) {
+        if (data != mDeliveredCursor) {
+            // a new result, loaded with the limit of the last load. A kept result is delivered again on restart
+            mDeliveredCursor = data;
+            mPageCount = mLoadingPageCount;
+            mRequestedPageCount = Math.max(mRequestedPageCount, mPageCount);
+            mIsLoadingPage = false;
+        }
+        mHasMorePages = (data != null) && (data.getCount() >= (mPageCount * mPageSize));
+
+        super.deliverResult(data);
+    }
+
+    private void resetPages() {
+        mPageCount = 1;
+        mRequestedPageCount = 1;
+        mLoadingPageCount = 1;
+        mHasMorePages = true;
+        mIsLoadingPage = false;
+        mIsNextPageRequested = false;
+        mIsAppendingPage = false;
+        mDeliveredCursor = null;
+    }
+}
@@ -26,8 +26,8 @@ public class UpdateCommand
     private final OnConflictBuilder mOnConflictBuilder;
     private final ContentValues mReference;
 
-    UpdateCommand(ContentResolver contentResolver) {
-        super(contentResolver);
+    UpdateCommand(ContentResolver contentResolver, @Nullable CommandExecutor executor) {
+        super(contentResolver, executor);
         mContentValuesBuilder = new ContentValuesBuilder();
         mSelectionBuilder = new SqlSelectionBuilder();
         mOnConflictBuilder = new OnConflictBuilder();
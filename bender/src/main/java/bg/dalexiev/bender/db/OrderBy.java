@@ -15,10 +15,14 @@ public final class OrderBy {
     private static final String ORDER_ASC = " asc";
     private static final String ORDER_DESC = " desc";
 
+    private final String mColumn;
+    private final boolean mIsDescending;
     private final String mExpression;
 
-    private OrderBy(String expression) {
-        mExpression = expression;
+    private OrderBy(String column, boolean isDescending) {
+        mColumn = column;
+        mIsDescending = isDescending;
+        mExpression = column + (isDescending ? ORDER_DESC : ORDER_ASC);
     }
 
     /**
@@ -33,7 +37,7 @@ public final class OrderBy {
     public static OrderBy asc(@NonNull String column) {
         Preconditions.argumentNotNull(column, "Column can't be null");
 
-        return new OrderBy(column + ORDER_ASC);
+        return new OrderBy(column, false);
     }
 
     /**
@@ -48,7 +52,25 @@ public final class OrderBy {
     public static OrderBy desc(@NonNull String column) {
         Preconditions.argumentNotNull(column, "Column can't be null");
 
-        return new OrderBy(column + ORDER_DESC);
+        return new OrderBy(column, true);
+    }
+
+    /**
+     * Create a predicate, matching the rows that come after {@code value} in this ordering. Used for keyset
+     * pagination, where {@code value} is the value of the ordering column in the last row of the previous page.
+     *
+     * <p>
+     * The resulting predicate will be {@code column > ?} for ascending and {@code column < ?} for descending orderings.
+     * </p>
+     *
+     * @param value required. The value to continue after.
+     * @return the resulting expression.
+     * @throws IllegalArgumentException if {@code value} is {@code null}
+     * @since 1.2.0
+     */
+    @NonNull
+    public Predicate after(@NonNull String value) {
+        return mIsDescending ? Predicate.lt(mColumn, value) : Predicate.gt(mColumn, value);
     }
 
     String getExpression() {
@@ -0,0 +1,314 @@
+package bg.dalexiev.bender.db;
+
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import bg.dalexiev.bender.util.Preconditions;
+
+/**
+ * A memory bounded, least recently used cache of query results, invalidated by table versions.
+ * <p>
+ * Every table has a version, which only grows. Writers call {@link #onTableChanged(String)} after their changes have
+ * been committed. A reader obtains the version of the queried table with {@link #getTableVersion(String)} <em>before
+ * </em> running the query and stores the result with {@link #put(String, long, String, String[], Cursor)}. A cached
+ * result is returned by {@link #get(String, String, String[])} only while its version is still the version of the
+ * table, so a result read before a change can never be returned after the change has been committed.
+ * </p>
+ * <p>
+ * Results are copied into memory and each hit gets its own cursor over the shared copy. The size of the cache is an
+ * estimate of the memory used by the copied values, in bytes. A single result may take up to a quarter of the cache,
+ * larger results are not cached, so one large query can't evict all other results.
+ * </p>
+ *
+ * @author danail.alexiev
+ * @since 1.2.0
+ */
+public final class QueryResultCache {
+
+    private static final int ROW_OVERHEAD = 16;
+    private static final int VALUE_OVERHEAD = 16;
+    private static final char KEY_SEPARATOR = '\u0000';
+    private static final String NULL_ARG = "\u0001";
+
+    private final int mMaxSize;
+    private final int mMaxEntrySize;
+    private final LinkedHashMap<String, Entry> mEntries;
+    private final Map<String, Long> mTableVersions;
+
+    private long mClock;
+    private long mInvalidationVersion;
+    private int mSize;
+
+    private int mHitCount;
+    private int mMissCount;
+
+    /**
+     * Create a new cache.
+     *
+     * @param maxSize the maximum estimated size of the cached results, in bytes. Must be positive.
+     * @throws IllegalArgumentException if {@code maxSize} is not positive.
+     */
+    public QueryResultCache(int maxSize) {
+        Preconditions.argumentCondition(maxSize <= 0, "Max size must be positive");
+
+        mMaxSize = maxSize;
+        mMaxEntrySize = Math.max(1, maxSize / 4);
+        mEntries = new LinkedHashMap<>(16, 0.75f, true);
+        mTableVersions = new HashMap<>();
+    }
+
+    /**
+     * Get the current version of a table. Call this before running a query, which result is going to be cached.
+     *
+     * @param table required. The name of the table.
+     * @return the version of the table.
+     * @throws IllegalArgumentException if {@code table} is {@code null}.
+     */
+    public synchronized long getTableVersion(@NonNull String table) {
+        Preconditions.argumentNotNull(table, "Table can't be null");
+
+        final Long version = mTableVersions.get(table);
+        return (version == null) ? mInvalidationVersion : Math.max(version, mInvalidationVersion);
+    }
+
+    /**
+     * Advance the version of a table, making all results read from it so far stale. Call this after a change of the
+     * table has been committed.
+     *
+     * @param table required. The name of the changed table.
+     * @throws IllegalArgumentException if {@code table} is {@code null}.
+     */
+    public synchronized void onTableChanged(@NonNull String table) {
+        Preconditions.argumentNotNull(table, "Table can't be null");
+
+        mTableVersions.put(table, ++mClock);
+    }
+
+    /**
+     * Get a cached query result.
+     *
+     * @param table         required. The table the result has been read from.
+     * @param sql           required. The SQL of the query.
+     * @param selectionArgs optional. The arguments of the query.
+     * @return a new cursor over the cached result, or {@code null} if there is no result for the query or the table
+     * has been changed since it has been read.
+     * @throws IllegalArgumentException if {@code table} or {@code sql} is {@code null}.
+     */
+    @Nullable
+    public Cursor get(@NonNull String table, @NonNull String sql, @Nullable String[] selectionArgs) {
+        Preconditions.argumentNotNull(table, "Table can't be null");
+        Preconditions.argumentNotNull(sql, "Sql can't be null");
+
+        final String key = buildKey(sql, selectionArgs);
+        final Entry entry;
+        synchronized (this) {
+            final Entry cached = mEntries.get(key);
+            if ((cached != null) && (cached.mVersion == getTableVersion(table))) {
+                mHitCount++;
+                entry = cached;
+            } else {
+                if (cached != null) {
+                    remove(key);
+                }
+                mMissCount++;
+                entry = null;
+            }
+        }
+
+        return (entry == null) ? null : new SnapshotCursor(entry.mColumnNames, entry.mRows);
+    }
+
+    /**
+     * Cache the result of a query. The result is cached only if the table hasn't been changed since {@code
+     * tableVersion} and the result is small enough.
+     * <p>
+     * If the result is cached, {@code cursor} is closed and a cursor over the cached copy is returned. Otherwise
+     * {@code cursor} itself is returned, positioned before the first row.
+     * </p>
+     *
+     * @param table         required. The table the result has been read from.
+     * @param tableVersion  the version of the table, obtained by {@link #getTableVersion(String)} before the query has
+     *                      been run.
+     * @param sql           required. The SQL of the query.
+     * @param selectionArgs optional. The arguments of the query.
+     * @param cursor        required. The result of the query.
+     * @return a cursor over the result of the query.
+     * @throws IllegalArgumentException if {@code table}, {@code sql} or {@code cursor} is {@code null}.
+     */
+    @NonNull
+    public Cursor put(@NonNull String table, long tableVersion, @NonNull String sql, @Nullable String[] selectionArgs,
+                      @NonNull Cursor cursor) {
+        Preconditions.argumentNotNull(table, "Table can't be null");
+        Preconditions.argumentNotNull(sql, "Sql can't be null");
+        Preconditions.argumentNotNull(cursor, "Cursor can't be null");
+
+        if (tableVersion != getTableVersion(table)) {
+            return cursor;
+        }
+
+        final Entry entry = copy(cursor, tableVersion);
+        if (entry == null) {
+            cursor.moveToPosition(-1);
+            return cursor;
+        }
+
+        synchronized (this) {
+            // the table may have been changed while the rows were being copied
+            if (tableVersion == getTableVersion(table)) {
+                final String key = buildKey(sql, selectionArgs);
+                remove(key);
+                mEntries.put(key, entry);
+                mSize += entry.mSize;
+                trimToSize();
+            }
+        }
+
+        cursor.close();
+        return new SnapshotCursor(entry.mColumnNames, entry.mRows);
+    }
+
+    /**
+     * Discard all cached results and make all results, which are currently being read, stale. Call this after the
+     * database has been changed without calling {@link #onTableChanged(String)}.
+     */
+    public synchronized void invalidate() {
+        mInvalidationVersion = ++mClock;
+        mEntries.clear();
+        mSize = 0;
+    }
+
+    @Nullable
+    private Entry copy(@NonNull Cursor cursor, long version) {
+        final String[] columnNames = cursor.getColumnNames();
+        final int columnCount = columnNames.length;
+        final Object[][] rows = new Object[cursor.getCount()][];
+
+        int size = 0;
+        cursor.moveToPosition(-1);
+        while (cursor.moveToNext()) {
+            final Object[] row = new Object[columnCount];
+            size += ROW_OVERHEAD;
+            for (int i = 0; i < columnCount; i++) {
+                row[i] = readValue(cursor, i);
+                size += sizeOf(row[i]);
+            }
+
+            if (size > mMaxEntrySize) {
+                return null;
+            }
+            rows[cursor.getPosition()] = row;
+        }
+
+        return new Entry(columnNames, rows, version, size);
+    }
+
+    @Nullable
+    private static Object readValue(@NonNull Cursor cursor, int column) {
+        switch (cursor.getType(column)) {
+            case Cursor.FIELD_TYPE_NULL:
+                return null;
+
+            case Cursor.FIELD_TYPE_INTEGER:
+                return cursor.getLong(column);
+
+            case Cursor.FIELD_TYPE_FLOAT:
+                return cursor.getDouble(column);
+
+            case Cursor.FIELD_TYPE_BLOB:
+                return cursor.getBlob(column);
+
+            default:
+                return cursor.getString(column);
+        }
+    }
+
+    private static int sizeOf(@Nullable Object value) {
+        if (value == null) {
+            return 4;
+        }
+        if (value instanceof String) {
+            return VALUE_OVERHEAD + 2 * ((String) value).length();
+        }
+        if (value instanceof byte[]) {
+            return VALUE_OVERHEAD + ((byte[]) value).length;
+        }
+        return VALUE_OVERHEAD;
+    }
+
+    @NonNull
+    private static String buildKey(@NonNull String sql, @Nullable String[] selectionArgs) {
+        if (selectionArgs == null) {
+            return sql;
+        }
+
+        final StringBuilder key = new StringBuilder(sql);
+        for (String arg : selectionArgs) {
+            key.append(KEY_SEPARATOR).append((arg == null) ? NULL_ARG : arg);
+        }
+        return key.toString();
+    }
+
+    private void remove(@NonNull String key) {
+        final Entry removed = mEntries.remove(key);
+        if (removed != null) {
+            mSize -= removed.mSize;
+        }
+    }
+
+    private void trimToSize() {
+        final Iterator<Entry> iterator = mEntries.values().iterator();
+        while ((mSize > mMaxSize) && iterator.hasNext()) {
+            mSize -= iterator.next().mSize;
+            iterator.remove();
+        }
+    }
+
+    /**
+     * @return the number of times a cached result has been returned.
+     */
+    public synchronized int getHitCount() {
+        return mHitCount;
+    }
+
+    /**
+     * @return the number of times there has been no valid cached result.
+     */
+    public synchronized int getMissCount() {
+        return mMissCount;
+    }
+
+    /**
+     * @return the estimated size of the cached results, in bytes.
+     */
+    public synchronized int size() {
+        return mSize;
+    }
+
+    /**
+     * @return the maximum estimated size of the cached results, in bytes.
+     */
+    public int getMaxSize() {
+        return mMaxSize;
+    }
+
+    private static final class Entry {
+
+        final String[] mColumnNames;
+        final Object[][] mRows;
+        final long mVersion;
+        final int mSize;
+
+        Entry(@NonNull String[] columnNames, @NonNull Object[][] rows, long version, int size) {
+            mColumnNames = columnNames;
+            mRows = rows;
+            mVersion = version;
+            mSize = size;
+        }
+    }
+}
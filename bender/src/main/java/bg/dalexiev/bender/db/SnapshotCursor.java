@@ -0,0 +1,141 @@
+package bg.dalexiev.bender.db;
+
+import android.database.AbstractCursor;
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+
+/**
+ * A read only cursor over rows copied into memory by {@link QueryResultCache}.
+ * <p>
+ * The rows are shared between all cursors created for the same cached result and are never modified, so each
+ * cursor only keeps its own position. Values are converted between types the same way SQLite cursors convert them.
+ * </p>
+ *
+ * @author danail.alexiev
+ * @since 1.2.0
+ */
+final class SnapshotCursor extends AbstractCursor {
+
+    private final String[] mColumnNames;
+    private final Object[][] mRows;
+
+    SnapshotCursor(@NonNull String[] columnNames, @NonNull Object[][] rows) {
+        mColumnNames = columnNames;
+        mRows = rows;
+    }
+
+    @Override
+    public int getCount() {
+        return mRows.length;
+    }
+
+    @Override
+    public String[] getColumnNames() {
+        return mColumnNames;
+    }
+
+    @Override
+    public int getType(int column) {
+        final Object value = get(column);
+        if (value == null) {
+            return Cursor.FIELD_TYPE_NULL;
+        }
+        if (value instanceof Long) {
+            return Cursor.FIELD_TYPE_INTEGER;
+        }
+        if (value instanceof Double) {
+            return Cursor.FIELD_TYPE_FLOAT;
+        }
+        if (value instanceof byte[]) {
+            return Cursor.FIELD_TYPE_BLOB;
+        }
+        return Cursor.FIELD_TYPE_STRING;
+    }
+
+    @Override
+    public String getString(int column) {
+        final Object value = get(column);
+        if ((value == null) || (value instanceof byte[])) {
+            return null;
+        }
+        return value.toString();
+    }
+
+    @Override
+    public short getShort(int column) {
+        return (short) getLong(column);
+    }
+
+    @Override
+    public int getInt(int column) {
+        return (int) getLong(column);
+    }
+
+    @Override
+    public long getLong(int column) {
+        final Object value = get(column);
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof String) {
+            try {
+                return Long.parseLong((String) value);
+            } catch (NumberFormatException e) {
+                return (long) parseDouble((String) value);
+            }
+        }
+        return 0L;
+    }
+
+    @Override
+    public float getFloat(int column) {
+        return (float) getDouble(column);
+    }
+
+    @Override
+    public double getDouble(int column) {
+        final Object value = get(column);
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        if (value instanceof String) {
+            return parseDouble((String) value);
+        }
+        return 0.0;
+    }
+
+    @Override
+    public byte[] getBlob(int column) {
+        final Object value = get(column);
+        if (value instanceof byte[]) {
+            // the rows are shared, so callers get a copy they can modify
+            return ((byte[]) value).clone();
+        }
+        if (value == null) {
+            return null;
+        }
+        return value.toString().getBytes();
+    }
+
+    @Override
+    public boolean isNull(int column) {
+        return get(column) == null;
+    }
+
+    private Object get(int column) {
+        checkPosition();
+        if ((column < 0) || (column >= mColumnNames.length)) {
+            throw new IllegalArgumentException("Invalid column index " + column + ", the cursor has "
+                    + mColumnNames.length + " columns");
+        }
+        return mRows[getPosition()][column];
+    }
+
+    private static double parseDouble(@NonNull String value) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return 0.0;
+        }
+    }
+}
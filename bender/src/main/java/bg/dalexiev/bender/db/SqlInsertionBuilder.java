@@ -5,14 +5,18 @@ import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteStatement;
 import android.provider.BaseColumns;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.support.annotation.VisibleForTesting;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.LinkedList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
+import bg.dalexiev.bender.mapper.EntityWriter;
 import bg.dalexiev.bender.util.Preconditions;
 
 /**
@@ -30,8 +34,20 @@ public final class SqlInsertionBuilder {
     private static final String CONFLICT_IGNORE = "or ignore ";
     private static final String CONFLICT_REPLACE = "or replace ";
 
+    /**
+     * The default maximum number of host parameters in a single SQLite statement.
+     */
+    private static final int MAX_HOST_PARAMETERS = 999;
+
+    /**
+     * The maximum number of rows in a single {@code values} clause supported by older SQLite versions.
+     */
+    private static final int MAX_ROWS_PER_STATEMENT = 500;
+
     private String mTable;
     private List<ContentValues> mContentValues;
+    private SqlStatementCache mStatementCache;
+    private boolean mIsMultiRowInsert;
 
     /**
      * Sets the table to insert into.
@@ -51,6 +67,40 @@ public final class SqlInsertionBuilder {
         return this;
     }
 
+    /**
+     * Sets a cache to obtain compiled insert statements from.
+     * <p>If no cache is set, a new statement is compiled and closed on every call to {@link #insert(SQLiteDatabase,
+     * int)}</p>
+     *
+     * @param statementCache optional. The cache to reuse compiled statements from.
+     * @return the current instance.
+     * @since 1.2.0
+     */
+    @NonNull
+    public SqlInsertionBuilder setStatementCache(@Nullable SqlStatementCache statementCache) {
+        mStatementCache = statementCache;
+
+        return this;
+    }
+
+    /**
+     * Enables or disables multi-row mode for {@link #insertForCount(SQLiteDatabase, int)}.
+     * <p>
+     * In multi-row mode each statement inserts a chunk of rows, reducing the number of statement executions. Requires
+     * SQLite 3.7.11, which is available from Android 4.1 (API 16). Disabled by default.
+     * </p>
+     *
+     * @param isMultiRowInsert {@code true} to pack multiple rows in a single statement.
+     * @return the current instance.
+     * @since 1.2.0
+     */
+    @NonNull
+    public SqlInsertionBuilder setMultiRowInsert(boolean isMultiRowInsert) {
+        mIsMultiRowInsert = isMultiRowInsert;
+
+        return this;
+    }
+
     /**
      * Appends an arbitrary number of values to be inserted into the database.
      *
@@ -88,44 +138,320 @@ public final class SqlInsertionBuilder {
         return insert(db, SQLiteDatabase.CONFLICT_NONE);
     }
 
+    /**
+     * Perform an insert against the provided database using the state of the current instance.
+     * <p>
+     * Boxes every generated id. Prefer {@link #insertForIds(SQLiteDatabase, int)} or, if the ids are not needed,
+     * {@link #insertForCount(SQLiteDatabase, int)}.
+     * </p>
+     *
+     * @param db         required. The database to insert into.
+     * @param onConflict the conflict algorithm to use.
+     * @return the generated row ids, in the order of the appended values.
+     * @throws IllegalArgumentException if {@code db} is null.
+     * @throws IllegalStateException    if a table has not been set by calling {@link #setTable(String)} before trying
+     *                                  to insert.
+     * @since 1.1.1
+     */
     public List<Long> insert(@NonNull SQLiteDatabase db, int onConflict) {
+        final long[] generatedIds = insertForIds(db, onConflict);
+
+        final List<Long> result = new ArrayList<>(generatedIds.length);
+        for (long generatedId : generatedIds) {
+            result.add(generatedId);
+        }
+        return result;
+    }
+
+    /**
+     * Perform an insert against the provided database using the state of the current instance.
+     * <p>
+     * Rows are grouped by their column signature. A single statement is compiled for each distinct signature and reused
+     * for all rows that share it, while the rows are still inserted in the order they have been appended.
+     * </p>
+     * <p>
+     * Multi-row mode is not applied here, since a multi-row statement doesn't report the ids of the individual rows.
+     * Use {@link #insertForCount(SQLiteDatabase, int)} if the generated ids are not needed.
+     * </p>
+     *
+     * @param db         required. The database to insert into.
+     * @param onConflict the conflict algorithm to use.
+     * @return the generated row ids, in the order of the appended values. A row that has not been inserted because of
+     * a conflict has an id of {@code -1}.
+     * @throws IllegalArgumentException if {@code db} is null.
+     * @throws IllegalStateException    if a table has not been set by calling {@link #setTable(String)} before trying
+     *                                  to insert.
+     * @since 1.2.0
+     */
+    @NonNull
+    public long[] insertForIds(@NonNull SQLiteDatabase db, int onConflict) {
         Preconditions.argumentNotNull(db, "Database can't be null");
 
         Preconditions.stateNotNull(mTable, "Can't execute an insert with no table set. Did you call setTable()?");
 
-        final String sql = generateSql(onConflict);
-        final SQLiteStatement statement = db.compileStatement(sql);
-        final List<Long> generatedIds = new LinkedList<>();
+        final List<ContentValues> rows = getContentValues();
+        final int rowCount = rows.size();
+        final Map<String, InsertShape> shapes = new HashMap<>(4);
+        final Map<String, SQLiteStatement> statements = new HashMap<>(4);
+        // the row count is known upfront, so the id buffer never has to grow
+        final long[] generatedIds = new long[rowCount];
         try {
-            executeInsertStatement(statement, generatedIds);
+            InsertShape shape = null;
+            for (int i = 0; i < rowCount; i++) {
+                final ContentValues values = rows.get(i);
+                if ((shape == null) || !shape.matches(values)) {
+                    shape = obtainShape(shapes, values);
+                }
+
+                final SQLiteStatement statement = obtainStatement(db, statements, shape.getSql(1, onConflict));
+                statement.clearBindings();
+                shape.bind(statement, 1, values);
+                generatedIds[i] = statement.executeInsert();
+            }
         } finally {
-            statement.close();
+            releaseStatements(db, statements);
         }
 
         return generatedIds;
     }
 
-    private void executeInsertStatement(SQLiteStatement statement, List<Long> generatedIds) {
-        for (ContentValues values : mContentValues) {
+    /**
+     * Insert {@code entities} into the table of the current instance, binding each entity directly to a single
+     * compiled statement through {@code writer}. No {@code ContentValues} are created and the appended values of the
+     * current instance are ignored.
+     *
+     * @param db         required. The database to insert into.
+     * @param writer     required. The writer of the entities.
+     * @param entities   required. The entities to insert.
+     * @param onConflict the conflict algorithm to use.
+     * @param <E>        the type of the inserted entities.
+     * @return the generated row ids, in the order of {@code entities}. An entity that has not been inserted because of
+     * a conflict has an id of {@code -1}.
+     * @throws IllegalArgumentException if {@code db}, {@code writer} or {@code entities} is {@code null}, or if an
+     *                                  entity is {@code null}.
+     * @throws IllegalStateException    if a table has not been set by calling {@link #setTable(String)} before trying
+     *                                  to insert.
+     * @since 1.2.0
+     */
+    @NonNull
+    public <E> long[] insertEntities(@NonNull SQLiteDatabase db, @NonNull EntityWriter<E> writer,
+                                     @NonNull List<? extends E> entities, int onConflict) {
+        Preconditions.argumentNotNull(db, "Database can't be null");
+        Preconditions.argumentNotNull(writer, "Writer can't be null");
+        Preconditions.argumentNotNull(entities, "Entities can't be null");
+
+        Preconditions.stateNotNull(mTable, "Can't execute an insert with no table set. Did you call setTable()?");
+
+        final int entityCount = entities.size();
+        final long[] generatedIds = new long[entityCount];
+        if (entityCount == 0) {
+            return generatedIds;
+        }
+
+        final String sql = generateSql(writer.getColumns(), onConflict, 1);
+        final SQLiteStatement statement = (mStatementCache == null)
+                ? db.compileStatement(sql) : mStatementCache.acquire(db, sql);
+        try {
+            for (int i = 0; i < entityCount; i++) {
+                final E entity = entities.get(i);
+                if (entity == null) {
+                    throw new IllegalArgumentException("Entity at position " + i + " is null");
+                }
+
+                statement.clearBindings();
+                writer.bind(statement, 1, entity);
+                generatedIds[i] = statement.executeInsert();
+            }
+        } finally {
+            if (mStatementCache == null) {
+                statement.close();
+            } else {
+                mStatementCache.release(db, sql, statement);
+            }
+        }
+
+        return generatedIds;
+    }
+
+    /**
+     * Perform an insert against the provided database using the state of the current instance, without collecting the
+     * generated row ids.
+     * <p>
+     * If multi-row mode has been enabled using {@link #setMultiRowInsert(boolean)}, consecutive rows with the same
+     * column signature are packed into {@code insert into t(a, b) values (?, ?), (?, ?), ...} statements, holding as
+     * many rows as the SQLite host parameter limit allows.
+     * </p>
+     *
+     * @param db         required. The database to insert into.
+     * @param onConflict the conflict algorithm to use.
+     * @return the number of inserted rows, as reported by SQLite. Rows skipped by {@link
+     * SQLiteDatabase#CONFLICT_IGNORE} are not counted.
+     * @throws IllegalArgumentException if {@code db} is null.
+     * @throws IllegalStateException    if a table has not been set by calling {@link #setTable(String)} before trying
+     *                                  to insert.
+     * @since 1.2.0
+     */
+    public int insertForCount(@NonNull SQLiteDatabase db, int onConflict) {
+        return insertForCount(db, onConflict, 0, getRowCount());
+    }
+
+    /**
+     * Perform an insert of the rows in the range {@code [start, end)} against the provided database, without
+     * collecting the generated row ids.
+     * <p>
+     * Use this to split a large insert into several chunks, for example to yield the database between them.
+     * </p>
+     *
+     * @param db         required. The database to insert into.
+     * @param onConflict the conflict algorithm to use.
+     * @param start      the index of the first row to insert, inclusive.
+     * @param end        the index of the last row to insert, exclusive.
+     * @return the number of inserted rows, as reported by SQLite. Rows skipped by {@link
+     * SQLiteDatabase#CONFLICT_IGNORE} are not counted.
+     * @throws IllegalArgumentException  if {@code db} is null.
+     * @throws IllegalStateException     if a table has not been set by calling {@link #setTable(String)} before
+     *                                   trying to insert.
+     * @throws IndexOutOfBoundsException if the range is not within {@code [0, getRowCount()]}.
+     * @see #insertForCount(SQLiteDatabase, int)
+     * @since 1.2.0
+     */
+    public int insertForCount(@NonNull SQLiteDatabase db, int onConflict, int start, int end) {
+        Preconditions.argumentNotNull(db, "Database can't be null");
+
+        Preconditions.stateNotNull(mTable, "Can't execute an insert with no table set. Did you call setTable()?");
+
+        final List<ContentValues> rows = getContentValues().subList(start, end);
+        final int rowCount = rows.size();
+        final Map<String, InsertShape> shapes = new HashMap<>(4);
+        final Map<String, SQLiteStatement> statements = new HashMap<>(4);
+        int insertedRows = 0;
+        try {
+            int runStart = 0;
+            while (runStart < rowCount) {
+                final InsertShape shape = obtainShape(shapes, rows.get(runStart));
+
+                int runEnd = runStart + 1;
+                while ((runEnd < rowCount) && shape.matches(rows.get(runEnd))) {
+                    runEnd++;
+                }
+
+                insertedRows += executeRun(db, statements, shape, rows, runStart, runEnd, onConflict);
+                runStart = runEnd;
+            }
+        } finally {
+            releaseStatements(db, statements);
+        }
+
+        return insertedRows;
+    }
+
+    /**
+     * Get the number of rows that will be inserted. If no values have been appended, a single empty row is inserted.
+     *
+     * @return the number of rows.
+     * @since 1.2.0
+     */
+    public int getRowCount() {
+        return getContentValues().size();
+    }
+
+    private int executeRun(SQLiteDatabase db, Map<String, SQLiteStatement> statements, InsertShape shape,
+                           List<ContentValues> rows, int start, int end, int onConflict) {
+        final int maxRows = mIsMultiRowInsert ? shape.getMaxRowsPerStatement() : 1;
+        final int columnCount = shape.columnNames.length;
+
+        int insertedRows = 0;
+        int position = start;
+        while (position < end) {
+            final int chunkSize = getChunkSize(end - position, maxRows);
+            final SQLiteStatement statement = obtainStatement(db, statements, shape.getSql(chunkSize, onConflict));
             statement.clearBindings();
-            bindValues(statement, values);
-            generatedIds.add(statement.executeInsert());
+            for (int row = 0; row < chunkSize; row++) {
+                shape.bind(statement, (row * columnCount) + 1, rows.get(position + row));
+            }
+
+            insertedRows += statement.executeUpdateDelete();
+            position += chunkSize;
+        }
+        return insertedRows;
+    }
+
+    /**
+     * Full chunks use the maximum row count. The remainder is split into power of two chunks, so the number of distinct
+     * statements per column signature stays small.
+     */
+    private static int getChunkSize(int remainingRows, int maxRows) {
+        if (remainingRows >= maxRows) {
+            return maxRows;
+        }
+
+        return Integer.highestOneBit(remainingRows);
+    }
+
+    private List<ContentValues> getContentValues() {
+        if (mContentValues == null) {
+            return Collections.singletonList(null);
+        }
+
+        return mContentValues;
+    }
+
+    private InsertShape obtainShape(Map<String, InsertShape> shapes, ContentValues values) {
+        final String[] columnNames = getColumnNames(values);
+        final String signature = getSignature(columnNames);
+
+        InsertShape shape = shapes.get(signature);
+        if (shape == null) {
+            shape = new InsertShape(columnNames);
+            shapes.put(signature, shape);
+        }
+
+        return shape;
+    }
+
+    private SQLiteStatement obtainStatement(SQLiteDatabase db, Map<String, SQLiteStatement> statements, String sql) {
+        SQLiteStatement statement = statements.get(sql);
+        if (statement == null) {
+            statement = (mStatementCache == null) ? db.compileStatement(sql) : mStatementCache.acquire(db, sql);
+            statements.put(sql, statement);
+        }
+
+        return statement;
+    }
+
+    private void releaseStatements(SQLiteDatabase db, Map<String, SQLiteStatement> statements) {
+        for (Map.Entry<String, SQLiteStatement> entry : statements.entrySet()) {
+            if (mStatementCache == null) {
+                entry.getValue().close();
+            } else {
+                mStatementCache.release(db, entry.getKey(), entry.getValue());
+            }
         }
     }
 
     @VisibleForTesting
     String generateSql(int onConflict) {
-        final Set<String> columnNames = getColumnNames(mContentValues.get(0));
-        return new StringBuilder(152).append("insert ")
+        return generateSql(getColumnNames(getContentValues().get(0)), onConflict, 1);
+    }
+
+    private String generateSql(String[] columnNames, int onConflict, int rowCount) {
+        final String rowValues = generateValues(columnNames.length);
+
+        final StringBuilder sqlBuilder = new StringBuilder(152 + (rowCount * (rowValues.length() + 4)))
+                .append("insert ")
                 .append(getConflictClause(onConflict))
                 .append("into ")
                 .append(mTable)
                 .append('(')
                 .append(generateColumns(columnNames))
-                .append(") values (")
-                .append(generateValues(columnNames.size()))
-                .append(')')
-                .toString();
+                .append(") values ");
+        for (int i = 0; i < rowCount; i++) {
+            if (i > 0) {
+                sqlBuilder.append(", ");
+            }
+            sqlBuilder.append('(').append(rowValues).append(')');
+        }
+        return sqlBuilder.toString();
     }
 
     private static String getConflictClause(int onConflict) {
@@ -150,7 +476,7 @@ public final class SqlInsertionBuilder {
         }
     }
 
-    private static String generateColumns(Set<String> columnNames) {
+    private static String generateColumns(String[] columnNames) {
         final StringBuilder columnBuilder = new StringBuilder();
         for (String columnName : columnNames) {
             columnBuilder.append(columnName);
@@ -159,14 +485,24 @@ public final class SqlInsertionBuilder {
         return columnBuilder.substring(0, columnBuilder.length() - 2);
     }
 
-    private static Set<String> getColumnNames(ContentValues contentValues) {
-        final Set<String> columnNames;
-        if (contentValues == null) {
-            columnNames = Collections.singleton(BaseColumns._ID);
-        } else {
-            columnNames = contentValues.keySet();
+    private static String[] getColumnNames(ContentValues contentValues) {
+        if ((contentValues == null) || (contentValues.size() == 0)) {
+            return new String[]{BaseColumns._ID};
         }
-        return columnNames;
+
+        final Set<String> columnNames = contentValues.keySet();
+        return columnNames.toArray(new String[columnNames.size()]);
+    }
+
+    private static String getSignature(String[] columnNames) {
+        final String[] sortedNames = columnNames.clone();
+        Arrays.sort(sortedNames);
+
+        final StringBuilder signatureBuilder = new StringBuilder();
+        for (String columnName : sortedNames) {
+            signatureBuilder.append(columnName).append(',');
+        }
+        return signatureBuilder.toString();
     }
 
     private static String generateValues(int size) {
@@ -177,21 +513,80 @@ public final class SqlInsertionBuilder {
         return valueBuilder.substring(0, valueBuilder.length() - 2);
     }
 
-    private static void bindValues(SQLiteStatement statement, ContentValues contentValues) {
-        if (contentValues == null) {
-            return;
+    /**
+     * Binds {@code value} using the bind method matching its type, so it is stored with its native SQLite storage
+     * class instead of being converted to text.
+     */
+    private static void bindValue(SQLiteStatement statement, int index, Object value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else if (value instanceof String) {
+            statement.bindString(index, (String) value);
+        } else if ((value instanceof Long) || (value instanceof Integer) || (value instanceof Short)
+                || (value instanceof Byte)) {
+            statement.bindLong(index, ((Number) value).longValue());
+        } else if ((value instanceof Double) || (value instanceof Float)) {
+            statement.bindDouble(index, ((Number) value).doubleValue());
+        } else if (value instanceof Boolean) {
+            statement.bindLong(index, ((Boolean) value) ? 1 : 0);
+        } else if (value instanceof byte[]) {
+            statement.bindBlob(index, (byte[]) value);
+        } else {
+            statement.bindString(index, value.toString());
         }
+    }
 
-        int parameterIndex = 1;
-        for (String column : contentValues.keySet()) {
-            final String value = contentValues.getAsString(column);
-            if (value == null) {
-                statement.bindNull(parameterIndex);
-            } else {
-                statement.bindString(parameterIndex, value);
+    /**
+     * The columns of a single row signature and the statements generated for them.
+     */
+    private final class InsertShape {
+
+        private final String[] columnNames;
+        private final Map<Integer, String> sqlByRowCount;
+
+        private InsertShape(String[] columnNames) {
+            this.columnNames = columnNames;
+            this.sqlByRowCount = new HashMap<>(4);
+        }
+
+        private String getSql(int rowCount, int onConflict) {
+            String sql = sqlByRowCount.get(rowCount);
+            if (sql == null) {
+                sql = generateSql(columnNames, onConflict, rowCount);
+                sqlByRowCount.put(rowCount, sql);
             }
+            return sql;
+        }
 
-            parameterIndex++;
+        private int getMaxRowsPerStatement() {
+            return Math.max(1, Math.min(MAX_ROWS_PER_STATEMENT, MAX_HOST_PARAMETERS / columnNames.length));
+        }
+
+        private boolean matches(ContentValues values) {
+            if ((values == null) || (values.size() == 0)) {
+                return (columnNames.length == 1) && BaseColumns._ID.equals(columnNames[0]);
+            }
+
+            if (values.size() != columnNames.length) {
+                return false;
+            }
+
+            for (String columnName : columnNames) {
+                if (!values.containsKey(columnName)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void bind(SQLiteStatement statement, int firstIndex, ContentValues values) {
+            if (values == null) {
+                return;
+            }
+
+            for (int i = 0; i < columnNames.length; i++) {
+                bindValue(statement, firstIndex + i, values.get(columnNames[i]));
+            }
         }
     }
 }
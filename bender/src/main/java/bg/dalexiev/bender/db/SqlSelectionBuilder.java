@@ -1,10 +1,15 @@
 package bg.dalexiev.bender.db;
 
+import android.annotation.TargetApi;
 import android.content.ContentValues;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
+import android.os.Build;
+import android.os.CancellationSignal;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -20,6 +25,30 @@ import bg.dalexiev.bender.util.Preconditions;
  */
 public class SqlSelectionBuilder {
 
+    /**
+     * The {@code min} aggregate function.
+     *
+     * @see #aggregate(SQLiteDatabase, String, String)
+     * @since 1.2.0
+     */
+    public static final String AGGREGATE_MIN = "min";
+
+    /**
+     * The {@code max} aggregate function.
+     *
+     * @see #aggregate(SQLiteDatabase, String, String)
+     * @since 1.2.0
+     */
+    public static final String AGGREGATE_MAX = "max";
+
+    /**
+     * The {@code sum} aggregate function.
+     *
+     * @see #aggregate(SQLiteDatabase, String, String)
+     * @since 1.2.0
+     */
+    public static final String AGGREGATE_SUM = "sum";
+
     private static final String AND = " and ";
     private static final String OR = " or ";
 
@@ -339,6 +368,121 @@ public class SqlSelectionBuilder {
         return db.delete(mTable, getSelection(), getSelectionArgs());
     }
 
+    /**
+     * Count the rows matching the current {@code where} clause, without creating a cursor.
+     *
+     * @param db required. The database to query against.
+     * @return the number of matching rows.
+     * @throws IllegalArgumentException if {@code db} is {@code null}.
+     * @throws IllegalStateException    if a table has not been set by calling {@link #setTable(String)} before trying
+     *                                  to count.
+     * @since 1.2.0
+     */
+    public long count(@NonNull SQLiteDatabase db) {
+        Preconditions.argumentNotNull(db, "Database can't be null");
+
+        Preconditions.stateNotNull(mTable, "Can't execute a count with no table set. Did you call setTable()?");
+
+        return DatabaseUtils.queryNumEntries(db, mTable, getSelection(), getSelectionArgs());
+    }
+
+    /**
+     * Check if there is a row matching the current {@code where} clause, without creating a cursor. The query stops at
+     * the first matching row.
+     *
+     * @param db required. The database to query against.
+     * @return {@code true} if at least one row matches.
+     * @throws IllegalArgumentException if {@code db} is {@code null}.
+     * @throws IllegalStateException    if a table has not been set by calling {@link #setTable(String)} before trying
+     *                                  to query.
+     * @since 1.2.0
+     */
+    public boolean exists(@NonNull SQLiteDatabase db) {
+        Preconditions.argumentNotNull(db, "Database can't be null");
+
+        Preconditions.stateNotNull(mTable, "Can't execute a query with no table set. Did you call setTable()?");
+
+        return DatabaseUtils.longForQuery(db, buildExistsSql(), getSelectionArgs()) != 0;
+    }
+
+    @VisibleForTesting
+    String buildExistsSql() {
+        final StringBuilder sql = new StringBuilder(64).append("select exists(select 1 from ").append(mTable);
+        appendWhereClause(sql);
+        return sql.append(')').toString();
+    }
+
+    /**
+     * Apply an aggregate function to a column of the rows matching the current {@code where} clause, without creating
+     * a cursor. Grouping, ordering and limits are ignored.
+     *
+     * @param db       required. The database to query against.
+     * @param function required. The aggregate function. One of {@link #AGGREGATE_MIN}, {@link #AGGREGATE_MAX} or {@link
+     *                 #AGGREGATE_SUM}.
+     * @param column   required. The column or expression to aggregate.
+     * @return the result of the function with its SQLite type - a {@code Long} for an integer and a {@code Double}
+     * for a real, or {@code null} if there are no rows or all values are {@code null}.
+     * @throws IllegalArgumentException if {@code db} or {@code column} is {@code null}, if {@code function} is not
+     *                                  supported, or if the result is not a number, like the minimum of a text
+     *                                  column.
+     * @throws IllegalStateException    if a table has not been set by calling {@link #setTable(String)} before trying
+     *                                  to query.
+     * @since 1.2.0
+     */
+    @Nullable
+    public Number aggregate(@NonNull SQLiteDatabase db, @NonNull String function, @NonNull String column) {
+        Preconditions.argumentNotNull(db, "Database can't be null");
+        Preconditions.argumentCondition(!AGGREGATE_MIN.equals(function) && !AGGREGATE_MAX.equals(function)
+                && !AGGREGATE_SUM.equals(function), "Unsupported aggregate function: " + function);
+        Preconditions.argumentNotNull(column, "Column can't be null");
+
+        Preconditions.stateNotNull(mTable, "Can't execute a query with no table set. Did you call setTable()?");
+
+        return parseAggregate(DatabaseUtils.stringForQuery(db, buildAggregateSql(function, column),
+                getSelectionArgs()), column);
+    }
+
+    @VisibleForTesting
+    String buildAggregateSql(@NonNull String function, @NonNull String column) {
+        // the type is returned with the value, so integers are not read as doubles
+        final StringBuilder sql = new StringBuilder(96).append("select typeof(value) || ':' || value from (select ")
+                .append(function).append('(').append(column).append(") as value from ").append(mTable);
+        appendWhereClause(sql);
+        return sql.append(')').toString();
+    }
+
+    @VisibleForTesting
+    @Nullable
+    static Number parseAggregate(@Nullable String typedValue, @NonNull String column) {
+        if (typedValue == null) {
+            return null;
+        }
+
+        final int separatorIndex = typedValue.indexOf(':');
+        final String type = typedValue.substring(0, separatorIndex);
+        final String value = typedValue.substring(separatorIndex + 1);
+        switch (type) {
+            case "integer":
+                return Long.parseLong(value);
+
+            case "real":
+                // SQLite prints infinity as Inf
+                if (value.endsWith("Inf")) {
+                    return value.startsWith("-") ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+                }
+                return Double.parseDouble(value);
+
+            default:
+                throw new IllegalArgumentException("The aggregate of " + column + " is not a number, but " + type);
+        }
+    }
+
+    private void appendWhereClause(@NonNull StringBuilder sql) {
+        if (mSelection.length() > 0) {
+            sql.append(" where ").append(mSelection);
+        }
+    }
+
     /**
      * Perform a database query, applying the current state of this instance.
      *
@@ -361,6 +505,77 @@ public class SqlSelectionBuilder {
                 getOrderBy(), mLimit);
     }
 
+    /**
+     * Perform a database query, applying the current state of this instance, which can be cancelled while it runs.
+     *
+     * @param db                 required. The database to query against.
+     * @param projection         optional. The columns to fetch in the result set.
+     * @param cancellationSignal optional. A signal to cancel the query with, while it runs or while the returned
+     *                           cursor fills its window.
+     * @return a cursor holding the query result set.
+     * @throws IllegalArgumentException            if {@code db} is {@code null}.
+     * @throws IllegalStateException               if a table has not been set by calling {@link #setTable(String)}
+     *                                             before trying to query.
+     * @throws android.os.OperationCanceledException if the query has been cancelled.
+     * @see #query(SQLiteDatabase, String[])
+     * @since 1.2.0
+     */
+    @Nullable
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    public Cursor query(@NonNull SQLiteDatabase db, @Nullable String[] projection,
+                        @Nullable CancellationSignal cancellationSignal) {
+        Preconditions.argumentNotNull(db, "Database can't be null");
+
+        Preconditions.stateNotNull(mTable, "Can't execute a query with no table set. Did you call setTable()?");
+
+        return db.query(mIsDistinct, mTable, projection, getSelection(), getSelectionArgs(), mGroupBy, mHaving,
+                getOrderBy(), mLimit, cancellationSignal);
+    }
+
+    /**
+     * Build the SQL of the query {@link #query(SQLiteDatabase, String[])} runs, applying the current state of this
+     * instance. Two builders with the same state produce the same SQL, so it can be used, together with the {@link
+     * #getSelectionArgs() selection arguments}, as a key of the query result.
+     *
+     * @param projection optional. The columns to fetch in the result set. If {@code null}, all columns are fetched.
+     * @return the SQL of the query.
+     * @throws IllegalStateException if a table has not been set by calling {@link #setTable(String)}.
+     * @see QueryResultCache
+     * @since 1.2.0
+     */
+    @NonNull
+    public String buildQuerySql(@Nullable String[] projection) {
+        Preconditions.stateNotNull(mTable, "Can't build a query with no table set. Did you call setTable()?");
+
+        final StringBuilder sql = new StringBuilder(128).append("select ");
+        if (mIsDistinct) {
+            sql.append("distinct ");
+        }
+        if ((projection == null) || (projection.length == 0)) {
+            sql.append('*');
+        } else {
+            for (int i = 0; i < projection.length; i++) {
+                if (i > 0) {
+                    sql.append(SEPARATOR_COMMA);
+                }
+                sql.append(projection[i]);
+            }
+        }
+        sql.append(" from ").append(mTable);
+        appendWhereClause(sql);
+        appendClause(sql, " group by ", mGroupBy);
+        appendClause(sql, " having ", mHaving);
+        appendClause(sql, " order by ", getOrderBy());
+        appendClause(sql, " limit ", mLimit);
+        return sql.toString();
+    }
+
+    private static void appendClause(@NonNull StringBuilder sql, @NonNull String keyword, @Nullable String clause) {
+        if ((clause != null) && !clause.isEmpty()) {
+            sql.append(keyword).append(clause);
+        }
+    }
+
     @Nullable
     public String[] getSelectionArgs() {
         if (mSelectionArgs.isEmpty()) {
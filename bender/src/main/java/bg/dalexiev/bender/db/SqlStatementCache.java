@@ -0,0 +1,172 @@
+package bg.dalexiev.bender.db;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.support.annotation.NonNull;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import bg.dalexiev.bender.util.Preconditions;
+
+/**
+ * A bounded, least recently used cache of compiled {@link SQLiteStatement}s.
+ * <p>
+ * Statements are keyed by their SQL, which for inserts encodes the target table, the column signature and the conflict
+ * algorithm. A statement is handed out exclusively by {@link #acquire(SQLiteDatabase, String)} and must be given
+ * back with {@link #release(SQLiteDatabase, String, SQLiteStatement)} once it has been executed, so concurrent callers
+ * never share binding state.
+ * </p>
+ * <p>
+ * The cache is bound to a single database instance. If a statement is requested for a different database instance
+ * (for example after the {@code SQLiteOpenHelper} has been closed and reopened with a new schema version), all cached
+ * statements are closed and discarded.
+ * </p>
+ *
+ * @author danail.alexiev
+ * @since 1.2.0
+ */
+public final class SqlStatementCache {
+
+    private final int mMaxSize;
+    private final LinkedHashMap<String, SQLiteStatement> mStatements;
+
+    private SQLiteDatabase mDatabase;
+
+    private int mHitCount;
+    private int mMissCount;
+
+    /**
+     * Create a new cache.
+     *
+     * @param maxSize the maximum number of compiled statements to keep. Must be positive.
+     * @throws IllegalArgumentException if {@code maxSize} is not positive.
+     */
+    public SqlStatementCache(int maxSize) {
+        Preconditions.argumentCondition(maxSize <= 0, "Max size must be positive");
+
+        mMaxSize = maxSize;
+        mStatements = new LinkedHashMap<>(maxSize, 0.75f, true);
+    }
+
+    /**
+     * Obtain a compiled statement for {@code sql}, compiling a new one if there is no cached instance.
+     * <p>
+     * The returned statement is removed from the cache until it is given back using {@link #release(SQLiteDatabase,
+     * String, SQLiteStatement)}.
+     * </p>
+     *
+     * @param db  required. The database to compile the statement against.
+     * @param sql required. The SQL of the statement.
+     * @return a compiled statement, owned by the caller until released.
+     * @throws IllegalArgumentException if {@code db} or {@code sql} is {@code null}.
+     */
+    @NonNull
+    public SQLiteStatement acquire(@NonNull SQLiteDatabase db, @NonNull String sql) {
+        Preconditions.argumentNotNull(db, "Database can't be null");
+        Preconditions.argumentNotNull(sql, "Sql can't be null");
+
+        synchronized (this) {
+            if (mDatabase != db) {
+                closeAll();
+                mDatabase = db;
+            }
+
+            final SQLiteStatement statement = mStatements.remove(sql);
+            if (statement != null) {
+                mHitCount++;
+                return statement;
+            }
+
+            mMissCount++;
+        }
+
+        return db.compileStatement(sql);
+    }
+
+    /**
+     * Give back a statement, previously obtained by {@link #acquire(SQLiteDatabase, String)}.
+     * <p>
+     * If the cache is full, the least recently used statement is closed. If the cache has been invalidated or bound to
+     * another database while the statement was in use, the statement is closed.
+     * </p>
+     *
+     * @param db        required. The database the statement has been acquired for.
+     * @param sql       required. The SQL the statement has been acquired with.
+     * @param statement required. The statement to give back.
+     */
+    public void release(@NonNull SQLiteDatabase db, @NonNull String sql, @NonNull SQLiteStatement statement) {
+        Preconditions.argumentNotNull(db, "Database can't be null");
+        Preconditions.argumentNotNull(sql, "Sql can't be null");
+        Preconditions.argumentNotNull(statement, "Statement can't be null");
+
+        statement.clearBindings();
+
+        final SQLiteStatement displaced;
+        synchronized (this) {
+            if (mDatabase != db) {
+                displaced = statement;
+            } else {
+                displaced = mStatements.put(sql, statement);
+                trimToSize();
+            }
+        }
+
+        if (displaced != null) {
+            displaced.close();
+        }
+    }
+
+    /**
+     * Close and discard all cached statements. Call this after the database schema has been changed.
+     */
+    public synchronized void invalidate() {
+        closeAll();
+        mDatabase = null;
+    }
+
+    private void trimToSize() {
+        final Iterator<Map.Entry<String, SQLiteStatement>> iterator = mStatements.entrySet().iterator();
+        while (mStatements.size() > mMaxSize && iterator.hasNext()) {
+            final SQLiteStatement eldest = iterator.next().getValue();
+            iterator.remove();
+            eldest.close();
+        }
+    }
+
+    private void closeAll() {
+        for (SQLiteStatement statement : mStatements.values()) {
+            statement.close();
+        }
+        mStatements.clear();
+    }
+
+    /**
+     * @return the number of times a cached statement has been reused.
+     */
+    public synchronized int getHitCount() {
+        return mHitCount;
+    }
+
+    /**
+     * @return the number of times a statement had to be compiled.
+     */
+    public synchronized int getMissCount() {
+        return mMissCount;
+    }
+
+    /**
+     * @return the number of currently cached statements.
+     */
+    public synchronized int size() {
+        return mStatements.size();
+    }
+
+    /**
+     * @return the maximum number of cached statements.
+     */
+    public int getMaxSize() {
+        return mMaxSize;
+    }
+}
@@ -0,0 +1,28 @@
+package bg.dalexiev.bender.mapper;
+
+import android.support.annotation.Nullable;
+
+/**
+ * Receives the entities of a streamed query result, one at a time.
+ *
+ * <p>
+ * The consumer is expected to process each entity and drop it. The entities are not kept by the query.
+ * </p>
+ *
+ * @param <E> the type of the consumed entities
+ *
+ * @author danail.alexiev
+ * @since 1.2.0
+ */
+public interface EntityConsumer<E> {
+
+    /**
+     * Process a single entity of the result.
+     *
+     * @param entity the entity, mapped from the current row. Can be {@code null}, if the row mapper returned
+     *               {@code null}.
+     * @since 1.2.0
+     */
+    void accept(@Nullable E entity);
+
+}
@@ -0,0 +1,53 @@
+package bg.dalexiev.bender.mapper;
+
+import android.content.ContentValues;
+import android.database.sqlite.SQLiteStatement;
+import android.support.annotation.NonNull;
+
+/**
+ * Writes the fields of an entity to the columns of a table.
+ *
+ * <p>
+ * Implementations are usually generated by the {@code bender-compiler} annotation processor for classes annotated
+ * with {@link bg.dalexiev.bender.annotation.Entity}.
+ * </p>
+ *
+ * @param <E> the type of the written entities
+ *
+ * @author danail.alexiev
+ * @see bg.dalexiev.bender.db.SqlInsertionBuilder#insertEntities(android.database.sqlite.SQLiteDatabase,
+ * EntityWriter, java.util.List, int)
+ * @since 1.2.0
+ */
+public interface EntityWriter<E> {
+
+    /**
+     * @return the names of the written columns, in binding order. Callers must not modify the returned array.
+     * @since 1.2.0
+     */
+    @NonNull
+    String[] getColumns();
+
+    /**
+     * Bind the values of {@code entity} to {@code statement}. The value of the column at position {@code i} in
+     * {@link #getColumns()} is bound to the host parameter {@code firstIndex + i}.
+     *
+     * @param statement  required. The statement to bind to.
+     * @param firstIndex the index of the host parameter for the first column, starting at {@code 1}.
+     * @param entity     required. The entity to write.
+     * @since 1.2.0
+     */
+    void bind(@NonNull SQLiteStatement statement, int firstIndex, @NonNull E entity);
+
+    /**
+     * Write the values of {@code entity} to a new {@code ContentValues} instance. Use this only when the values have
+     * to cross a process boundary, for example for a {@code ContentResolver} request.
+     *
+     * @param entity required. The entity to write.
+     * @return the values of the entity.
+     * @since 1.2.0
+     */
+    @NonNull
+    ContentValues toContentValues(@NonNull E entity);
+
+}
@@ -0,0 +1,94 @@
+package bg.dalexiev.bender.mapper;
+
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * Typed access to the current row of a cursor, through column indices that have been resolved once per cursor.
+ *
+ * <p>
+ * Columns are identified by their position in the column list of the {@link TypedRowMapper}, that created the row.
+ * Reading a value is a plain array access followed by the cursor getter - no column name lookups are performed.
+ * </p>
+ *
+ * @author danail.alexiev
+ * @see TypedRowMapper
+ * @since 1.2.0
+ */
+public final class Row {
+
+    private final Cursor mCursor;
+    private final int[] mColumnIndices;
+
+    Row(@NonNull Cursor cursor, @NonNull String[] columns) {
+        mCursor = cursor;
+
+        mColumnIndices = new int[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            mColumnIndices[i] = cursor.getColumnIndexOrThrow(columns[i]);
+        }
+    }
+
+    /**
+     * @return the underlying cursor, positioned at the current row.
+     */
+    @NonNull
+    public Cursor getCursor() {
+        return mCursor;
+    }
+
+    /**
+     * Get the index of a column in the underlying cursor.
+     *
+     * @param column the position of the column in the column list of the row mapper.
+     * @return the index of the column in the cursor.
+     */
+    public int getColumnIndex(int column) {
+        return mColumnIndices[column];
+    }
+
+    public boolean isNull(int column) {
+        return mCursor.isNull(mColumnIndices[column]);
+    }
+
+    @Nullable
+    public String getString(int column) {
+        return mCursor.getString(mColumnIndices[column]);
+    }
+
+    public long getLong(int column) {
+        return mCursor.getLong(mColumnIndices[column]);
+    }
+
+    public int getInt(int column) {
+        return mCursor.getInt(mColumnIndices[column]);
+    }
+
+    public short getShort(int column) {
+        return mCursor.getShort(mColumnIndices[column]);
+    }
+
+    public double getDouble(int column) {
+        return mCursor.getDouble(mColumnIndices[column]);
+    }
+
+    public float getFloat(int column) {
+        return mCursor.getFloat(mColumnIndices[column]);
+    }
+
+    /**
+     * Read an integer column, holding {@code 1} for {@code true} and {@code 0} for {@code false}.
+     *
+     * @param column the position of the column in the column list of the row mapper.
+     * @return {@code true} if the column value is not {@code 0}.
+     */
+    public boolean getBoolean(int column) {
+        return mCursor.getInt(mColumnIndices[column]) != 0;
+    }
+
+    @Nullable
+    public byte[] getBlob(int column) {
+        return mCursor.getBlob(mColumnIndices[column]);
+    }
+}
@@ -0,0 +1,90 @@
+package bg.dalexiev.bender.mapper;
+
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import bg.dalexiev.bender.util.Preconditions;
+
+/**
+ * A {@link RowMapper}, reading the rows through a typed {@link Row} accessor.
+ *
+ * <p>
+ * The mapper declares the columns it reads up front. When a result is mapped, the indices of these columns are
+ * resolved once per cursor and each row is read by the position of the column in the declaration:
+ * </p>
+ *
+ * <pre>
+ * private static final int COL_ID = 0;
+ * private static final int COL_TITLE = 1;
+ *
+ * public ToDoRowMapper() {
+ *     super(ToDo._ID, ToDo.TITLE);
+ * }
+ *
+ * public ToDo toObject(Row row, int rowNum) {
+ *     return new ToDo(row.getLong(COL_ID), row.getString(COL_TITLE));
+ * }
+ * </pre>
+ *
+ * @param <E> the type of the mapped result objects
+ *
+ * @author danail.alexiev
+ * @since 1.2.0
+ */
+public abstract class TypedRowMapper<E> implements RowMapper<E> {
+
+    private final String[] mColumns;
+
+    /**
+     * @param columns required. The names of the columns this mapper reads.
+     * @throws IllegalArgumentException if {@code columns} is {@code null} or empty.
+     */
+    protected TypedRowMapper(@NonNull String... columns) {
+        Preconditions.argumentNotNull(columns, "Columns can't be null");
+        Preconditions.argumentCondition(columns.length == 0, "Columns can't be empty");
+
+        mColumns = columns.clone();
+    }
+
+    /**
+     * Resolve the columns of this mapper in {@code cursor}. Call this once per cursor and use the result to map each
+     * of its rows with {@link #toObject(Row, int)}.
+     *
+     * @param cursor required. The cursor to map.
+     * @return a row accessor, bound to {@code cursor}.
+     * @throws IllegalArgumentException if a column of this mapper is not a part of the cursor.
+     */
+    @NonNull
+    public final Row bind(@NonNull Cursor cursor) {
+        Preconditions.argumentNotNull(cursor, "Cursor can't be null");
+
+        return new Row(cursor, mColumns);
+    }
+
+    /**
+     * Maps a single row. Resolves the column indices on every call - mapping pipelines should use {@link
+     * #bind(Cursor)} and {@link #toObject(Row, int)} instead.
+     * <p>
+     * {@inheritDoc}
+     */
+    @Nullable
+    @Override
+    public final E toObject(@NonNull Cursor cursor, int rowNum) {
+        return toObject(bind(cursor), rowNum);
+    }
+
+    /**
+     * Maps the current row to an object.
+     *
+     * <p>
+     * Implementations shouldn't perform any moves on the cursor of the {@code row} in this method.
+     * </p>
+     *
+     * @param row    required. The typed accessor of the current row.
+     * @param rowNum the number of the row being mapped in the SQL result set.
+     * @return an object, representing the data in the row being mapped. Can be {@code null}.
+     */
+    @Nullable
+    public abstract E toObject(@NonNull Row row, int rowNum);
+}
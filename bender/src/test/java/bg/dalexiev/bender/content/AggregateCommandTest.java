@@ -0,0 +1,119 @@
+package bg.dalexiev.bender.content;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InOrder;
+import org.mockito.Spy;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import android.content.ContentResolver;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.Message;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.Map;
+
+import bg.dalexiev.bender.db.SqlSelectionBuilder;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isNull;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class AggregateCommandTest extends ResolverCommandTestBase<AggregateCommand.Callback, AggregateCommand> {
+
+    private static final String COLUMN = "price";
+
+    @Spy
+    private SqlSelectionBuilder mSelectionBuilder;
+
+    private Bundle mResult;
+
+    @Before
+    public void setUpResult() {
+        mResult = mock(Bundle.class);
+        doReturn(12.5).when(mResult).get(DatabaseContentProvider.EXTRA_RESULT);
+        doReturn(mResult).when(mContentResolver).call(any(Uri.class), anyString(), anyString(), any(Bundle.class));
+        doReturn("content://test/foo").when(mUri).toString();
+    }
+
+    @Test
+    public void shouldReturnAggregateValue() {
+        final Number value = mTested.onUri(mUri).execute();
+
+        assertEquals(12.5, value);
+    }
+
+    @Test
+    public void shouldReturnIntegerSumAsLong() {
+        doReturn(Long.MAX_VALUE).when(mResult).get(DatabaseContentProvider.EXTRA_RESULT);
+
+        final Number value = mTested.onUri(mUri).execute();
+
+        assertEquals(Long.MAX_VALUE, value);
+    }
+
+    @Test
+    public void shouldReturnNullWhenNoValues() {
+        doReturn(null).when(mResult).get(DatabaseContentProvider.EXTRA_RESULT);
+
+        assertNull(mTested.onUri(mUri).execute());
+    }
+
+    @Override
+    protected void verifyContentResolverMethodCalled(@NonNull InOrder executionOrder,
+                                                     @Nullable Map<String, Object> executionParams) {
+        executionOrder.verify(mContentResolver).call(eq(mUri), eq(DatabaseContentProvider.METHOD_MAX), anyString(),
+                any(Bundle.class));
+    }
+
+    @Override
+    protected void verifyCallbackCalled(Message msg, AggregateCommand.Callback callback) {
+        verify(callback).onAggregateComplete(eq(msg.what), isNull(Number.class));
+    }
+
+    @Override
+    protected Message createCallbackMessage() {
+        final Message msg = new Message();
+        msg.what = 1;
+        msg.obj = null;
+        return msg;
+    }
+
+    @NonNull
+    @Override
+    protected AggregateCommand createTested(@NonNull BaseResolverCommand.WorkerHandler workerHandler,
+                                            @NonNull ContentResolver contentResolver) {
+        return new AggregateCommand(workerHandler, contentResolver, mSelectionBuilder,
+                DatabaseContentProvider.METHOD_MAX, COLUMN);
+    }
+
+    @Override
+    protected AggregateCommand.Callback createCallback() {
+        return mock(AggregateCommand.Callback.class);
+    }
+
+    @Nullable
+    @Override
+    protected Map<String, Object> executeCommand() {
+        mTested.onUri(mUri).execute();
+
+        return null;
+    }
+
+    @Override
+    protected Map<String, Object> executeAsyncCommand(int token, AggregateCommand.Callback callback) {
+        mTested.onUri(mUri).executeAsync(token, callback);
+
+        return null;
+    }
+}
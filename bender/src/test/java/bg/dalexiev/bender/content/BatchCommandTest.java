@@ -58,6 +58,11 @@ public class BatchCommandTest extends ResolverCommandTestBase<BatchCommand.Callb
         mTested.addUpdate(null);
     }
 
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowWhenNegativeYieldInterval() {
+        mTested.withYieldInterval(-1);
+    }
+
     @Test(expected = UnsupportedOperationException.class)
     public void shouldThrowWhenTryingToSetUri() {
         mTested.onUri(mUri);
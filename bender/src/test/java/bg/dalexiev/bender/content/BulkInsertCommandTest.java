@@ -13,13 +13,18 @@ import android.os.Message;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
+import java.util.Arrays;
 import java.util.Map;
 
+import bg.dalexiev.bender.mapper.EntityWriter;
+
+import static junit.framework.Assert.assertEquals;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
 public class BulkInsertCommandTest extends ResolverCommandTestBase<BulkInsertCommand.Callback, BulkInsertCommand> {
@@ -84,6 +89,30 @@ public class BulkInsertCommandTest extends ResolverCommandTestBase<BulkInsertCom
         executionOrder.verify(mContentValuesBuilder).set(eq(byteArrayColumn), eq(byteArrayValue));
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldAddEntityRows() {
+        final ContentValues first = mock(ContentValues.class);
+        final ContentValues second = mock(ContentValues.class);
+        final EntityWriter<String> writer = mock(EntityWriter.class);
+        when(writer.toContentValues("a")).thenReturn(first);
+        when(writer.toContentValues("b")).thenReturn(second);
+        when(first.size()).thenReturn(1);
+
+        mTested.addEntities(writer, Arrays.asList("a", "b"));
+
+        final InOrder executionOrder = inOrder(mContentValuesBuilder);
+        executionOrder.verify(mContentValuesBuilder).addValue(first);
+        executionOrder.verify(mContentValuesBuilder).addValue(second);
+        assertEquals(2, mTested.getContentValues().length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    @SuppressWarnings("unchecked")
+    public void shouldThrowWhenNullEntities() {
+        mTested.addEntities(mock(EntityWriter.class), null);
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void shouldThrowWhenNullColumnNameForNull() {
         mTested.setNull(null);
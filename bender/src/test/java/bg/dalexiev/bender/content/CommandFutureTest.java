@@ -0,0 +1,357 @@
+package bg.dalexiev.bender.content;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CommandFutureTest {
+
+    @Mock
+    private BaseResolverCommand<String, ?, ?> mCommand;
+
+    private CommandFuture<String> mTested;
+
+    @Before
+    public void setUp() {
+        mTested = CommandFuture.forCommand(mCommand);
+    }
+
+    @Test
+    public void shouldReturnResult() throws Exception {
+        assertTrue(mTested.set("result"));
+
+        assertTrue(mTested.isDone());
+        assertEquals("result", mTested.get());
+    }
+
+    @Test
+    public void shouldCompleteOnlyOnce() throws Exception {
+        mTested.set("first");
+
+        assertFalse(mTested.set("second"));
+        assertFalse(mTested.setError(new IllegalStateException()));
+        assertFalse(mTested.cancel(true));
+        assertEquals("first", mTested.get());
+    }
+
+    @Test
+    public void shouldThrowWhenFailed() throws Exception {
+        final IllegalStateException error = new IllegalStateException();
+        mTested.setError(error);
+
+        try {
+            mTested.get();
+            fail("Should fail with " + ExecutionException.class.getSimpleName());
+        } catch (ExecutionException e) {
+            assertSame(error, e.getCause());
+        }
+    }
+
+    @Test(expected = TimeoutException.class)
+    public void shouldThrowWhenNotCompletedInTime() throws Exception {
+        mTested.get(10L, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void shouldCancelCommandWhenInterrupting() {
+        assertTrue(mTested.cancel(true));
+
+        assertTrue(mTested.isCancelled());
+        verify(mCommand).cancelExecution(mTested, true);
+    }
+
+    @Test
+    public void shouldNotInterruptCommandWhenNotInterrupting() {
+        mTested.cancel(false);
+
+        verify(mCommand).cancelExecution(mTested, false);
+        verify(mCommand, never()).cancel();
+    }
+
+    @Test(expected = CancellationException.class)
+    public void shouldThrowWhenCancelled() throws Exception {
+        mTested.cancel(false);
+
+        mTested.get();
+    }
+
+    @Test
+    public void shouldNotifyListenerOnCompletion() {
+        final RecordingListener<String> listener = new RecordingListener<>();
+        mTested.addListener(listener);
+
+        assertTrue(listener.mResults.isEmpty());
+        mTested.set("result");
+
+        assertEquals(Collections.singletonList("result"), listener.mResults);
+    }
+
+    @Test
+    public void shouldNotifyListenerAddedAfterCompletion() {
+        final RecordingListener<String> listener = new RecordingListener<>();
+        final IllegalStateException error = new IllegalStateException();
+        mTested.setError(error);
+
+        mTested.addListener(listener);
+
+        assertEquals(Collections.<Throwable>singletonList(error), listener.mErrors);
+    }
+
+    @Test
+    public void shouldNotifyListenerThroughExecutor() {
+        final List<Runnable> notifications = new ArrayList<>();
+        final RecordingListener<String> listener = new RecordingListener<>();
+        mTested.addListener(listener, new Executor() {
+            @Override
+            public void execute(@NonNull Runnable command) {
+                notifications.add(command);
+            }
+        });
+
+        mTested.set("result");
+        assertTrue(listener.mResults.isEmpty());
+        notifications.get(0).run();
+
+        assertEquals(Collections.singletonList("result"), listener.mResults);
+    }
+
+    @Test
+    public void shouldTransformResult() throws Exception {
+        final CommandFuture<Integer> transformed = mTested.transform(new CommandFuture.Transformation<String, Integer>() {
+            @Override
+            public Integer apply(@Nullable String result) {
+                return result.length();
+            }
+        });
+
+        mTested.set("result");
+
+        assertEquals(Integer.valueOf(6), transformed.get());
+    }
+
+    @Test
+    public void shouldFailWhenTransformationThrows() throws Exception {
+        final CommandFuture<Integer> transformed = mTested.transform(new CommandFuture.Transformation<String, Integer>() {
+            @Override
+            public Integer apply(@Nullable String result) {
+                return result.length();
+            }
+        });
+
+        mTested.set(null);
+
+        try {
+            transformed.get();
+            fail("Should fail with " + ExecutionException.class.getSimpleName());
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof NullPointerException);
+        }
+    }
+
+    @Test
+    public void shouldCancelSourceWhenTransformedCancelled() {
+        final CommandFuture<Integer> transformed = mTested.transform(new CommandFuture.Transformation<String, Integer>() {
+            @Override
+            public Integer apply(@Nullable String result) {
+                return 0;
+            }
+        });
+
+        transformed.cancel(true);
+
+        assertTrue(mTested.isCancelled());
+        verify(mCommand).cancelExecution(mTested, true);
+    }
+
+    @Test
+    public void shouldChainNextFuture() throws Exception {
+        final CommandFuture<Integer> next = CommandFuture.forCommand(mock(BaseResolverCommand.class));
+        final CommandFuture<Integer> chained = mTested.chain(new CommandFuture.Continuation<String, Integer>() {
+            @NonNull
+            @Override
+            public CommandFuture<Integer> continueWith(@Nullable String result) {
+                return next;
+            }
+        });
+
+        mTested.set("result");
+        assertFalse(chained.isDone());
+        next.set(42);
+
+        assertEquals(Integer.valueOf(42), chained.get());
+    }
+
+    @Test
+    public void shouldCancelNextFutureWhenChainedCancelled() {
+        final CommandFuture<Integer> next = CommandFuture.forCommand(mock(BaseResolverCommand.class));
+        final CommandFuture<Integer> chained = mTested.chain(new CommandFuture.Continuation<String, Integer>() {
+            @NonNull
+            @Override
+            public CommandFuture<Integer> continueWith(@Nullable String result) {
+                return next;
+            }
+        });
+        mTested.set("result");
+
+        chained.cancel(false);
+
+        assertTrue(next.isCancelled());
+    }
+
+    @Test
+    public void shouldCombineAllResultsInOrder() throws Exception {
+        final CommandFuture<String> other = CommandFuture.forCommand(mCommand);
+        final CommandFuture<List<String>> combined = CommandFuture.allOf(mTested, other);
+
+        other.set("second");
+        assertFalse(combined.isDone());
+        mTested.set("first");
+
+        assertEquals(Arrays.asList("first", "second"), combined.get());
+    }
+
+    @Test
+    public void shouldFailAllWhenAnyFails() {
+        final CommandFuture<String> other = CommandFuture.forCommand(mCommand);
+        final CommandFuture<List<String>> combined = CommandFuture.allOf(mTested, other);
+
+        other.setError(new IllegalStateException());
+
+        assertTrue(combined.isDone());
+    }
+
+    @Test
+    public void shouldReleaseResultsAndCancelOthersWhenAllFails() {
+        final CommandFuture<String> failing = CommandFuture.forCommand(mCommand);
+        final CommandFuture<String> pending = CommandFuture.forCommand(mCommand);
+        CommandFuture.allOf(mTested, failing, pending);
+        mTested.set("first");
+
+        failing.setError(new IllegalStateException());
+
+        verify(mCommand).releaseResult("first");
+        assertTrue(pending.isCancelled());
+    }
+
+    @Test
+    public void shouldReleaseResultsWhenAllCancelled() {
+        final CommandFuture<String> pending = CommandFuture.forCommand(mCommand);
+        final CommandFuture<List<String>> combined = CommandFuture.allOf(mTested, pending);
+        mTested.set("first");
+
+        combined.cancel(false);
+
+        verify(mCommand).releaseResult("first");
+        assertTrue(pending.isCancelled());
+    }
+
+    @Test
+    public void shouldNotReleaseResultsWhenAllSucceeds() {
+        final CommandFuture<String> other = CommandFuture.forCommand(mCommand);
+        CommandFuture.allOf(mTested, other);
+
+        mTested.set("first");
+        other.set("second");
+
+        verify(mCommand, never()).releaseResult(anyString());
+    }
+
+    @Test
+    public void shouldCompleteEmptyAllImmediately() throws Exception {
+        final CommandFuture<List<String>> combined =
+                CommandFuture.allOf(Collections.<CommandFuture<String>>emptyList());
+
+        assertTrue(combined.get().isEmpty());
+    }
+
+    @Test
+    public void shouldCompleteAnyWithFirstResult() throws Exception {
+        final CommandFuture<String> other = CommandFuture.forCommand(mCommand);
+        final CommandFuture<String> combined = CommandFuture.anyOf(mTested, other);
+
+        mTested.setError(new IllegalStateException());
+        assertFalse(combined.isDone());
+        other.set("second");
+
+        assertEquals("second", combined.get());
+    }
+
+    @Test
+    public void shouldCancelOthersWhenAnySucceeds() throws Exception {
+        final CommandFuture<String> other = CommandFuture.forCommand(mCommand);
+        CommandFuture.anyOf(mTested, other);
+
+        mTested.set("first");
+
+        assertTrue(other.isCancelled());
+        verify(mCommand).cancelExecution(other, true);
+        verify(mCommand, never()).releaseResult(anyString());
+    }
+
+    @Test
+    public void shouldFailAnyWhenAllFail() {
+        final CommandFuture<String> other = CommandFuture.forCommand(mCommand);
+        final CommandFuture<String> combined = CommandFuture.anyOf(mTested, other);
+
+        mTested.setError(new IllegalStateException());
+        other.setError(new IllegalStateException());
+
+        assertTrue(combined.isDone());
+        assertFalse(combined.isCancelled());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowWhenAnyOfNothing() {
+        CommandFuture.anyOf(Collections.<CommandFuture<String>>emptyList());
+    }
+
+    @Test
+    public void shouldReturnNullResult() throws Exception {
+        mTested.set(null);
+
+        assertNull(mTested.get());
+    }
+
+    private static final class RecordingListener<T> implements CommandFuture.Listener<T> {
+
+        final List<T> mResults = new ArrayList<>();
+        final List<Throwable> mErrors = new ArrayList<>();
+
+        @Override
+        public void onSuccess(@Nullable T result) {
+            mResults.add(result);
+        }
+
+        @Override
+        public void onFailure(@NonNull Throwable error) {
+            mErrors.add(error);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package bg.dalexiev.bender.content;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InOrder;
+import org.mockito.Spy;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import android.content.ContentResolver;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.Message;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.Map;
+
+import bg.dalexiev.bender.db.Predicate;
+import bg.dalexiev.bender.db.SqlSelectionBuilder;
+
+import static junit.framework.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CountCommandTest extends ResolverCommandTestBase<CountCommand.Callback, CountCommand> {
+
+    @Spy
+    private SqlSelectionBuilder mSelectionBuilder;
+
+    private Bundle mResult;
+
+    @Before
+    public void setUpResult() {
+        mResult = mock(Bundle.class);
+        doReturn(5L).when(mResult).getLong(DatabaseContentProvider.EXTRA_RESULT);
+        doReturn(mResult).when(mContentResolver).call(any(Uri.class), anyString(), anyString(), any(Bundle.class));
+        doReturn("content://test/foo").when(mUri).toString();
+    }
+
+    @Test
+    public void shouldDelegateWhereWithSelection() {
+        final String selection = "foo = ?";
+        final String[] selectionArgs = {"selectionArgs"};
+        mTested.where(selection, selectionArgs);
+
+        verify(mSelectionBuilder).where(eq(selection), any(String[].class));
+    }
+
+    @Test
+    public void shouldDelegateOrWhereWithPredicate() {
+        final Predicate predicate = Predicate.eq("foo", "bar");
+
+        mTested.orWhere(predicate);
+
+        verify(mSelectionBuilder).orWhere(eq(predicate));
+    }
+
+    @Test
+    public void shouldReturnCount() {
+        final Long count = mTested.onUri(mUri).where(Predicate.eq("foo", "bar")).execute();
+
+        assertEquals(Long.valueOf(5L), count);
+        verify(mContentResolver).call(eq(mUri), eq(DatabaseContentProvider.METHOD_COUNT), eq("content://test/foo"),
+                any(Bundle.class));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void shouldThrowWhenProviderDoesNotSupportCount() {
+        doReturn(null).when(mContentResolver).call(any(Uri.class), anyString(), anyString(), any(Bundle.class));
+
+        mTested.onUri(mUri).execute();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldThrowWhenNoUriSet() {
+        mTested.where("foo is null").execute();
+    }
+
+    @Override
+    protected void verifyContentResolverMethodCalled(@NonNull InOrder executionOrder,
+                                                     @Nullable Map<String, Object> executionParams) {
+        executionOrder.verify(mContentResolver).call(eq(mUri), eq(DatabaseContentProvider.METHOD_COUNT), anyString(),
+                any(Bundle.class));
+    }
+
+    @Override
+    protected void verifyCallbackCalled(Message msg, CountCommand.Callback callback) {
+        verify(callback).onCountComplete(eq(msg.what), eq((long) msg.obj));
+    }
+
+    @Override
+    protected Message createCallbackMessage() {
+        final Message msg = new Message();
+        msg.what = 1;
+        msg.obj = 3L;
+        return msg;
+    }
+
+    @NonNull
+    @Override
+    protected CountCommand createTested(@NonNull BaseResolverCommand.WorkerHandler workerHandler,
+                                        @NonNull ContentResolver contentResolver) {
+        return new CountCommand(workerHandler, contentResolver, mSelectionBuilder);
+    }
+
+    @Override
+    protected CountCommand.Callback createCallback() {
+        return mock(CountCommand.Callback.class);
+    }
+
+    @Nullable
+    @Override
+    protected Map<String, Object> executeCommand() {
+        mTested.onUri(mUri).execute();
+
+        return null;
+    }
+
+    @Override
+    protected Map<String, Object> executeAsyncCommand(int token, CountCommand.Callback callback) {
+        mTested.onUri(mUri).executeAsync(token, callback);
+
+        return null;
+    }
+}
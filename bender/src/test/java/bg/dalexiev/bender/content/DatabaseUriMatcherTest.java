@@ -0,0 +1,122 @@
+package bg.dalexiev.bender.content;
+
+import android.net.Uri;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+public class DatabaseUriMatcherTest {
+
+    private static final String AUTHORITY = "testAuthority";
+    private static final String TABLE = "users";
+    private static final int CODE_ACTIVE_USERS = 10;
+
+    private DatabaseUriMatcher mTested;
+
+    @Before
+    public void setUp() {
+        mTested = new DatabaseUriMatcher(AUTHORITY)
+                .addTable(TABLE)
+                .addPath("users/active", CODE_ACTIVE_USERS, TABLE);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowWhenNullTable() {
+        mTested.addTable(null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowWhenReservedPathCode() {
+        mTested.addPath("users/all", DatabaseUriMatcher.TYPE_TABLE, TABLE);
+    }
+
+    @Test
+    public void shouldMatchDeclaredTable() {
+        final DatabaseUriMatcher.Result actual = mTested.match(providedUri(AUTHORITY, TABLE));
+
+        assertEquals(DatabaseUriMatcher.TYPE_TABLE, actual.code);
+        assertEquals(TABLE, actual.table);
+        assertEquals(false, actual.isRow);
+    }
+
+    @Test
+    public void shouldReuseTableResult() {
+        final DatabaseUriMatcher.Result first = mTested.match(providedUri(AUTHORITY, TABLE));
+        final DatabaseUriMatcher.Result second = mTested.match(providedUri(AUTHORITY, TABLE));
+
+        assertSame(first, second);
+    }
+
+    @Test
+    public void shouldMatchRowOfDeclaredTable() {
+        final DatabaseUriMatcher.Result actual = mTested.match(providedUri(AUTHORITY, TABLE, "42"));
+
+        assertEquals(DatabaseUriMatcher.TYPE_ROW, actual.code);
+        assertEquals(TABLE, actual.table);
+        assertTrue(actual.isRow);
+        assertEquals("42", actual.id);
+        assertEquals(42L, actual.rowId);
+    }
+
+    @Test
+    public void shouldMatchDeclaredPath() {
+        final DatabaseUriMatcher.Result actual = mTested.match(providedUri(AUTHORITY, TABLE, "active"));
+
+        assertEquals(CODE_ACTIVE_USERS, actual.code);
+        assertEquals(TABLE, actual.table);
+    }
+
+    @Test
+    public void shouldNotMatchUndeclaredTable() {
+        assertNull(mTested.match(providedUri(AUTHORITY, "sqlite_master")));
+    }
+
+    @Test
+    public void shouldNotMatchInvalidRowId() {
+        assertNull(mTested.match(providedUri(AUTHORITY, TABLE, "1a")));
+    }
+
+    @Test
+    public void shouldMatchRowIdWithNineteenDigits() {
+        assertEquals(1000000000000000000L, mTested.match(providedUri(AUTHORITY, TABLE, "1000000000000000000")).rowId);
+    }
+
+    @Test
+    public void shouldMatchMaxRowId() {
+        final String id = Long.toString(Long.MAX_VALUE);
+
+        assertEquals(Long.MAX_VALUE, mTested.match(providedUri(AUTHORITY, TABLE, id)).rowId);
+    }
+
+    @Test
+    public void shouldNotMatchOverflowingRowId() {
+        assertNull(mTested.match(providedUri(AUTHORITY, TABLE, "9223372036854775808")));
+    }
+
+    @Test
+    public void shouldNotMatchOtherAuthority() {
+        assertNull(mTested.match(providedUri("otherAuthority", TABLE)));
+    }
+
+    private static Uri providedUri(String authority, String... pathSegments) {
+        final Uri uri = mock(Uri.class);
+        final StringBuilder path = new StringBuilder();
+        for (String pathSegment : pathSegments) {
+            path.append('/').append(pathSegment);
+        }
+
+        doReturn(authority).when(uri).getAuthority();
+        doReturn(path.toString()).when(uri).getPath();
+        doReturn(Arrays.asList(pathSegments)).when(uri).getPathSegments();
+        return uri;
+    }
+}
@@ -0,0 +1,175 @@
+package bg.dalexiev.bender.content;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+public class DefaultCommandExecutorTest {
+
+    private static final long TIMEOUT_SECONDS = 5L;
+
+    private DefaultCommandExecutor mTested;
+
+    @Before
+    public void setUp() {
+        mTested = new DefaultCommandExecutor(2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowWhenParallelismNotPositive() {
+        new DefaultCommandExecutor(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowWhenNullTask() {
+        mTested.execute("authority", true, Priority.DEFAULT, null);
+    }
+
+    @Test
+    public void shouldRunReadsInParallel() throws Exception {
+        final CountDownLatch started = new CountDownLatch(2);
+        final CountDownLatch completed = new CountDownLatch(2);
+        final Runnable read = new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                await(started);
+                completed.countDown();
+            }
+        };
+
+        mTested.execute("authority", true, Priority.DEFAULT, read);
+        mTested.execute("authority", true, Priority.DEFAULT, read);
+
+        assertTrue(completed.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowWhenNullPriority() {
+        mTested.execute("authority", true, null, new Runnable() {
+            @Override
+            public void run() {
+            }
+        });
+    }
+
+    @Test
+    public void shouldStartQueuedReadsByPriority() throws Exception {
+        final DefaultCommandExecutor tested = new DefaultCommandExecutor(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch completed = new CountDownLatch(3);
+        final List<Priority> startOrder = Collections.synchronizedList(new ArrayList<Priority>());
+
+        tested.execute("authority", true, Priority.DEFAULT, new Runnable() {
+            @Override
+            public void run() {
+                await(release);
+                completed.countDown();
+            }
+        });
+        for (final Priority priority : new Priority[]{Priority.BACKGROUND, Priority.USER_VISIBLE}) {
+            tested.execute("authority", true, priority, new Runnable() {
+                @Override
+                public void run() {
+                    startOrder.add(priority);
+                    completed.countDown();
+                }
+            });
+        }
+        release.countDown();
+
+        assertTrue(completed.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(Priority.USER_VISIBLE, Priority.BACKGROUND), startOrder);
+    }
+
+    @Test
+    public void shouldRunWritesToDifferentAuthoritiesInParallel() throws Exception {
+        final CountDownLatch started = new CountDownLatch(2);
+        final CountDownLatch completed = new CountDownLatch(2);
+        final Runnable write = new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                await(started);
+                completed.countDown();
+            }
+        };
+
+        mTested.execute("first", false, Priority.DEFAULT, write);
+        mTested.execute("second", false, Priority.DEFAULT, write);
+
+        assertTrue(completed.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void shouldRunWritesToSameAuthorityInOrder() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicBoolean isFirstCompleted = new AtomicBoolean();
+        final AtomicBoolean isRunInOrder = new AtomicBoolean();
+        final CountDownLatch completed = new CountDownLatch(1);
+
+        mTested.execute("authority", false, Priority.DEFAULT, new Runnable() {
+            @Override
+            public void run() {
+                await(release);
+                isFirstCompleted.set(true);
+            }
+        });
+        mTested.execute("authority", false, Priority.DEFAULT, new Runnable() {
+            @Override
+            public void run() {
+                isRunInOrder.set(isFirstCompleted.get());
+                completed.countDown();
+            }
+        });
+
+        assertFalse(completed.await(100L, TimeUnit.MILLISECONDS));
+        release.countDown();
+
+        assertTrue(completed.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertTrue(isRunInOrder.get());
+    }
+
+    @Test
+    public void shouldRunQueuedWritesAfterFailure() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch completed = new CountDownLatch(1);
+
+        mTested.execute("authority", false, Priority.DEFAULT, new Runnable() {
+            @Override
+            public void run() {
+                await(release);
+                throw new IllegalStateException("Expected failure");
+            }
+        });
+        mTested.execute("authority", false, Priority.DEFAULT, new Runnable() {
+            @Override
+            public void run() {
+                completed.countDown();
+            }
+        });
+
+        release.countDown();
+
+        assertTrue(completed.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -22,6 +22,7 @@ import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.isNull;
 import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 
@@ -103,6 +104,16 @@ public class DeleteCommandTest extends ResolverCommandTestBase<DeleteCommand.Cal
         mTested.where("foo is null", null).execute();
     }
 
+    @Test
+    public void shouldSubmitWriteExecutionToExecutor() {
+        final CommandExecutor executor = mock(CommandExecutor.class);
+        doReturn("authority").when(mUri).getAuthority();
+
+        new DeleteCommand(mContentResolver, executor).onUri(mUri).executeAsync(1, null);
+
+        verify(executor).execute(eq("authority"), eq(false), eq(Priority.DEFAULT), any(Runnable.class));
+    }
+
     @Override
     protected void verifyContentResolverMethodCalled(@NonNull InOrder executionOrder,
             @Nullable Map<String, Object> executionParams) {
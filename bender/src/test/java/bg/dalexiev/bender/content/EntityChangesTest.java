@@ -0,0 +1,144 @@
+package bg.dalexiev.bender.content;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+import static org.junit.Assert.assertArrayEquals;
+
+public class EntityChangesTest {
+
+    @Test
+    public void shouldBeEmptyForSameResult() {
+        final EntityChanges changes = compute(new long[]{1, 2, 3}, new long[]{1, 2, 3});
+
+        assertTrue(changes.isEmpty());
+    }
+
+    @Test
+    public void shouldFindInsertedAndRemoved() {
+        final EntityChanges changes = compute(new long[]{1, 2, 3}, new long[]{1, 4, 3, 5});
+
+        assertArrayEquals(new int[]{1, 3}, changes.getInserted());
+        assertArrayEquals(new int[]{1}, changes.getRemoved());
+        assertEquals(0, changes.getMovedTo().length);
+    }
+
+    @Test
+    public void shouldMoveFewestRows() {
+        final EntityChanges changes = compute(new long[]{1, 2, 3, 4}, new long[]{2, 3, 4, 1});
+
+        assertArrayEquals(new int[]{0}, changes.getMovedFrom());
+        assertArrayEquals(new int[]{3}, changes.getMovedTo());
+        assertFalse(changes.isEmpty());
+    }
+
+    @Test
+    public void shouldFindChangedByEquality() {
+        final Object[] oldEntities = {"a", "b", "c"};
+        final Object[] newEntities = {"c", "b", "A"};
+
+        final EntityChanges changes = EntityChanges.compute(new long[]{1, 2, 3}, oldEntities,
+                new long[]{3, 2, 1}, newEntities);
+
+        assertArrayEquals(new int[]{2}, changes.getChanged());
+    }
+
+    @Test
+    public void shouldNotComputeForDuplicateIds() {
+        assertNull(compute(new long[]{1, 2}, new long[]{1, 1}));
+    }
+
+    @Test
+    public void shouldDispatchUpdatesTurningOldIntoNew() {
+        final long[] oldIds = {7, 1, 2};
+        final long[] newIds = {1, 8, 2, 7};
+        final List<Long> list = toList(oldIds);
+        final List<String> updates = new ArrayList<>();
+
+        compute(oldIds, newIds).dispatchTo(new ListCallback(list, newIds, updates));
+
+        assertEquals(toList(newIds), list);
+        assertEquals(Arrays.asList("move 0 2", "insert 1"), updates);
+    }
+
+    @Test
+    public void shouldDispatchRemovalsFirstInDescendingOrder() {
+        final long[] oldIds = {1, 2, 3, 4};
+        final long[] newIds = {2, 4};
+        final List<Long> list = toList(oldIds);
+        final List<String> updates = new ArrayList<>();
+
+        compute(oldIds, newIds).dispatchTo(new ListCallback(list, newIds, updates));
+
+        assertEquals(toList(newIds), list);
+        assertEquals(Arrays.asList("remove 2", "remove 0"), updates);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowWhenNullCallback() {
+        compute(new long[]{1}, new long[]{1}).dispatchTo(null);
+    }
+
+    private static EntityChanges compute(long[] oldIds, long[] newIds) {
+        return EntityChanges.compute(oldIds, toEntities(oldIds), newIds, toEntities(newIds));
+    }
+
+    private static Object[] toEntities(long[] ids) {
+        final Object[] entities = new Object[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            entities[i] = ids[i];
+        }
+        return entities;
+    }
+
+    private static List<Long> toList(long[] ids) {
+        final List<Long> list = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            list.add(id);
+        }
+        return list;
+    }
+
+    private static class ListCallback implements EntityChanges.Callback {
+
+        private final List<Long> mList;
+        private final long[] mNewIds;
+        private final List<String> mUpdates;
+
+        ListCallback(List<Long> list, long[] newIds, List<String> updates) {
+            mList = list;
+            mNewIds = newIds;
+            mUpdates = updates;
+        }
+
+        @Override
+        public void onInserted(int position) {
+            mList.add(position, mNewIds[position]);
+            mUpdates.add("insert " + position);
+        }
+
+        @Override
+        public void onRemoved(int position) {
+            mList.remove(position);
+            mUpdates.add("remove " + position);
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            mList.add(toPosition, mList.remove(fromPosition));
+            mUpdates.add("move " + fromPosition + " " + toPosition);
+        }
+
+        @Override
+        public void onChanged(int position) {
+            mUpdates.add("change " + position);
+        }
+    }
+}
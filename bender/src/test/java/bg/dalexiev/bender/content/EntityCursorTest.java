@@ -4,24 +4,40 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
 
 import android.database.Cursor;
 import android.database.CursorIndexOutOfBoundsException;
+import android.support.annotation.NonNull;
+import android.support.v4.os.CancellationSignal;
+import android.support.v4.os.OperationCanceledException;
 import android.util.SparseArray;
 
 import bg.dalexiev.bender.mapper.CursorMapper;
+import bg.dalexiev.bender.mapper.Row;
+import bg.dalexiev.bender.mapper.RowMapper;
+import bg.dalexiev.bender.mapper.TypedRowMapper;
 
 import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertSame;
 import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
 public class EntityCursorTest {
@@ -45,7 +61,7 @@ public class EntityCursorTest {
     public void shouldDelegateMapCursor() {
         doReturn(5).when(mCursor).getCount();
 
-        mTested.mapCursor();
+        mTested.mapCursor(null);
 
         verify(mCursorMapper).mapCursor(any(Cursor.class));
     }
@@ -53,7 +69,7 @@ public class EntityCursorTest {
     public void shouldNotMapEmptyCursor() {
         doReturn(0).when(mCursor).getCount();
 
-        mTested.mapCursor();
+        mTested.mapCursor(null);
 
         verifyZeroInteractions(mCursorMapper);
     }
@@ -86,7 +102,7 @@ public class EntityCursorTest {
 
         doReturn(mockCache).when(mCursorMapper).mapCursor(any(Cursor.class));
 
-        mTested.mapCursor();
+        mTested.mapCursor(null);
 
         if (!mTested.moveToFirst()) {
             throw new AssertionError("Cursor empty");
@@ -278,6 +294,217 @@ public class EntityCursorTest {
         assertFalse(mTested.isAfterLast());
     }
 
+    @Test
+    public void shouldMapRowsDenselyWithRowMapper() {
+        final RowMapper<ResolverCommandTestBase.MockEntity> rowMapper = mock(RowMapper.class);
+        final ResolverCommandTestBase.MockEntity first = new ResolverCommandTestBase.MockEntity(1L, "first");
+        final ResolverCommandTestBase.MockEntity second = new ResolverCommandTestBase.MockEntity(2L, "second");
+        doReturn(first).when(rowMapper).toObject(any(Cursor.class), eq(0));
+        doReturn(second).when(rowMapper).toObject(any(Cursor.class), eq(1));
+
+        doReturn(2).when(mCursor).getCount();
+        when(mCursor.moveToNext()).thenReturn(true, true, false);
+        when(mCursor.getPosition()).thenReturn(0, 1);
+
+        final EntityCursor<ResolverCommandTestBase.MockEntity> tested = spy(new EntityCursor<>(mCursor, rowMapper));
+        doReturn(mCursor).when(tested).getWrappedCursor();
+        tested.mapCursor(null);
+
+        assertEquals(2, tested.getCount());
+        tested.moveToLast();
+        assertSame(second, tested.getEntity());
+        tested.moveToFirst();
+        assertSame(first, tested.getEntity());
+    }
+
+    @Test
+    public void shouldAppendMappedEntitiesWithoutMappingAgain() {
+        final RowMapper<ResolverCommandTestBase.MockEntity> rowMapper = mock(RowMapper.class);
+        final ResolverCommandTestBase.MockEntity first = new ResolverCommandTestBase.MockEntity(1L, "first");
+        final ResolverCommandTestBase.MockEntity second = new ResolverCommandTestBase.MockEntity(2L, "second");
+        final Cursor nextCursor = mock(Cursor.class);
+        doReturn(first).when(rowMapper).toObject(eq(mCursor), eq(0));
+        doReturn(second).when(rowMapper).toObject(eq(nextCursor), eq(0));
+        final EntityCursor<ResolverCommandTestBase.MockEntity> page = providedSingleRowCursor(mCursor, rowMapper);
+        final EntityCursor<ResolverCommandTestBase.MockEntity> nextPage =
+                providedSingleRowCursor(nextCursor, rowMapper);
+
+        final EntityCursor<ResolverCommandTestBase.MockEntity> merged = page.append(nextPage);
+
+        assertEquals(2, merged.getCount());
+        merged.moveToFirst();
+        assertSame(first, merged.getEntity());
+        merged.moveToNext();
+        assertSame(second, merged.getEntity());
+        verify(rowMapper, times(2)).toObject(any(Cursor.class), anyInt());
+    }
+
+    @Test
+    public void shouldAppendLazyCursorWithItsCount() {
+        final RowMapper<ResolverCommandTestBase.MockEntity> rowMapper = mock(RowMapper.class);
+        final EntityCursor<ResolverCommandTestBase.MockEntity> page = providedLazyCursor(rowMapper, 10, 10, 2);
+        final EntityCursor<ResolverCommandTestBase.MockEntity> nextPage = providedLazyCursor(rowMapper, 10, 10, 2);
+
+        final EntityCursor<ResolverCommandTestBase.MockEntity> merged = page.append(nextPage);
+
+        assertTrue(merged.isLazy());
+        // the merged cursor is mapped when its entities are requested
+        verifyZeroInteractions(rowMapper);
+    }
+
+    @Test
+    public void shouldStopMappingWhenCancelled() {
+        final CancellationSignal cancellationSignal = new CancellationSignal();
+        final RowMapper<ResolverCommandTestBase.MockEntity> rowMapper = mock(RowMapper.class);
+        doAnswer(new Answer<ResolverCommandTestBase.MockEntity>() {
+            @Override
+            public ResolverCommandTestBase.MockEntity answer(InvocationOnMock invocation) throws Throwable {
+                cancellationSignal.cancel();
+                return new ResolverCommandTestBase.MockEntity(1L, "first");
+            }
+        }).when(rowMapper).toObject(any(Cursor.class), eq(0));
+
+        doReturn(3).when(mCursor).getCount();
+        when(mCursor.moveToNext()).thenReturn(true, true, true, false);
+        when(mCursor.getPosition()).thenReturn(0, 1, 2);
+
+        final EntityCursor<ResolverCommandTestBase.MockEntity> tested = spy(new EntityCursor<>(mCursor, rowMapper));
+        doReturn(mCursor).when(tested).getWrappedCursor();
+        try {
+            tested.mapCursor(cancellationSignal);
+            fail("Mapping should have been cancelled");
+        } catch (OperationCanceledException expected) {
+            verify(rowMapper, times(1)).toObject(any(Cursor.class), anyInt());
+        }
+    }
+
+    @Test
+    public void shouldNotMapRowsWhenLazy() {
+        final RowMapper<ResolverCommandTestBase.MockEntity> rowMapper = mock(RowMapper.class);
+        final EntityCursor<ResolverCommandTestBase.MockEntity> tested = providedLazyCursor(rowMapper, 100, 10, 5);
+
+        assertTrue(tested.isLazy());
+        assertEquals(100, tested.getCount());
+        verifyZeroInteractions(rowMapper);
+    }
+
+    @Test
+    public void shouldMapRequestedRowAndPrefetchForward() {
+        final RowMapper<ResolverCommandTestBase.MockEntity> rowMapper = mock(RowMapper.class);
+        final EntityCursor<ResolverCommandTestBase.MockEntity> tested = providedLazyCursor(rowMapper, 100, 10, 2);
+
+        tested.moveToPosition(5);
+        tested.getEntity();
+
+        verify(rowMapper).toObject(any(Cursor.class), eq(5));
+        verify(rowMapper).toObject(any(Cursor.class), eq(6));
+        verify(rowMapper).toObject(any(Cursor.class), eq(7));
+        verify(rowMapper, never()).toObject(any(Cursor.class), eq(8));
+        verify(rowMapper, never()).toObject(any(Cursor.class), eq(4));
+        verify(mCursor, times(2)).moveToPosition(eq(5));
+    }
+
+    @Test
+    public void shouldPrefetchBackwardWhenScrollingUp() {
+        final RowMapper<ResolverCommandTestBase.MockEntity> rowMapper = mock(RowMapper.class);
+        final EntityCursor<ResolverCommandTestBase.MockEntity> tested = providedLazyCursor(rowMapper, 100, 10, 2);
+
+        tested.moveToPosition(50);
+        tested.getEntity();
+        tested.moveToPosition(40);
+        tested.getEntity();
+
+        verify(rowMapper).toObject(any(Cursor.class), eq(39));
+        verify(rowMapper).toObject(any(Cursor.class), eq(38));
+        verify(rowMapper, never()).toObject(any(Cursor.class), eq(41));
+    }
+
+    @Test
+    public void shouldReuseCachedEntity() {
+        final RowMapper<ResolverCommandTestBase.MockEntity> rowMapper = mock(RowMapper.class);
+        final ResolverCommandTestBase.MockEntity entity = new ResolverCommandTestBase.MockEntity(1L, "test");
+        doReturn(entity).when(rowMapper).toObject(any(Cursor.class), eq(0));
+        final EntityCursor<ResolverCommandTestBase.MockEntity> tested = providedLazyCursor(rowMapper, 100, 10, 0);
+
+        tested.moveToFirst();
+        final ResolverCommandTestBase.MockEntity first = tested.getEntity();
+        final ResolverCommandTestBase.MockEntity second = tested.getEntity();
+
+        assertSame(entity, first);
+        assertSame(entity, second);
+        verify(rowMapper, times(1)).toObject(any(Cursor.class), eq(0));
+    }
+
+    @Test
+    public void shouldCacheNullEntity() {
+        final RowMapper<ResolverCommandTestBase.MockEntity> rowMapper = mock(RowMapper.class);
+        final EntityCursor<ResolverCommandTestBase.MockEntity> tested = providedLazyCursor(rowMapper, 100, 10, 0);
+
+        tested.moveToFirst();
+        tested.getEntity();
+
+        assertNull(tested.getEntity());
+        verify(rowMapper, times(1)).toObject(any(Cursor.class), eq(0));
+    }
+
+    @Test
+    public void shouldRemapEvictedEntity() {
+        final RowMapper<ResolverCommandTestBase.MockEntity> rowMapper = mock(RowMapper.class);
+        final EntityCursor<ResolverCommandTestBase.MockEntity> tested = providedLazyCursor(rowMapper, 100, 2, 0);
+
+        for (int position : new int[]{0, 1, 2, 0}) {
+            tested.moveToPosition(position);
+            tested.getEntity();
+        }
+
+        verify(rowMapper, times(2)).toObject(any(Cursor.class), eq(0));
+    }
+
+    @Test
+    public void shouldResolveTypedColumnsOncePerCursor() {
+        final TypedRowMapper<ResolverCommandTestBase.MockEntity> rowMapper =
+                new TypedRowMapper<ResolverCommandTestBase.MockEntity>("_id", "name") {
+                    @Override
+                    public ResolverCommandTestBase.MockEntity toObject(@NonNull Row row, int rowNum) {
+                        return new ResolverCommandTestBase.MockEntity(row.getLong(0), row.getString(1));
+                    }
+                };
+        final EntityCursor<ResolverCommandTestBase.MockEntity> tested = providedLazyCursor(rowMapper, 100, 10, 5);
+
+        for (int position = 0; position < 20; position++) {
+            tested.moveToPosition(position);
+            tested.getEntity();
+        }
+
+        verify(mCursor, times(1)).getColumnIndexOrThrow(eq("_id"));
+        verify(mCursor, times(1)).getColumnIndexOrThrow(eq("name"));
+    }
+
+    private EntityCursor<ResolverCommandTestBase.MockEntity> providedLazyCursor(
+            RowMapper<ResolverCommandTestBase.MockEntity> rowMapper, int count, int maxCachedEntities,
+            int prefetchWindow) {
+        final EntityCursor<ResolverCommandTestBase.MockEntity> tested = spy(
+                new EntityCursor<>(mCursor, rowMapper, maxCachedEntities, prefetchWindow));
+        doReturn(mCursor).when(tested).getWrappedCursor();
+        doReturn(count).when(mCursor).getCount();
+
+        tested.mapCursor(null);
+        return tested;
+    }
+
+    private static EntityCursor<ResolverCommandTestBase.MockEntity> providedSingleRowCursor(Cursor cursor,
+            RowMapper<ResolverCommandTestBase.MockEntity> rowMapper) {
+        doReturn(1).when(cursor).getCount();
+        when(cursor.moveToNext()).thenReturn(true, false);
+        when(cursor.getPosition()).thenReturn(0);
+
+        final EntityCursor<ResolverCommandTestBase.MockEntity> entityCursor =
+                spy(new EntityCursor<>(cursor, rowMapper));
+        doReturn(cursor).when(entityCursor).getWrappedCursor();
+        entityCursor.mapCursor(null);
+        return entityCursor;
+    }
+
     private void providedHasCount(int expectedCount) {
         doReturn(expectedCount).when(mCursor).getCount();
 
@@ -286,7 +513,7 @@ public class EntityCursorTest {
 
         doReturn(mockCache).when(mCursorMapper).mapCursor(any(Cursor.class));
 
-        mTested.mapCursor();
+        mTested.mapCursor(null);
     }
 
 
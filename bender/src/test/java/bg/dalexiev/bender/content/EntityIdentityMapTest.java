@@ -0,0 +1,117 @@
+package bg.dalexiev.bender.content;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import android.database.Cursor;
+import android.provider.BaseColumns;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import bg.dalexiev.bender.mapper.RowMapper;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotSame;
+import static junit.framework.Assert.assertSame;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class EntityIdentityMapTest {
+
+    private static final int ID_INDEX = 0;
+    private static final int VERSION_INDEX = 1;
+
+    private EntityIdentityMap<ResolverCommandTestBase.MockEntity> mTested;
+
+    private RowMapper<ResolverCommandTestBase.MockEntity> mRowMapper;
+
+    @Before
+    public void setUp() {
+        mTested = new EntityIdentityMap<>("version");
+
+        mRowMapper = new RowMapper<ResolverCommandTestBase.MockEntity>() {
+            @Nullable
+            @Override
+            public ResolverCommandTestBase.MockEntity toObject(@NonNull Cursor cursor, int rowNum) {
+                return new ResolverCommandTestBase.MockEntity(cursor.getLong(ID_INDEX), "test");
+            }
+        };
+    }
+
+    @Test
+    public void shouldMapAllRowsFirstTime() {
+        final Object[] entities = map(new long[][]{{1, 1}, {2, 1}});
+
+        assertEquals(2, entities.length);
+        assertEquals(0, mTested.getReusedCount());
+    }
+
+    @Test
+    public void shouldReuseUnchangedRows() {
+        final Object[] previous = map(new long[][]{{1, 1}, {2, 1}, {3, 1}});
+
+        final Object[] actual = map(new long[][]{{3, 1}, {1, 2}, {4, 1}, {2, 1}});
+
+        assertSame(previous[2], actual[0]);
+        assertNotSame(previous[0], actual[1]);
+        assertSame(previous[1], actual[3]);
+        assertEquals(2, mTested.getReusedCount());
+    }
+
+    @Test
+    public void shouldForgetRemovedRows() {
+        final Object[] previous = map(new long[][]{{1, 1}, {2, 1}});
+        map(new long[][]{{2, 1}});
+
+        final Object[] actual = map(new long[][]{{1, 1}});
+
+        assertNotSame(previous[0], actual[0]);
+        assertEquals(0, mTested.getReusedCount());
+    }
+
+    @Test
+    public void shouldMapFromScratchAfterClear() {
+        final Object[] previous = map(new long[][]{{1, 1}});
+
+        mTested.clear();
+        final Object[] actual = map(new long[][]{{1, 1}});
+
+        assertNotSame(previous[0], actual[0]);
+    }
+
+    private Object[] map(long[][] rows) {
+        final Cursor cursor = mockCursor(rows);
+        return mTested.mapRows(cursor, new BoundRowMapper<>(mRowMapper, cursor), null);
+    }
+
+    private static Cursor mockCursor(final long[][] rows) {
+        final int[] position = {-1};
+        final Cursor cursor = mock(Cursor.class);
+        when(cursor.getCount()).thenReturn(rows.length);
+        when(cursor.getColumnIndexOrThrow(BaseColumns._ID)).thenReturn(ID_INDEX);
+        when(cursor.getColumnIndexOrThrow("version")).thenReturn(VERSION_INDEX);
+        when(cursor.moveToNext()).thenAnswer(new Answer<Boolean>() {
+            @Override
+            public Boolean answer(InvocationOnMock invocation) {
+                position[0]++;
+                return position[0] < rows.length;
+            }
+        });
+        when(cursor.getPosition()).thenAnswer(new Answer<Integer>() {
+            @Override
+            public Integer answer(InvocationOnMock invocation) {
+                return position[0];
+            }
+        });
+        when(cursor.getLong(anyInt())).thenAnswer(new Answer<Long>() {
+            @Override
+            public Long answer(InvocationOnMock invocation) {
+                return rows[position[0]][(Integer) invocation.getArguments()[0]];
+            }
+        });
+        return cursor;
+    }
+}
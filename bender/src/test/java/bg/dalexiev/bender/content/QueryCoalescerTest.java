@@ -0,0 +1,382 @@
+package bg.dalexiev.bender.content;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.os.CancellationSignal;
+
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import bg.dalexiev.bender.mapper.CursorMapper;
+import bg.dalexiev.bender.mapper.RowMapper;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNotSame;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+
+@RunWith(MockitoJUnitRunner.class)
+public class QueryCoalescerTest {
+
+    private static final long TIMEOUT_SECONDS = 5L;
+
+    // the time the running query waits for the identical one to start
+    private static final long JOIN_MILLIS = 100L;
+
+    private QueryCoalescer mTested;
+
+    @Mock
+    private ContentResolver mContentResolver;
+
+    @Mock
+    private CursorMapper<ResolverCommandTestBase.MockEntity> mCursorMapper;
+
+    @Mock
+    private Cursor mCursor;
+
+    @Before
+    public void setUp() {
+        mTested = new QueryCoalescer();
+    }
+
+    @Test
+    public void shouldMatchIdenticalKeys() {
+        final QueryCoalescer.Key key = newKey("a = ?", "1");
+
+        assertEquals(key, newKey("a = ?", "1"));
+        assertEquals(key.hashCode(), newKey("a = ?", "1").hashCode());
+        assertFalse(key.equals(newKey("a = ?", "2")));
+        assertFalse(key.equals(new QueryCoalescer.Key(mock(ContentResolver.class), null, new String[]{"a"}, "a = ?",
+                new String[]{"1"}, null, mCursorMapper)));
+    }
+
+    @Test
+    public void shouldNotMatchKeysWithDifferentlyConfiguredMappers() {
+        final QueryCoalescer.Key upperCaseKey = newKey("a = ?", "1", new ColumnMapper(true));
+        final QueryCoalescer.Key lowerCaseKey = newKey("a = ?", "1", new ColumnMapper(false));
+
+        assertFalse(upperCaseKey.equals(lowerCaseKey));
+        assertFalse(lowerCaseKey.equals(upperCaseKey));
+    }
+
+    @Test
+    public void shouldMatchKeysWithEqualMappers() {
+        final QueryCoalescer.Key key = newKey("a = ?", "1", new EqualColumnMapper(true));
+
+        assertEquals(key, newKey("a = ?", "1", new EqualColumnMapper(true)));
+        assertEquals(key.hashCode(), newKey("a = ?", "1", new EqualColumnMapper(true)).hashCode());
+        assertFalse(key.equals(newKey("a = ?", "1", new EqualColumnMapper(false))));
+    }
+
+    @Test
+    public void shouldRunIdenticalQueriesOnce() throws Exception {
+        final AtomicInteger executionCount = new AtomicInteger();
+        final QueryCoalescer.Query<ResolverCommandTestBase.MockEntity> query =
+                new QueryCoalescer.Query<ResolverCommandTestBase.MockEntity>() {
+                    @Override
+                    public EntityCursor<ResolverCommandTestBase.MockEntity> execute() {
+                        executionCount.incrementAndGet();
+                        sleep(JOIN_MILLIS);
+                        return newResult();
+                    }
+                };
+
+        final AtomicReference<EntityCursor<ResolverCommandTestBase.MockEntity>> joinedResult = new AtomicReference<>();
+        final Thread leader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                joinedResult.set(mTested.execute(newKey("a = ?", "1"), new CancellationSignal(), query));
+            }
+        });
+        leader.start();
+        sleep(JOIN_MILLIS / 4);
+
+        final EntityCursor<ResolverCommandTestBase.MockEntity> result =
+                mTested.execute(newKey("a = ?", "1"), new CancellationSignal(), query);
+        leader.join(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+
+        assertEquals(1, executionCount.get());
+        assertNotNull(result);
+        assertNotNull(joinedResult.get());
+        assertNotSame(result, joinedResult.get());
+    }
+
+    @Test
+    public void shouldRunOwnQueryWhenRunningQueryFails() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final Thread leader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    mTested.execute(newKey("a = ?", "1"), new CancellationSignal(),
+                            new QueryCoalescer.Query<ResolverCommandTestBase.MockEntity>() {
+                                @Override
+                                public EntityCursor<ResolverCommandTestBase.MockEntity> execute() {
+                                    await(release);
+                                    throw new IllegalStateException("Expected failure");
+                                }
+                            });
+                } catch (IllegalStateException e) {
+                    // expected
+                }
+            }
+        });
+        leader.start();
+        sleep(JOIN_MILLIS / 4);
+
+        final EntityCursor<ResolverCommandTestBase.MockEntity> ownResult = newResult();
+        final AtomicReference<EntityCursor<ResolverCommandTestBase.MockEntity>> result = new AtomicReference<>();
+        final Thread joiner = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                result.set(mTested.execute(newKey("a = ?", "1"), new CancellationSignal(),
+                        new QueryCoalescer.Query<ResolverCommandTestBase.MockEntity>() {
+                            @Override
+                            public EntityCursor<ResolverCommandTestBase.MockEntity> execute() {
+                                return ownResult;
+                            }
+                        }));
+            }
+        });
+        joiner.start();
+        sleep(JOIN_MILLIS / 4);
+        release.countDown();
+        joiner.join(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+
+        assertSame(ownResult, result.get());
+    }
+
+    @Test
+    public void shouldReturnNullWhenCancelledWhileWaiting() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final Thread leader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                mTested.execute(newKey("a = ?", "1"), new CancellationSignal(),
+                        new QueryCoalescer.Query<ResolverCommandTestBase.MockEntity>() {
+                            @Override
+                            public EntityCursor<ResolverCommandTestBase.MockEntity> execute() {
+                                await(release);
+                                return newResult();
+                            }
+                        });
+            }
+        });
+        leader.start();
+        sleep(JOIN_MILLIS / 4);
+
+        final CancellationSignal cancellationSignal = new CancellationSignal();
+        cancellationSignal.cancel();
+        final EntityCursor<ResolverCommandTestBase.MockEntity> result = mTested.execute(newKey("a = ?", "1"),
+                cancellationSignal, new QueryCoalescer.Query<ResolverCommandTestBase.MockEntity>() {
+                    @Override
+                    public EntityCursor<ResolverCommandTestBase.MockEntity> execute() {
+                        throw new AssertionError("Should not run the query");
+                    }
+                });
+        release.countDown();
+        leader.join(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+
+        assertNull(result);
+    }
+
+    @Test
+    public void shouldNotHoldThreadWhenJoiningRunningQuery() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger executionCount = new AtomicInteger();
+        final QueryCoalescer.Query<ResolverCommandTestBase.MockEntity> query =
+                new QueryCoalescer.Query<ResolverCommandTestBase.MockEntity>() {
+                    @Override
+                    public EntityCursor<ResolverCommandTestBase.MockEntity> execute() {
+                        executionCount.incrementAndGet();
+                        await(release);
+                        return newResult();
+                    }
+                };
+        final Thread leader = startLeader(query);
+
+        final RecordingContinuation continuation = new RecordingContinuation();
+        mTested.execute(newKey("a = ?", "1"), new CancellationSignal(), query, continuation);
+
+        // returned without waiting for the running query
+        assertEquals(1, continuation.mCompletion.getCount());
+        release.countDown();
+        leader.join(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+
+        assertTrue(continuation.mCompletion.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(1, executionCount.get());
+        assertNotNull(continuation.mResult.get());
+        assertFalse(continuation.mIsRetry.get());
+    }
+
+    @Test
+    public void shouldRetryJoinedQueryWhenRunningQueryFails() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final Thread leader = startLeader(new QueryCoalescer.Query<ResolverCommandTestBase.MockEntity>() {
+            @Override
+            public EntityCursor<ResolverCommandTestBase.MockEntity> execute() {
+                await(release);
+                throw new IllegalStateException("Expected failure");
+            }
+        });
+
+        final RecordingContinuation continuation = new RecordingContinuation();
+        mTested.execute(newKey("a = ?", "1"), new CancellationSignal(), failingQuery(), continuation);
+        release.countDown();
+        leader.join(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+
+        assertTrue(continuation.mCompletion.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertTrue(continuation.mIsRetry.get());
+    }
+
+    @Test
+    public void shouldCompleteJoinedQueryWhenCancelled() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final Thread leader = startLeader(new QueryCoalescer.Query<ResolverCommandTestBase.MockEntity>() {
+            @Override
+            public EntityCursor<ResolverCommandTestBase.MockEntity> execute() {
+                await(release);
+                return newResult();
+            }
+        });
+
+        final CancellationSignal cancellationSignal = new CancellationSignal();
+        final RecordingContinuation continuation = new RecordingContinuation();
+        mTested.execute(newKey("a = ?", "1"), cancellationSignal, failingQuery(), continuation);
+        cancellationSignal.cancel();
+
+        // completed while the running query is still running
+        assertEquals(0, continuation.mCompletion.getCount());
+        assertNull(continuation.mResult.get());
+        release.countDown();
+        leader.join(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+    }
+
+    private Thread startLeader(final QueryCoalescer.Query<ResolverCommandTestBase.MockEntity> query) {
+        final Thread leader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    mTested.execute(newKey("a = ?", "1"), new CancellationSignal(), query);
+                } catch (IllegalStateException e) {
+                    // expected
+                }
+            }
+        });
+        leader.start();
+        sleep(JOIN_MILLIS / 4);
+        return leader;
+    }
+
+    private static QueryCoalescer.Query<ResolverCommandTestBase.MockEntity> failingQuery() {
+        return new QueryCoalescer.Query<ResolverCommandTestBase.MockEntity>() {
+            @Override
+            public EntityCursor<ResolverCommandTestBase.MockEntity> execute() {
+                throw new AssertionError("Should not run the query");
+            }
+        };
+    }
+
+    private QueryCoalescer.Key newKey(String selection, String selectionArg) {
+        return newKey(selection, selectionArg, mCursorMapper);
+    }
+
+    private QueryCoalescer.Key newKey(String selection, String selectionArg, Object mapper) {
+        return new QueryCoalescer.Key(mContentResolver, null, new String[]{"a"}, selection,
+                new String[]{selectionArg}, null, mapper);
+    }
+
+    private EntityCursor<ResolverCommandTestBase.MockEntity> newResult() {
+        final EntityCursor<ResolverCommandTestBase.MockEntity> result =
+                spy(new EntityCursor<>(mCursor, mCursorMapper));
+        doReturn(mCursor).when(result).getWrappedCursor();
+        return result;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class RecordingContinuation
+            implements QueryCoalescer.Continuation<ResolverCommandTestBase.MockEntity> {
+
+        final CountDownLatch mCompletion = new CountDownLatch(1);
+        final AtomicReference<EntityCursor<ResolverCommandTestBase.MockEntity>> mResult = new AtomicReference<>();
+        final AtomicBoolean mIsRetry = new AtomicBoolean();
+
+        @Override
+        public void onResult(@Nullable EntityCursor<ResolverCommandTestBase.MockEntity> result) {
+            mResult.set(result);
+            mCompletion.countDown();
+        }
+
+        @Override
+        public void onRetry() {
+            mIsRetry.set(true);
+            mCompletion.countDown();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class ColumnMapper implements RowMapper<String> {
+
+        final boolean mIsUpperCase;
+
+        ColumnMapper(boolean isUpperCase) {
+            mIsUpperCase = isUpperCase;
+        }
+
+        @Override
+        public String toObject(@NonNull Cursor cursor, int rowNum) {
+            final String value = cursor.getString(0);
+            return mIsUpperCase ? value.toUpperCase(Locale.US) : value.toLowerCase(Locale.US);
+        }
+    }
+
+    private static final class EqualColumnMapper extends ColumnMapper {
+
+        EqualColumnMapper(boolean isUpperCase) {
+            super(isUpperCase);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return (o instanceof EqualColumnMapper) && (mIsUpperCase == ((EqualColumnMapper) o).mIsUpperCase);
+        }
+
+        @Override
+        public int hashCode() {
+            return mIsUpperCase ? 1 : 0;
+        }
+    }
+
+}
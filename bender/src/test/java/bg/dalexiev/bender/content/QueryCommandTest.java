@@ -3,35 +3,64 @@ package bg.dalexiev.bender.content;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InOrder;
 import org.mockito.Spy;
+import org.mockito.invocation.InvocationOnMock;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
 
 import android.content.ContentResolver;
 import android.database.Cursor;
+import android.net.Uri;
+import android.os.Handler;
 import android.os.Message;
+import android.os.OperationCanceledException;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.util.SparseArray;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 
 import bg.dalexiev.bender.db.OrderBy;
 import bg.dalexiev.bender.db.Predicate;
 import bg.dalexiev.bender.db.SqlSelectionBuilder;
 import bg.dalexiev.bender.mapper.CursorMapper;
+import bg.dalexiev.bender.mapper.EntityConsumer;
 import bg.dalexiev.bender.mapper.RowMapper;
 
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
 public class QueryCommandTest extends
         ResolverCommandTestBase<QueryCommand.Callback<ResolverCommandTestBase.MockEntity>, QueryCommand<ResolverCommandTestBase.MockEntity>> {
 
+    // the time a worker thread is given to post a chunk before it is checked
+    private static final long HAND_OFF_WAIT_MILLIS = 100L;
+
     private RowMapper<MockEntity> mRowMapper;
 
     private CursorMapper<MockEntity> mCursorMapper;
@@ -197,6 +226,246 @@ public class QueryCommandTest extends
         mTested.useRowMapper(mRowMapper).useCursorMapper(mCursorMapper);
     }
 
+    @Test
+    public void shouldStreamRowsToConsumer() {
+        final Cursor cursor = mock(Cursor.class);
+        when(cursor.moveToNext()).thenReturn(true, true, true, false);
+        doReturn(cursor).when(mContentResolver)
+                .query(eq(mUri), any(String[].class), anyString(), any(String[].class), anyString());
+        final EntityConsumer<MockEntity> consumer = mock(EntityConsumer.class);
+
+        final int rowCount = mTested.onUri(mUri).select("test").stream(mRowMapper, consumer);
+
+        assertEquals(3, rowCount);
+        verify(consumer, times(3)).accept(any(MockEntity.class));
+        verify(cursor).close();
+    }
+
+    @Test
+    public void shouldStopStreamWhenCancelledWhileFillingWindow() {
+        final Cursor cursor = mock(Cursor.class);
+        when(cursor.moveToNext()).thenReturn(true).thenAnswer(new Answer<Boolean>() {
+            @Override
+            public Boolean answer(InvocationOnMock invocation) throws Throwable {
+                mTested.cancel();
+                throw new OperationCanceledException();
+            }
+        });
+        doReturn(cursor).when(mContentResolver)
+                .query(eq(mUri), any(String[].class), anyString(), any(String[].class), anyString());
+        final EntityConsumer<MockEntity> consumer = mock(EntityConsumer.class);
+
+        final int rowCount = mTested.onUri(mUri).select("test").stream(mRowMapper, consumer);
+
+        assertEquals(1, rowCount);
+        verify(cursor).close();
+    }
+
+    @Test(expected = OperationCanceledException.class)
+    public void shouldRethrowFromStreamWhenNotCancelled() {
+        doThrow(new OperationCanceledException()).when(mContentResolver)
+                .query(eq(mUri), any(String[].class), anyString(), any(String[].class), anyString());
+
+        mTested.onUri(mUri).select("test").stream(mRowMapper, mock(EntityConsumer.class));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowWhenStreamingWithNullConsumer() {
+        mTested.onUri(mUri).select("test").stream(mRowMapper, null);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldThrowWhenStreamingWithoutProjection() {
+        mTested.onUri(mUri).stream(mRowMapper, mock(EntityConsumer.class));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowWhenNonPositiveStreamChunkSize() {
+        mTested.onUri(mUri).select("test").streamAsync(1, mRowMapper, 0, mock(QueryCommand.StreamCallback.class));
+    }
+
+    @Test
+    public void shouldWaitForChunkDeliveryBeforePostingNext() throws Exception {
+        final List<Runnable> posted = new CopyOnWriteArrayList<>();
+        final QueryCommand.StreamCallback<MockEntity> callback = mock(QueryCommand.StreamCallback.class);
+        final QueryCommand.ChunkDispatcher<MockEntity> dispatcher =
+                new QueryCommand.ChunkDispatcher<>(newPostingHandler(posted), 1, 1, callback);
+        final Thread worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                dispatcher.accept(new MockEntity(1L, "test"));
+                dispatcher.accept(new MockEntity(1L, "test"));
+            }
+        });
+
+        worker.start();
+        worker.join(HAND_OFF_WAIT_MILLIS);
+
+        assertTrue(worker.isAlive());
+        assertEquals(1, posted.size());
+
+        posted.get(0).run();
+        worker.join(TimeUnit.SECONDS.toMillis(5L));
+
+        assertFalse(worker.isAlive());
+        assertEquals(2, posted.size());
+        verify(callback).onStreamChunk(eq(1), any(List.class));
+        dispatcher.cancel();
+    }
+
+    @Test
+    public void shouldStopWaitingForChunkDeliveryWhenCancelled() throws Exception {
+        final List<Runnable> posted = new CopyOnWriteArrayList<>();
+        final QueryCommand.StreamCallback<MockEntity> callback = mock(QueryCommand.StreamCallback.class);
+        final QueryCommand.ChunkDispatcher<MockEntity> dispatcher =
+                new QueryCommand.ChunkDispatcher<>(newPostingHandler(posted), 1, 1, callback);
+        final Thread worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                dispatcher.accept(new MockEntity(1L, "test"));
+                dispatcher.accept(new MockEntity(1L, "test"));
+                dispatcher.complete(2);
+            }
+        });
+        worker.start();
+        worker.join(HAND_OFF_WAIT_MILLIS);
+
+        dispatcher.cancel();
+        worker.join(TimeUnit.SECONDS.toMillis(5L));
+        for (Runnable runnable : posted) {
+            runnable.run();
+        }
+
+        assertFalse(worker.isAlive());
+        assertEquals(1, posted.size());
+        verifyZeroInteractions(callback);
+    }
+
+    @Test
+    public void shouldNotCompleteStreamWhenCancelled() {
+        final List<Runnable> posted = new ArrayList<>();
+        final QueryCommand.StreamCallback<MockEntity> callback = mock(QueryCommand.StreamCallback.class);
+        final QueryCommand.ChunkDispatcher<MockEntity> dispatcher =
+                new QueryCommand.ChunkDispatcher<>(newPostingHandler(posted), 1, 2, callback);
+        dispatcher.accept(new MockEntity(1L, "test"));
+        dispatcher.accept(new MockEntity(1L, "test"));
+        posted.get(0).run();
+
+        dispatcher.cancel();
+        dispatcher.accept(new MockEntity(1L, "test"));
+        dispatcher.complete(3);
+        for (Runnable runnable : posted) {
+            runnable.run();
+        }
+
+        verify(callback).onStreamChunk(eq(1), any(List.class));
+        verify(callback, never()).onStreamComplete(anyInt(), anyInt());
+    }
+
+    @Test
+    public void shouldCompleteStreamAfterLastChunk() {
+        final List<Runnable> posted = new ArrayList<>();
+        final QueryCommand.StreamCallback<MockEntity> callback = mock(QueryCommand.StreamCallback.class);
+        final QueryCommand.ChunkDispatcher<MockEntity> dispatcher =
+                new QueryCommand.ChunkDispatcher<>(newPostingHandler(posted), 1, 2, callback);
+        dispatcher.accept(new MockEntity(1L, "test"));
+        dispatcher.accept(new MockEntity(1L, "test"));
+        posted.get(0).run();
+        dispatcher.accept(new MockEntity(1L, "test"));
+
+        dispatcher.complete(3);
+        posted.get(1).run();
+        posted.get(2).run();
+
+        final InOrder inOrder = inOrder(callback);
+        inOrder.verify(callback, times(2)).onStreamChunk(eq(1), any(List.class));
+        inOrder.verify(callback).onStreamComplete(1, 3);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowWhenNegativeLimit() {
+        mTested.limit(-1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowWhenNegativeOffset() {
+        mTested.offset(-1);
+    }
+
+    @Test
+    public void shouldDelegateAfter() {
+        final OrderBy orderBy = OrderBy.asc("foo");
+
+        mTested.after(orderBy, "10");
+
+        verify(mSelectionBuilder).where(any(Predicate.class));
+        verify(mSelectionBuilder).orderBy(eq(orderBy));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowWhenNullOrderByInAfter() {
+        mTested.after(null, "10");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowWhenNonPositiveMaxCachedEntities() {
+        mTested.mapLazily(0, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowWhenNegativePrefetchWindow() {
+        mTested.mapLazily(10, -1);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldThrowWhenLazyWithCursorMapper() {
+        mTested.onUri(mUri).select(new String[]{"test"}).useCursorMapper(mCursorMapper).mapLazily(10, 5).execute();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowWhenNullVersionColumn() {
+        mTested.preserveIdentity(null);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldThrowWhenPreservingIdentityWithCursorMapper() {
+        mTested.onUri(mUri).select(new String[]{"_id", "version"}).useCursorMapper(mCursorMapper)
+                .preserveIdentity("version").execute();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldThrowWhenPreservingIdentityLazily() {
+        mTested.onUri(mUri).select(new String[]{"_id", "version"}).useRowMapper(mRowMapper).mapLazily(10, 5)
+                .preserveIdentity("version").execute();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldThrowWhenPreservingIdentityWithoutVersionColumn() {
+        mTested.onUri(mUri).select(new String[]{"_id", "name"}).useRowMapper(mRowMapper)
+                .preserveIdentity("version").execute();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldThrowWhenTrackingChangesWithCursorMapper() {
+        mTested.onUri(mUri).select(new String[]{"_id"}).useCursorMapper(mCursorMapper).trackChanges().execute();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldThrowWhenTrackingChangesWithoutId() {
+        mTested.onUri(mUri).select(new String[]{"name"}).useRowMapper(mRowMapper).trackChanges().execute();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldThrowWhenCoalescingLazily() {
+        mTested.onUri(mUri).select(new String[]{"test"}).useRowMapper(mRowMapper).mapLazily(10, 5).coalesce()
+                .execute();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldThrowWhenCoalescingWithTrackedChanges() {
+        mTested.onUri(mUri).select(new String[]{"_id"}).useRowMapper(mRowMapper).trackChanges().coalesce().execute();
+    }
+
     @Test(expected = IllegalStateException.class)
     public void shouldThrowWhenNoUriSet() {
         mTested.select(new String[]{"test"}).useRowMapper(mRowMapper).execute();
@@ -212,6 +481,217 @@ public class QueryCommandTest extends
         mTested.onUri(mUri).select(new String[]{"test"}).execute();
     }
 
+    @Test
+    public void shouldReturnNullWhenCancelledWhileQuerying() {
+        doAnswer(new Answer<Cursor>() {
+            @Override
+            public Cursor answer(InvocationOnMock invocation) throws Throwable {
+                mTested.cancel();
+                throw new OperationCanceledException();
+            }
+        }).when(mContentResolver).query(any(Uri.class), any(String[].class), anyString(), any(String[].class),
+                anyString());
+
+        assertNull(mTested.onUri(mUri).select("test").useRowMapper(mRowMapper).execute());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldRethrowWhenNotCancelled() {
+        doThrow(new IllegalStateException()).when(mContentResolver)
+                .query(any(Uri.class), any(String[].class), anyString(), any(String[].class), anyString());
+
+        mTested.onUri(mUri).select("test").useRowMapper(mRowMapper).execute();
+    }
+
+    @Test
+    public void shouldSubmitReadOnlyExecutionToExecutor() {
+        final CommandExecutor executor = mock(CommandExecutor.class);
+        doReturn("authority").when(mUri).getAuthority();
+
+        new QueryCommand<MockEntity>(mContentResolver, executor).onUri(mUri).select("test").useRowMapper(mRowMapper)
+                .executeAsync(1, null);
+
+        verify(executor).execute(eq("authority"), eq(true), eq(Priority.DEFAULT), any(Runnable.class));
+    }
+
+    @Test
+    public void shouldReplaceQueuedExecutionWithSameToken() {
+        final CommandExecutor executor = mock(CommandExecutor.class);
+        final QueryCommand<MockEntity> command = new QueryCommand<MockEntity>(mContentResolver, executor)
+                .onUri(mUri).select("test").useRowMapper(mRowMapper);
+
+        command.executeAsync(1, null, Priority.BACKGROUND);
+        command.executeAsync(1, null, Priority.USER_VISIBLE);
+
+        final ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+        verify(executor).execute(anyString(), eq(true), eq(Priority.BACKGROUND), task.capture());
+        verify(executor).execute(anyString(), eq(true), eq(Priority.USER_VISIBLE), any(Runnable.class));
+        task.getValue().run();
+
+        verifyZeroInteractions(mContentResolver);
+    }
+
+    @Test
+    public void shouldSkipCancelledExecution() {
+        final CommandExecutor executor = mock(CommandExecutor.class);
+        final QueryCommand<MockEntity> command = new QueryCommand<MockEntity>(mContentResolver, executor)
+                .onUri(mUri).select("test").useRowMapper(mRowMapper);
+
+        command.executeAsync(1, null);
+        command.cancel();
+
+        final ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+        verify(executor).execute(anyString(), eq(true), any(Priority.class), task.capture());
+        task.getValue().run();
+
+        verifyZeroInteractions(mContentResolver);
+    }
+
+    @Test
+    public void shouldCompleteFutureOnExecutor() throws Exception {
+        final CommandExecutor executor = mock(CommandExecutor.class);
+        final CommandFuture<EntityCursor<MockEntity>> future = new QueryCommand<MockEntity>(mContentResolver, executor)
+                .onUri(mUri).select("test").useRowMapper(mRowMapper).executeAsync(Priority.USER_VISIBLE);
+
+        final ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+        verify(executor).execute(anyString(), eq(true), eq(Priority.USER_VISIBLE), task.capture());
+        assertFalse(future.isDone());
+        task.getValue().run();
+
+        assertTrue(future.isDone());
+        assertNull(future.get());
+    }
+
+    @Test
+    public void shouldSkipExecutionOfCancelledFuture() {
+        final CommandExecutor executor = mock(CommandExecutor.class);
+        final CommandFuture<EntityCursor<MockEntity>> future = new QueryCommand<MockEntity>(mContentResolver, executor)
+                .onUri(mUri).select("test").useRowMapper(mRowMapper).executeAsync();
+
+        future.cancel(false);
+
+        final ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+        verify(executor).execute(anyString(), eq(true), eq(Priority.DEFAULT), task.capture());
+        task.getValue().run();
+
+        verifyZeroInteractions(mContentResolver);
+    }
+
+    @Test
+    public void shouldNotDropFutureForLaterExecutionOnExecutor() throws Exception {
+        final CommandExecutor executor = mock(CommandExecutor.class);
+        final QueryCommand<MockEntity> command = new QueryCommand<MockEntity>(mContentResolver, executor)
+                .onUri(mUri).select("test").useRowMapper(mRowMapper);
+        final CommandFuture<EntityCursor<MockEntity>> future = command.executeAsync();
+
+        // the default token of the command
+        command.executeAsync(0, mock(QueryCommand.Callback.class));
+
+        final ArgumentCaptor<Runnable> tasks = ArgumentCaptor.forClass(Runnable.class);
+        verify(executor, times(2)).execute(anyString(), eq(true), eq(Priority.DEFAULT), tasks.capture());
+        tasks.getAllValues().get(0).run();
+
+        assertTrue(future.isDone());
+        assertNull(future.get());
+    }
+
+    @Test(expected = CancellationException.class)
+    public void shouldCancelPendingFutureWhenCancelledOnExecutor() throws Exception {
+        final CommandExecutor executor = mock(CommandExecutor.class);
+        final QueryCommand<MockEntity> command = new QueryCommand<MockEntity>(mContentResolver, executor)
+                .onUri(mUri).select("test").useRowMapper(mRowMapper);
+        final CommandFuture<EntityCursor<MockEntity>> future = command.executeAsync();
+
+        command.cancel();
+
+        final ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+        verify(executor).execute(anyString(), eq(true), eq(Priority.DEFAULT), task.capture());
+        task.getValue().run();
+        verifyZeroInteractions(mContentResolver);
+        future.get();
+    }
+
+    @Test
+    public void shouldNotSkipOtherFutureWhenFutureCancelledOnExecutor() throws Exception {
+        final CommandExecutor executor = mock(CommandExecutor.class);
+        final QueryCommand<MockEntity> command = new QueryCommand<MockEntity>(mContentResolver, executor)
+                .onUri(mUri).select("test").useRowMapper(mRowMapper);
+        final CommandFuture<EntityCursor<MockEntity>> first = command.executeAsync();
+        final CommandFuture<EntityCursor<MockEntity>> second = command.executeAsync();
+
+        second.cancel(true);
+
+        final ArgumentCaptor<Runnable> tasks = ArgumentCaptor.forClass(Runnable.class);
+        verify(executor, times(2)).execute(anyString(), eq(true), eq(Priority.DEFAULT), tasks.capture());
+        for (Runnable task : tasks.getAllValues()) {
+            task.run();
+        }
+
+        assertTrue(first.isDone());
+        assertFalse(first.isCancelled());
+        assertTrue(second.isCancelled());
+    }
+
+    @Test
+    public void shouldOnlyInterruptCancelledFutureOnExecutor() throws Exception {
+        final CommandExecutor executor = mock(CommandExecutor.class);
+        final QueryCommand<MockEntity> command = new QueryCommand<MockEntity>(mContentResolver, executor)
+                .onUri(mUri).select("test").useRowMapper(mRowMapper);
+        final CommandFuture<EntityCursor<MockEntity>> first = command.executeAsync();
+        final CommandFuture<EntityCursor<MockEntity>> second = command.executeAsync();
+        doAnswer(new Answer<Cursor>() {
+            @Override
+            public Cursor answer(InvocationOnMock invocation) throws Throwable {
+                first.cancel(true);
+                throw new OperationCanceledException();
+            }
+        }).doReturn(null).when(mContentResolver).query(any(Uri.class), any(String[].class), anyString(),
+                any(String[].class), anyString());
+
+        final ArgumentCaptor<Runnable> tasks = ArgumentCaptor.forClass(Runnable.class);
+        verify(executor, times(2)).execute(anyString(), eq(true), eq(Priority.DEFAULT), tasks.capture());
+        for (Runnable task : tasks.getAllValues()) {
+            task.run();
+        }
+
+        // the running query of the first future is cancelled, while the second one is executed
+        assertTrue(first.isCancelled());
+        assertTrue(second.isDone());
+        assertFalse(second.isCancelled());
+        assertNull(second.get());
+        verify(mContentResolver, times(2)).query(any(Uri.class), any(String[].class), anyString(),
+                any(String[].class), anyString());
+    }
+
+    @Test
+    public void shouldPostFutureApartFromTokenOnWorkerThread() {
+        final CommandFuture<EntityCursor<MockEntity>> future =
+                mTested.onUri(mUri).select("test").useRowMapper(mRowMapper).executeAsync();
+
+        // posted as a callback, so removing the messages of the token of the command doesn't drop it
+        final ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+        verify(mWorkerHandler).post(task.capture());
+        verify(mWorkerHandler, never()).sendMessage(any(Message.class));
+        task.getValue().run();
+
+        assertTrue(future.isDone());
+    }
+
+    @Test
+    public void shouldCancelPendingFutureWhenCancelledOnWorkerThread() {
+        final CommandFuture<EntityCursor<MockEntity>> future =
+                mTested.onUri(mUri).select("test").useRowMapper(mRowMapper).executeAsync(Priority.USER_VISIBLE);
+
+        mTested.cancel();
+
+        final ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+        // the worker thread runs the executions in submission order, whatever their priority
+        verify(mWorkerHandler).post(task.capture());
+        task.getValue().run();
+        assertTrue(future.isCancelled());
+        verifyZeroInteractions(mContentResolver);
+    }
+
     @Override
     protected void verifyContentResolverMethodCalled(@NonNull InOrder executionOrder,
             @Nullable Map<String, Object> executionParams) {
@@ -283,6 +763,18 @@ public class QueryCommandTest extends
         return params;
     }
 
+    private static Handler newPostingHandler(final List<Runnable> posted) {
+        final Handler handler = mock(Handler.class);
+        when(handler.post(any(Runnable.class))).thenAnswer(new Answer<Boolean>() {
+            @Override
+            public Boolean answer(InvocationOnMock invocation) throws Throwable {
+                posted.add((Runnable) invocation.getArguments()[0]);
+                return true;
+            }
+        });
+        return handler;
+    }
+
     @NonNull
     @Override
     protected QueryCommand<ResolverCommandTestBase.MockEntity> createTested(
@@ -0,0 +1,77 @@
+package bg.dalexiev.bender.content;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import android.database.ContentObserver;
+import android.database.Cursor;
+
+import static junit.framework.Assert.assertEquals;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SharedCursorTest {
+
+    private SharedCursor mTested;
+
+    @Mock
+    private Cursor mCursor;
+
+    @Before
+    public void setUp() {
+        mTested = new SharedCursor(mCursor, 2);
+    }
+
+    @Test
+    public void shouldCloseCursorWhenAllSharesClosed() {
+        final Cursor first = mTested.newShare();
+        final Cursor second = mTested.newShare();
+
+        first.close();
+        verify(mCursor, never()).close();
+
+        second.close();
+        verify(mCursor).close();
+    }
+
+    @Test
+    public void shouldReleaseOnceWhenShareClosedTwice() {
+        final Cursor first = mTested.newShare();
+        mTested.newShare();
+
+        first.close();
+        first.close();
+
+        verify(mCursor, never()).close();
+    }
+
+    @Test
+    public void shouldReadSharedCursorAtSharePosition() {
+        doReturn(3).when(mCursor).getCount();
+        doReturn(42L).when(mCursor).getLong(0);
+        final Cursor share = mTested.newShare();
+
+        share.moveToPosition(2);
+
+        assertEquals(42L, share.getLong(0));
+        verify(mCursor).moveToPosition(2);
+    }
+
+    @Test
+    public void shouldUnregisterObserversWhenShareClosed() {
+        final ContentObserver observer = mock(ContentObserver.class);
+        final Cursor share = mTested.newShare();
+        share.registerContentObserver(observer);
+
+        share.close();
+
+        verify(mCursor).registerContentObserver(observer);
+        verify(mCursor).unregisterContentObserver(observer);
+    }
+}
@@ -0,0 +1,237 @@
+package bg.dalexiev.bender.content;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.net.Uri;
+
+import bg.dalexiev.bender.mapper.RowMapper;
+
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SupportPagingEntityCursorLoaderTest {
+
+    private static final int TOKEN = 1;
+    private static final int PAGE_SIZE = 10;
+
+    private SupportPagingEntityCursorLoader<ResolverCommandTestBase.MockEntity> mTested;
+
+    @Mock
+    private Context mContext;
+
+    @Mock
+    private ContentResolver mContentResolver;
+
+    @Mock
+    private CommandExecutor mExecutor;
+
+    @Mock
+    private Uri mUri;
+
+    @Mock
+    private RowMapper<ResolverCommandTestBase.MockEntity> mRowMapper;
+
+    private QueryCommand<ResolverCommandTestBase.MockEntity> mQueryCommand;
+
+    @Before
+    public void setUp() {
+        // the methods inherited from the package - private base command can't be stubbed, so a real command is spied on
+        mQueryCommand = spy(new QueryCommand<ResolverCommandTestBase.MockEntity>(mContentResolver, mExecutor)
+                .onUri(mUri).select("test").useRowMapper(mRowMapper));
+        mTested = new SupportPagingEntityCursorLoader<>(mContext, mQueryCommand, TOKEN, PAGE_SIZE);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowWhenPageSizeNotPositive() {
+        new SupportPagingEntityCursorLoader<>(mContext, mQueryCommand, TOKEN, 0);
+    }
+
+    @Test
+    public void shouldLoadFirstPage() {
+        mTested.startLoading();
+
+        verify(mQueryCommand).limit(PAGE_SIZE);
+        verify(mExecutor).execute(anyString(), eq(true), eq(Priority.USER_VISIBLE), any(Runnable.class));
+    }
+
+    @Test
+    public void shouldHaveMorePagesWhenPageFilled() {
+        mTested.startLoading();
+
+        mTested.onQueryComplete(TOKEN, newCursor(PAGE_SIZE));
+
+        assertTrue(mTested.hasMorePages());
+    }
+
+    @Test
+    public void shouldNotHaveMorePagesWhenPageNotFilled() {
+        mTested.startLoading();
+
+        mTested.onQueryComplete(TOKEN, newCursor(PAGE_SIZE - 1));
+
+        assertFalse(mTested.hasMorePages());
+        assertFalse(mTested.loadNextPage());
+    }
+
+    @Test
+    public void shouldLoadOnlyNextPage() {
+        mTested.startLoading();
+        mTested.onQueryComplete(TOKEN, newCursor(PAGE_SIZE));
+
+        assertTrue(mTested.loadNextPage());
+
+        verify(mQueryCommand).offset(PAGE_SIZE);
+        verify(mQueryCommand, times(2)).limit(PAGE_SIZE);
+        verify(mQueryCommand, never()).limit(2 * PAGE_SIZE);
+        verify(mExecutor, times(2)).execute(anyString(), eq(true), eq(Priority.USER_VISIBLE), any(Runnable.class));
+    }
+
+    @Test
+    public void shouldAppendNextPageToDeliveredResult() {
+        final EntityCursor<ResolverCommandTestBase.MockEntity> firstPage = newCursor(PAGE_SIZE);
+        final EntityCursor<ResolverCommandTestBase.MockEntity> nextPage = newCursor(PAGE_SIZE);
+        final EntityCursor<ResolverCommandTestBase.MockEntity> merged = newCursor(2 * PAGE_SIZE);
+        doReturn(merged).when(firstPage).append(nextPage);
+        mTested.startLoading();
+        mTested.onQueryComplete(TOKEN, firstPage);
+        mTested.loadNextPage();
+
+        mTested.onQueryComplete(TOKEN, nextPage);
+
+        verify(firstPage).append(nextPage);
+        assertTrue(mTested.hasMorePages());
+        // the page after the appended one is loaded next
+        assertTrue(mTested.loadNextPage());
+        verify(mQueryCommand).offset(2 * PAGE_SIZE);
+    }
+
+    @Test
+    public void shouldReloadAllPagesWhenContentChanged() {
+        final EntityCursor<ResolverCommandTestBase.MockEntity> firstPage = newCursor(PAGE_SIZE);
+        final EntityCursor<ResolverCommandTestBase.MockEntity> nextPage = newCursor(PAGE_SIZE);
+        doReturn(newCursor(2 * PAGE_SIZE)).when(firstPage).append(nextPage);
+        mTested.startLoading();
+        mTested.onQueryComplete(TOKEN, firstPage);
+        mTested.loadNextPage();
+        mTested.onQueryComplete(TOKEN, nextPage);
+
+        mTested.onContentChanged();
+
+        verify(mQueryCommand, times(2)).offset(0);
+        verify(mQueryCommand).limit(2 * PAGE_SIZE);
+    }
+
+    @Test
+    public void shouldReloadNextPageWithOthersWhenContentChangedWhileLoadingIt() {
+        final EntityCursor<ResolverCommandTestBase.MockEntity> firstPage = newCursor(PAGE_SIZE);
+        mTested.startLoading();
+        mTested.onQueryComplete(TOKEN, firstPage);
+        mTested.loadNextPage();
+
+        mTested.onContentChanged();
+        mTested.onQueryComplete(TOKEN, newCursor(2 * PAGE_SIZE));
+
+        verify(mQueryCommand).cancel();
+        verify(mQueryCommand).limit(2 * PAGE_SIZE);
+        // the reloaded result holds all pages, so it is not appended
+        verify(firstPage, never()).append(any(EntityCursor.class));
+        assertTrue(mTested.hasMorePages());
+    }
+
+    @Test
+    public void shouldNotLoadNextPageWhileLoadingPage() {
+        mTested.startLoading();
+        mTested.onQueryComplete(TOKEN, newCursor(PAGE_SIZE));
+        mTested.loadNextPage();
+
+        assertFalse(mTested.loadNextPage());
+    }
+
+    @Test
+    public void shouldNotLoadNextPageWhenStopped() {
+        mTested.startLoading();
+        mTested.onQueryComplete(TOKEN, newCursor(PAGE_SIZE));
+        mTested.stopLoading();
+
+        assertFalse(mTested.loadNextPage());
+    }
+
+    @Test
+    public void shouldLoadNextPageWhenScrolledNearEnd() {
+        mTested.startLoading();
+        mTested.onQueryComplete(TOKEN, newCursor(PAGE_SIZE));
+
+        assertFalse(mTested.onScrolledTo(PAGE_SIZE / 2 - 1));
+        assertTrue(mTested.onScrolledTo(PAGE_SIZE / 2));
+    }
+
+    @Test
+    public void shouldNotHaveMorePagesWhenNextPageNotFilled() {
+        final EntityCursor<ResolverCommandTestBase.MockEntity> firstPage = newCursor(PAGE_SIZE);
+        final EntityCursor<ResolverCommandTestBase.MockEntity> nextPage = newCursor(PAGE_SIZE - 1);
+        doReturn(newCursor(2 * PAGE_SIZE - 1)).when(firstPage).append(nextPage);
+        mTested.startLoading();
+        mTested.onQueryComplete(TOKEN, firstPage);
+        mTested.loadNextPage();
+
+        mTested.onQueryComplete(TOKEN, nextPage);
+
+        assertFalse(mTested.hasMorePages());
+    }
+
+    @Test
+    public void shouldRequestPageAgainWhenStoppedWhileLoadingIt() {
+        mTested.startLoading();
+        mTested.onQueryComplete(TOKEN, newCursor(PAGE_SIZE));
+        mTested.loadNextPage();
+
+        mTested.stopLoading();
+        // the kept result of the first page is delivered again
+        mTested.startLoading();
+
+        assertTrue(mTested.hasMorePages());
+        assertTrue(mTested.loadNextPage());
+        verify(mQueryCommand, times(2)).offset(PAGE_SIZE);
+    }
+
+    @Test
+    public void shouldLoadFirstPageAfterReset() {
+        final EntityCursor<ResolverCommandTestBase.MockEntity> firstPage = newCursor(PAGE_SIZE);
+        final EntityCursor<ResolverCommandTestBase.MockEntity> nextPage = newCursor(PAGE_SIZE);
+        doReturn(newCursor(2 * PAGE_SIZE)).when(firstPage).append(nextPage);
+        mTested.startLoading();
+        mTested.onQueryComplete(TOKEN, firstPage);
+        mTested.loadNextPage();
+        mTested.onQueryComplete(TOKEN, nextPage);
+
+        mTested.reset();
+        mTested.startLoading();
+
+        // the first page is loaded from the start, like the initial one
+        verify(mQueryCommand, times(2)).offset(0);
+        verify(mQueryCommand, times(3)).limit(PAGE_SIZE);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static EntityCursor<ResolverCommandTestBase.MockEntity> newCursor(int count) {
+        final EntityCursor<ResolverCommandTestBase.MockEntity> cursor = mock(EntityCursor.class);
+        doReturn(count).when(cursor).getCount();
+        return cursor;
+    }
+}
@@ -37,4 +37,25 @@ public class OrderByTest {
     public void shouldThrowOnNullColumnInDesc() {
         OrderBy.desc(null);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldCreateAfterPredicateForAscOrder() {
+        final Predicate actual = OrderBy.asc("test").after("10");
+
+        assertEquals("test > ?", actual.getExpression());
+        assertArrayEquals(new String[]{"10"}, actual.getArguments());
+    }
+
+    @Test
+    public void shouldCreateAfterPredicateForDescOrder() {
+        final Predicate actual = OrderBy.desc("test").after("10");
+
+        assertEquals("test < ?", actual.getExpression());
+        assertArrayEquals(new String[]{"10"}, actual.getArguments());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowOnNullValueInAfter() {
+        OrderBy.asc("test").after(null);
+    }
+}
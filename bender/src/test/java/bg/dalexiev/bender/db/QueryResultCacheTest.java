@@ -0,0 +1,155 @@
+package bg.dalexiev.bender.db;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import android.database.Cursor;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNotSame;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+public class QueryResultCacheTest {
+
+    private static final String TABLE = "foo";
+    private static final String SQL = "select a, b from foo where (a = ?)";
+    private static final String[] ARGS = {"1"};
+    private static final String[] COLUMNS = {"a", "b"};
+
+    private QueryResultCache mTested;
+
+    @Before
+    public void setUp() {
+        mTested = new QueryResultCache(4096);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowOnNonPositiveSize() {
+        new QueryResultCache(0);
+    }
+
+    @Test
+    public void shouldReturnCachedResult() {
+        final Cursor source = newCursor(new Object[]{1L, "bar"}, new Object[]{2L, null});
+
+        final Cursor stored = mTested.put(TABLE, mTested.getTableVersion(TABLE), SQL, ARGS, source);
+        final Cursor actual = mTested.get(TABLE, SQL, ARGS);
+
+        assertTrue(source.isClosed());
+        assertNotSame(stored, actual);
+        assertEquals(2, actual.getCount());
+        assertTrue(actual.moveToFirst());
+        assertEquals(1L, actual.getLong(0));
+        assertEquals("bar", actual.getString(1));
+        assertTrue(actual.moveToNext());
+        assertTrue(actual.isNull(1));
+        assertEquals(Cursor.FIELD_TYPE_NULL, actual.getType(1));
+        assertEquals(1, mTested.getHitCount());
+    }
+
+    @Test
+    public void shouldMissForDifferentArgs() {
+        mTested.put(TABLE, mTested.getTableVersion(TABLE), SQL, ARGS, newCursor(new Object[]{1L, "bar"}));
+
+        assertNull(mTested.get(TABLE, SQL, new String[]{"2"}));
+        assertNull(mTested.get(TABLE, SQL, null));
+        assertEquals(2, mTested.getMissCount());
+    }
+
+    @Test
+    public void shouldMissAfterTableChanged() {
+        mTested.put(TABLE, mTested.getTableVersion(TABLE), SQL, ARGS, newCursor(new Object[]{1L, "bar"}));
+
+        mTested.onTableChanged(TABLE);
+
+        assertNull(mTested.get(TABLE, SQL, ARGS));
+        assertEquals(0, mTested.size());
+    }
+
+    @Test
+    public void shouldKeepResultWhenOtherTableChanged() {
+        mTested.put(TABLE, mTested.getTableVersion(TABLE), SQL, ARGS, newCursor(new Object[]{1L, "bar"}));
+
+        mTested.onTableChanged("other");
+
+        assertTrue(mTested.get(TABLE, SQL, ARGS) != null);
+    }
+
+    @Test
+    public void shouldNotCacheResultReadBeforeChange() {
+        final long version = mTested.getTableVersion(TABLE);
+        final Cursor source = newCursor(new Object[]{1L, "bar"});
+
+        mTested.onTableChanged(TABLE);
+        final Cursor actual = mTested.put(TABLE, version, SQL, ARGS, source);
+
+        assertSame(source, actual);
+        assertFalse(source.isClosed());
+        assertNull(mTested.get(TABLE, SQL, ARGS));
+    }
+
+    @Test
+    public void shouldNotCacheResultReadBeforeInvalidate() {
+        final long version = mTested.getTableVersion(TABLE);
+
+        mTested.invalidate();
+        mTested.put(TABLE, version, SQL, ARGS, newCursor(new Object[]{1L, "bar"}));
+
+        assertNull(mTested.get(TABLE, SQL, ARGS));
+    }
+
+    @Test
+    public void shouldNotCacheLargeResult() {
+        final Cursor source = newCursor(new Object[]{1L, new String(new char[1024])});
+
+        final Cursor actual = mTested.put(TABLE, mTested.getTableVersion(TABLE), SQL, ARGS, source);
+
+        assertSame(source, actual);
+        assertEquals(-1, actual.getPosition());
+        assertEquals(0, mTested.size());
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsed() {
+        // each result takes a bit over a fifth of the cache
+        final String value = new String(new char[200]);
+        mTested = new QueryResultCache(2048);
+        final long version = mTested.getTableVersion(TABLE);
+        for (String sql : new String[]{"first", "second", "third", "fourth"}) {
+            mTested.put(TABLE, version, sql, null, newCursor(new Object[]{value}));
+        }
+        mTested.get(TABLE, "first", null);
+
+        mTested.put(TABLE, version, "fifth", null, newCursor(new Object[]{value}));
+
+        assertTrue(mTested.size() <= mTested.getMaxSize());
+        assertTrue(mTested.get(TABLE, "first", null) != null);
+        assertNull(mTested.get(TABLE, "second", null));
+    }
+
+    @Test
+    public void shouldCopyBlobs() {
+        final byte[] blob = {1, 2, 3};
+        mTested.put(TABLE, mTested.getTableVersion(TABLE), SQL, ARGS, newCursor(new Object[]{blob}));
+
+        final Cursor first = mTested.get(TABLE, SQL, ARGS);
+        first.moveToFirst();
+        first.getBlob(0)[0] = 42;
+        final Cursor second = mTested.get(TABLE, SQL, ARGS);
+        second.moveToFirst();
+
+        assertEquals(1, second.getBlob(0)[0]);
+    }
+
+    private static Cursor newCursor(Object[]... rows) {
+        final String[] columns = new String[rows[0].length];
+        System.arraycopy(COLUMNS, 0, columns, 0, Math.min(columns.length, COLUMNS.length));
+        for (int i = COLUMNS.length; i < columns.length; i++) {
+            columns[i] = "c" + i;
+        }
+        return new SnapshotCursor(columns, rows);
+    }
+}
@@ -17,17 +17,26 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
+import bg.dalexiev.bender.mapper.EntityWriter;
+
 import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertTrue;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
 public class SqlInsertionBuilderTest {
@@ -193,6 +202,209 @@ public class SqlInsertionBuilderTest {
         assertTrue(generatedIds.equals(Collections.singletonList(1L)));
     }
 
+    @Test
+    public void shouldBindValuesByType() {
+        final ContentValues contentValues = mock(ContentValues.class);
+        doReturn(new LinkedHashSet<>(Arrays.asList("long", "int", "double", "boolean", "blob")))
+                .when(contentValues).keySet();
+        doReturn(5).when(contentValues).size();
+        final byte[] blob = {1, 2, 3};
+        doReturn(10L).when(contentValues).get(eq("long"));
+        doReturn(5).when(contentValues).get(eq("int"));
+        doReturn(1.5d).when(contentValues).get(eq("double"));
+        doReturn(true).when(contentValues).get(eq("boolean"));
+        doReturn(blob).when(contentValues).get(eq("blob"));
+
+        final SQLiteStatement statement = mock(SQLiteStatement.class);
+        doReturn(statement).when(mDatabase).compileStatement(anyString());
+
+        mTested.setTable("test").appendValues(contentValues).insert(mDatabase);
+
+        verify(statement).bindLong(eq(1), eq(10L));
+        verify(statement).bindLong(eq(2), eq(5L));
+        verify(statement).bindDouble(eq(3), eq(1.5d));
+        verify(statement).bindLong(eq(4), eq(1L));
+        verify(statement).bindBlob(eq(5), eq(blob));
+        verify(statement, never()).bindString(anyInt(), anyString());
+    }
+
+    @Test
+    public void shouldCompileOneStatementPerShape() {
+        final ContentValues first = providedHasRow(Collections.<String, Object>singletonMap("foo", "a"));
+        final ContentValues second = providedHasRow(Collections.<String, Object>singletonMap("bar", 2L));
+        final ContentValues third = providedHasRow(Collections.<String, Object>singletonMap("foo", "c"));
+
+        final SQLiteStatement fooStatement = mock(SQLiteStatement.class);
+        doReturn(fooStatement).when(mDatabase).compileStatement(eq("insert into test(foo) values (?)"));
+        when(fooStatement.executeInsert()).thenReturn(1L, 3L);
+
+        final SQLiteStatement barStatement = mock(SQLiteStatement.class);
+        doReturn(barStatement).when(mDatabase).compileStatement(eq("insert into test(bar) values (?)"));
+        doReturn(2L).when(barStatement).executeInsert();
+
+        final List<Long> generatedIds = mTested.setTable("test").appendValues(first, second, third).insert(mDatabase);
+
+        verify(mDatabase, times(2)).compileStatement(anyString());
+        final InOrder executionOrder = inOrder(fooStatement, barStatement);
+        executionOrder.verify(fooStatement).bindString(eq(1), eq("a"));
+        executionOrder.verify(fooStatement).executeInsert();
+        executionOrder.verify(barStatement).bindLong(eq(1), eq(2L));
+        executionOrder.verify(barStatement).executeInsert();
+        executionOrder.verify(fooStatement).bindString(eq(1), eq("c"));
+        executionOrder.verify(fooStatement).executeInsert();
+        verify(fooStatement).close();
+        verify(barStatement).close();
+
+        assertEquals(Arrays.asList(1L, 2L, 3L), generatedIds);
+    }
+
+    @Test
+    public void shouldReturnGeneratedIdsInRowOrder() {
+        final ContentValues first = providedHasRow(Collections.<String, Object>singletonMap("foo", "a"));
+        final ContentValues second = providedHasRow(Collections.<String, Object>singletonMap("foo", "b"));
+
+        final SQLiteStatement statement = mock(SQLiteStatement.class);
+        doReturn(statement).when(mDatabase).compileStatement(anyString());
+        when(statement.executeInsert()).thenReturn(7L, 8L);
+
+        final long[] generatedIds = mTested.setTable("test").appendValues(first, second)
+                .insertForIds(mDatabase, SQLiteDatabase.CONFLICT_NONE);
+
+        assertTrue(Arrays.equals(new long[]{7L, 8L}, generatedIds));
+    }
+
+    @Test
+    public void shouldPackRowsInMultiRowMode() {
+        final ContentValues first = providedHasRow(Collections.<String, Object>singletonMap("foo", "a"));
+        final ContentValues second = providedHasRow(Collections.<String, Object>singletonMap("foo", "b"));
+        final ContentValues third = providedHasRow(Collections.<String, Object>singletonMap("foo", "c"));
+
+        final SQLiteStatement pairStatement = mock(SQLiteStatement.class);
+        doReturn(pairStatement).when(mDatabase).compileStatement(eq("insert into test(foo) values (?), (?)"));
+        doReturn(2).when(pairStatement).executeUpdateDelete();
+
+        final SQLiteStatement singleStatement = mock(SQLiteStatement.class);
+        doReturn(singleStatement).when(mDatabase).compileStatement(eq("insert into test(foo) values (?)"));
+        doReturn(1).when(singleStatement).executeUpdateDelete();
+
+        final int insertedRows = mTested.setTable("test").setMultiRowInsert(true).appendValues(first, second, third)
+                .insertForCount(mDatabase, SQLiteDatabase.CONFLICT_NONE);
+
+        verify(pairStatement).bindString(eq(1), eq("a"));
+        verify(pairStatement).bindString(eq(2), eq("b"));
+        verify(singleStatement).bindString(eq(1), eq("c"));
+        verify(pairStatement, never()).executeInsert();
+        assertEquals(3, insertedRows);
+    }
+
+    @Test
+    public void shouldInsertRowByRowWhenNotInMultiRowMode() {
+        final ContentValues first = providedHasRow(Collections.<String, Object>singletonMap("foo", "a"));
+        final ContentValues second = providedHasRow(Collections.<String, Object>singletonMap("foo", "b"));
+
+        final SQLiteStatement statement = mock(SQLiteStatement.class);
+        doReturn(statement).when(mDatabase).compileStatement(eq("insert into test(foo) values (?)"));
+        doReturn(1).when(statement).executeUpdateDelete();
+
+        final int insertedRows = mTested.setTable("test").appendValues(first, second)
+                .insertForCount(mDatabase, SQLiteDatabase.CONFLICT_NONE);
+
+        verify(mDatabase, times(1)).compileStatement(anyString());
+        verify(statement, times(2)).executeUpdateDelete();
+        assertEquals(2, insertedRows);
+    }
+
+    @Test
+    public void shouldNotCountIgnoredRows() {
+        final ContentValues first = providedHasRow(Collections.<String, Object>singletonMap("foo", "a"));
+        final ContentValues second = providedHasRow(Collections.<String, Object>singletonMap("foo", "b"));
+
+        final SQLiteStatement statement = mock(SQLiteStatement.class);
+        doReturn(statement).when(mDatabase).compileStatement(eq("insert or ignore into test(foo) values (?)"));
+        // the second row conflicts with an existing one
+        doReturn(1).doReturn(0).when(statement).executeUpdateDelete();
+
+        final int insertedRows = mTested.setTable("test").appendValues(first, second)
+                .insertForCount(mDatabase, SQLiteDatabase.CONFLICT_IGNORE);
+
+        assertEquals(1, insertedRows);
+    }
+
+    @Test
+    public void shouldReuseCachedStatement() {
+        final ContentValues contentValues = providedHasContentValues();
+
+        final SQLiteStatement statement = mock(SQLiteStatement.class);
+        doReturn(statement).when(mDatabase).compileStatement(anyString());
+
+        final SqlStatementCache statementCache = new SqlStatementCache(1);
+        new SqlInsertionBuilder().setTable("test").setStatementCache(statementCache).appendValues(contentValues)
+                .insert(mDatabase);
+        new SqlInsertionBuilder().setTable("test").setStatementCache(statementCache).appendValues(contentValues)
+                .insert(mDatabase);
+
+        verify(mDatabase, times(1)).compileStatement(anyString());
+        verify(statement, times(2)).executeInsert();
+        verify(statement, never()).close();
+        assertEquals(1, statementCache.getHitCount());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldBindEntitiesThroughWriter() {
+        final EntityWriter<String> writer = mock(EntityWriter.class);
+        doReturn(new String[]{"foo"}).when(writer).getColumns();
+
+        final SQLiteStatement statement = mock(SQLiteStatement.class);
+        doReturn(statement).when(mDatabase).compileStatement(eq("insert or replace into test(foo) values (?)"));
+        when(statement.executeInsert()).thenReturn(3L, 4L);
+
+        final long[] generatedIds = mTested.setTable("test")
+                .insertEntities(mDatabase, writer, Arrays.asList("a", "b"), SQLiteDatabase.CONFLICT_REPLACE);
+
+        final InOrder inOrder = inOrder(writer, statement);
+        inOrder.verify(writer).bind(statement, 1, "a");
+        inOrder.verify(statement).executeInsert();
+        inOrder.verify(writer).bind(statement, 1, "b");
+        inOrder.verify(statement).executeInsert();
+        verify(mDatabase, times(1)).compileStatement(anyString());
+        verify(statement).close();
+        assertTrue(Arrays.equals(new long[]{3L, 4L}, generatedIds));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldNotCompileStatementForNoEntities() {
+        final long[] generatedIds = mTested.setTable("test").insertEntities(mDatabase, mock(EntityWriter.class),
+                Collections.<String>emptyList(), SQLiteDatabase.CONFLICT_NONE);
+
+        verify(mDatabase, never()).compileStatement(anyString());
+        assertEquals(0, generatedIds.length);
+    }
+
+    private static ContentValues providedHasRow(final Map<String, Object> row) {
+        final ContentValues contentValues = mock(ContentValues.class);
+
+        doReturn(row.keySet()).when(contentValues).keySet();
+        doReturn(row.size()).when(contentValues).size();
+
+        doAnswer(new Answer() {
+            @Override
+            public Object answer(InvocationOnMock invocationOnMock) throws Throwable {
+                return row.containsKey(invocationOnMock.getArguments()[0]);
+            }
+        }).when(contentValues).containsKey(anyString());
+
+        doAnswer(new Answer() {
+            @Override
+            public Object answer(InvocationOnMock invocationOnMock) throws Throwable {
+                return row.get(invocationOnMock.getArguments()[0]);
+            }
+        }).when(contentValues).get(anyString());
+
+        return contentValues;
+    }
+
     private static ContentValues providedHasContentValues() {
         final ContentValues contentValues = mock(ContentValues.class);
 
@@ -203,11 +415,11 @@ public class SqlInsertionBuilderTest {
 
         doAnswer(new Answer() {
             @Override
-            public String answer(InvocationOnMock invocationOnMock) throws Throwable {
+            public Object answer(InvocationOnMock invocationOnMock) throws Throwable {
                 String columnName = (String) invocationOnMock.getArguments()[0];
                 return "foo".equals(columnName) ? "value" : null;
             }
-        }).when(contentValues).getAsString(anyString());
+        }).when(contentValues).get(anyString());
 
         return contentValues;
     }
@@ -414,4 +414,66 @@ public class SqlSelectionBuilderTest {
 
         mTested.query(mDatabase, projection);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldBuildExistsSql() {
+        mTested.setTable("table").where("foo = ?", "bar");
+
+        assertEquals("select exists(select 1 from table where (foo = ?))", mTested.buildExistsSql());
+    }
+
+    @Test
+    public void shouldBuildAggregateSqlWithoutSelection() {
+        mTested.setTable("table");
+
+        assertEquals("select typeof(value) || ':' || value from (select max(price) as value from table)",
+                mTested.buildAggregateSql(SqlSelectionBuilder.AGGREGATE_MAX, "price"));
+    }
+
+    @Test
+    public void shouldParseIntegerAggregateAsLong() {
+        assertEquals(9007199254740993L, SqlSelectionBuilder.parseAggregate("integer:9007199254740993", "price"));
+    }
+
+    @Test
+    public void shouldParseRealAggregateAsDouble() {
+        assertEquals(5.5, SqlSelectionBuilder.parseAggregate("real:5.5", "price"));
+        assertEquals(Double.NEGATIVE_INFINITY, SqlSelectionBuilder.parseAggregate("real:-Inf", "price"));
+    }
+
+    @Test
+    public void shouldParseMissingAggregateAsNull() {
+        assertNull(SqlSelectionBuilder.parseAggregate(null, "price"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowWhenTextAggregate() {
+        SqlSelectionBuilder.parseAggregate("text:foo", "name");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowWhenUnsupportedAggregateFunction() {
+        mTested.setTable("table").aggregate(mDatabase, "avg", "price");
+    }
+
+    @Test
+    public void shouldBuildQuerySql() {
+        mTested.setTable("table").setDistinct().where("foo = ?", "bar").groupBy("foo").having("count(*) > 1")
+                .orderBy("foo").limit("10");
+
+        assertEquals("select distinct foo, baz from table where (foo = ?) group by foo having count(*) > 1 order by foo"
+                + " limit 10", mTested.buildQuerySql(new String[]{"foo", "baz"}));
+    }
+
+    @Test
+    public void shouldBuildQuerySqlForAllColumns() {
+        mTested.setTable("table");
+
+        assertEquals("select * from table", mTested.buildQuerySql(null));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldThrowWhenNoTableSetInCount() {
+        mTested.count(mDatabase);
+    }
+}
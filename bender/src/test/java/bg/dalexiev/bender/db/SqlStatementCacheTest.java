@@ -0,0 +1,135 @@
+package bg.dalexiev.bender.db;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertSame;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SqlStatementCacheTest {
+
+    private static final String SQL_FOO = "insert into foo(a) values (?)";
+    private static final String SQL_BAR = "insert into bar(a) values (?)";
+    private static final String SQL_BAZ = "insert into baz(a) values (?)";
+
+    private SqlStatementCache mTested;
+
+    @Mock
+    private SQLiteDatabase mDatabase;
+
+    @Before
+    public void setUp() {
+        mTested = new SqlStatementCache(2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowOnNonPositiveSize() {
+        new SqlStatementCache(0);
+    }
+
+    @Test
+    public void shouldCompileOnMiss() {
+        final SQLiteStatement statement = providedCompiles(SQL_FOO);
+
+        final SQLiteStatement actual = mTested.acquire(mDatabase, SQL_FOO);
+
+        assertSame(statement, actual);
+        assertEquals(0, mTested.getHitCount());
+        assertEquals(1, mTested.getMissCount());
+    }
+
+    @Test
+    public void shouldReuseReleasedStatement() {
+        final SQLiteStatement statement = providedCompiles(SQL_FOO);
+
+        mTested.release(mDatabase, SQL_FOO, mTested.acquire(mDatabase, SQL_FOO));
+        final SQLiteStatement actual = mTested.acquire(mDatabase, SQL_FOO);
+
+        assertSame(statement, actual);
+        verify(mDatabase, times(1)).compileStatement(eq(SQL_FOO));
+        verify(statement, never()).close();
+        assertEquals(1, mTested.getHitCount());
+        assertEquals(1, mTested.getMissCount());
+    }
+
+    @Test
+    public void shouldNotShareAcquiredStatement() {
+        providedCompiles(SQL_FOO);
+
+        mTested.acquire(mDatabase, SQL_FOO);
+        mTested.acquire(mDatabase, SQL_FOO);
+
+        verify(mDatabase, times(2)).compileStatement(eq(SQL_FOO));
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsed() {
+        final SQLiteStatement foo = providedCompiles(SQL_FOO);
+        final SQLiteStatement bar = providedCompiles(SQL_BAR);
+        final SQLiteStatement baz = providedCompiles(SQL_BAZ);
+
+        mTested.release(mDatabase, SQL_FOO, mTested.acquire(mDatabase, SQL_FOO));
+        mTested.release(mDatabase, SQL_BAR, mTested.acquire(mDatabase, SQL_BAR));
+        mTested.release(mDatabase, SQL_BAZ, mTested.acquire(mDatabase, SQL_BAZ));
+
+        verify(foo).close();
+        verify(bar, never()).close();
+        verify(baz, never()).close();
+        assertEquals(2, mTested.size());
+    }
+
+    @Test
+    public void shouldCloseAllOnInvalidate() {
+        final SQLiteStatement foo = providedCompiles(SQL_FOO);
+
+        mTested.release(mDatabase, SQL_FOO, mTested.acquire(mDatabase, SQL_FOO));
+        mTested.invalidate();
+
+        verify(foo).close();
+        assertEquals(0, mTested.size());
+    }
+
+    @Test
+    public void shouldCloseStatementReleasedAfterInvalidate() {
+        final SQLiteStatement foo = providedCompiles(SQL_FOO);
+
+        final SQLiteStatement acquired = mTested.acquire(mDatabase, SQL_FOO);
+        mTested.invalidate();
+        mTested.release(mDatabase, SQL_FOO, acquired);
+
+        verify(foo).close();
+        assertEquals(0, mTested.size());
+    }
+
+    @Test
+    public void shouldDiscardStatementsOfAnotherDatabase() {
+        final SQLiteStatement foo = providedCompiles(SQL_FOO);
+        final SQLiteDatabase otherDatabase = mock(SQLiteDatabase.class);
+        doReturn(mock(SQLiteStatement.class)).when(otherDatabase).compileStatement(eq(SQL_FOO));
+
+        mTested.release(mDatabase, SQL_FOO, mTested.acquire(mDatabase, SQL_FOO));
+        mTested.acquire(otherDatabase, SQL_FOO);
+
+        verify(foo).close();
+        verify(otherDatabase).compileStatement(eq(SQL_FOO));
+    }
+
+    private SQLiteStatement providedCompiles(String sql) {
+        final SQLiteStatement statement = mock(SQLiteStatement.class);
+        doReturn(statement).when(mDatabase).compileStatement(eq(sql));
+        return statement;
+    }
+}
@@ -0,0 +1,96 @@
+package bg.dalexiev.bender.mapper;
+
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import static junit.framework.Assert.assertEquals;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TypedRowMapperTest {
+
+    private static final int COL_ID = 0;
+    private static final int COL_NAME = 1;
+    private static final int COL_IS_ACTIVE = 2;
+
+    private TypedRowMapper<String> mTested;
+
+    @Mock
+    private Cursor mCursor;
+
+    @Before
+    public void setUp() {
+        mTested = new TypedRowMapper<String>("_id", "name", "is_active") {
+            @Nullable
+            @Override
+            public String toObject(@NonNull Row row, int rowNum) {
+                return row.getLong(COL_ID) + ":" + row.getString(COL_NAME) + ":" + row.getBoolean(COL_IS_ACTIVE);
+            }
+        };
+
+        doReturn(2).when(mCursor).getColumnIndexOrThrow(eq("_id"));
+        doReturn(0).when(mCursor).getColumnIndexOrThrow(eq("name"));
+        doReturn(1).when(mCursor).getColumnIndexOrThrow(eq("is_active"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowOnEmptyColumns() {
+        new TypedRowMapper<String>() {
+            @Nullable
+            @Override
+            public String toObject(@NonNull Row row, int rowNum) {
+                return null;
+            }
+        };
+    }
+
+    @Test
+    public void shouldResolveColumnIndices() {
+        final Row row = mTested.bind(mCursor);
+
+        assertEquals(2, row.getColumnIndex(COL_ID));
+        assertEquals(0, row.getColumnIndex(COL_NAME));
+        assertEquals(1, row.getColumnIndex(COL_IS_ACTIVE));
+    }
+
+    @Test
+    public void shouldReadThroughResolvedIndices() {
+        doReturn(42L).when(mCursor).getLong(eq(2));
+        doReturn("foo").when(mCursor).getString(eq(0));
+        doReturn(1).when(mCursor).getInt(eq(1));
+
+        final String actual = mTested.toObject(mTested.bind(mCursor), 0);
+
+        assertEquals("42:foo:true", actual);
+    }
+
+    @Test
+    public void shouldResolveColumnIndicesOncePerBind() {
+        final Row row = mTested.bind(mCursor);
+        for (int i = 0; i < 5; i++) {
+            mTested.toObject(row, i);
+        }
+
+        verify(mCursor, times(1)).getColumnIndexOrThrow(eq("_id"));
+        verify(mCursor, times(0)).getColumnIndex(anyString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowOnMissingColumn() {
+        doThrow(new IllegalArgumentException()).when(mCursor).getColumnIndexOrThrow(eq("name"));
+
+        mTested.bind(mCursor);
+    }
+}
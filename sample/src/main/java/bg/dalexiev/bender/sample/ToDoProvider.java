@@ -6,6 +6,7 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
 import bg.dalexiev.bender.content.DatabaseContentProvider;
+import bg.dalexiev.bender.content.DatabaseUriMatcher;
 
 public class ToDoProvider extends DatabaseContentProvider {
 
@@ -22,4 +23,11 @@ public class ToDoProvider extends DatabaseContentProvider {
     protected SQLiteOpenHelper createHelper(@Nullable Context context) {
         return new ToDoHelper(context);
     }
+
+    @NonNull
+    @Override
+    protected DatabaseUriMatcher createUriMatcher(@NonNull String authority) {
+        return new DatabaseUriMatcher(authority)
+                .addTable(Schema.ToDo.TABLE_NAME);
+    }
 }
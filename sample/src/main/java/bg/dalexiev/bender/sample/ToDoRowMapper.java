@@ -1,33 +1,36 @@
 package bg.dalexiev.bender.sample;
 
-import android.database.Cursor;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
 import java.util.Calendar;
 
-import bg.dalexiev.bender.mapper.RowMapper;
+import bg.dalexiev.bender.mapper.Row;
+import bg.dalexiev.bender.mapper.TypedRowMapper;
 
-public class ToDoRowMapper implements RowMapper<ToDoModel>{
+public class ToDoRowMapper extends TypedRowMapper<ToDoModel> {
+
+    private static final int COL_ID = 0;
+    private static final int COL_TITLE = 1;
+    private static final int COL_CREATION_DATE = 2;
+    private static final int COL_IS_DONE = 3;
+
+    public ToDoRowMapper() {
+        super(Schema.ToDo._ID, Schema.ToDo.TITLE, Schema.ToDo.CREATION_DATE, Schema.ToDo.IS_DONE);
+    }
 
     @Nullable
     @Override
-    public ToDoModel toObject(@NonNull Cursor cursor, int rowNum) {
+    public ToDoModel toObject(@NonNull Row row, int rowNum) {
         final ToDoModel toDo = new ToDoModel();
+        toDo.setId(row.getLong(COL_ID));
+        toDo.setTitle(row.getString(COL_TITLE));
 
-        final int idIndex = cursor.getColumnIndex(Schema.ToDo._ID);
-        toDo.setId(cursor.getLong(idIndex));
-
-        final int titleIndex = cursor.getColumnIndex(Schema.ToDo.TITLE);
-        toDo.setTitle(cursor.getString(titleIndex));
-
-        final int creationDateIndex = cursor.getColumnIndex(Schema.ToDo.CREATION_DATE);
         final Calendar creationDate = Calendar.getInstance();
-        creationDate.setTimeInMillis(cursor.getLong(creationDateIndex));
+        creationDate.setTimeInMillis(row.getLong(COL_CREATION_DATE));
         toDo.setCreationDate(creationDate);
 
-        final int isDoneIndex = cursor.getColumnIndex(Schema.ToDo.IS_DONE);
-        toDo.setIsDone(cursor.getInt(isDoneIndex) == 1);
+        toDo.setIsDone(row.getInt(COL_IS_DONE) == 1);
 
         return toDo;
     }